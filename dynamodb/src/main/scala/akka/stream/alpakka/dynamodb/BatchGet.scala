@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb
+
+import java.util.Optional
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue
+
+import scala.collection.JavaConverters._
+import scala.collection.immutable
+import scala.compat.java8.OptionConverters._
+import scala.concurrent.duration._
+
+final class BatchGetSettings private (val maxBatchSize: Int,
+                                      val maxWait: FiniteDuration,
+                                      val parallelism: Int,
+                                      val consistentRead: Boolean,
+                                      val maxRetries: Int,
+                                      val minBackoff: FiniteDuration,
+                                      val maxBackoff: FiniteDuration,
+                                      val maxPendingLoads: Int,
+                                      val cacheMaxSize: Int,
+                                      val cacheTimeToLive: FiniteDuration) {
+  // DynamoDB requirements
+  require(
+    maxBatchSize >= 1 && maxBatchSize <= BatchGetSettings.MaxKeysPerBatch,
+    s"Invalid value ($maxBatchSize) for maxBatchSize. Requirement: 1 <= maxBatchSize <= 100"
+  )
+  require(maxWait > Duration.Zero, s"Invalid value ($maxWait) for maxWait. Requirement: maxWait > 0")
+  require(parallelism >= 1, s"Invalid value ($parallelism) for parallelism. Requirement: parallelism >= 1")
+  require(maxRetries >= 0, s"Invalid value ($maxRetries) for maxRetries. Requirement: maxRetries >= 0")
+  require(
+    minBackoff > Duration.Zero && minBackoff <= maxBackoff,
+    s"Invalid value ($minBackoff) for minBackoff. Requirement: 0 < minBackoff <= maxBackoff"
+  )
+  require(maxPendingLoads >= 1, s"Invalid value ($maxPendingLoads) for maxPendingLoads. Requirement: >= 1")
+  require(cacheMaxSize >= 0, s"Invalid value ($cacheMaxSize) for cacheMaxSize. Requirement: cacheMaxSize >= 0")
+  require(
+    cacheTimeToLive > Duration.Zero,
+    s"Invalid value ($cacheTimeToLive) for cacheTimeToLive. Requirement: cacheTimeToLive > 0"
+  )
+
+  /**
+   * The number of keys read in one `BatchGetItem` request at most.
+   *
+   * Default: 100
+   */
+  def withMaxBatchSize(value: Int): BatchGetSettings = copy(maxBatchSize = value)
+
+  /**
+   * How long keys are collected for a `BatchGetItem` request at most, unless `maxBatchSize` keys arrive earlier.
+   *
+   * Default: 10 milliseconds
+   */
+  def withMaxWait(value: FiniteDuration): BatchGetSettings = copy(maxWait = value)
+
+  /** Java API */
+  def withMaxWait(value: java.time.Duration): BatchGetSettings =
+    withMaxWait(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  /**
+   * The number of `BatchGetItem` requests in flight, including the ones waiting to retry unprocessed keys.
+   *
+   * Default: 4
+   */
+  def withParallelism(value: Int): BatchGetSettings = copy(parallelism = value)
+
+  /**
+   * Whether the items are read with strongly consistent reads.
+   *
+   * Default: false
+   */
+  def withConsistentRead(value: Boolean): BatchGetSettings = copy(consistentRead = value)
+
+  /**
+   * How often unprocessed keys and throttled requests are retried, afterwards the reads fail with an
+   * [[UnprocessedKeysException]] or the error of the request.
+   *
+   * Default: 8
+   */
+  def withMaxRetries(value: Int): BatchGetSettings = copy(maxRetries = value)
+
+  /**
+   * The backoff before the first retry. It doubles with every retry up to `maxBackoff`, and the actual
+   * backoff is picked at random between `minBackoff` and that value.
+   *
+   * Default: 50 milliseconds
+   */
+  def withMinBackoff(value: FiniteDuration): BatchGetSettings = copy(minBackoff = value)
+
+  /** Java API */
+  def withMinBackoff(value: java.time.Duration): BatchGetSettings =
+    withMinBackoff(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  /**
+   * The backoff between retries at most.
+   *
+   * Default: 5 seconds
+   */
+  def withMaxBackoff(value: FiniteDuration): BatchGetSettings = copy(maxBackoff = value)
+
+  /** Java API */
+  def withMaxBackoff(value: java.time.Duration): BatchGetSettings =
+    withMaxBackoff(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  /**
+   * The number of loads an [[ItemLoader]] queues while its requests are busy, further loads fail with a
+   * `BufferOverflowException`.
+   *
+   * Default: 1000
+   */
+  def withMaxPendingLoads(value: Int): BatchGetSettings = copy(maxPendingLoads = value)
+
+  /**
+   * The number of items an [[ItemLoader]] caches at most, the least recently used ones are evicted first.
+   * No items are cached with 0.
+   *
+   * Default: 0
+   */
+  def withCacheMaxSize(value: Int): BatchGetSettings = copy(cacheMaxSize = value)
+
+  /**
+   * How long an [[ItemLoader]] caches an item, from the first load of it on.
+   *
+   * Default: 1 minute
+   */
+  def withCacheTimeToLive(value: FiniteDuration): BatchGetSettings = copy(cacheTimeToLive = value)
+
+  /** Java API */
+  def withCacheTimeToLive(value: java.time.Duration): BatchGetSettings =
+    withCacheTimeToLive(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  private def copy(maxBatchSize: Int = maxBatchSize,
+                   maxWait: FiniteDuration = maxWait,
+                   parallelism: Int = parallelism,
+                   consistentRead: Boolean = consistentRead,
+                   maxRetries: Int = maxRetries,
+                   minBackoff: FiniteDuration = minBackoff,
+                   maxBackoff: FiniteDuration = maxBackoff,
+                   maxPendingLoads: Int = maxPendingLoads,
+                   cacheMaxSize: Int = cacheMaxSize,
+                   cacheTimeToLive: FiniteDuration = cacheTimeToLive): BatchGetSettings =
+    new BatchGetSettings(
+      maxBatchSize = maxBatchSize,
+      maxWait = maxWait,
+      parallelism = parallelism,
+      consistentRead = consistentRead,
+      maxRetries = maxRetries,
+      minBackoff = minBackoff,
+      maxBackoff = maxBackoff,
+      maxPendingLoads = maxPendingLoads,
+      cacheMaxSize = cacheMaxSize,
+      cacheTimeToLive = cacheTimeToLive
+    )
+
+  override def toString =
+    s"""BatchGetSettings(maxBatchSize=$maxBatchSize,maxWait=$maxWait,parallelism=$parallelism,consistentRead=$consistentRead,maxRetries=$maxRetries,minBackoff=$minBackoff,maxBackoff=$maxBackoff,maxPendingLoads=$maxPendingLoads,cacheMaxSize=$cacheMaxSize,cacheTimeToLive=$cacheTimeToLive)"""
+}
+
+object BatchGetSettings {
+  private[dynamodb] val MaxKeysPerBatch = 100
+
+  val Defaults = new BatchGetSettings(
+    maxBatchSize = MaxKeysPerBatch,
+    maxWait = 10.millis,
+    parallelism = 4,
+    consistentRead = false,
+    maxRetries = 8,
+    minBackoff = 50.millis,
+    maxBackoff = 5.seconds,
+    maxPendingLoads = 1000,
+    cacheMaxSize = 0,
+    cacheTimeToLive = 1.minute
+  )
+
+  /** Scala API */
+  def apply(): BatchGetSettings = Defaults
+
+  /** Java API */
+  def create(): BatchGetSettings = Defaults
+}
+
+/**
+ * The key of an item of `tableName` to read, with a value passed through to its [[ReadItemResult]].
+ */
+final class ReadItem[T] private (val tableName: String,
+                                 val key: java.util.Map[String, AttributeValue],
+                                 val passThrough: T) {
+
+  /** Java API */
+  def getTableName: String = tableName
+
+  /** Java API */
+  def getKey: java.util.Map[String, AttributeValue] = key
+
+  /** Java API */
+  def getPassThrough: T = passThrough
+
+  override def toString: String = s"ReadItem(tableName=$tableName,key=$key,passThrough=$passThrough)"
+}
+
+object ReadItem {
+
+  /** Scala API */
+  def apply[T](tableName: String, key: java.util.Map[String, AttributeValue], passThrough: T): ReadItem[T] =
+    new ReadItem(tableName, key, passThrough)
+
+  /** Java API */
+  def create[T](tableName: String, key: java.util.Map[String, AttributeValue], passThrough: T): ReadItem[T] =
+    apply(tableName, key, passThrough)
+}
+
+/**
+ * The item read for a [[ReadItem]], if the table contains it.
+ */
+final class ReadItemResult[T] private[dynamodb] (val read: ReadItem[T],
+                                                 val item: Option[java.util.Map[String, AttributeValue]]) {
+
+  /** Java API */
+  def getRead: ReadItem[T] = read
+
+  /** Java API */
+  def getItem: Optional[java.util.Map[String, AttributeValue]] = item.asJava
+
+  def passThrough: T = read.passThrough
+
+  /** Java API */
+  def getPassThrough: T = read.passThrough
+
+  override def toString: String = s"ReadItemResult(read=$read,item=$item)"
+}
+
+/**
+ * DynamoDB left the `keys` unprocessed in every attempt to read them.
+ */
+final class UnprocessedKeysException private[dynamodb] (val keys: immutable.Seq[ReadItem[_]], attempts: Int)
+    extends RuntimeException(s"${keys.size} keys remained unprocessed after $attempts attempts") {
+
+  /** Java API */
+  def getKeys: java.util.List[ReadItem[_]] = keys.asJava
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb
+
+import com.amazonaws.services.dynamodbv2.model.WriteRequest
+
+import scala.collection.JavaConverters._
+import scala.collection.immutable
+import scala.concurrent.duration._
+
+final class BatchWriteSettings private (val maxBatchSize: Int,
+                                        val maxBatchBytes: Long,
+                                        val parallelism: Int,
+                                        val maxRetries: Int,
+                                        val minBackoff: FiniteDuration,
+                                        val maxBackoff: FiniteDuration) {
+  // DynamoDB requirements
+  require(
+    maxBatchSize >= 1 && maxBatchSize <= BatchWriteSettings.MaxItemsPerBatch,
+    s"Invalid value ($maxBatchSize) for maxBatchSize. Requirement: 1 <= maxBatchSize <= 25"
+  )
+  require(
+    maxBatchBytes >= 1 && maxBatchBytes <= BatchWriteSettings.MaxBytesPerBatch,
+    s"Invalid value ($maxBatchBytes) for maxBatchBytes. Requirement: 1 <= maxBatchBytes <= 16 MB"
+  )
+  require(parallelism >= 1, s"Invalid value ($parallelism) for parallelism. Requirement: parallelism >= 1")
+  require(maxRetries >= 0, s"Invalid value ($maxRetries) for maxRetries. Requirement: maxRetries >= 0")
+  require(
+    minBackoff > Duration.Zero && minBackoff <= maxBackoff,
+    s"Invalid value ($minBackoff) for minBackoff. Requirement: 0 < minBackoff <= maxBackoff"
+  )
+
+  /**
+   * The number of write requests sent in one `BatchWriteItem` request at most.
+   *
+   * Default: 25
+   */
+  def withMaxBatchSize(value: Int): BatchWriteSettings = copy(maxBatchSize = value)
+
+  /**
+   * The estimated size of the items written in one `BatchWriteItem` request at most.
+   *
+   * Default: 16 MB
+   */
+  def withMaxBatchBytes(value: Long): BatchWriteSettings = copy(maxBatchBytes = value)
+
+  /**
+   * The number of `BatchWriteItem` requests in flight, including the ones waiting to retry unprocessed items.
+   *
+   * Default: 4
+   */
+  def withParallelism(value: Int): BatchWriteSettings = copy(parallelism = value)
+
+  /**
+   * How often unprocessed items and throttled requests are retried, afterwards the flow fails with an
+   * [[UnprocessedItemsException]] or the error of the request.
+   *
+   * Default: 8
+   */
+  def withMaxRetries(value: Int): BatchWriteSettings = copy(maxRetries = value)
+
+  /**
+   * The backoff before the first retry. It doubles with every retry up to `maxBackoff`, and the actual
+   * backoff is picked at random between `minBackoff` and that value.
+   *
+   * Default: 50 milliseconds
+   */
+  def withMinBackoff(value: FiniteDuration): BatchWriteSettings = copy(minBackoff = value)
+
+  /** Java API */
+  def withMinBackoff(value: java.time.Duration): BatchWriteSettings =
+    withMinBackoff(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  /**
+   * The backoff between retries at most.
+   *
+   * Default: 5 seconds
+   */
+  def withMaxBackoff(value: FiniteDuration): BatchWriteSettings = copy(maxBackoff = value)
+
+  /** Java API */
+  def withMaxBackoff(value: java.time.Duration): BatchWriteSettings =
+    withMaxBackoff(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  private def copy(maxBatchSize: Int = maxBatchSize,
+                   maxBatchBytes: Long = maxBatchBytes,
+                   parallelism: Int = parallelism,
+                   maxRetries: Int = maxRetries,
+                   minBackoff: FiniteDuration = minBackoff,
+                   maxBackoff: FiniteDuration = maxBackoff): BatchWriteSettings =
+    new BatchWriteSettings(maxBatchSize = maxBatchSize,
+                           maxBatchBytes = maxBatchBytes,
+                           parallelism = parallelism,
+                           maxRetries = maxRetries,
+                           minBackoff = minBackoff,
+                           maxBackoff = maxBackoff)
+
+  override def toString =
+    s"""BatchWriteSettings(maxBatchSize=$maxBatchSize,maxBatchBytes=$maxBatchBytes,parallelism=$parallelism,maxRetries=$maxRetries,minBackoff=$minBackoff,maxBackoff=$maxBackoff)"""
+}
+
+object BatchWriteSettings {
+  private[dynamodb] val MaxItemsPerBatch = 25
+  private[dynamodb] val MaxBytesPerBatch = 16L * 1024 * 1024
+
+  val Defaults = new BatchWriteSettings(
+    maxBatchSize = MaxItemsPerBatch,
+    maxBatchBytes = MaxBytesPerBatch,
+    parallelism = 4,
+    maxRetries = 8,
+    minBackoff = 50.millis,
+    maxBackoff = 5.seconds
+  )
+
+  /** Scala API */
+  def apply(): BatchWriteSettings = Defaults
+
+  /** Java API */
+  def create(): BatchWriteSettings = Defaults
+}
+
+/**
+ * A put or delete request for an item of `tableName`, with a value passed through to its [[WriteItemResult]].
+ */
+final class WriteItem[T] private (val tableName: String, val request: WriteRequest, val passThrough: T) {
+
+  /** Java API */
+  def getTableName: String = tableName
+
+  /** Java API */
+  def getRequest: WriteRequest = request
+
+  /** Java API */
+  def getPassThrough: T = passThrough
+
+  override def toString: String = s"WriteItem(tableName=$tableName,request=$request,passThrough=$passThrough)"
+}
+
+object WriteItem {
+
+  /** Scala API */
+  def apply[T](tableName: String, request: WriteRequest, passThrough: T): WriteItem[T] =
+    new WriteItem(tableName, request, passThrough)
+
+  /** Java API */
+  def create[T](tableName: String, request: WriteRequest, passThrough: T): WriteItem[T] =
+    apply(tableName, request, passThrough)
+}
+
+/**
+ * A [[WriteItem]] DynamoDB processed, after `attempts` `BatchWriteItem` requests.
+ */
+final class WriteItemResult[T] private[dynamodb] (val item: WriteItem[T], val attempts: Int) {
+
+  /** Java API */
+  def getItem: WriteItem[T] = item
+
+  /** Java API */
+  def getAttempts: Int = attempts
+
+  def passThrough: T = item.passThrough
+
+  /** Java API */
+  def getPassThrough: T = item.passThrough
+
+  override def toString: String = s"WriteItemResult(item=$item,attempts=$attempts)"
+}
+
+/**
+ * DynamoDB left `items` unprocessed in every attempt to write them.
+ */
+final class UnprocessedItemsException private[dynamodb] (val items: immutable.Seq[WriteItem[_]], attempts: Int)
+    extends RuntimeException(s"${items.size} items remained unprocessed after $attempts attempts") {
+
+  /** Java API */
+  def getItems: java.util.List[WriteItem[_]] = items.asJava
+}
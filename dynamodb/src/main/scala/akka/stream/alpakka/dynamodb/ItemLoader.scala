@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb
+
+import java.util.Optional
+import java.util.concurrent.CompletionStage
+
+import akka.stream.alpakka.dynamodb.impl.BatchReader
+import akka.stream.scaladsl.{Keep, Sink, Source, SourceQueueWithComplete}
+import akka.stream.{BufferOverflowException, OverflowStrategy, QueueOfferResult}
+import com.amazonaws.services.dynamodbv2.model.AttributeValue
+
+import scala.compat.java8.FutureConverters._
+import scala.compat.java8.OptionConverters._
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.{Failure, Success}
+
+/**
+ * Loads single items like `GetItem`, but reads the keys loaded concurrently within `maxWait` in one `BatchGetItem`
+ * request, and every key once. Loads of a key still being read share its result. With a `cacheMaxSize` the loaded
+ * items are cached for `cacheTimeToLive` as well.
+ *
+ * Create one with `DynamoDb.itemLoader` and `shutdown()` it when it is not needed anymore.
+ */
+final class ItemLoader private[dynamodb] (settings: BatchGetSettings)(implicit client: DynamoClient) {
+  private type Item = java.util.Map[String, AttributeValue]
+  // a copy of the key attributes, which the caller may change after the load
+  private type LoadKey = (String, Map[String, AttributeValue])
+
+  private implicit val ec: ExecutionContext = client.materializer.executionContext
+
+  private final class Entry(val item: Future[Option[Item]], val expiresAt: Long)
+
+  // all guarded by this
+  private val inFlight = mutable.Map.empty[LoadKey, Future[Option[Item]]]
+  // in access order, to evict the least recently used entries
+  private val cache = new java.util.LinkedHashMap[LoadKey, Entry](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: java.util.Map.Entry[LoadKey, Entry]): Boolean =
+      size() > settings.cacheMaxSize
+  }
+
+  private val queue: SourceQueueWithComplete[ReadItem[Promise[Option[Item]]]] =
+    Source
+      .queue[ReadItem[Promise[Option[Item]]]](settings.maxPendingLoads, OverflowStrategy.dropNew)
+      .groupedWithin(settings.maxBatchSize, settings.maxWait)
+      .mapAsyncUnordered(settings.parallelism) { reads =>
+        BatchReader
+          .read(reads, settings)
+          .map(_.foreach(result => result.passThrough.trySuccess(result.item)))
+          .recover { case e => reads.foreach(_.passThrough.tryFailure(e)) }
+      }
+      .toMat(Sink.ignore)(Keep.left)
+      .run()(client.materializer)
+
+  /**
+   * Loads the item of `tableName` with the `key`, if the table contains it.
+   */
+  def load(tableName: String, key: Item): Future[Option[Item]] = {
+    val loadKey = (tableName, key.asScala.toMap)
+    val now = System.nanoTime()
+    synchronized {
+      val cached = Option(cache.get(loadKey)).filter(_.expiresAt - now > 0).map(_.item)
+      // a completed read may not have been removed yet
+      cached.orElse(inFlight.get(loadKey).filterNot(_.isCompleted)) match {
+        case Some(item) => item
+        case None =>
+          val item = enqueue(tableName, key)
+          inFlight.put(loadKey, item)
+          val entry = new Entry(item, now + settings.cacheTimeToLive.toNanos)
+          if (settings.cacheMaxSize > 0) cache.put(loadKey, entry)
+          item.onComplete { result =>
+            synchronized {
+              if (inFlight.get(loadKey).contains(item)) inFlight.remove(loadKey)
+              if (result.isFailure) cache.remove(loadKey, entry)
+            }
+          }
+          item
+      }
+    }
+  }
+
+  /**
+   * Java API
+   *
+   * Loads the item of `tableName` with the `key`, if the table contains it.
+   */
+  def loadAsync(tableName: String, key: Item): CompletionStage[Optional[Item]] =
+    load(tableName, key).map(_.asJava).toJava
+
+  /**
+   * Stops the loader after the keys loaded so far are read.
+   */
+  def shutdown(): Unit = queue.complete()
+
+  private def enqueue(tableName: String, key: Item): Future[Option[Item]] = {
+    val item = Promise[Option[Item]]()
+    queue.offer(ReadItem(tableName, key, item)).onComplete {
+      case Success(QueueOfferResult.Enqueued) =>
+      case Success(QueueOfferResult.Dropped) =>
+        item.failure(new BufferOverflowException(s"ItemLoader has ${settings.maxPendingLoads} loads pending already"))
+      case Success(QueueOfferResult.Failure(e)) => item.failure(e)
+      case Success(QueueOfferResult.QueueClosed) => item.failure(new IllegalStateException("ItemLoader was shut down"))
+      case Failure(e) => item.failure(e)
+    }
+    item.future
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb
+
+import java.util.Optional
+
+import com.amazonaws.services.dynamodbv2.model.{AttributeValue, ScanResult}
+
+import scala.compat.java8.OptionConverters._
+
+/**
+ * How far a segment of a parallel scan got: it continues after `lastEvaluatedKey`, or is complete if there is none.
+ */
+final class ScanSegmentProgress private (val segment: Int,
+                                         val lastEvaluatedKey: Option[java.util.Map[String, AttributeValue]]) {
+
+  /** Java API */
+  def getLastEvaluatedKey: Optional[java.util.Map[String, AttributeValue]] = lastEvaluatedKey.asJava
+
+  def isComplete: Boolean = lastEvaluatedKey.isEmpty
+
+  override def toString: String = s"ScanSegmentProgress(segment=$segment,lastEvaluatedKey=$lastEvaluatedKey)"
+
+  override def equals(other: Any): Boolean = other match {
+    case that: ScanSegmentProgress => segment == that.segment && lastEvaluatedKey == that.lastEvaluatedKey
+    case _ => false
+  }
+
+  override def hashCode(): Int = java.util.Objects.hash(Int.box(segment), lastEvaluatedKey)
+}
+
+object ScanSegmentProgress {
+
+  /** Scala API */
+  def apply(segment: Int, lastEvaluatedKey: Option[java.util.Map[String, AttributeValue]]): ScanSegmentProgress =
+    new ScanSegmentProgress(segment, lastEvaluatedKey.filterNot(_.isEmpty))
+
+  /** Java API */
+  def create(segment: Int, lastEvaluatedKey: Optional[java.util.Map[String, AttributeValue]]): ScanSegmentProgress =
+    apply(segment, lastEvaluatedKey.asScala)
+}
+
+/**
+ * A page of a segment of a parallel scan, with the progress of its segment so far.
+ */
+final class ScanSegmentResult private[dynamodb] (val segment: Int, val totalSegments: Int, val result: ScanResult) {
+
+  /** Java API */
+  def getSegment: Int = segment
+
+  /** Java API */
+  def getTotalSegments: Int = totalSegments
+
+  /** Java API */
+  def getResult: ScanResult = result
+
+  /** The progress to save for resuming the scan after this page. */
+  def progress: ScanSegmentProgress = ScanSegmentProgress(segment, Option(result.getLastEvaluatedKey))
+
+  /** Java API */
+  def getProgress: ScanSegmentProgress = progress
+
+  override def toString: String =
+    s"ScanSegmentResult(segment=$segment,totalSegments=$totalSegments,count=${result.getCount})"
+}
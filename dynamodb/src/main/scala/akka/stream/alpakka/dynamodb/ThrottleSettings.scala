@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb
+
+import scala.concurrent.duration._
+
+final class ThrottleSettings private (val targetUtilization: Double,
+                                      val parallelism: Int,
+                                      val maxRetries: Int,
+                                      val minBackoff: FiniteDuration,
+                                      val maxBackoff: FiniteDuration) {
+  require(
+    targetUtilization > 0 && targetUtilization <= 1,
+    s"Invalid value ($targetUtilization) for targetUtilization. Requirement: 0 < targetUtilization <= 1"
+  )
+  require(parallelism >= 1, s"Invalid value ($parallelism) for parallelism. Requirement: parallelism >= 1")
+  require(maxRetries >= 0, s"Invalid value ($maxRetries) for maxRetries. Requirement: maxRetries >= 0")
+  require(
+    minBackoff > Duration.Zero && minBackoff <= maxBackoff,
+    s"Invalid value ($minBackoff) for minBackoff. Requirement: 0 < minBackoff <= maxBackoff"
+  )
+
+  /**
+   * The fraction of the provisioned read and write capacity of a table the requests consume at most.
+   *
+   * Default: 0.8
+   */
+  def withTargetUtilization(value: Double): ThrottleSettings = copy(targetUtilization = value)
+
+  /**
+   * The number of requests in flight, including the ones waiting for capacity or to retry.
+   *
+   * Default: 4
+   */
+  def withParallelism(value: Int): ThrottleSettings = copy(parallelism = value)
+
+  /**
+   * How often a throttled request is retried, afterwards the flow fails with its error.
+   *
+   * Default: 10
+   */
+  def withMaxRetries(value: Int): ThrottleSettings = copy(maxRetries = value)
+
+  /**
+   * The backoff before the first retry. It doubles with every retry up to `maxBackoff`, and the actual
+   * backoff is picked at random between `minBackoff` and that value.
+   *
+   * Default: 50 milliseconds
+   */
+  def withMinBackoff(value: FiniteDuration): ThrottleSettings = copy(minBackoff = value)
+
+  /** Java API */
+  def withMinBackoff(value: java.time.Duration): ThrottleSettings =
+    withMinBackoff(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  /**
+   * The backoff between retries at most.
+   *
+   * Default: 5 seconds
+   */
+  def withMaxBackoff(value: FiniteDuration): ThrottleSettings = copy(maxBackoff = value)
+
+  /** Java API */
+  def withMaxBackoff(value: java.time.Duration): ThrottleSettings =
+    withMaxBackoff(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  private def copy(targetUtilization: Double = targetUtilization,
+                   parallelism: Int = parallelism,
+                   maxRetries: Int = maxRetries,
+                   minBackoff: FiniteDuration = minBackoff,
+                   maxBackoff: FiniteDuration = maxBackoff): ThrottleSettings =
+    new ThrottleSettings(targetUtilization = targetUtilization,
+                         parallelism = parallelism,
+                         maxRetries = maxRetries,
+                         minBackoff = minBackoff,
+                         maxBackoff = maxBackoff)
+
+  override def toString =
+    s"""ThrottleSettings(targetUtilization=$targetUtilization,parallelism=$parallelism,maxRetries=$maxRetries,minBackoff=$minBackoff,maxBackoff=$maxBackoff)"""
+}
+
+object ThrottleSettings {
+
+  val Defaults = new ThrottleSettings(
+    targetUtilization = 0.8,
+    parallelism = 4,
+    maxRetries = 10,
+    minBackoff = 50.millis,
+    maxBackoff = 5.seconds
+  )
+
+  /** Scala API */
+  def apply(): ThrottleSettings = Defaults
+
+  /** Java API */
+  def create(): ThrottleSettings = Defaults
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb.impl
+
+import java.util.concurrent.ThreadLocalRandom
+
+import akka.annotation.InternalApi
+import akka.stream.alpakka.dynamodb.DynamoClient
+import com.amazonaws.AmazonServiceException
+import com.amazonaws.retry.RetryUtils
+
+import scala.concurrent.duration._
+import scala.concurrent.{Future, Promise}
+
+/**
+ * INTERNAL API
+ *
+ * Retries of the batch operations, which resend what DynamoDB left unprocessed and requests it throttled.
+ */
+@InternalApi private[dynamodb] object Backoff {
+
+  def isRetryable(e: AmazonServiceException): Boolean =
+    RetryUtils.isThrottlingException(e) || RetryUtils.isRetryableServiceException(e)
+
+  /** Doubles with every attempt up to `maxBackoff`, the actual backoff is picked at random from `minBackoff` on. */
+  def delay(minBackoff: FiniteDuration, maxBackoff: FiniteDuration, attempt: Int): FiniteDuration = {
+    val min = minBackoff.toNanos
+    val max = math.min(maxBackoff.toNanos, min << math.min(attempt - 1, 20))
+    (min + ThreadLocalRandom.current().nextLong(max - min + 1)).nanos
+  }
+
+  def after[T](delay: FiniteDuration)(f: => Future[T])(implicit client: DynamoClient): Future[T] = {
+    val elapsed = Promise[Unit]()
+    client.materializer.scheduleOnce(delay, new Runnable {
+      override def run(): Unit = elapsed.success(())
+    })
+    elapsed.future.flatMap(_ => f)(client.materializer.executionContext)
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb.impl
+
+import akka.NotUsed
+import akka.annotation.InternalApi
+import akka.stream.alpakka.dynamodb._
+import akka.stream.alpakka.dynamodb.scaladsl.DynamoDbExternal
+import akka.stream.alpakka.dynamodb.scaladsl.DynamoImplicits.BatchGetItem
+import akka.stream.scaladsl.Flow
+import com.amazonaws.AmazonServiceException
+import com.amazonaws.services.dynamodbv2.model.{
+  AttributeValue,
+  BatchGetItemRequest,
+  BatchGetItemResult,
+  KeysAndAttributes
+}
+
+import scala.collection.JavaConverters._
+import scala.collection.immutable
+import scala.concurrent.{ExecutionContext, Future}
+
+/**
+ * INTERNAL API
+ *
+ * Reads the keys collected within `maxWait` in `BatchGetItem` requests, every key once. Every batch is a future
+ * that resends the unprocessed keys and the throttled requests after a jittered exponential backoff.
+ */
+@InternalApi private[dynamodb] object BatchReader {
+
+  private type Item = java.util.Map[String, AttributeValue]
+  // the key attributes are copied, so the caller's map may change without affecting lookups
+  private type Key = (String, Map[String, AttributeValue])
+
+  def flow[T](settings: BatchGetSettings)(
+      implicit client: DynamoClient
+  ): Flow[ReadItem[T], ReadItemResult[T], NotUsed] =
+    Flow[ReadItem[T]]
+      .groupedWithin(settings.maxBatchSize, settings.maxWait)
+      .mapAsync(settings.parallelism)(read(_, settings))
+      .mapConcat(identity)
+
+  /** Reads the items of the keys, the results are in the order of the keys. */
+  def read[T](reads: immutable.Seq[ReadItem[T]], settings: BatchGetSettings)(
+      implicit client: DynamoClient
+  ): Future[immutable.Seq[ReadItemResult[T]]] = {
+    implicit val ec: ExecutionContext = client.materializer.executionContext
+
+    def send(pending: immutable.Seq[Key], attempt: Int, found: Map[Key, Item]): Future[Map[Key, Item]] =
+      DynamoDbExternal
+        .single(BatchGetItem(request(pending, settings)))
+        .map(result => (items(pending, result), unprocessed(pending, result)))
+        .recover {
+          case e: AmazonServiceException if Backoff.isRetryable(e) && attempt <= settings.maxRetries =>
+            (Map.empty[Key, Item], pending)
+        }
+        .flatMap {
+          case (items, remaining) =>
+            val read = found ++ items
+            if (remaining.isEmpty) Future.successful(read)
+            else if (attempt > settings.maxRetries) {
+              val unprocessedKeys = reads.filter(r => remaining.contains(key(r)))
+              Future.failed(new UnprocessedKeysException(unprocessedKeys, attempt))
+            } else {
+              val backoff = Backoff.delay(settings.minBackoff, settings.maxBackoff, attempt)
+              Backoff.after(backoff)(send(remaining, attempt + 1, read))
+            }
+        }
+
+    send(reads.map(key).distinct, 1, Map.empty).map { read =>
+      reads.map(r => new ReadItemResult(r, read.get(key(r))))
+    }
+  }
+
+  private def key(read: ReadItem[_]): Key = (read.tableName, read.key.asScala.toMap)
+
+  private def request(pending: immutable.Seq[Key], settings: BatchGetSettings) =
+    new BatchGetItemRequest().withRequestItems(
+      pending
+        .groupBy(_._1)
+        .map {
+          case (table, keys) =>
+            table -> new KeysAndAttributes()
+              .withKeys(keys.map(_._2.asJava).asJava)
+              .withConsistentRead(settings.consistentRead)
+        }
+        .asJava
+    )
+
+  /** The returned items by the pending key they contain the attributes of. */
+  private def items(pending: immutable.Seq[Key], result: BatchGetItemResult): Map[Key, Item] = {
+    val responses = Option(result.getResponses).map(_.asScala.toList).getOrElse(Nil)
+    responses.flatMap {
+      case (table, items) =>
+        items.asScala.flatMap { item =>
+          pending.find {
+            case (keyTable, key) =>
+              keyTable == table && key.forall { case (name, value) => value == item.get(name) }
+          }.map(_ -> item)
+        }
+    }.toMap
+  }
+
+  private def unprocessed(pending: immutable.Seq[Key], result: BatchGetItemResult): immutable.Seq[Key] = {
+    val unprocessedKeys = Option(result.getUnprocessedKeys).map(_.asScala.toList).getOrElse(Nil)
+    val keys = unprocessedKeys.flatMap {
+      case (table, keys) => keys.getKeys.asScala.map(key => table -> key.asScala.toMap)
+    }.toSet
+    pending.filter(keys.contains)
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb.impl
+
+import akka.NotUsed
+import akka.annotation.InternalApi
+import akka.stream.alpakka.dynamodb._
+import akka.stream.alpakka.dynamodb.scaladsl.DynamoDbExternal
+import akka.stream.alpakka.dynamodb.scaladsl.DynamoImplicits.BatchWriteItem
+import akka.stream.scaladsl.Flow
+import akka.stream.stage.{GraphStage, GraphStageLogic, InHandler, OutHandler}
+import akka.stream.{Attributes, FlowShape, Inlet, Outlet}
+import com.amazonaws.AmazonServiceException
+import com.amazonaws.services.dynamodbv2.model.{AttributeValue, BatchWriteItemRequest, BatchWriteItemResult}
+
+import scala.collection.JavaConverters._
+import scala.collection.immutable
+import scala.concurrent.{ExecutionContext, Future}
+
+/**
+ * INTERNAL API
+ *
+ * Writes the items in `BatchWriteItem` requests. Every batch is a future that resends the unprocessed items and
+ * the throttled requests after a jittered exponential backoff, so retrying batches don't hold back the others.
+ * The results are emitted in the order of the items.
+ */
+@InternalApi private[dynamodb] object BatchWriter {
+
+  def flow[T](settings: BatchWriteSettings)(
+      implicit client: DynamoClient
+  ): Flow[WriteItem[T], WriteItemResult[T], NotUsed] =
+    Flow[WriteItem[T]]
+      .via(new WriteBatchingStage[T](settings.maxBatchSize, settings.maxBatchBytes))
+      .mapAsync(settings.parallelism)(write(_, settings))
+      .mapConcat(identity)
+
+  private def write[T](items: immutable.IndexedSeq[WriteItem[T]], settings: BatchWriteSettings)(
+      implicit client: DynamoClient
+  ): Future[immutable.Seq[WriteItemResult[T]]] = {
+    implicit val ec: ExecutionContext = client.materializer.executionContext
+
+    // returns the attempt in which each item was processed
+    def send(pending: immutable.IndexedSeq[Int], attempt: Int, done: Map[Int, Int]): Future[Map[Int, Int]] =
+      DynamoDbExternal
+        .single(BatchWriteItem(request(items, pending)))
+        .map(unprocessed(items, pending, _))
+        .recover {
+          case e: AmazonServiceException if Backoff.isRetryable(e) && attempt <= settings.maxRetries => pending
+        }
+        .flatMap { remaining =>
+          val processed = done ++ pending.filterNot(remaining.contains).map(_ -> attempt)
+          if (remaining.isEmpty) Future.successful(processed)
+          else if (attempt > settings.maxRetries)
+            Future.failed(new UnprocessedItemsException(remaining.map(items), attempt))
+          else {
+            val backoff = Backoff.delay(settings.minBackoff, settings.maxBackoff, attempt)
+            Backoff.after(backoff)(send(remaining, attempt + 1, processed))
+          }
+        }
+
+    send(items.indices, 1, Map.empty).map { done =>
+      items.indices.map(i => new WriteItemResult(items(i), done(i)))
+    }
+  }
+
+  private def request(items: immutable.IndexedSeq[WriteItem[_]], pending: immutable.IndexedSeq[Int]) =
+    new BatchWriteItemRequest().withRequestItems(
+      pending
+        .map(items)
+        .groupBy(_.tableName)
+        .map { case (table, writes) => table -> writes.map(_.request).asJava }
+        .asJava
+    )
+
+  /** The indices of the pending items DynamoDB returned as unprocessed. */
+  private def unprocessed(items: immutable.IndexedSeq[WriteItem[_]],
+                          pending: immutable.IndexedSeq[Int],
+                          result: BatchWriteItemResult): immutable.IndexedSeq[Int] = {
+    val unprocessedItems = Option(result.getUnprocessedItems).map(_.asScala.toList).getOrElse(Nil)
+    unprocessedItems
+      .flatMap { case (table, requests) => requests.asScala.map(table -> _) }
+      .foldLeft(Vector.empty[Int]) {
+        case (found, (table, request)) =>
+          found ++ pending.find { i =>
+            !found.contains(i) && items(i).tableName == table && items(i).request == request
+          }
+      }
+  }
+
+  /**
+   * The size DynamoDB accounts for an item: the lengths of its attribute names and values.
+   */
+  private[impl] def itemSize(item: WriteItem[_]): Long = {
+    val attributes =
+      if (item.request.getPutRequest != null) item.request.getPutRequest.getItem
+      else item.request.getDeleteRequest.getKey
+    attributesSize(attributes)
+  }
+
+  private def attributesSize(attributes: java.util.Map[String, AttributeValue]): Long =
+    attributes.asScala.foldLeft(0L) {
+      case (size, (name, value)) => size + utf8Length(name) + valueSize(value)
+    }
+
+  private def valueSize(value: AttributeValue): Long =
+    if (value.getS != null) utf8Length(value.getS)
+    else if (value.getN != null) value.getN.length
+    else if (value.getB != null) value.getB.remaining()
+    else if (value.getSS != null) value.getSS.asScala.map(utf8Length).sum
+    else if (value.getNS != null) value.getNS.asScala.map(_.length.toLong).sum
+    else if (value.getBS != null) value.getBS.asScala.map(_.remaining().toLong).sum
+    else if (value.getM != null) 3 + attributesSize(value.getM)
+    else if (value.getL != null) 3 + value.getL.asScala.map(valueSize(_) + 1).sum
+    else 1 // BOOL and NULL
+
+  private def utf8Length(s: String): Long = s.getBytes(java.nio.charset.StandardCharsets.UTF_8).length
+}
+
+/**
+ * INTERNAL API
+ *
+ * Batches items while downstream backpressures, up to `maxBatchSize` items and `maxBatchBytes` of estimated size.
+ */
+@InternalApi private[dynamodb] final class WriteBatchingStage[T](maxBatchSize: Int, maxBatchBytes: Long)
+    extends GraphStage[FlowShape[WriteItem[T], immutable.IndexedSeq[WriteItem[T]]]] {
+
+  private val in = Inlet[WriteItem[T]]("WriteBatching.in")
+  private val out = Outlet[immutable.IndexedSeq[WriteItem[T]]]("WriteBatching.out")
+
+  override val shape = FlowShape(in, out)
+
+  override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
+    new GraphStageLogic(shape) with InHandler with OutHandler {
+      private var batch = Vector.empty[WriteItem[T]]
+      private var batchBytes = 0L
+      // the item that didn't fit into the batch anymore
+      private var overflow: Option[(WriteItem[T], Long)] = None
+
+      private def fits(size: Long) =
+        batch.isEmpty || (batch.size < maxBatchSize && batchBytes + size <= maxBatchBytes)
+
+      private def add(item: WriteItem[T], size: Long): Unit = {
+        batch :+= item
+        batchBytes += size
+      }
+
+      private def emit(): Unit = {
+        push(out, batch)
+        batch = Vector.empty
+        batchBytes = 0L
+        overflow.foreach { case (item, size) => add(item, size) }
+        overflow = None
+      }
+
+      private def pullOrComplete(): Unit =
+        if (isClosed(in)) {
+          if (batch.isEmpty) completeStage()
+        } else if (overflow.isEmpty && !hasBeenPulled(in)) pull(in)
+
+      override def onPush(): Unit = {
+        val item = grab(in)
+        val size = BatchWriter.itemSize(item)
+        if (fits(size)) add(item, size) else overflow = Some((item, size))
+        if (isAvailable(out)) emit()
+        pullOrComplete()
+      }
+
+      override def onUpstreamFinish(): Unit =
+        if (batch.isEmpty) completeStage()
+
+      override def onPull(): Unit = {
+        if (batch.nonEmpty) emit()
+        pullOrComplete()
+      }
+
+      setHandlers(in, out, this)
+    }
+}
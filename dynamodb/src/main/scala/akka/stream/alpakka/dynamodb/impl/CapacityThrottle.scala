@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb.impl
+
+import akka.NotUsed
+import akka.annotation.InternalApi
+import akka.stream.alpakka.dynamodb.impl.CapacityThrottle._
+import akka.stream.alpakka.dynamodb.scaladsl.DynamoDbExternal
+import akka.stream.alpakka.dynamodb.scaladsl.DynamoImplicits.{
+  BatchGetItem,
+  BatchWriteItem,
+  DeleteItem,
+  DescribeTable,
+  GetItem,
+  PutItem,
+  Query,
+  Scan,
+  UpdateItem
+}
+import akka.stream.alpakka.dynamodb.{AwsOp, DynamoClient, ThrottleSettings}
+import akka.stream.scaladsl.Flow
+import com.amazonaws.{AmazonServiceException, AmazonWebServiceRequest}
+import com.amazonaws.services.dynamodbv2.model._
+
+import scala.collection.JavaConverters._
+import scala.collection.{immutable, mutable}
+import scala.concurrent.duration._
+import scala.concurrent.{ExecutionContext, Future}
+
+/**
+ * INTERNAL API
+ *
+ * Shapes the requests to every table to `targetUtilization` of its provisioned capacity, with a token bucket per
+ * table for reads and one for writes. A request waits until the buckets it draws from hold capacity, then reserves
+ * the capacity such requests consumed recently. Once it returns, the reservation is corrected by the capacity it
+ * actually consumed, which requests return when `ReturnConsumedCapacity` is set.
+ *
+ * A throttled request halves the rate of its buckets and is retried after a jittered exponential backoff. The rate
+ * recovers to its target by a tenth of it per second.
+ *
+ * The capacity consumed on the global secondary indexes of a table is part of the `TOTAL` of its requests, and is
+ * drawn from the bucket of the table. Indexes have no buckets of their own: the writes to an index provisioned with
+ * less capacity than its table are only slowed down by the requests it throttles.
+ */
+@InternalApi private[dynamodb] final class CapacityThrottle(settings: ThrottleSettings)(
+    implicit client: DynamoClient
+) {
+
+  private implicit val ec: ExecutionContext = client.materializer.executionContext
+
+  // guarded by this
+  private val tableBuckets = mutable.Map.empty[(String, Capacity), Future[Bucket]]
+
+  def flow[Op <: AwsOp]: Flow[Op, Op#B, NotUsed] =
+    Flow[Op]
+      .mapAsync(settings.parallelism) { op =>
+        val capacities = consumes(op.request)
+        Future.sequence(capacities.map(bucket)).flatMap(send(returningConsumedCapacity(op), _, 1))
+      }
+      .map(_.asInstanceOf[Op#B])
+
+  private def send(op: AwsOp, buckets: immutable.Seq[Bucket], attempt: Int): Future[Any] =
+    acquire(buckets).flatMap { reserved =>
+      DynamoDbExternal
+        .single(op)
+        .map { result =>
+          consumed(buckets, reserved, result)
+          result
+        }
+        .recoverWith {
+          case e: AmazonServiceException if Backoff.isRetryable(e) && attempt <= settings.maxRetries =>
+            throttled(buckets, reserved)
+            val backoff = Backoff.delay(settings.minBackoff, settings.maxBackoff, attempt)
+            Backoff.after(backoff)(send(op, buckets, attempt + 1))
+        }
+    }
+
+  /** Waits until all buckets hold capacity and reserves the estimated capacity from them. */
+  private def acquire(buckets: immutable.Seq[Bucket]): Future[immutable.Seq[Double]] = {
+    val wait = synchronized {
+      val now = System.nanoTime()
+      buckets.foreach(_.refill(now))
+      val longest = buckets.map(_.waitTime).foldLeft(Duration.Zero)(_ max _)
+      if (longest == Duration.Zero) Right(buckets.map(_.reserve()))
+      else Left(longest)
+    }
+    wait match {
+      case Right(reserved) => Future.successful(reserved)
+      case Left(duration) => Backoff.after(duration)(acquire(buckets))
+    }
+  }
+
+  private def consumed(buckets: immutable.Seq[Bucket], reserved: immutable.Seq[Double], result: Any): Unit = {
+    val capacities = consumedCapacity(result)
+    synchronized {
+      buckets.zip(reserved).foreach {
+        case (bucket, units) =>
+          val consumed = capacities.filter(_.getTableName == bucket.tableName).flatMap(c => Option(c.getCapacityUnits))
+          bucket.consumed(units, if (consumed.isEmpty) None else Some(consumed.map(_.doubleValue).sum))
+      }
+    }
+  }
+
+  private def throttled(buckets: immutable.Seq[Bucket], reserved: immutable.Seq[Double]): Unit =
+    synchronized {
+      buckets.zip(reserved).foreach { case (bucket, units) => bucket.throttled(units) }
+    }
+
+  /** The bucket of the table, created from the provisioned capacity of the table on first use. */
+  private def bucket(capacity: (String, Capacity)): Future[Bucket] = synchronized {
+    tableBuckets.getOrElseUpdate(
+      capacity, {
+        val (tableName, kind) = capacity
+        val bucket = DynamoDbExternal.single(DescribeTable(new DescribeTableRequest(tableName))).map { result =>
+          val throughput = result.getTableDescription.getProvisionedThroughput
+          val units = kind match {
+            case ReadCapacity => throughput.getReadCapacityUnits
+            case WriteCapacity => throughput.getWriteCapacityUnits
+          }
+          new Bucket(tableName, Option(units).map(_.doubleValue).getOrElse(0.0) * settings.targetUtilization)
+        }
+        bucket.failed.foreach(_ => synchronized(tableBuckets.remove(capacity)))
+        bucket
+      }
+    )
+  }
+}
+
+/**
+ * INTERNAL API
+ */
+@InternalApi private[dynamodb] object CapacityThrottle {
+
+  sealed trait Capacity
+  case object ReadCapacity extends Capacity
+  case object WriteCapacity extends Capacity
+
+  /**
+   * Capacity units of a table, refilled at `rate` per second up to one second worth of them. A `target` of 0
+   * means the table has no provisioned capacity to shape to.
+   */
+  final class Bucket(val tableName: String, target: Double, createdAt: Long = System.nanoTime()) {
+    private val minRate = target / 20
+    private var rate = target
+    private var tokens = target
+    private var refilledAt = createdAt
+    // consumed capacity of the recent requests
+    private var estimate = 1.0
+
+    def refill(now: Long): Unit = {
+      val elapsed = (now - refilledAt) / 1e9
+      refilledAt = now
+      rate = math.min(target, rate + target / 10 * elapsed)
+      tokens = math.min(rate, tokens + rate * elapsed)
+    }
+
+    def waitTime: FiniteDuration =
+      if (target == 0 || tokens >= 0) Duration.Zero
+      else math.ceil(-tokens / rate * 1000).toLong.millis
+
+    def reserve(): Double = {
+      tokens -= estimate
+      estimate
+    }
+
+    def consumed(reserved: Double, units: Option[Double]): Unit = units.foreach { consumed =>
+      tokens += reserved - consumed
+      estimate += (consumed - estimate) / 8
+    }
+
+    def throttled(reserved: Double): Unit = {
+      rate = math.max(minRate, rate / 2)
+      tokens = math.min(tokens + reserved, 0)
+    }
+  }
+
+  /**
+   * The capacities of the tables a request consumes, for the requests which are shaped.
+   */
+  def consumes(request: AmazonWebServiceRequest): immutable.Seq[(String, Capacity)] = request match {
+    case r: GetItemRequest => List(r.getTableName -> ReadCapacity)
+    case r: QueryRequest => List(r.getTableName -> ReadCapacity)
+    case r: ScanRequest => List(r.getTableName -> ReadCapacity)
+    case r: BatchGetItemRequest => r.getRequestItems.keySet.asScala.toList.map(_ -> ReadCapacity)
+    case r: PutItemRequest => List(r.getTableName -> WriteCapacity)
+    case r: UpdateItemRequest => List(r.getTableName -> WriteCapacity)
+    case r: DeleteItemRequest => List(r.getTableName -> WriteCapacity)
+    case r: BatchWriteItemRequest => r.getRequestItems.keySet.asScala.toList.map(_ -> WriteCapacity)
+    case _ => Nil
+  }
+
+  /**
+   * The operation with `ReturnConsumedCapacity` set to `TOTAL` on a copy of its request, unless the request sets it
+   * already or consumes no capacity which is shaped. The request of the caller is left as it is.
+   */
+  def returningConsumedCapacity(op: AwsOp): AwsOp = op.request match {
+    case r: GetItemRequest if r.getReturnConsumedCapacity == null =>
+      new GetItem(r.clone().withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL))
+    case r: QueryRequest if r.getReturnConsumedCapacity == null =>
+      new Query(r.clone().withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL))
+    case r: ScanRequest if r.getReturnConsumedCapacity == null =>
+      new Scan(r.clone().withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL))
+    case r: BatchGetItemRequest if r.getReturnConsumedCapacity == null =>
+      new BatchGetItem(r.clone().withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL))
+    case r: PutItemRequest if r.getReturnConsumedCapacity == null =>
+      new PutItem(r.clone().withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL))
+    case r: UpdateItemRequest if r.getReturnConsumedCapacity == null =>
+      new UpdateItem(r.clone().withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL))
+    case r: DeleteItemRequest if r.getReturnConsumedCapacity == null =>
+      new DeleteItem(r.clone().withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL))
+    case r: BatchWriteItemRequest if r.getReturnConsumedCapacity == null =>
+      new BatchWriteItem(r.clone().withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL))
+    case _ => op
+  }
+
+  def consumedCapacity(result: Any): immutable.Seq[ConsumedCapacity] = result match {
+    case r: GetItemResult => Option(r.getConsumedCapacity).toList
+    case r: QueryResult => Option(r.getConsumedCapacity).toList
+    case r: ScanResult => Option(r.getConsumedCapacity).toList
+    case r: BatchGetItemResult => Option(r.getConsumedCapacity).map(_.asScala.toList).getOrElse(Nil)
+    case r: PutItemResult => Option(r.getConsumedCapacity).toList
+    case r: UpdateItemResult => Option(r.getConsumedCapacity).toList
+    case r: DeleteItemResult => Option(r.getConsumedCapacity).toList
+    case r: BatchWriteItemResult => Option(r.getConsumedCapacity).map(_.asScala.toList).getOrElse(Nil)
+    case _ => Nil
+  }
+}
@@ -25,6 +25,14 @@ object DynamoDb {
   def flow[Op <: AwsOp](sys: ActorSystem): Flow[Op, Op#B, NotUsed] =
     DynamoDbExternal.flow(DynamoClientExt(sys).dynamoClient)
 
+  /**
+   * Create a Flow that emits a response for every request, like `flow`, but shapes the item reads and writes to
+   * `targetUtilization` of the provisioned capacity of their tables. Throttled requests are retried with a jittered
+   * exponential backoff. Materializations of the returned Flow share the capacity.
+   */
+  def throttledFlow[Op <: AwsOp](settings: ThrottleSettings, sys: ActorSystem): Flow[Op, Op#B, NotUsed] =
+    DynamoDbExternal.throttledFlow[Op](settings, DynamoClientExt(sys).dynamoClient)
+
   def batchGetItem(request: BatchGetItemRequest, sys: ActorSystem): CompletionStage[BatchGetItemResult] =
     DynamoDbExternal.batchGetItem(request, DynamoClientExt(sys).dynamoClient)
 
@@ -59,6 +67,15 @@ object DynamoDb {
   def scanAll(request: ScanRequest, sys: ActorSystem): Source[ScanResult, NotUsed] =
     DynamoDbExternal.scanAll(request, DynamoClientExt(sys).dynamoClient)
 
+  def parallelScan(request: ScanRequest, totalSegments: Int, sys: ActorSystem): Source[ScanSegmentResult, NotUsed] =
+    DynamoDbExternal.parallelScan(request, totalSegments, DynamoClientExt(sys).dynamoClient)
+
+  def parallelScan(request: ScanRequest,
+                   totalSegments: Int,
+                   resumeFrom: java.lang.Iterable[ScanSegmentProgress],
+                   sys: ActorSystem): Source[ScanSegmentResult, NotUsed] =
+    DynamoDbExternal.parallelScan(request, totalSegments, resumeFrom, DynamoClientExt(sys).dynamoClient)
+
   def updateItem(request: UpdateItemRequest, sys: ActorSystem): CompletionStage[UpdateItemResult] =
     DynamoDbExternal.updateItem(request, DynamoClientExt(sys).dynamoClient)
 
@@ -71,6 +88,31 @@ object DynamoDb {
   def batchWriteItem(request: BatchWriteItemRequest, sys: ActorSystem): CompletionStage[BatchWriteItemResult] =
     DynamoDbExternal.batchWriteItem(request, DynamoClientExt(sys).dynamoClient)
 
+  /**
+   * Create a Flow that writes put and delete requests in `BatchWriteItem` requests of up to 25 items, with several
+   * requests in flight. Unprocessed items are retried with a jittered exponential backoff. It emits a result for
+   * every item, in the order of the items.
+   */
+  def batchWriteFlow[T](settings: BatchWriteSettings,
+                        sys: ActorSystem): Flow[WriteItem[T], WriteItemResult[T], NotUsed] =
+    DynamoDbExternal.batchWriteFlow[T](settings, DynamoClientExt(sys).dynamoClient)
+
+  /**
+   * Create a Flow that reads the items of the keys arriving within `maxWait` in one `BatchGetItem` request of up
+   * to 100 keys, every key once, with several requests in flight. Unprocessed keys are retried with a jittered
+   * exponential backoff. It emits a result for every key, in the order of the keys.
+   */
+  def batchGetFlow[T](settings: BatchGetSettings,
+                      sys: ActorSystem): Flow[ReadItem[T], ReadItemResult[T], NotUsed] =
+    DynamoDbExternal.batchGetFlow[T](settings, DynamoClientExt(sys).dynamoClient)
+
+  /**
+   * Create an [[akka.stream.alpakka.dynamodb.ItemLoader ItemLoader]] that reads the items loaded concurrently
+   * in `BatchGetItem` requests, optionally caching them.
+   */
+  def itemLoader(settings: BatchGetSettings, sys: ActorSystem): ItemLoader =
+    DynamoDbExternal.itemLoader(settings, DynamoClientExt(sys).dynamoClient)
+
   def getItem(request: GetItemRequest, sys: ActorSystem): CompletionStage[GetItemResult] =
     DynamoDbExternal.getItem(request, DynamoClientExt(sys).dynamoClient)
 
@@ -7,12 +7,13 @@ package akka.stream.alpakka.dynamodb.javadsl
 import java.util.concurrent.CompletionStage
 
 import akka.NotUsed
-import akka.stream.alpakka.dynamodb.{AwsOp, AwsPagedOp, DynamoClient}
+import akka.stream.alpakka.dynamodb._
 import akka.stream.alpakka.dynamodb.scaladsl
 import akka.stream.alpakka.dynamodb.scaladsl.DynamoImplicits._
 import akka.stream.javadsl.{Flow, Source}
 import com.amazonaws.services.dynamodbv2.model._
 
+import scala.collection.JavaConverters._
 import scala.compat.java8.FutureConverters._
 
 /**
@@ -28,6 +29,14 @@ object DynamoDbExternal {
   def flow[Op <: AwsOp](client: DynamoClient): Flow[Op, Op#B, NotUsed] =
     scaladsl.DynamoDbExternal.flow(client).asJava
 
+  /**
+   * Create a Flow that emits a response for every request, like `flow`, but shapes the item reads and writes to
+   * `targetUtilization` of the provisioned capacity of their tables. Throttled requests are retried with a jittered
+   * exponential backoff. Materializations of the returned Flow share the capacity.
+   */
+  def throttledFlow[Op <: AwsOp](settings: ThrottleSettings, client: DynamoClient): Flow[Op, Op#B, NotUsed] =
+    scaladsl.DynamoDbExternal.throttledFlow[Op](settings)(client).asJava
+
   private def source(op: AwsPagedOp, client: DynamoClient): Source[op.B, NotUsed] =
     scaladsl.DynamoDbExternal.source(op)(client).asJava
 
@@ -68,6 +77,17 @@ object DynamoDbExternal {
   def scanAll(request: ScanRequest, client: DynamoClient): Source[ScanResult, NotUsed] =
     source(Scan(request), client)
 
+  def parallelScan(request: ScanRequest,
+                   totalSegments: Int,
+                   client: DynamoClient): Source[ScanSegmentResult, NotUsed] =
+    scaladsl.DynamoDbExternal.parallelScan(request, totalSegments)(client).asJava
+
+  def parallelScan(request: ScanRequest,
+                   totalSegments: Int,
+                   resumeFrom: java.lang.Iterable[ScanSegmentProgress],
+                   client: DynamoClient): Source[ScanSegmentResult, NotUsed] =
+    scaladsl.DynamoDbExternal.parallelScan(request, totalSegments, resumeFrom.asScala.toList)(client).asJava
+
   def updateItem(request: UpdateItemRequest, client: DynamoClient): CompletionStage[UpdateItemResult] =
     single(UpdateItem(request), client)
 
@@ -80,6 +100,31 @@ object DynamoDbExternal {
   def batchWriteItem(request: BatchWriteItemRequest, client: DynamoClient): CompletionStage[BatchWriteItemResult] =
     single(BatchWriteItem(request), client)
 
+  /**
+   * Create a Flow that writes put and delete requests in `BatchWriteItem` requests of up to 25 items, with several
+   * requests in flight. Unprocessed items are retried with a jittered exponential backoff. It emits a result for
+   * every item, in the order of the items.
+   */
+  def batchWriteFlow[T](settings: BatchWriteSettings,
+                        client: DynamoClient): Flow[WriteItem[T], WriteItemResult[T], NotUsed] =
+    scaladsl.DynamoDbExternal.batchWriteFlow[T](settings)(client).asJava
+
+  /**
+   * Create a Flow that reads the items of the keys arriving within `maxWait` in one `BatchGetItem` request of up
+   * to 100 keys, every key once, with several requests in flight. Unprocessed keys are retried with a jittered
+   * exponential backoff. It emits a result for every key, in the order of the keys.
+   */
+  def batchGetFlow[T](settings: BatchGetSettings,
+                      client: DynamoClient): Flow[ReadItem[T], ReadItemResult[T], NotUsed] =
+    scaladsl.DynamoDbExternal.batchGetFlow[T](settings)(client).asJava
+
+  /**
+   * Create an [[akka.stream.alpakka.dynamodb.ItemLoader ItemLoader]] that reads the items loaded concurrently
+   * in `BatchGetItem` requests, optionally caching them.
+   */
+  def itemLoader(settings: BatchGetSettings, client: DynamoClient): ItemLoader =
+    scaladsl.DynamoDbExternal.itemLoader(settings)(client)
+
   def getItem(request: GetItemRequest, client: DynamoClient): CompletionStage[GetItemResult] =
     single(GetItem(request), client)
 
@@ -6,9 +6,11 @@ package akka.stream.alpakka.dynamodb.scaladsl
 
 import akka.NotUsed
 import akka.actor.ActorSystem
-import akka.stream.alpakka.dynamodb.{AwsOp, AwsPagedOp, DynamoClientExt}
+import akka.stream.alpakka.dynamodb._
 import akka.stream.scaladsl.{Flow, Source}
+import com.amazonaws.services.dynamodbv2.model.ScanRequest
 
+import scala.collection.immutable
 import scala.concurrent.Future
 
 /**
@@ -42,6 +44,74 @@ object DynamoDb {
   def source(op: AwsOp)(implicit sys: ActorSystem): Source[op.B, NotUsed] =
     DynamoDbExternal.source(op)(DynamoClientExt(sys).dynamoClient)
 
+  /**
+   * Create a Source that scans a table in `totalSegments` segments concurrently, each paging through its
+   * `LastEvaluatedKey`s. It emits the pages of all segments as they arrive, with the progress of their segment.
+   *
+   * @param request scan request, without `Segment` and `TotalSegments`
+   * @param totalSegments number of segments to scan concurrently
+   * @param resumeFrom saved progress of segments; complete segments are skipped, the others continue after their
+   *                   last evaluated key
+   * @param sys actor system that will be used to resolved managed DynamoClient
+   */
+  def parallelScan(request: ScanRequest,
+                   totalSegments: Int,
+                   resumeFrom: immutable.Iterable[ScanSegmentProgress] = Nil)(
+      implicit sys: ActorSystem
+  ): Source[ScanSegmentResult, NotUsed] =
+    DynamoDbExternal.parallelScan(request, totalSegments, resumeFrom)(DynamoClientExt(sys).dynamoClient)
+
+  /**
+   * Create a Flow that writes put and delete requests in `BatchWriteItem` requests of up to 25 items, with several
+   * requests in flight. Unprocessed items are retried with a jittered exponential backoff. It emits a result for
+   * every item, in the order of the items.
+   *
+   * @param settings batching and retry settings
+   * @param sys actor system that will be used to resolved managed DynamoClient
+   */
+  def batchWriteFlow[T](settings: BatchWriteSettings = BatchWriteSettings.Defaults)(
+      implicit sys: ActorSystem
+  ): Flow[WriteItem[T], WriteItemResult[T], NotUsed] =
+    DynamoDbExternal.batchWriteFlow[T](settings)(DynamoClientExt(sys).dynamoClient)
+
+  /**
+   * Create a Flow that reads the items of the keys arriving within `maxWait` in one `BatchGetItem` request of up
+   * to 100 keys, every key once, with several requests in flight. Unprocessed keys are retried with a jittered
+   * exponential backoff. It emits a result for every key, in the order of the keys.
+   *
+   * @param settings batching and retry settings
+   * @param sys actor system that will be used to resolved managed DynamoClient
+   */
+  def batchGetFlow[T](settings: BatchGetSettings = BatchGetSettings.Defaults)(
+      implicit sys: ActorSystem
+  ): Flow[ReadItem[T], ReadItemResult[T], NotUsed] =
+    DynamoDbExternal.batchGetFlow[T](settings)(DynamoClientExt(sys).dynamoClient)
+
+  /**
+   * Create an [[akka.stream.alpakka.dynamodb.ItemLoader ItemLoader]] that reads the items loaded concurrently
+   * in `BatchGetItem` requests, optionally caching them.
+   *
+   * @param settings batching, retry and cache settings
+   * @param sys actor system that will be used to resolved managed DynamoClient
+   */
+  def itemLoader(settings: BatchGetSettings = BatchGetSettings.Defaults)(implicit sys: ActorSystem): ItemLoader =
+    DynamoDbExternal.itemLoader(settings)(DynamoClientExt(sys).dynamoClient)
+
+  /**
+   * Create a Flow that emits a response for every request, like `flow`, but shapes the item reads and writes to
+   * `targetUtilization` of the provisioned capacity of their tables. It tracks the capacity the requests consume,
+   * and sets `ReturnConsumedCapacity` on requests that don't set it. Throttled requests are retried with a jittered
+   * exponential backoff, and the rate of their table backs off as well. Materializations of the returned Flow share
+   * the capacity.
+   *
+   * @param settings throttling and retry settings
+   * @param sys actor system that will be used to resolved managed DynamoClient
+   */
+  def throttledFlow[Op <: AwsOp](settings: ThrottleSettings = ThrottleSettings.Defaults)(
+      implicit sys: ActorSystem
+  ): Flow[Op, Op#B, NotUsed] =
+    DynamoDbExternal.throttledFlow[Op](settings)(DynamoClientExt(sys).dynamoClient)
+
   /**
    * Create a Future that will be completed with a response to a given request.
    *
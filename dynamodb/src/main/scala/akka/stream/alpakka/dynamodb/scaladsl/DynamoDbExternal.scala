@@ -5,10 +5,13 @@
 package akka.stream.alpakka.dynamodb.scaladsl
 import akka.NotUsed
 import akka.stream.Materializer
-import akka.stream.alpakka.dynamodb.impl.Paginator
-import akka.stream.alpakka.dynamodb.{AwsOp, AwsPagedOp, DynamoClient}
+import akka.stream.alpakka.dynamodb.impl.{BatchReader, BatchWriter, CapacityThrottle, Paginator}
+import akka.stream.alpakka.dynamodb.scaladsl.DynamoImplicits.Scan
+import akka.stream.alpakka.dynamodb._
 import akka.stream.scaladsl.{Flow, Sink, Source}
+import com.amazonaws.services.dynamodbv2.model.ScanRequest
 
+import scala.collection.immutable
 import scala.concurrent.Future
 
 /**
@@ -42,6 +45,84 @@ object DynamoDbExternal {
   def source(op: AwsOp)(implicit client: DynamoClient): Source[op.B, NotUsed] =
     Source.single(op).via(client.underlying.flow).map(_.asInstanceOf[op.B])
 
+  /**
+   * Create a Source that scans a table in `totalSegments` segments concurrently, each paging through its
+   * `LastEvaluatedKey`s. It emits the pages of all segments as they arrive, with the progress of their segment.
+   *
+   * @param request scan request, without `Segment` and `TotalSegments`
+   * @param totalSegments number of segments to scan concurrently
+   * @param resumeFrom saved progress of segments; complete segments are skipped, the others continue after their
+   *                   last evaluated key
+   * @param client DynamoClient instance that will be used to send the requests
+   */
+  def parallelScan(request: ScanRequest,
+                   totalSegments: Int,
+                   resumeFrom: immutable.Iterable[ScanSegmentProgress] = Nil)(
+      implicit client: DynamoClient
+  ): Source[ScanSegmentResult, NotUsed] = {
+    require(totalSegments >= 1 && totalSegments <= 1000000, "totalSegments must be between 1 and 1000000")
+    val progress = resumeFrom.map(p => p.segment -> p).toMap
+    val segments = (0 until totalSegments).filterNot(segment => progress.get(segment).exists(_.isComplete))
+    def segmentSource(segment: Int): Source[ScanSegmentResult, NotUsed] = {
+      val segmentRequest = request.clone().withSegment(segment).withTotalSegments(totalSegments)
+      progress.get(segment).flatMap(_.lastEvaluatedKey).foreach(segmentRequest.setExclusiveStartKey)
+      val op = Scan(segmentRequest)
+      source(op).map(result => new ScanSegmentResult(segment, totalSegments, result))
+    }
+    Source(segments).flatMapMerge(totalSegments, segmentSource)
+  }
+
+  /**
+   * Create a Flow that writes put and delete requests in `BatchWriteItem` requests of up to 25 items, with several
+   * requests in flight. Unprocessed items are retried with a jittered exponential backoff. It emits a result for
+   * every item, in the order of the items.
+   *
+   * @param settings batching and retry settings
+   * @param client DynamoClient instance that will be used to send the requests
+   */
+  def batchWriteFlow[T](settings: BatchWriteSettings = BatchWriteSettings.Defaults)(
+      implicit client: DynamoClient
+  ): Flow[WriteItem[T], WriteItemResult[T], NotUsed] =
+    BatchWriter.flow(settings)
+
+  /**
+   * Create a Flow that reads the items of the keys arriving within `maxWait` in one `BatchGetItem` request of up
+   * to 100 keys, every key once, with several requests in flight. Unprocessed keys are retried with a jittered
+   * exponential backoff. It emits a result for every key, in the order of the keys.
+   *
+   * @param settings batching and retry settings
+   * @param client DynamoClient instance that will be used to send the requests
+   */
+  def batchGetFlow[T](settings: BatchGetSettings = BatchGetSettings.Defaults)(
+      implicit client: DynamoClient
+  ): Flow[ReadItem[T], ReadItemResult[T], NotUsed] =
+    BatchReader.flow(settings)
+
+  /**
+   * Create an [[akka.stream.alpakka.dynamodb.ItemLoader ItemLoader]] that reads the items loaded concurrently
+   * in `BatchGetItem` requests, optionally caching them.
+   *
+   * @param settings batching, retry and cache settings
+   * @param client DynamoClient instance that will be used to send the requests
+   */
+  def itemLoader(settings: BatchGetSettings = BatchGetSettings.Defaults)(implicit client: DynamoClient): ItemLoader =
+    new ItemLoader(settings)
+
+  /**
+   * Create a Flow that emits a response for every request, like `flow`, but shapes the item reads and writes to
+   * `targetUtilization` of the provisioned capacity of their tables. It tracks the capacity the requests consume,
+   * and sets `ReturnConsumedCapacity` on requests that don't set it. Throttled requests are retried with a jittered
+   * exponential backoff, and the rate of their table backs off as well. Materializations of the returned Flow share
+   * the capacity.
+   *
+   * @param settings throttling and retry settings
+   * @param client DynamoClient instance that will be used to send the requests
+   */
+  def throttledFlow[Op <: AwsOp](settings: ThrottleSettings = ThrottleSettings.Defaults)(
+      implicit client: DynamoClient
+  ): Flow[Op, Op#B, NotUsed] =
+    new CapacityThrottle(settings).flow[Op]
+
   /**
    * Create a Future that will be completed with a response to a given request.
    *
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb
+
+import akka.Done
+import akka.actor.ActorSystem
+import akka.http.scaladsl.Http
+import akka.http.scaladsl.model.MediaType.NotCompressible
+import akka.http.scaladsl.model._
+import akka.stream.Materializer
+import com.fasterxml.jackson.databind.{JsonNode, ObjectMapper}
+
+import scala.collection.JavaConverters._
+import scala.collection.{immutable, mutable}
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future, Promise}
+
+/**
+ * Forwards the requests of a [[DynamoClient]] to the DynamoDB of `settings`, and counts them by operation. Tests may
+ * answer the next requests of an operation themselves, e.g. to throttle them.
+ */
+final class DynamoProxy(settings: DynamoSettings)(implicit system: ActorSystem, materializer: Materializer) {
+  import DynamoProxy._
+  import system.dispatcher
+
+  // guarded by this
+  private val counts = mutable.Map.empty[String, Int].withDefaultValue(0)
+  private val answers = mutable.Map.empty[String, mutable.Queue[HttpRequest => Future[HttpResponse]]]
+
+  private val target = Uri(s"http://${settings.host}:${settings.port}/")
+
+  private val binding = Await.result(Http().bindAndHandleAsync(handle, "localhost", 0), 10.seconds)
+
+  /** Settings of a client that sends its requests through this proxy. */
+  val clientSettings: DynamoSettings = settings.withHost("localhost").withPort(binding.localAddress.getPort)
+
+  /** The number of requests of `operation`, like `BatchGetItem`, since the last reset. */
+  def count(operation: String): Int = synchronized(counts(operation))
+
+  def resetCounts(): Unit = synchronized(counts.clear())
+
+  /** Answers the next request of `operation` with `answer`, which gets the request with a strict entity. */
+  def answerNext(operation: String)(answer: HttpRequest => Future[HttpResponse]): Unit = synchronized {
+    answers.getOrElseUpdate(operation, mutable.Queue.empty).enqueue(answer)
+  }
+
+  /** Answers the next `n` requests of `operation` as throttled. */
+  def throttleNext(operation: String, n: Int): Unit = {
+    val throttled = HttpResponse(
+      StatusCodes.BadRequest,
+      entity = HttpEntity(
+        JsonContentType,
+        """{"__type":"com.amazonaws.dynamodb.v20120810#ProvisionedThroughputExceededException",""" +
+        """"message":"The level of configured provisioned throughput for the table was exceeded."}"""
+      )
+    )
+    (1 to n).foreach(_ => answerNext(operation)(_ => Future.successful(throttled)))
+  }
+
+  /**
+   * Writes only the first half of the write requests of every table of the next `BatchWriteItem` request, and answers
+   * with the others as unprocessed. Completes with the unprocessed write requests.
+   */
+  def leaveUnprocessedNext(): Future[immutable.Seq[JsonNode]] = {
+    val unprocessed = Promise[immutable.Seq[JsonNode]]()
+    answerNext("BatchWriteItem") { request =>
+      val requestItems = Json.readTree(body(request)).get("RequestItems")
+      val processedItems = Json.createObjectNode()
+      val unprocessedItems = Json.createObjectNode()
+      requestItems.fields.asScala.foreach { table =>
+        val writes = table.getValue.elements.asScala.toList
+        val (processedWrites, unprocessedWrites) = writes.splitAt(writes.size / 2)
+        if (processedWrites.nonEmpty) processedItems.putArray(table.getKey).addAll(processedWrites.asJava)
+        unprocessedItems.putArray(table.getKey).addAll(unprocessedWrites.asJava)
+      }
+      unprocessed.success(unprocessedItems.elements.asScala.flatMap(_.elements.asScala).toList)
+
+      val processed =
+        if (processedItems.size == 0) Future.successful(Done)
+        else {
+          val processedRequest = Json.createObjectNode()
+          processedRequest.set("RequestItems", processedItems)
+          forward(request.withEntity(JsonContentType, Json.writeValueAsBytes(processedRequest))).flatMap { response =>
+            require(response.status == StatusCodes.OK, s"Writing the processed items failed with ${response.status}")
+            response.discardEntityBytes().future()
+          }
+        }
+      processed.map { _ =>
+        val result = Json.createObjectNode()
+        result.set("UnprocessedItems", unprocessedItems)
+        HttpResponse(entity = HttpEntity(JsonContentType, Json.writeValueAsBytes(result)))
+      }
+    }
+    unprocessed.future
+  }
+
+  /**
+   * Sends a request to DynamoDB. DynamoDB Local does not check the signature, so tests may forward a request with a
+   * changed body.
+   */
+  def forward(request: HttpRequest): Future[HttpResponse] =
+    Http().singleRequest(
+      request
+        .withUri(target)
+        .withHeaders(request.headers.filterNot(h => h.is("host") || h.is("timeout-access")))
+    )
+
+  def shutdown(): Unit = Await.result(binding.unbind(), 10.seconds)
+
+  private def handle(request: HttpRequest): Future[HttpResponse] = {
+    val operation = request.headers.find(_.is("x-amz-target")).map(_.value.split('.').last).getOrElse("")
+    val answer = synchronized {
+      counts(operation) += 1
+      answers.get(operation).filter(_.nonEmpty).map(_.dequeue())
+    }
+    request.entity.toStrict(10.seconds).flatMap { entity =>
+      val strict = request.withEntity(entity)
+      answer.fold(forward(strict))(_(strict))
+    }
+  }
+}
+
+object DynamoProxy {
+
+  private val Json = new ObjectMapper()
+
+  def body(request: HttpRequest): String =
+    request.entity.asInstanceOf[HttpEntity.Strict].data.utf8String
+
+  val JsonContentType: ContentType =
+    ContentType.Binary(MediaType.customBinary("application", "x-amz-json-1.0", NotCompressible))
+}
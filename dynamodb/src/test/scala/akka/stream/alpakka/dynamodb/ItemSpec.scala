@@ -7,11 +7,13 @@ package akka.stream.alpakka.dynamodb
 import akka.actor.ActorSystem
 import akka.stream._
 import akka.stream.alpakka.dynamodb.scaladsl._
-import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.{Sink, Source}
 import akka.testkit.TestKit
 import org.scalatest._
 
 import scala.collection.JavaConverters._
+import scala.concurrent.Future
+import scala.concurrent.duration._
 
 class ItemSpec extends TestKit(ActorSystem("ItemSpec")) with AsyncWordSpecLike with Matchers with BeforeAndAfterAll {
 
@@ -20,11 +22,15 @@ class ItemSpec extends TestKit(ActorSystem("ItemSpec")) with AsyncWordSpecLike w
 
   val settings = DynamoSettings(system)
 
+  lazy val proxy = new DynamoProxy(settings)
+
   override def beforeAll() = {
     System.setProperty("aws.accessKeyId", "someKeyId")
     System.setProperty("aws.secretKey", "someSecretKey")
   }
 
+  override def afterAll() = proxy.shutdown()
+
   "DynamoDB with external client" should {
 
     import DynamoImplicits._
@@ -78,7 +84,136 @@ class ItemSpec extends TestKit(ActorSystem("ItemSpec")) with AsyncWordSpecLike w
         .map(_.getItem() shouldEqual null)
     }
 
-    "8) delete table" in {
+    "8) scan all items in parallel segments" in {
+      DynamoDbExternal
+        .parallelScan(scanItemsRequest, totalSegments = 4)
+        .runWith(Sink.seq)
+        .map { pages =>
+          val keys = pages.flatMap(_.result.getItems.asScala).map(_.get(keyCol).getS)
+          keys should contain theSameElementsAs Seq("B", "B")
+          pages.map(_.segment).toSet should contain only (0, 1, 2, 3)
+          pages.groupBy(_.segment).values.map(_.last.progress.isComplete).toSet shouldBe Set(true)
+        }
+    }
+
+    "9) resume a parallel scan from saved progress" in {
+      val totalSegments = 4
+      for {
+        pages <- DynamoDbExternal.parallelScan(scanItemsRequest, totalSegments).runWith(Sink.seq)
+        first = pages.find(!_.progress.isComplete).get
+        otherSegmentsComplete = (0 until totalSegments).filterNot(_ == first.segment).map(ScanSegmentProgress(_, None))
+        resumed <- DynamoDbExternal
+          .parallelScan(scanItemsRequest, totalSegments, first.progress +: otherSegmentsComplete)
+          .runWith(Sink.seq)
+      } yield {
+        val remaining = pages.filter(_.segment == first.segment).dropWhile(_ ne first).drop(1)
+        resumed.flatMap(_.result.getItems.asScala) shouldBe remaining.flatMap(_.result.getItems.asScala)
+        resumed.map(_.segment).toSet shouldBe Set(first.segment)
+      }
+    }
+
+    "10) write items in batches" in {
+      val items = (0 until 60).map(n => WriteItem(tableName, batchPutRequest("C", n), n))
+      for {
+        results <- Source(items).via(DynamoDbExternal.batchWriteFlow[Int]()).runWith(Sink.seq)
+        written <- DynamoDbExternal.single(queryCountRequest("C"))
+      } yield {
+        results.map(_.passThrough) shouldBe (0 until 60)
+        results.map(_.attempts).min should be >= 1
+        written.getCount shouldBe 60
+      }
+    }
+
+    "11) resend unprocessed items" in {
+      val proxiedClient = DynamoClient(proxy.clientSettings)
+      val unprocessed = proxy.leaveUnprocessedNext()
+      val items = (0 until 10).map(n => WriteItem(tableName, batchPutRequest("E", n), n))
+      for {
+        results <- Source(items).via(DynamoDbExternal.batchWriteFlow[Int]()(proxiedClient)).runWith(Sink.seq)
+        resent <- unprocessed.map(_.map(_.at(s"/PutRequest/Item/$sortCol/N").asText.toInt))
+        written <- DynamoDbExternal.single(queryCountRequest("E"))
+      } yield {
+        resent should not be empty
+        results.map(_.passThrough) shouldBe (0 until 10)
+        results.filter(_.attempts == 2).map(_.passThrough) shouldBe resent
+        written.getCount shouldBe 10
+      }
+    }
+
+    "12) read items in batches" in {
+      val keys = (0 until 60) ++ (0 until 10) :+ 100
+      val reads = keys.map(n => ReadItem(tableName, keyMap("C", n).asJava, n))
+      Source(reads).via(DynamoDbExternal.batchGetFlow[Int]()).runWith(Sink.seq).map { results =>
+        results.map(_.passThrough) shouldBe keys
+        results.init.map(_.item.map(_.get(sortCol))) shouldBe keys.init.map(n => Some(N(n)))
+        results.last.item shouldBe None
+      }
+    }
+
+    "13) load items through a caching item loader" in {
+      val proxiedClient = DynamoClient(proxy.clientSettings)
+      proxy.resetCounts()
+      val loader =
+        DynamoDbExternal.itemLoader(BatchGetSettings().withMaxWait(1.second).withCacheMaxSize(10))(proxiedClient)
+      val loads = Future.sequence((0 until 20).map(n => loader.load(tableName, keyMap("C", n % 5).asJava)))
+      for {
+        items <- loads
+        requests = proxy.count("BatchGetItem")
+        cached <- loader.load(tableName, keyMap("C", 0).asJava)
+      } yield {
+        loader.shutdown()
+        items.map(_.map(_.get(sortCol))) shouldBe (0 until 20).map(n => Some(N(n % 5)))
+        requests shouldBe 1
+        cached.map(_.get(sortCol)) shouldBe Some(N(0))
+        proxy.count("BatchGetItem") shouldBe 1
+      }
+    }
+
+    "14) share the loads of a key in flight without a cache" in {
+      val proxiedClient = DynamoClient(proxy.clientSettings)
+      proxy.resetCounts()
+      val loader = DynamoDbExternal.itemLoader(BatchGetSettings().withMaxWait(1.second))(proxiedClient)
+      val loads = Future.sequence((0 until 3).map(_ => loader.load(tableName, keyMap("C", 7).asJava)))
+      for {
+        items <- loads
+        requests = proxy.count("BatchGetItem")
+        again <- loader.load(tableName, keyMap("C", 7).asJava)
+      } yield {
+        loader.shutdown()
+        items.map(_.map(_.get(sortCol))) shouldBe Seq.fill(3)(Some(N(7)))
+        requests shouldBe 1
+        again.map(_.get(sortCol)) shouldBe Some(N(7))
+        proxy.count("BatchGetItem") shouldBe 2
+      }
+    }
+
+    "15) put items at the provisioned capacity" in {
+      val puts = (0 until 20).map(n => PutItem(putItemRequest("D", n)))
+      for {
+        results <- Source(puts).via(DynamoDbExternal.throttledFlow[PutItem]()).runWith(Sink.seq)
+        written <- DynamoDbExternal.single(queryCountRequest("D"))
+      } yield {
+        results.map(_.getConsumedCapacity.getTableName).toSet shouldBe Set(tableName)
+        written.getCount shouldBe 20
+      }
+    }
+
+    "16) retry throttled requests" in {
+      val proxiedClient = DynamoClient(proxy.clientSettings)
+      proxy.resetCounts()
+      proxy.throttleNext("PutItem", 2)
+      val puts = (20 until 23).map(n => PutItem(putItemRequest("D", n)))
+      for {
+        results <- Source(puts).via(DynamoDbExternal.throttledFlow[PutItem]()(proxiedClient)).runWith(Sink.seq)
+        written <- DynamoDbExternal.single(queryCountRequest("D"))
+      } yield {
+        results should have size 3
+        proxy.count("PutItem") shouldBe 5
+        written.getCount shouldBe 23
+      }
+    }
+
+    "17) delete table" in {
       DynamoDbExternal
         .single(deleteTableRequest)
         .flatMap(_ => DynamoDbExternal.single(listTablesRequest))
@@ -98,6 +98,20 @@ object ItemSpecOps extends TestOps {
       .withKeyConditionExpression(s"$keyCol = :k")
       .withExpressionAttributeValues(Map(":k" -> S("A")).asJava)
 
+  val scanItemsRequest = new ScanRequest().withTableName(tableName).withLimit(1)
+
+  def batchPutRequest(hash: String, n: Int) =
+    new WriteRequest(new PutRequest().withItem(keyMap(hash, n).asJava))
+
+  def putItemRequest(hash: String, n: Int) =
+    new PutItemRequest().withTableName(tableName).withItem(keyMap(hash, n).asJava)
+
+  def queryCountRequest(hash: String) =
+    new QueryRequest()
+      .withTableName(tableName)
+      .withKeyConditions(keyEQ(hash).asJava)
+      .withSelect(Select.COUNT)
+
   val deleteTableRequest = common.deleteTableRequest
 
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb.impl
+
+import akka.stream.alpakka.dynamodb.impl.CapacityThrottle._
+import akka.stream.alpakka.dynamodb.scaladsl.DynamoImplicits.PutItem
+import com.amazonaws.services.dynamodbv2.model._
+import org.scalatest.{Matchers, WordSpecLike}
+
+import scala.concurrent.duration._
+
+class CapacityThrottleSpec extends WordSpecLike with Matchers {
+
+  private val start = 0L
+  private def at(elapsed: FiniteDuration) = start + elapsed.toNanos
+
+  /** A bucket of `target` units per second, from which `reserved` requests of one unit were reserved. */
+  private def bucket(target: Double, reserved: Int = 0) = {
+    val b = new Bucket("table", target, start)
+    (1 to reserved).foreach(_ => b.reserve())
+    b
+  }
+
+  "A capacity bucket" should {
+    "hold one second worth of capacity" in {
+      val b = bucket(10, reserved = 10)
+      b.waitTime shouldBe Duration.Zero
+      b.reserve()
+      b.waitTime shouldBe 100.millis
+    }
+
+    "refill at its rate" in {
+      val b = bucket(10, reserved = 12)
+      b.waitTime shouldBe 200.millis
+      b.refill(at(100.millis))
+      b.waitTime shouldBe 100.millis
+      b.refill(at(200.millis))
+      b.waitTime shouldBe Duration.Zero
+    }
+
+    "refill up to one second worth of capacity" in {
+      val b = bucket(10, reserved = 10)
+      b.refill(at(10.seconds))
+      (1 to 10).foreach(_ => b.reserve())
+      b.waitTime shouldBe Duration.Zero
+      b.reserve()
+      b.waitTime shouldBe 100.millis
+    }
+
+    "correct reservations by the consumed capacity" in {
+      val b = bucket(10)
+      val reserved = b.reserve()
+      reserved shouldBe 1.0
+      b.consumed(reserved, Some(12.0))
+      b.waitTime shouldBe 200.millis
+      // the estimate moves by an eighth towards the consumed capacity
+      b.reserve() shouldBe 2.375
+    }
+
+    "keep reservations of requests which did not report their consumed capacity" in {
+      val b = bucket(10, reserved = 10)
+      b.consumed(1.0, None)
+      b.reserve()
+      b.waitTime shouldBe 100.millis
+    }
+
+    "halve its rate when throttled" in {
+      val b = bucket(10)
+      b.throttled(b.reserve())
+      b.reserve()
+      b.waitTime shouldBe 200.millis
+      b.throttled(1.0)
+      b.reserve()
+      b.waitTime shouldBe 400.millis
+    }
+
+    "not go below a twentieth of its target rate" in {
+      val b = bucket(10)
+      (1 to 10).foreach(_ => b.throttled(0.0))
+      b.reserve()
+      b.waitTime shouldBe 2.seconds
+    }
+
+    "recover its rate by a tenth of the target per second" in {
+      val b = bucket(10)
+      b.throttled(0.0)
+      b.refill(at(2.seconds))
+      // 7 units per second
+      (1 to 7).foreach(_ => b.reserve())
+      b.waitTime shouldBe Duration.Zero
+      b.reserve()
+      b.waitTime shouldBe 143.millis
+      b.refill(at(10.seconds))
+      (1 to 11).foreach(_ => b.reserve())
+      b.waitTime shouldBe 100.millis
+    }
+
+    "not shape tables without provisioned capacity" in {
+      val b = bucket(0, reserved = 100)
+      b.waitTime shouldBe Duration.Zero
+    }
+  }
+
+  "The capacity throttle" should {
+    "return the consumed capacity of a copy of the request" in {
+      val request = new PutItemRequest().withTableName("table")
+      val op = returningConsumedCapacity(new PutItem(request))
+      op.request.asInstanceOf[PutItemRequest].getReturnConsumedCapacity shouldBe ReturnConsumedCapacity.TOTAL.toString
+      request.getReturnConsumedCapacity shouldBe null
+    }
+
+    "keep the consumed capacity a request asks for" in {
+      val op = new PutItem(new PutItemRequest().withReturnConsumedCapacity(ReturnConsumedCapacity.INDEXES))
+      returningConsumedCapacity(op) shouldBe theSameInstanceAs(op)
+    }
+
+    "draw batches from the buckets of all their tables" in {
+      val request = new BatchWriteItemRequest()
+        .addRequestItemsEntry("a", java.util.Collections.emptyList())
+        .addRequestItemsEntry("b", java.util.Collections.emptyList())
+      consumes(request) should contain theSameElementsAs Seq("a" -> WriteCapacity, "b" -> WriteCapacity)
+      consumes(new DescribeTableRequest("a")) shouldBe empty
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.dynamodb.impl
+
+import akka.actor.ActorSystem
+import akka.stream.ActorMaterializer
+import akka.stream.alpakka.dynamodb.{BatchWriteSettings, WriteItem}
+import akka.stream.testkit.scaladsl.{TestSink, TestSource}
+import akka.testkit.TestKit
+import com.amazonaws.services.dynamodbv2.model.{AttributeValue, DeleteRequest, PutRequest, WriteRequest}
+import org.scalatest.{BeforeAndAfterAll, Matchers, WordSpecLike}
+
+import scala.collection.JavaConverters._
+import scala.concurrent.duration._
+
+class WriteBatchingStageSpec
+    extends TestKit(ActorSystem("WriteBatchingStageSpec"))
+    with WordSpecLike
+    with Matchers
+    with BeforeAndAfterAll {
+
+  implicit val materializer = ActorMaterializer()
+
+  override def afterAll(): Unit = TestKit.shutdownActorSystem(system)
+
+  /** An item of `1 + value.length` bytes. */
+  private def item(n: Int, value: String = "x") =
+    WriteItem("table", new WriteRequest(new PutRequest(Map("k" -> new AttributeValue(value)).asJava)), n)
+
+  /** Probes around a stage which emitted a first item, so that it batches the next ones until downstream pulls. */
+  private def probes(maxBatchSize: Int, maxBatchBytes: Long) = {
+    val (source, sink) = TestSource
+      .probe[WriteItem[Int]]
+      .via(new WriteBatchingStage[Int](maxBatchSize, maxBatchBytes))
+      .toMat(TestSink.probe)((_, _))
+      .run()
+    sink.request(1)
+    source.sendNext(item(-1))
+    sink.expectNext().map(_.passThrough) shouldBe Seq(-1)
+    (source, sink)
+  }
+
+  "The size of an item" should {
+    "be the lengths of its attribute names and values" in {
+      BatchWriter.itemSize(item(0, "x" * 18)) shouldBe 19
+      val delete = new WriteRequest(new DeleteRequest(Map("k" -> new AttributeValue().withN("123")).asJava))
+      BatchWriter.itemSize(WriteItem("table", delete, 0)) shouldBe 4
+    }
+  }
+
+  "Write batching" should {
+    "cut batches at the maximum number of items" in {
+      val (source, sink) = probes(25, BatchWriteSettings.MaxBytesPerBatch)
+      (0 until 26).foreach(n => source.sendNext(item(n)))
+      // the stage holds the item which did not fit and stops pulling
+      source.expectNoMessage(100.millis)
+
+      sink.requestNext().map(_.passThrough) shouldBe (0 until 25)
+      sink.requestNext().map(_.passThrough) shouldBe Seq(25)
+
+      source.sendComplete()
+      sink.request(1).expectComplete()
+    }
+
+    "cut batches at the maximum size" in {
+      val (source, sink) = probes(25, 50)
+      (0 until 3).foreach(n => source.sendNext(item(n, "x" * 18)))
+
+      sink.requestNext().map(_.passThrough) shouldBe Seq(0, 1)
+      sink.requestNext().map(_.passThrough) shouldBe Seq(2)
+
+      source.sendComplete()
+      sink.request(1).expectComplete()
+    }
+
+    "send an item larger than the maximum size alone" in {
+      val (source, sink) = probes(25, 50)
+      source.sendNext(item(0, "x" * 100))
+      source.sendNext(item(1))
+
+      sink.requestNext().map(_.passThrough) shouldBe Seq(0)
+      sink.requestNext().map(_.passThrough) shouldBe Seq(1)
+
+      source.sendComplete()
+      sink.request(1).expectComplete()
+    }
+  }
+}
@@ -19,10 +19,8 @@ object RetryNever extends RetryLogic {
 }
 
 /**
- * Note: If using retries, you will receive
- * messages out of order downstream in cases where
- * elastic returns error one some of the documents in a
- * bulk request.
+ * Retries failed writes `maxRetries` times, every `retryInterval`. The results of a bulk request are emitted once
+ * its retries are done, so they stay in order.
  */
 final class RetryAtFixedRate private (maxRetries: Int, retryInterval: scala.concurrent.duration.FiniteDuration)
     extends RetryLogic {
@@ -44,7 +42,11 @@ object RetryAtFixedRate {
  */
 final class ElasticsearchWriteSettings private (val bufferSize: Int,
                                                 val retryLogic: RetryLogic,
-                                                val versionType: Option[String]) {
+                                                val versionType: Option[String],
+                                                val maxConcurrentRequests: Int,
+                                                val maxBulkBytes: Long) {
+  require(maxConcurrentRequests >= 1, "maxConcurrentRequests must be at least 1")
+  require(maxBulkBytes >= 1, "maxBulkBytes must be at least 1")
 
   def withBufferSize(value: Int): ElasticsearchWriteSettings = copy(bufferSize = value)
 
@@ -53,18 +55,39 @@ final class ElasticsearchWriteSettings private (val bufferSize: Int,
 
   def withVersionType(value: String): ElasticsearchWriteSettings = copy(versionType = Option(value))
 
+  /**
+   * The number of bulk requests in flight at most. Bulks waiting to retry failed writes don't count.
+   */
+  def withMaxConcurrentRequests(value: Int): ElasticsearchWriteSettings = copy(maxConcurrentRequests = value)
+
+  /**
+   * The size of a bulk request body at most, unless a single message is larger.
+   */
+  def withMaxBulkBytes(value: Long): ElasticsearchWriteSettings = copy(maxBulkBytes = value)
+
   private def copy(bufferSize: Int = bufferSize,
                    retryLogic: RetryLogic = retryLogic,
-                   versionType: Option[String] = versionType): ElasticsearchWriteSettings =
-    new ElasticsearchWriteSettings(bufferSize = bufferSize, retryLogic = retryLogic, versionType = versionType)
+                   versionType: Option[String] = versionType,
+                   maxConcurrentRequests: Int = maxConcurrentRequests,
+                   maxBulkBytes: Long = maxBulkBytes): ElasticsearchWriteSettings =
+    new ElasticsearchWriteSettings(bufferSize = bufferSize,
+                                   retryLogic = retryLogic,
+                                   versionType = versionType,
+                                   maxConcurrentRequests = maxConcurrentRequests,
+                                   maxBulkBytes = maxBulkBytes)
 
   override def toString =
-    s"ElasticsearchUpdateSettings(bufferSize=$bufferSize,retryLogic=$retryLogic,versionType=$versionType)"
+    s"ElasticsearchUpdateSettings(bufferSize=$bufferSize,retryLogic=$retryLogic,versionType=$versionType," +
+    s"maxConcurrentRequests=$maxConcurrentRequests,maxBulkBytes=$maxBulkBytes)"
 
 }
 
 object ElasticsearchWriteSettings {
-  val Default = new ElasticsearchWriteSettings(bufferSize = 10, retryLogic = RetryNever, versionType = None)
+  val Default = new ElasticsearchWriteSettings(bufferSize = 10,
+                                               retryLogic = RetryNever,
+                                               versionType = None,
+                                               maxConcurrentRequests = 1,
+                                               maxBulkBytes = 5L * 1024 * 1024)
 
   /** Scala API */
   def apply(): ElasticsearchWriteSettings = Default
@@ -149,5 +149,10 @@ final class WriteResult[T2, C2] @InternalApi private[elasticsearch] (val message
 }
 
 trait MessageWriter[T] {
+
+  /**
+   * Serialises the document as JSON. The bulk body is line based, so line breaks between the tokens of the JSON are
+   * replaced by spaces; line breaks within strings must be escaped, as JSON requires.
+   */
   def convert(message: T): String
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.elasticsearch.impl
+
+import java.io.{ByteArrayOutputStream, InputStream}
+import java.nio.charset.StandardCharsets
+
+import akka.annotation.InternalApi
+import akka.stream.alpakka.elasticsearch.Operation._
+import akka.stream.alpakka.elasticsearch.{MessageWriter, WriteMessage}
+import com.fasterxml.jackson.core.{JsonEncoding, JsonFactory, JsonGenerator, JsonToken}
+import com.fasterxml.jackson.databind.{JsonNode, ObjectMapper}
+import org.apache.http.HttpEntity
+import org.apache.http.entity.ByteArrayEntity
+
+import scala.collection.immutable
+
+/**
+ * INTERNAL API
+ *
+ * Writes the `_bulk` request body for messages into a [[BulkBuffer]]: the action and metadata lines through a
+ * JSON generator, the documents as the message writer serialised them, without parsing them again. Line breaks in
+ * a document are replaced by spaces, as they separate the lines of the body; valid JSON only has them as whitespace
+ * between tokens.
+ */
+@InternalApi
+private[elasticsearch] final class BulkWriter[T](indexName: String,
+                                                 typeName: String,
+                                                 versionType: Option[String],
+                                                 writer: MessageWriter[T]) {
+
+  def write(messages: Seq[WriteMessage[T, _]], buffer: BulkBuffer): Unit =
+    messages.foreach(writeMessage(_, buffer))
+
+  def writeMessage(message: WriteMessage[T, _], buffer: BulkBuffer): Unit = {
+    val generator = Bulk.jsonFactory.createGenerator(buffer, JsonEncoding.UTF8)
+    writeAction(generator, message)
+    generator.writeRaw('\n')
+    message.operation match {
+      case Index =>
+        generator.writeRaw(document(message))
+        generator.writeRaw('\n')
+      case Upsert =>
+        generator.writeRaw("{\"doc\":")
+        generator.writeRaw(document(message))
+        generator.writeRaw(",\"doc_as_upsert\":true}\n")
+      case Update =>
+        generator.writeRaw("{\"doc\":")
+        generator.writeRaw(document(message))
+        generator.writeRaw("}\n")
+      case Delete =>
+    }
+    generator.close()
+  }
+
+  private def document(message: WriteMessage[T, _]): String = {
+    val json = writer.convert(message.source.get)
+    if (json.indexOf('\n') < 0 && json.indexOf('\r') < 0) json
+    else json.replace('\n', ' ').replace('\r', ' ')
+  }
+
+  private def writeAction(generator: JsonGenerator, message: WriteMessage[T, _]): Unit = {
+    generator.writeStartObject()
+    generator.writeObjectFieldStart(message.operation.command)
+    generator.writeStringField("_index", message.indexName.getOrElse(indexName))
+    generator.writeStringField("_type", typeName)
+    message.version.foreach(version => generator.writeNumberField("_version", version))
+    versionType.foreach(generator.writeStringField("version_type", _))
+    message.operation match {
+      case Index => message.id.foreach(generator.writeStringField("_id", _))
+      case _ => generator.writeStringField("_id", message.id.get)
+    }
+    message.customMetadata.foreach { case (field, value) => generator.writeStringField(field, value) }
+    generator.writeEndObject()
+    generator.writeEndObject()
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * A growing byte buffer, sent as request entity without copying its bytes. It is reused for later requests once
+ * the request it was sent with completed.
+ */
+@InternalApi
+private[elasticsearch] final class BulkBuffer extends ByteArrayOutputStream(Bulk.InitialBufferSize) {
+
+  def capacity: Int = buf.length
+
+  /** Drops the bytes written after the first `size` bytes. */
+  def truncate(size: Int): Unit = count = size
+
+  def entity: HttpEntity = new ByteArrayEntity(buf, 0, count)
+
+  def utf8String: String = new String(buf, 0, count, StandardCharsets.UTF_8)
+}
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[elasticsearch] object Bulk {
+
+  val InitialBufferSize = 64 * 1024
+
+  // buffers that grew larger than this are not reused
+  val MaxPooledBufferSize = 16 * 1024 * 1024
+
+  private val mapper = new ObjectMapper()
+
+  // the bulk body consists of root level values separated by newlines only
+  private[impl] val jsonFactory = new JsonFactory()
+    .setRootValueSeparator(null)
+    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+
+  /**
+   * Reads the error of every item from a `_bulk` response. The items are skipped altogether if the response
+   * reports no errors, otherwise only the `error` objects are read into a tree.
+   */
+  def itemErrors(response: InputStream, count: Int): immutable.IndexedSeq[Option[String]] = {
+    val errors = Array.fill[Option[String]](count)(None)
+    val parser = mapper.getFactory.createParser(response)
+    try {
+      var hasErrors = true
+      if (parser.nextToken() != JsonToken.START_OBJECT) throw new IllegalArgumentException("Invalid _bulk response")
+      while (hasErrors && parser.nextToken() == JsonToken.FIELD_NAME) {
+        val field = parser.getCurrentName
+        parser.nextToken()
+        field match {
+          case "errors" =>
+            hasErrors = parser.getValueAsBoolean(true)
+          case "items" =>
+            var index = 0
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+              // the item holds a single field named like the action
+              parser.nextToken()
+              parser.nextToken()
+              var error: Option[String] = None
+              while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                val itemField = parser.getCurrentName
+                parser.nextToken()
+                if (itemField == "error") error = Some(mapper.readTree[JsonNode](parser).toString)
+                else parser.skipChildren()
+              }
+              parser.nextToken()
+              if (index < count) errors(index) = error
+              index += 1
+            }
+          case _ =>
+            parser.skipChildren()
+        }
+      }
+    } finally parser.close()
+    errors.toVector
+  }
+}
@@ -4,25 +4,22 @@
 
 package akka.stream.alpakka.elasticsearch.impl
 
-import java.nio.charset.StandardCharsets
-
 import akka.annotation.InternalApi
-import akka.stream.alpakka.elasticsearch.Operation._
 import akka.stream.alpakka.elasticsearch._
 import akka.stream.alpakka.elasticsearch.impl.ElasticsearchFlowStage._
 import akka.stream.stage._
 import akka.stream.{Attributes, FlowShape, Inlet, Outlet}
-import org.apache.http.entity.StringEntity
 import org.apache.http.message.BasicHeader
-import org.apache.http.util.EntityUtils
 import org.elasticsearch.client.{Response, ResponseListener, RestClient}
-import spray.json._
 
-import scala.collection.mutable
+import scala.collection.{immutable, mutable}
 import scala.concurrent.Future
 
 /**
  * INTERNAL API
+ *
+ * Writes the messages in bulk requests of up to `bufferSize` messages and `maxBulkBytes`, with up to
+ * `maxConcurrentRequests` of them in flight. The results of every bulk are emitted in order.
  */
 @InternalApi
 private[elasticsearch] final class ElasticsearchFlowStage[T, C](
@@ -40,12 +37,27 @@ private[elasticsearch] final class ElasticsearchFlowStage[T, C](
   override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
     new TimerGraphStageLogic(shape) with InHandler with OutHandler with StageLogging {
 
-      private var state: State = Idle
+      /** The messages of a bulk request, with the ones still to write and the errors of the written ones. */
+      private final class PendingBulk(val seq: Long, val messages: immutable.IndexedSeq[WriteMessage[T, C]]) {
+        val errors = new Array[Option[String]](messages.size)
+        var pending: immutable.IndexedSeq[Int] = messages.indices
+        var retryCount: Int = 0
+
+        def isComplete: Boolean = pending.isEmpty
+
+        def results: Seq[WriteResult[T, C]] = messages.indices.map(i => new WriteResult(messages(i), errors(i)))
+      }
+
       private val queue = new mutable.Queue[WriteMessage[T, C]]()
-      private val failureHandler = getAsyncCallback[(Seq[WriteMessage[T, C]], Throwable)](handleFailure)
-      private val responseHandler = getAsyncCallback[(Seq[WriteMessage[T, C]], Response)](handleResponse)
-      private var failedMessages: Seq[WriteMessage[T, C]] = Nil
-      private var retryCount: Int = 0
+      // the bulks whose results are not emitted yet, in order
+      private val bulks = new mutable.Queue[PendingBulk]()
+      private var nextSeq = 0L
+      private var inFlight = 0
+      private val failureHandler = getAsyncCallback[(PendingBulk, BulkBuffer, Throwable)](handleFailure)
+      private val responseHandler = getAsyncCallback[(PendingBulk, BulkBuffer, Response)](handleResponse)
+      private val bulkWriter = new BulkWriter[T](indexName, typeName, settings.versionType, writer)
+      // request bodies to reuse
+      private val buffers = new java.util.ArrayDeque[BulkBuffer]()
 
       override def preStart(): Unit =
         pull(in)
@@ -55,203 +67,136 @@ private[elasticsearch] final class ElasticsearchFlowStage[T, C](
           pull(in)
         }
 
-      override def onTimer(timerKey: Any): Unit = {
-        sendBulkUpdateRequest(failedMessages)
-        failedMessages = Nil
+      override def onTimer(timerKey: Any): Unit = timerKey match {
+        case RetrySend(seq) =>
+          bulks.find(_.seq == seq).foreach { bulk =>
+            val buffer = acquireBuffer()
+            bulkWriter.write(bulk.pending.map(bulk.messages), buffer)
+            sendBulkUpdateRequest(bulk, buffer)
+          }
       }
 
-      private def handleFailure(args: (Seq[WriteMessage[T, C]], Throwable)): Unit = {
-        val (messages, exception) = args
-        if (!settings.retryLogic.shouldRetry(retryCount, List(exception.toString))) {
+      private def handleFailure(args: (PendingBulk, BulkBuffer, Throwable)): Unit = {
+        val (bulk, buffer, exception) = args
+        inFlight -= 1
+        release(buffer)
+        if (!settings.retryLogic.shouldRetry(bulk.retryCount, List(exception.toString))) {
           log.error("Received error from elastic. Giving up after {} tries. {}, Error: {}",
-                    retryCount,
+                    bulk.retryCount,
                     settings.retryLogic,
                     exception)
           failStage(exception)
         } else {
           log.warning("Received error from elastic. Try number {}. {}, Error: {}",
-                      retryCount,
+                      bulk.retryCount,
                       settings.retryLogic,
                       exception)
-          retryCount = retryCount + 1
-          failedMessages = messages
-          scheduleOnce(RetrySend, settings.retryLogic.nextRetry(retryCount))
+          bulk.retryCount = bulk.retryCount + 1
+          scheduleOnce(RetrySend(bulk.seq), settings.retryLogic.nextRetry(bulk.retryCount))
+          sendBulks()
         }
       }
 
-      private def handleSuccess(): Unit =
-        completeStage()
-
-      private def handleResponse(args: (Seq[WriteMessage[T, C]], Response)): Unit = {
-        val (messages, response) = args
-        val responseJson = EntityUtils.toString(response.getEntity).parseJson
-
-        // If some commands in bulk request failed, pass failed messages to follows.
-        val items = responseJson.asJsObject.fields("items").asInstanceOf[JsArray]
-        val messageResults: Seq[WriteResult[T, C]] = items.elements.zip(messages).map {
-          case (item, message) =>
-            val command = message.operation.command
-            val res = item.asJsObject.fields(command).asJsObject
-            val error: Option[String] = res.fields.get("error").map(_.toString())
-            new WriteResult(message, error)
-        }
-
-        val failedMsgs = messageResults.filterNot(_.error.isEmpty)
-
-        if (failedMsgs.nonEmpty && settings.retryLogic.shouldRetry(retryCount, failedMsgs.map(_.error.get).toList)) {
-          retryPartialFailedMessages(messageResults, failedMsgs)
+      private def handleResponse(args: (PendingBulk, BulkBuffer, Response)): Unit = {
+        val (bulk, buffer, response) = args
+        inFlight -= 1
+        release(buffer)
+        val errors = Bulk.itemErrors(response.getEntity.getContent, bulk.pending.size)
+        bulk.pending.zip(errors).foreach { case (i, error) => bulk.errors(i) = error }
+
+        // Failed messages of the bulk are retried later, while other bulks continue. The results of the bulk are
+        // emitted once all its messages are written or given up on.
+        val failed = bulk.pending.filter(bulk.errors(_).isDefined)
+        val failures = failed.flatMap(bulk.errors(_)).toList
+        if (failed.nonEmpty && settings.retryLogic.shouldRetry(bulk.retryCount, failures)) {
+          bulk.retryCount = bulk.retryCount + 1
+          bulk.pending = failed
+          scheduleOnce(RetrySend(bulk.seq), settings.retryLogic.nextRetry(bulk.retryCount))
         } else {
-          forwardAllResults(messageResults)
+          bulk.pending = Vector.empty
         }
-      }
 
-      private def retryPartialFailedMessages(
-          messageResults: Seq[WriteResult[T, C]],
-          failedMsgs: Seq[WriteResult[T, C]]
-      ): Unit = {
-        // Retry partial failed messages
-        // NOTE: When we partially return message like this, message will arrive out of order downstream
-        // and it can break commit-logic when using Kafka
-        retryCount = retryCount + 1
-        failedMessages = failedMsgs.map(_.message) // These are the messages we're going to retry
-        scheduleOnce(RetrySend, settings.retryLogic.nextRetry(retryCount))
-
-        val successMsgs = messageResults.filter(_.error.isEmpty)
-        if (successMsgs.nonEmpty) {
-          // push the messages that DID succeed
-          emit(out, Future.successful(successMsgs))
-        }
+        emitCompleted()
+        sendBulks()
+        tryPull()
+        completeIfDone()
       }
 
-      private def forwardAllResults(messageResults: Seq[WriteResult[T, C]]): Unit = {
-        retryCount = 0 // Clear retryCount
-
-        // Push result
-        emit(out, Future.successful(messageResults))
-
-        // Fetch next messages from queue and send them
-        val nextMessages = (1 to settings.bufferSize).flatMap { _ =>
-          queue.dequeueFirst(_ => true)
-        }
-
-        if (nextMessages.isEmpty) {
-          state match {
-            case Finished => handleSuccess()
-            case _ => state = Idle
+      /** Sends bulks of the queued messages while fewer than `maxConcurrentRequests` requests are in flight. */
+      private def sendBulks(): Unit =
+        while (inFlight < settings.maxConcurrentRequests &&
+               bulks.size < 2 * settings.maxConcurrentRequests &&
+               queue.nonEmpty) {
+          val buffer = acquireBuffer()
+          val messages = Vector.newBuilder[WriteMessage[T, C]]
+          var count = 0
+          var full = false
+          while (!full && count < settings.bufferSize && queue.nonEmpty) {
+            val size = buffer.size
+            bulkWriter.writeMessage(queue.head, buffer)
+            if (count > 0 && buffer.size > settings.maxBulkBytes) {
+              // the message goes into the next bulk
+              buffer.truncate(size)
+              full = true
+            } else {
+              messages += queue.dequeue()
+              count += 1
+            }
           }
-        } else {
-          sendBulkUpdateRequest(nextMessages)
+          val bulk = new PendingBulk(nextSeq, messages.result())
+          nextSeq += 1
+          bulks.enqueue(bulk)
+          sendBulkUpdateRequest(bulk, buffer)
         }
-      }
-
-      private def sendBulkUpdateRequest(messages: Seq[WriteMessage[T, C]]): Unit = {
-        val json = messages
-          .map { message =>
-            val indexNameToUse: String = message.indexName.getOrElse(indexName)
-            val additionalMetadata = message.customMetadata.map { case (field, value) => field -> JsString(value) }
-
-            JsObject(message.operation match {
-              case Index =>
-                "index" -> JsObject(
-                  (Seq(
-                    Option("_index" -> JsString(indexNameToUse)),
-                    Option("_type" -> JsString(typeName)),
-                    message.version.map { version =>
-                      "_version" -> JsNumber(version)
-                    },
-                    settings.versionType.map { versionType =>
-                      "version_type" -> JsString(versionType)
-                    },
-                    message.id.map { id =>
-                      "_id" -> JsString(id)
-                    }
-                  ).flatten ++ additionalMetadata): _*
-                )
-              case Update | Upsert =>
-                "update" -> JsObject(
-                  (Seq(
-                    Option("_index" -> JsString(indexNameToUse)),
-                    Option("_type" -> JsString(typeName)),
-                    message.version.map { version =>
-                      "_version" -> JsNumber(version)
-                    },
-                    settings.versionType.map { versionType =>
-                      "version_type" -> JsString(versionType)
-                    },
-                    Option("_id" -> JsString(message.id.get))
-                  ).flatten ++ additionalMetadata): _*
-                )
-              case Delete =>
-                "delete" -> JsObject(
-                  (Seq(
-                    Option("_index" -> JsString(indexNameToUse)),
-                    Option("_type" -> JsString(typeName)),
-                    message.version.map { version =>
-                      "_version" -> JsNumber(version)
-                    },
-                    settings.versionType.map { versionType =>
-                      "version_type" -> JsString(versionType)
-                    },
-                    Option("_id" -> JsString(message.id.get))
-                  ).flatten ++ additionalMetadata): _*
-                )
-            }).toString + messageToJsonString(message)
-          }
-          .mkString("", "\n", "\n")
 
-        log.debug("Posting data to Elasticsearch: {}", json)
+      private def sendBulkUpdateRequest(bulk: PendingBulk, buffer: BulkBuffer): Unit = {
+        inFlight += 1
+        if (log.isDebugEnabled) log.debug("Posting data to Elasticsearch: {}", buffer.utf8String)
 
         client.performRequestAsync(
           "POST",
           "/_bulk",
           java.util.Collections.emptyMap[String, String](),
-          new StringEntity(json, StandardCharsets.UTF_8),
+          buffer.entity,
           new ResponseListener() {
             override def onFailure(exception: Exception): Unit =
-              failureHandler.invoke((messages, exception))
+              failureHandler.invoke((bulk, buffer, exception))
             override def onSuccess(response: Response): Unit =
-              responseHandler.invoke((messages, response))
+              responseHandler.invoke((bulk, buffer, response))
           },
           new BasicHeader("Content-Type", "application/x-ndjson")
         )
       }
 
-      private def messageToJsonString(message: WriteMessage[T, C]): String =
-        message.operation match {
-          case Index =>
-            "\n" + writer.convert(message.source.get)
-          case Upsert =>
-            "\n" + JsObject(
-              "doc" -> writer.convert(message.source.get).parseJson,
-              "doc_as_upsert" -> JsTrue
-            ).toString
-          case Update =>
-            "\n" + JsObject(
-              "doc" -> writer.convert(message.source.get).parseJson
-            ).toString
-          case Delete =>
-            ""
+      private def acquireBuffer(): BulkBuffer =
+        Option(buffers.poll()).getOrElse(new BulkBuffer())
+
+      private def release(buffer: BulkBuffer): Unit =
+        if (buffer.capacity <= Bulk.MaxPooledBufferSize) {
+          buffer.reset()
+          buffers.offer(buffer)
+        }
+
+      private def emitCompleted(): Unit =
+        if (bulks.nonEmpty && bulks.head.isComplete && isAvailable(out)) {
+          push(out, Future.successful(bulks.dequeue().results))
         }
 
+      private def completeIfDone(): Unit =
+        if (isClosed(in) && queue.isEmpty && bulks.isEmpty) completeStage()
+
       setHandlers(in, out, this)
 
-      override def onPull(): Unit = tryPull()
+      override def onPull(): Unit = {
+        emitCompleted()
+        sendBulks()
+        tryPull()
+        completeIfDone()
+      }
 
       override def onPush(): Unit = {
-        val message = grab(in)
-        queue.enqueue(message)
-
-        state match {
-          case Idle => {
-            state = Sending
-            val messages = (1 to settings.bufferSize).flatMap { _ =>
-              queue.dequeueFirst(_ => true)
-            }
-            sendBulkUpdateRequest(messages)
-          }
-          case _ => ()
-        }
-
+        queue.enqueue(grab(in))
+        sendBulks()
         tryPull()
       }
 
@@ -259,11 +204,7 @@ private[elasticsearch] final class ElasticsearchFlowStage[T, C](
         failStage(exception)
 
       override def onUpstreamFinish(): Unit =
-        state match {
-          case Idle => handleSuccess()
-          case Sending => state = Finished
-          case Finished => ()
-        }
+        completeIfDone()
     }
 }
 
@@ -273,11 +214,6 @@ private[elasticsearch] final class ElasticsearchFlowStage[T, C](
 @InternalApi
 private[elasticsearch] object ElasticsearchFlowStage {
 
-  private object RetrySend
-
-  private sealed trait State
-  private case object Idle extends State
-  private case object Sending extends State
-  private case object Finished extends State
+  private final case class RetrySend(seq: Long)
 
 }
@@ -6,8 +6,10 @@ package akka.stream.alpakka.elasticsearch.impl
 
 import java.io.ByteArrayOutputStream
 
+import akka.NotUsed
 import akka.annotation.InternalApi
 import akka.stream.alpakka.elasticsearch.{ElasticsearchSourceSettings, ReadResult}
+import akka.stream.scaladsl.Source
 import akka.stream.stage.{GraphStage, GraphStageLogic, OutHandler, StageLogging}
 import akka.stream.{Attributes, Outlet, SourceShape}
 import org.apache.http.entity.StringEntity
@@ -58,6 +60,49 @@ private[elasticsearch] final class ElasticsearchSourceStage[T](indexName: String
 
 }
 
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[elasticsearch] object ElasticsearchSourceStage {
+
+  /**
+   * Reads the documents in `slices` sliced scrolls of their own, which Elasticsearch serves in parallel. Every
+   * slice prefetches one page at most, and the slices are merged as their pages arrive.
+   */
+  def sliced[T](indexName: String,
+                typeName: Option[String],
+                searchParams: Map[String, String],
+                slices: Int,
+                client: RestClient,
+                settings: ElasticsearchSourceSettings,
+                reader: MessageReader[T]): Source[ReadResult[T], NotUsed] = {
+    require(slices >= 1, s"Invalid value ($slices) for slices. Requirement: slices >= 1")
+    require(!searchParams.contains("slice"), "searchParams must not contain slice, it is set for every slice")
+    // Elasticsearch rejects slicing into a single slice
+    if (slices == 1)
+      Source.fromGraph(new ElasticsearchSourceStage(indexName, typeName, searchParams, client, settings, reader))
+    else
+      Source(0 until slices).flatMapMerge(
+        slices, { slice =>
+          val sliceParams = searchParams + ("slice" -> s"""{"id":$slice,"max":$slices}""")
+          Source.fromGraph(new ElasticsearchSourceStage(indexName, typeName, sliceParams, client, settings, reader))
+        }
+      )
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Ignores the outcome of clearing a scroll, which times out anyway.
+ */
+@InternalApi
+private[elasticsearch] object ClearScrollListener extends ResponseListener {
+  override def onSuccess(response: Response): Unit = ()
+  override def onFailure(exception: Exception): Unit = ()
+}
+
 /**
  * INTERNAL API
  */
@@ -199,6 +244,23 @@ private[elasticsearch] final class ElasticsearchSourceLogic[T](indexName: String
 
   setHandler(out, this)
 
+  /**
+   * Clears the scroll context once the stage stops, whether it read all documents, failed or was cancelled, so
+   * Elasticsearch doesn't keep it until it times out.
+   */
+  override def postStop(): Unit =
+    if (scrollId != null) {
+      log.debug("Clearing scroll")
+      client.performRequestAsync(
+        "DELETE",
+        "/_search/scroll",
+        Map[String, String]().asJava,
+        new StringEntity(Map("scroll_id" -> scrollId).toJson.toString),
+        ClearScrollListener,
+        new BasicHeader("Content-Type", "application/json")
+      )
+    }
+
   override def onPull(): Unit =
     dataReady match {
       case Some(data) =>
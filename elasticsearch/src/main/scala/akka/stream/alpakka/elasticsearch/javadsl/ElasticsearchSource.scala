@@ -142,6 +142,87 @@ object ElasticsearchSource {
       )
     )
 
+  /**
+   * Creates a [[akka.stream.javadsl.Source]] from Elasticsearch that streams [[ReadResult]]s of [[java.util.Map]],
+   * read by `slices` sliced scrolls in parallel. The documents of different slices are not in any particular order.
+   * Using default objectMapper
+   */
+  def sliced(indexName: String,
+             typeName: String,
+             query: String,
+             slices: Int,
+             settings: ElasticsearchSourceSettings,
+             client: RestClient): Source[ReadResult[java.util.Map[String, Object]], NotUsed] =
+    sliced(indexName, typeName, Map("query" -> query).asJava, slices, settings, client, new ObjectMapper())
+
+  /**
+   * Creates a [[akka.stream.javadsl.Source]] from Elasticsearch that streams [[ReadResult]]s of [[java.util.Map]],
+   * read by `slices` sliced scrolls in parallel. The documents of different slices are not in any particular order.
+   * Using custom objectMapper.
+   */
+  def sliced(indexName: String,
+             typeName: String,
+             searchParams: JMap[String, String],
+             slices: Int,
+             settings: ElasticsearchSourceSettings,
+             client: RestClient,
+             objectMapper: ObjectMapper): Source[ReadResult[java.util.Map[String, Object]], NotUsed] =
+    impl.ElasticsearchSourceStage
+      .sliced(
+        indexName,
+        Option(typeName),
+        searchParams.asScala.toMap,
+        slices,
+        client,
+        settings,
+        new JacksonReader[java.util.Map[String, Object]](objectMapper, classOf[java.util.Map[String, Object]])
+      )
+      .asJava
+
+  /**
+   * Creates a [[akka.stream.javadsl.Source]] from Elasticsearch that streams [[ReadResult]]s of type `T`,
+   * read by `slices` sliced scrolls in parallel. The documents of different slices are not in any particular order.
+   * Using default objectMapper
+   */
+  def typedSliced[T](indexName: String,
+                     typeName: String,
+                     query: String,
+                     slices: Int,
+                     settings: ElasticsearchSourceSettings,
+                     client: RestClient,
+                     clazz: Class[T]): Source[ReadResult[T], NotUsed] =
+    typedSliced[T](indexName,
+                   typeName,
+                   Map("query" -> query).asJava,
+                   slices,
+                   settings,
+                   client,
+                   clazz,
+                   new ObjectMapper())
+
+  /**
+   * Creates a [[akka.stream.javadsl.Source]] from Elasticsearch that streams [[ReadResult]]s of type `T`,
+   * read by `slices` sliced scrolls in parallel. The documents of different slices are not in any particular order.
+   * Using custom objectMapper
+   */
+  def typedSliced[T](indexName: String,
+                     typeName: String,
+                     searchParams: JMap[String, String],
+                     slices: Int,
+                     settings: ElasticsearchSourceSettings,
+                     client: RestClient,
+                     clazz: Class[T],
+                     objectMapper: ObjectMapper): Source[ReadResult[T], NotUsed] =
+    impl.ElasticsearchSourceStage
+      .sliced(indexName,
+              Option(typeName),
+              searchParams.asScala.toMap,
+              slices,
+              client,
+              settings,
+              new JacksonReader[T](objectMapper, clazz))
+      .asJava
+
   private final class JacksonReader[T](mapper: ObjectMapper, clazz: Class[T]) extends impl.MessageReader[T] {
 
     override def convert(json: String): impl.ScrollResponse[T] = {
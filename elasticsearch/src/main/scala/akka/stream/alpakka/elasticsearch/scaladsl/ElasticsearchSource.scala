@@ -137,6 +137,78 @@ object ElasticsearchSource {
                                         new SprayJsonReader[T]()(reader))
     )
 
+  /**
+   * Creates a [[akka.stream.scaladsl.Source]] from Elasticsearch that streams [[ReadResult]]s
+   * of Spray's [[spray.json.JsObject]], read by `slices` sliced scrolls in parallel.
+   * The documents of different slices are not in any particular order.
+   */
+  def sliced(indexName: String,
+             typeName: String,
+             query: String,
+             slices: Int,
+             settings: ElasticsearchSourceSettings = ElasticsearchSourceSettings.Default)(
+      implicit client: RestClient
+  ): Source[ReadResult[JsObject], NotUsed] =
+    sliced(indexName, Option(typeName), Map("query" -> query), slices, settings)
+
+  /**
+   * Creates a [[akka.stream.scaladsl.Source]] from Elasticsearch that streams [[ReadResult]]s
+   * of Spray's [[spray.json.JsObject]], read by `slices` sliced scrolls in parallel.
+   * The documents of different slices are not in any particular order.
+   */
+  def sliced(indexName: String,
+             typeName: Option[String],
+             searchParams: Map[String, String],
+             slices: Int,
+             settings: ElasticsearchSourceSettings)(
+      implicit client: RestClient
+  ): Source[ReadResult[JsObject], NotUsed] =
+    impl.ElasticsearchSourceStage.sliced(
+      indexName,
+      typeName,
+      searchParams,
+      slices,
+      client,
+      settings,
+      new SprayJsonReader[JsObject]()(DefaultJsonProtocol.RootJsObjectFormat)
+    )
+
+  /**
+   * Creates a [[akka.stream.scaladsl.Source]] from Elasticsearch that streams [[ReadResult]]s of type `T`
+   * converted by Spray's [[spray.json.JsonReader]], read by `slices` sliced scrolls in parallel.
+   * The documents of different slices are not in any particular order.
+   */
+  def typedSliced[T](indexName: String,
+                     typeName: String,
+                     query: String,
+                     slices: Int,
+                     settings: ElasticsearchSourceSettings = ElasticsearchSourceSettings.Default)(
+      implicit client: RestClient,
+      reader: JsonReader[T]
+  ): Source[ReadResult[T], NotUsed] =
+    typedSliced(indexName, Option(typeName), Map("query" -> query), slices, settings)
+
+  /**
+   * Creates a [[akka.stream.scaladsl.Source]] from Elasticsearch that streams [[ReadResult]]s of type `T`
+   * converted by Spray's [[spray.json.JsonReader]], read by `slices` sliced scrolls in parallel.
+   * The documents of different slices are not in any particular order.
+   */
+  def typedSliced[T](indexName: String,
+                     typeName: Option[String],
+                     searchParams: Map[String, String],
+                     slices: Int,
+                     settings: ElasticsearchSourceSettings)(
+      implicit client: RestClient,
+      reader: JsonReader[T]
+  ): Source[ReadResult[T], NotUsed] =
+    impl.ElasticsearchSourceStage.sliced(indexName,
+                                         typeName,
+                                         searchParams,
+                                         slices,
+                                         client,
+                                         settings,
+                                         new SprayJsonReader[T]()(reader))
+
   private final class SprayJsonReader[T](implicit reader: JsonReader[T]) extends impl.MessageReader[T] {
 
     override def convert(json: String): impl.ScrollResponse[T] = {
@@ -219,6 +219,38 @@ public class ElasticsearchTest {
     assertEquals(expect, result);
   }
 
+  @Test
+  public void slicedStream() throws Exception {
+    // #run-sliced
+    CompletionStage<List<String>> f1 =
+        ElasticsearchSource.typedSliced(
+                "source",
+                "_doc",
+                "{\"match_all\": {}}",
+                3,
+                ElasticsearchSourceSettings.create().withBufferSize(2),
+                client,
+                Book.class)
+            .map(m -> m.source().title)
+            .runWith(Sink.seq(), materializer);
+    // #run-sliced
+
+    List<String> result = new ArrayList<>(f1.toCompletableFuture().get());
+
+    List<String> expect =
+        Arrays.asList(
+            "Akka Concurrency",
+            "Akka in Action",
+            "Effective Akka",
+            "Learning Scala",
+            "Programming in Scala",
+            "Scala Puzzlers",
+            "Scala for Spark in Production");
+
+    Collections.sort(result);
+    assertEquals(expect, result);
+  }
+
   @Test
   public void flow() throws Exception {
     // Copy source/book to sink3/book through JsObject stream
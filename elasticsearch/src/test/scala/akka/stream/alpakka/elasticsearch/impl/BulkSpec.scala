@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.elasticsearch.impl
+
+import java.io.ByteArrayInputStream
+import java.nio.charset.StandardCharsets
+
+import akka.stream.alpakka.elasticsearch.{MessageWriter, WriteMessage}
+import org.scalatest.{Matchers, WordSpec}
+
+class BulkSpec extends WordSpec with Matchers {
+
+  private val writer = new MessageWriter[String] {
+    override def convert(message: String): String = s"""{"title":"$message"}"""
+  }
+
+  private def body(messages: WriteMessage[String, _]*): String = {
+    val buffer = new BulkBuffer()
+    new BulkWriter[String]("books", "_doc", None, writer).write(messages, buffer)
+    buffer.utf8String
+  }
+
+  private def errors(response: String, count: Int) =
+    Bulk.itemErrors(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)), count)
+
+  "BulkWriter" should {
+
+    "write an action line and the document for every message" in {
+      body(
+        WriteMessage.createIndexMessage("1", "Akka in Action"),
+        WriteMessage.createIndexMessage("Programming in Scala").withIndexName("other").withVersion(3)
+      ) shouldBe
+      """{"index":{"_index":"books","_type":"_doc","_id":"1"}}
+        |{"title":"Akka in Action"}
+        |{"index":{"_index":"other","_type":"_doc","_version":3}}
+        |{"title":"Programming in Scala"}
+        |""".stripMargin
+    }
+
+    "embed the documents of updates and upserts without parsing them" in {
+      body(
+        WriteMessage.createUpdateMessage("1", "Akka in Action"),
+        WriteMessage.createUpsertMessage("2", "Scala"),
+        WriteMessage.createDeleteMessage[String]("3")
+      ) shouldBe
+      """{"update":{"_index":"books","_type":"_doc","_id":"1"}}
+        |{"doc":{"title":"Akka in Action"}}
+        |{"update":{"_index":"books","_type":"_doc","_id":"2"}}
+        |{"doc":{"title":"Scala"},"doc_as_upsert":true}
+        |{"delete":{"_index":"books","_type":"_doc","_id":"3"}}
+        |""".stripMargin
+    }
+
+    "write pretty-printed documents on a single line" in {
+      val prettyWriter = new MessageWriter[String] {
+        override def convert(message: String): String =
+          "{\r\n  \"title\" : \"" + message + "\",\n  \"note\" : \"a\\nb\"\n}"
+      }
+      val buffer = new BulkBuffer()
+      new BulkWriter[String]("books", "_doc", None, prettyWriter)
+        .write(Seq(WriteMessage.createUpsertMessage("1", "Akka in Action")), buffer)
+      buffer.utf8String shouldBe
+      """{"update":{"_index":"books","_type":"_doc","_id":"1"}}
+        |{"doc":{    "title" : "Akka in Action",   "note" : "a\nb" },"doc_as_upsert":true}
+        |""".stripMargin
+    }
+
+    "escape the metadata" in {
+      body(
+        WriteMessage.createIndexMessage("a\"b", "Akka").withCustomMetadata(Map("_routing" -> "r\\1"))
+      ) should startWith("""{"index":{"_index":"books","_type":"_doc","_id":"a\"b","_routing":"r\\1"}}""")
+    }
+
+    "drop a message written past the size of the bulk" in {
+      val buffer = new BulkBuffer()
+      val bulkWriter = new BulkWriter[String]("books", "_doc", None, writer)
+      bulkWriter.writeMessage(WriteMessage.createIndexMessage("1", "Akka in Action"), buffer)
+      val size = buffer.size
+      bulkWriter.writeMessage(WriteMessage.createIndexMessage("2", "Programming in Scala"), buffer)
+      buffer.truncate(size)
+      bulkWriter.writeMessage(WriteMessage.createDeleteMessage[String]("3"), buffer)
+      buffer.utf8String shouldBe
+      """{"index":{"_index":"books","_type":"_doc","_id":"1"}}
+        |{"title":"Akka in Action"}
+        |{"delete":{"_index":"books","_type":"_doc","_id":"3"}}
+        |""".stripMargin
+    }
+  }
+
+  "Bulk response parsing" should {
+
+    "skip the items when there are no errors" in {
+      errors("""{"took":3,"errors":false,"items":[{"index":{"status":201}},{"index":{"status":201}}]}""", 2) shouldBe
+      Seq(None, None)
+    }
+
+    "read the errors of the failed items" in {
+      val response =
+        """{"took":3,"errors":true,"items":[
+          |{"index":{"_id":"1","status":201,"result":"created"}},
+          |{"update":{"_id":"2","status":404,"error":{"type":"document_missing_exception","reason":"missing"}}},
+          |{"delete":{"_id":"3","status":200,"_shards":{"total":2}}}
+          |]}""".stripMargin
+      errors(response, 3) shouldBe Seq(
+        None,
+        Some("""{"type":"document_missing_exception","reason":"missing"}"""),
+        None
+      )
+    }
+  }
+}
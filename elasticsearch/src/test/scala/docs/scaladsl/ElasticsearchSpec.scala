@@ -11,17 +11,20 @@ import akka.stream.alpakka.elasticsearch.scaladsl._
 import akka.stream.alpakka.elasticsearch.testkit.MessageFactory
 import akka.stream.alpakka.elasticsearch._
 import akka.stream.scaladsl.{Sink, Source}
+import akka.stream.testkit.scaladsl.TestSink
 import akka.testkit.TestKit
 import org.apache.http.entity.StringEntity
 import org.apache.http.message.BasicHeader
+import org.apache.http.util.EntityUtils
 import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner
+import org.scalatest.concurrent.Eventually
 import org.scalatest.{BeforeAndAfterAll, Matchers, WordSpec}
 
 import scala.collection.JavaConverters._
 import scala.concurrent.Await
 import scala.concurrent.duration.{Duration, _}
 
-class ElasticsearchSpec extends WordSpec with Matchers with BeforeAndAfterAll {
+class ElasticsearchSpec extends WordSpec with Matchers with BeforeAndAfterAll with Eventually {
 
   private val runner = new ElasticsearchClusterRunner()
 
@@ -76,6 +79,23 @@ class ElasticsearchSpec extends WordSpec with Matchers with BeforeAndAfterAll {
   private def flush(indexName: String): Unit =
     client.performRequest("POST", s"$indexName/_flush")
 
+  /** The number of scroll contexts open on all nodes. */
+  private def openScrollContexts(): Int = {
+    val stats = EntityUtils.toString(client.performRequest("GET", "/_nodes/stats/indices/search").getEntity)
+    stats.parseJson.asJsObject
+      .fields("nodes")
+      .asJsObject
+      .fields
+      .values
+      .map { node =>
+        node.asJsObject.fields("indices").asJsObject.fields("search").asJsObject.fields("open_contexts") match {
+          case JsNumber(n) => n.toInt
+          case other => throw new IllegalStateException(s"Unexpected open contexts: $other")
+        }
+      }
+      .sum
+  }
+
   private def createStrictMapping(indexName: String): Unit =
     client.performRequest(
       "PUT",
@@ -386,6 +406,52 @@ class ElasticsearchSpec extends WordSpec with Matchers with BeforeAndAfterAll {
     }
   }
 
+  "ElasticsearchFlow" should {
+    "send several bulks at once and emit their results in order while a failed one is retried" in {
+      // Create strict mapping to make one of the documents fail
+      createStrictMapping("sink9")
+
+      val messages = (0 until 10).map { i =>
+        val field = if (i == 1) "subject" else "title"
+        WriteMessage.createIndexMessage(i.toString, Map(field -> s"Book $i").toJson)
+      }
+
+      val f1 = Source(messages)
+        .via(
+          ElasticsearchFlow.create(
+            "sink9",
+            "_doc",
+            ElasticsearchWriteSettings()
+              .withMaxConcurrentRequests(3)
+              // about two messages per bulk
+              .withMaxBulkBytes(200)
+              .withRetryLogic(RetryAtFixedRate(3, 1.second))
+          )
+        )
+        .runWith(Sink.seq)
+
+      def titles(): Seq[String] = {
+        flush("sink9")
+        val f = ElasticsearchSource
+          .typed[Book]("sink9", "_doc", """{"match_all": {}}""")
+          .map(_.source.title)
+          .runWith(Sink.seq)
+        Await.result(f, Duration.Inf)
+      }
+
+      // The bulks after the one with the failed document are written while it waits for its retries
+      Thread.sleep(1500)
+      f1.isCompleted shouldBe false
+      titles() should contain("Book 9")
+
+      val result1 = Await.result(f1, Duration.Inf).flatten
+      result1.map(_.message.id.get) shouldBe (0 until 10).map(_.toString)
+      result1.filterNot(_.success).map(_.message.id.get) shouldBe Seq("1")
+
+      titles().sorted shouldEqual (0 until 10).filter(_ != 1).map(i => s"Book $i")
+    }
+  }
+
   "ElasticsearchFlow" should {
     "kafka-example - store documents and pass Responses with passThrough" in {
 
@@ -836,6 +902,53 @@ class ElasticsearchSpec extends WordSpec with Matchers with BeforeAndAfterAll {
         "Scala for Spark in Production"
       )
     }
+
+    "read the documents in sliced scrolls" in {
+      //#run-sliced
+      val f1 = ElasticsearchSource
+        .typedSliced[Book](
+          indexName = "source",
+          typeName = "_doc",
+          query = """{"match_all": {}}""",
+          slices = 3,
+          settings = ElasticsearchSourceSettings().withBufferSize(2)
+        )
+        .map(_.source.title)
+        .runWith(Sink.seq)
+      //#run-sliced
+
+      val result = Await.result(f1, Duration.Inf).toList
+
+      result.sorted shouldEqual Seq(
+        "Akka Concurrency",
+        "Akka in Action",
+        "Effective Akka",
+        "Learning Scala",
+        "Programming in Scala",
+        "Scala Puzzlers",
+        "Scala for Spark in Production"
+      )
+    }
+
+    "stop reading the sliced scrolls when cancelled" in {
+      val probe = ElasticsearchSource
+        .sliced(
+          indexName = "source",
+          typeName = "_doc",
+          query = """{"match_all": {}}""",
+          slices = 2,
+          settings = ElasticsearchSourceSettings().withBufferSize(1)
+        )
+        .runWith(TestSink.probe)
+
+      probe.requestNext()
+      openScrollContexts() should be > 0
+      probe.cancel()
+
+      eventually(timeout(10.seconds), interval(100.millis)) {
+        openScrollContexts() shouldBe 0
+      }
+    }
   }
 
   "ElasticsearchSource" should {
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.ftp
+
+import java.io.{DataInputStream, DataOutputStream, InputStream, OutputStream}
+import java.nio.file.attribute.PosixFilePermission
+
+import scala.collection.immutable
+
+/**
+ * The entries of every directory visited by an incremental listing, together with the modification time the
+ * directory had when it was listed. A later incremental listing only lists directories whose modification time
+ * changed and takes the entries of all others from the snapshot.
+ *
+ * Snapshots can be persisted with `writeTo` and loaded again with `FtpListingSnapshot.readFrom`.
+ */
+final class FtpListingSnapshot private[ftp] (
+    val directories: immutable.Map[String, FtpListingSnapshot.Directory]
+) {
+
+  /**
+   * Writes the snapshot in a compact binary format, the stream is not closed.
+   */
+  def writeTo(out: OutputStream): Unit = {
+    val data = new DataOutputStream(out)
+    data.writeInt(FtpListingSnapshot.FormatVersion)
+    data.writeInt(directories.size)
+    directories.foreach {
+      case (path, directory) =>
+        data.writeUTF(path)
+        data.writeLong(directory.lastModified)
+        data.writeInt(directory.entries.size)
+        directory.entries.foreach { file =>
+          data.writeUTF(file.name)
+          data.writeUTF(file.path)
+          data.writeBoolean(file.isDirectory)
+          data.writeLong(file.size)
+          data.writeLong(file.lastModified)
+          data.writeShort(file.permissions.foldLeft(0)((bits, p) => bits | (1 << p.ordinal)))
+        }
+    }
+    data.flush()
+  }
+
+  override def toString =
+    s"FtpListingSnapshot(directories=${directories.size})"
+}
+
+object FtpListingSnapshot {
+
+  private final val FormatVersion = 1
+
+  /**
+   * The entries of a directory and its modification time when it was listed.
+   */
+  final class Directory private[ftp] (val lastModified: Long, val entries: immutable.Seq[FtpFile]) {
+    override def toString =
+      s"Directory(lastModified=$lastModified,entries=${entries.size})"
+  }
+
+  /**
+   * A snapshot without directories, which makes an incremental listing list every directory.
+   */
+  val empty: FtpListingSnapshot = new FtpListingSnapshot(immutable.Map.empty)
+
+  /** Java API */
+  def getEmpty: FtpListingSnapshot = empty
+
+  /**
+   * Reads a snapshot written with `writeTo`, the stream is not closed.
+   */
+  def readFrom(in: InputStream): FtpListingSnapshot = {
+    val data = new DataInputStream(in)
+    val version = data.readInt()
+    require(version == FormatVersion, s"Unsupported FTP listing snapshot format version $version")
+    val permissions = PosixFilePermission.values()
+    val directories = immutable.Map.newBuilder[String, Directory]
+    for (_ <- 0 until data.readInt()) {
+      val path = data.readUTF()
+      val lastModified = data.readLong()
+      val entries = Vector.fill(data.readInt()) {
+        val name = data.readUTF()
+        val filePath = data.readUTF()
+        val isDirectory = data.readBoolean()
+        val size = data.readLong()
+        val fileLastModified = data.readLong()
+        val bits = data.readShort()
+        val filePermissions = permissions.filter(p => (bits & (1 << p.ordinal)) != 0).toSet
+        FtpFile(name, filePath, isDirectory, size, fileLastModified, filePermissions)
+      }
+      directories += path -> new Directory(lastModified, entries)
+    }
+    new FtpListingSnapshot(directories.result())
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.ftp
+
+import java.util.concurrent.TimeUnit
+
+import akka.annotation.InternalApi
+
+import scala.collection.mutable
+import scala.concurrent.duration._
+import scala.util.control.NonFatal
+
+/**
+ * Settings of a [[FtpSessionPool]].
+ *
+ * @param maxSize the maximum number of idle sessions kept per connection settings
+ * @param idleTimeout idle sessions are closed when they have not been used for this long
+ * @param healthCheck whether an idle session is checked with a round-trip to the server before it is reused
+ */
+final class FtpSessionPoolSettings private (
+    val maxSize: Int,
+    val idleTimeout: FiniteDuration,
+    val healthCheck: Boolean
+) {
+  require(maxSize >= 0, s"Invalid value ($maxSize) for maxSize. Requirement: maxSize >= 0")
+
+  def withMaxSize(value: Int): FtpSessionPoolSettings = copy(maxSize = value)
+
+  /** Scala API */
+  def withIdleTimeout(value: FiniteDuration): FtpSessionPoolSettings = copy(idleTimeout = value)
+
+  /** Java API */
+  def withIdleTimeout(value: java.time.Duration): FtpSessionPoolSettings =
+    copy(idleTimeout = FiniteDuration(value.toMillis, TimeUnit.MILLISECONDS))
+
+  def withHealthCheck(value: Boolean): FtpSessionPoolSettings = copy(healthCheck = value)
+
+  private def copy(
+      maxSize: Int = maxSize,
+      idleTimeout: FiniteDuration = idleTimeout,
+      healthCheck: Boolean = healthCheck
+  ): FtpSessionPoolSettings = new FtpSessionPoolSettings(
+    maxSize = maxSize,
+    idleTimeout = idleTimeout,
+    healthCheck = healthCheck
+  )
+
+  override def toString =
+    s"""FtpSessionPoolSettings(maxSize=$maxSize,idleTimeout=$idleTimeout,healthCheck=$healthCheck)"""
+}
+
+/**
+ * FTP session pool settings factory
+ */
+object FtpSessionPoolSettings {
+
+  val Defaults = new FtpSessionPoolSettings(
+    maxSize = 8,
+    idleTimeout = 60.seconds,
+    healthCheck = true
+  )
+
+  /** Scala API */
+  def apply(): FtpSessionPoolSettings = Defaults
+
+  /** Java API */
+  def create(): FtpSessionPoolSettings = Defaults
+}
+
+/**
+ * Keeps connected and logged in FTP, FTPs and SFTP sessions for reuse by later stream materializations. Sessions are
+ * pooled per connection settings instance, so the same settings instance needs to be used to benefit from pooling.
+ *
+ * The FTP APIs borrow from a pool when obtained with `withSessionPool`, e.g. `Ftp.withSessionPool(pool)`. A stage
+ * borrows a session when it starts and gives it back when it stops. A stage which failed or was stopped in the middle
+ * of a transfer closes its session instead. Idle sessions are closed when they exceed the idle timeout or the maximum
+ * size, which is checked whenever a session is borrowed or given back.
+ */
+final class FtpSessionPool private (val settings: FtpSessionPoolSettings) {
+  import FtpSessionPool._
+
+  private[this] final class Idle(val session: PooledSession, val since: Long)
+
+  private[this] val idle = mutable.Map.empty[RemoteFileSettings, List[Idle]]
+  private[this] val inUse = new java.util.IdentityHashMap[AnyRef, (RemoteFileSettings, PooledSession)]
+  private[this] var closed = false
+
+  /**
+   * The number of sessions currently held for reuse.
+   */
+  def idleCount: Int = synchronized(idle.valuesIterator.map(_.size).sum)
+
+  /**
+   * Closes all idle sessions. Sessions in use are closed when they are given back.
+   */
+  def close(): Unit = {
+    val toClose = synchronized {
+      closed = true
+      val all = idle.valuesIterator.flatten.map(_.session).toList
+      idle.clear()
+      all
+    }
+    toClose.foreach(closeQuietly)
+  }
+
+  /**
+   * INTERNAL API
+   *
+   * Hands out an idle session for the settings, or opens a new one.
+   */
+  @InternalApi private[ftp] def acquire(key: RemoteFileSettings, open: () => PooledSession): PooledSession = {
+    var session: PooledSession = null
+    while (session == null) {
+      val (candidate, expired) = synchronized {
+        val expired = evictExpired()
+        idle.get(key) match {
+          case Some(head :: tail) =>
+            if (tail.isEmpty) idle -= key else idle.update(key, tail)
+            (Some(head.session), expired)
+          case _ =>
+            (None, expired)
+        }
+      }
+      expired.foreach(closeQuietly)
+      candidate match {
+        case Some(pooled) =>
+          if (!settings.healthCheck || pooled.isHealthy) session = pooled
+          else closeQuietly(pooled)
+        case None =>
+          session = open()
+      }
+    }
+    synchronized(inUse.put(session.handle, (key, session)))
+    session
+  }
+
+  /**
+   * INTERNAL API
+   *
+   * Takes back the session identified by `handle`.
+   */
+  @InternalApi private[ftp] def release(handle: AnyRef): Unit = {
+    val toClose = synchronized {
+      val expired = evictExpired()
+      Option(inUse.remove(handle)) match {
+        case Some((key, session)) =>
+          val sessions = idle.getOrElse(key, Nil)
+          if (closed || sessions.size >= settings.maxSize) session :: expired
+          else {
+            idle.update(key, new Idle(session, System.nanoTime()) :: sessions)
+            expired
+          }
+        case None =>
+          expired
+      }
+    }
+    toClose.foreach(closeQuietly)
+  }
+
+  /**
+   * INTERNAL API
+   *
+   * Closes the session identified by `handle` instead of taking it back.
+   */
+  @InternalApi private[ftp] def invalidate(handle: AnyRef): Unit = {
+    val toClose = synchronized {
+      val expired = evictExpired()
+      Option(inUse.remove(handle)) match {
+        case Some((_, session)) => session :: expired
+        case None => expired
+      }
+    }
+    toClose.foreach(closeQuietly)
+  }
+
+  // must be called while holding the lock
+  private[this] def evictExpired(): List[PooledSession] = {
+    val deadline = System.nanoTime() - settings.idleTimeout.toNanos
+    var expired = List.empty[PooledSession]
+    idle.toList.foreach {
+      case (key, sessions) =>
+        val (stale, fresh) = sessions.partition(_.since < deadline)
+        if (stale.nonEmpty) {
+          expired :::= stale.map(_.session)
+          if (fresh.isEmpty) idle -= key else idle.update(key, fresh)
+        }
+    }
+    expired
+  }
+
+  private[this] def closeQuietly(session: PooledSession): Unit =
+    try {
+      session.close()
+    } catch {
+      case NonFatal(_) => // the server might have dropped the session already
+    }
+}
+
+object FtpSessionPool {
+
+  /** Scala API */
+  def apply(settings: FtpSessionPoolSettings = FtpSessionPoolSettings.Defaults): FtpSessionPool =
+    new FtpSessionPool(settings)
+
+  /** Java API */
+  def create(settings: FtpSessionPoolSettings): FtpSessionPool = apply(settings)
+
+  /** Java API */
+  def create(): FtpSessionPool = apply()
+
+  /**
+   * INTERNAL API
+   */
+  @InternalApi private[ftp] trait PooledSession {
+
+    /** Identifies the session when it is given back. */
+    def handle: AnyRef
+
+    def isHealthy: Boolean
+
+    def close(): Unit
+  }
+}
@@ -4,13 +4,13 @@
 
 package akka.stream.alpakka.ftp.impl
 
-import java.io.{IOException, InputStream, OutputStream}
+import java.io.{FilterInputStream, FilterOutputStream, IOException, InputStream, OutputStream}
 import java.nio.file.Paths
 import java.nio.file.attribute.PosixFilePermission
 
 import akka.annotation.InternalApi
 import akka.stream.alpakka.ftp.FtpFile
-import org.apache.commons.net.ftp.{FTPClient, FTPFile}
+import org.apache.commons.net.ftp.{FTPClient, FTPFile, FTPReply}
 
 import scala.collection.immutable
 import scala.util.Try
@@ -57,16 +57,84 @@ private[ftp] trait CommonFtpOperations {
 
   def listFiles(handler: Handler): immutable.Seq[FtpFile] = listFiles("", handler)
 
-  def retrieveFileInputStream(name: String, handler: Handler): Try[InputStream] = Try {
+  /**
+   * Asks with MLST, and with MDTM for servers without it, which both report seconds unlike most listings.
+   */
+  def lastModified(path: String, handler: Handler): Try[Long] = Try {
+    Option(handler.mlistFile(path))
+      .orElse(Option(handler.mdtmFile(path)))
+      .flatMap(file => Option(file.getTimestamp))
+      .map(_.getTimeInMillis)
+      .getOrElse(throw new IOException(s"$path: No modification time: ${handler.getReplyString}"))
+  }
+
+  def retrieveFileInputStream(name: String, handler: Handler): Try[InputStream] =
+    retrieveFileInputStream(name, handler, 0L)
+
+  /**
+   * Completes the transfer when the stream is closed, so that the handler can be used for further commands.
+   * A stream closed before the end of the file aborts the transfer and reads both the reply to the retrieval and
+   * the one to the abort, otherwise the latter would be taken for the reply to the next command.
+   */
+  def retrieveFileInputStream(name: String, handler: Handler, offset: Long): Try[InputStream] = Try {
+    handler.setRestartOffset(offset)
     val is = handler.retrieveFileStream(name)
-    if (is != null) is else throw new IOException(s"$name: No such file or directory")
+    if (is == null) throw new IOException(s"$name: No such file or directory")
+    new FilterInputStream(is) {
+      private var ended = false
+
+      override def read(): Int = {
+        val b = super.read()
+        if (b == -1) ended = true
+        b
+      }
+
+      override def read(b: Array[Byte], off: Int, len: Int): Int = {
+        val readBytes = super.read(b, off, len)
+        if (readBytes == -1) ended = true
+        readBytes
+      }
+
+      override def close(): Unit = {
+        super.close()
+        if (ended) {
+          if (!handler.completePendingCommand())
+            throw new IOException(s"Could not read $name: ${handler.getReplyString}")
+        } else {
+          // the reply to RETR (226, or 426 as the data connection was closed) comes before the one to ABOR
+          handler.abor()
+          if (!FTPReply.isPositiveCompletion(handler.getReply()))
+            throw new IOException(s"Could not abort reading $name: ${handler.getReplyString}")
+        }
+      }
+    }
+  }
+
+  def fileSize(name: String, handler: Handler): Try[Long] = Try {
+    handler
+      .listFiles(name)
+      .find(file => file != null && file.isFile)
+      .map(_.getSize)
+      .getOrElse(throw new IOException(s"$name: No such file"))
   }
 
   def storeFileOutputStream(name: String, handler: Handler, append: Boolean): Try[OutputStream] = Try {
     val os = if (append) handler.appendFileStream(name) else handler.storeFileStream(name)
-    if (os != null) os else throw new IOException(s"Could not write to $name")
+    if (os == null) throw new IOException(s"Could not write to $name")
+    new FilterOutputStream(os) {
+      override def write(b: Array[Byte], off: Int, len: Int): Unit = os.write(b, off, len)
+
+      override def close(): Unit = {
+        super.close()
+        if (!handler.completePendingCommand())
+          throw new IOException(s"Could not write to $name: ${handler.getReplyString}")
+      }
+    }
   }
 
+  def isHealthy(handler: Handler): Boolean =
+    handler.isConnected && Try(handler.sendNoOp()).getOrElse(false)
+
   def move(fromPath: String, destinationPath: String, handler: Handler): Unit =
     handler.rename(fromPath, destinationPath)
 
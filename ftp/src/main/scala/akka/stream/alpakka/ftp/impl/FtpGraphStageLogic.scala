@@ -27,6 +27,8 @@ private[ftp] abstract class FtpGraphStageLogic[T, FtpClient, S <: RemoteFileSett
   protected[this] implicit val client = ftpClient()
   protected[this] var handler: Option[ftpLike.Handler] = Option.empty[ftpLike.Handler]
   protected[this] var failed = false
+  // set while a transfer is open, the session of a stage stopped in the middle of one is not reused
+  protected[this] var inTransfer = false
 
   override def preStart(): Unit = {
     super.preStart()
@@ -39,6 +41,7 @@ private[ftp] abstract class FtpGraphStageLogic[T, FtpClient, S <: RemoteFileSett
       doPreStart()
     } catch {
       case NonFatal(t) =>
+        failed = true
         matFailure(t)
         failStage(t)
     }
@@ -64,7 +67,9 @@ private[ftp] abstract class FtpGraphStageLogic[T, FtpClient, S <: RemoteFileSett
   protected[this] def doPreStart(): Unit
 
   protected[this] def disconnect(): Unit =
-    handler.foreach(ftpLike.disconnect)
+    handler.foreach { h =>
+      if (failed || inTransfer) ftpLike.invalidate(h) else ftpLike.disconnect(h)
+    }
 
   protected[this] def matSuccess(): Boolean
 
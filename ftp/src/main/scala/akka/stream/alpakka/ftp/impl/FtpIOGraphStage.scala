@@ -5,17 +5,31 @@
 package akka.stream.alpakka.ftp
 package impl
 
+import akka.dispatch.ExecutionContexts.sameThreadExecutionContext
 import akka.stream.impl.Stages.DefaultAttributes.IODispatcher
-import akka.stream.stage.{GraphStageWithMaterializedValue, InHandler, OutHandler}
-import akka.stream.{Attributes, IOResult, Inlet, Outlet, Shape, SinkShape, SourceShape}
+import akka.stream.stage.{GraphStage, GraphStageLogic, GraphStageWithMaterializedValue, InHandler, OutHandler}
+import akka.stream.{
+  ActorMaterializerHelper,
+  Attributes,
+  FlowShape,
+  IOResult,
+  Inlet,
+  Outlet,
+  Shape,
+  SinkShape,
+  SourceShape
+}
 import akka.util.ByteString
 import akka.util.ByteString.ByteString1C
 
-import scala.concurrent.{Future, Promise}
+import scala.collection.{immutable, mutable}
+import scala.concurrent.{ExecutionContext, Future, Promise}
 import java.io.{IOException, InputStream, OutputStream}
+import java.util.concurrent.atomic.AtomicBoolean
 
 import akka.annotation.InternalApi
 
+import scala.util.{Failure, Success, Try}
 import scala.util.control.NonFatal
 
 /**
@@ -71,6 +85,7 @@ private[ftp] trait FtpIOSourceStage[FtpClient, S <: RemoteFileSettings]
                 case Some(bs) =>
                   push(out, bs)
                 case None =>
+                  inTransfer = false
                   complete(out)
               }
             } catch {
@@ -89,11 +104,13 @@ private[ftp] trait FtpIOSourceStage[FtpClient, S <: RemoteFileSettings]
               os.close()
             } catch {
               case e: IOException =>
+                inTransfer = true
                 matFailure(e)
                 // If we failed, we have to expect the stream might already be dead
                 // so swallow the IOException
                 if (!failed) throw e
               case NonFatal(e) =>
+                inTransfer = true
                 matFailure(e)
                 throw e
             }
@@ -102,8 +119,10 @@ private[ftp] trait FtpIOSourceStage[FtpClient, S <: RemoteFileSettings]
           super.postStop()
         }
 
-      protected[this] def doPreStart(): Unit =
+      protected[this] def doPreStart(): Unit = {
         isOpt = Some(ftpLike.retrieveFileInputStream(path, handler.get).get)
+        inTransfer = true
+      }
 
       protected[this] def matSuccess(): Boolean =
         matValuePromise.trySuccess(IOResult.createSuccessful(readBytesTotal))
@@ -136,6 +155,243 @@ private[ftp] trait FtpIOSourceStage[FtpClient, S <: RemoteFileSettings]
 
 }
 
+/**
+ * INTERNAL API
+ *
+ * Downloads a file as consecutive segments, several of them at once over separate connections, and emits
+ * the bytes in order. Segments are only fetched a bounded distance ahead of the one being emitted.
+ */
+@InternalApi
+private[ftp] trait FtpParallelIOSourceStage[FtpClient, S <: RemoteFileSettings]
+    extends FtpIOGraphStage[FtpClient, S, SourceShape[ByteString]] {
+
+  def segments: Int
+
+  def segmentSize: Long
+
+  def chunkSize: Int
+
+  def offset: Long
+
+  val shape: SourceShape[ByteString] = SourceShape(Outlet[ByteString](s"$name.out"))
+  val out: Outlet[ByteString] = shape.outlets.head.asInstanceOf[Outlet[ByteString]]
+
+  def createLogicAndMaterializedValue(inheritedAttributes: Attributes) = {
+
+    val matValuePromise = Promise[IOResult]()
+
+    val logic = new GraphStageLogic(shape) with OutHandler {
+
+      private[this] final class Session(val client: FtpClient, val handler: ftpLike.Handler) {
+        // set while a segment is fetched, whoever resets it first (the fetch completing or the stage stopping)
+        // decides who disconnects the session
+        val inFlight = new AtomicBoolean(false)
+        // set when a fetch failed, the session is not reused then
+        @volatile var broken = false
+
+        def disconnect(): Unit =
+          try {
+            if (broken) ftpLike.invalidate(handler)(client) else ftpLike.disconnect(handler)(client)
+          } catch {
+            case NonFatal(_) => // the session might be broken already
+          }
+      }
+
+      private[this] var sessions = Vector.empty[Session]
+      private[this] val idle = mutable.Queue.empty[Session]
+      private[this] var fileSize = 0L
+      private[this] var segmentCount = 0
+      private[this] var nextToFetch = 0
+      private[this] var nextToEmit = 0
+      private[this] val fetched = mutable.Map.empty[Int, immutable.Seq[ByteString]]
+      private[this] var ready: Iterator[ByteString] = Iterator.empty
+      private[this] var readBytesTotal: Long = 0L
+      private[this] var blockingEc: ExecutionContext = _
+
+      private[this] val segmentFetched = getAsyncCallback[(Session, Int, Try[immutable.Seq[ByteString]])] {
+        case (session, index, Success(chunks)) =>
+          fetched.update(index, chunks)
+          idle.enqueue(session)
+          fetchSegments()
+          if (isAvailable(out)) onPull()
+        case (session, _, Failure(e)) =>
+          session.broken = true
+          fail(e)
+      }
+
+      setHandler(out, this)
+
+      override def preStart(): Unit =
+        try {
+          val actorMaterializer = ActorMaterializerHelper.downcast(materializer)
+          blockingEc = actorMaterializer.system.dispatchers.lookup(actorMaterializer.settings.blockingIoDispatcher)
+          val first = connect()
+          fileSize = ftpLike.fileSize(path, first.handler).get
+          segmentCount = math.ceil(math.max(fileSize - offset, 0L).toDouble / segmentSize).toInt
+          for (_ <- 1 until math.min(segments, segmentCount)) connect()
+          idle ++= sessions
+          fetchSegments()
+        } catch {
+          case NonFatal(e) =>
+            fail(e)
+        }
+
+      def onPull(): Unit =
+        if (ready.hasNext) {
+          val chunk = ready.next()
+          readBytesTotal += chunk.size
+          push(out, chunk)
+        } else if (nextToEmit == segmentCount) {
+          matValuePromise.trySuccess(IOResult.createSuccessful(readBytesTotal))
+          completeStage()
+        } else {
+          fetched.remove(nextToEmit).foreach { chunks =>
+            ready = chunks.iterator
+            nextToEmit += 1
+            fetchSegments()
+            onPull()
+          }
+        }
+
+      override def postStop(): Unit = {
+        sessions.foreach { session =>
+          // a segment still being fetched disconnects its session when done
+          if (!session.inFlight.compareAndSet(true, false)) session.disconnect()
+        }
+        matValuePromise.trySuccess(IOResult.createSuccessful(readBytesTotal))
+      }
+
+      private[this] def fail(e: Throwable): Unit = {
+        matValuePromise.trySuccess(IOResult.createFailed(readBytesTotal, e))
+        failStage(e)
+      }
+
+      private[this] def connect(): Session = {
+        val client = ftpClient()
+        val session = new Session(client, ftpLike.connect(connectionSettings)(client).get)
+        sessions :+= session
+        session
+      }
+
+      private[this] def fetchSegments(): Unit =
+        while (idle.nonEmpty && nextToFetch < segmentCount && nextToFetch <= nextToEmit + sessions.size) {
+          val session = idle.dequeue()
+          val index = nextToFetch
+          nextToFetch += 1
+          session.inFlight.set(true)
+          Future(readSegment(session, index))(blockingEc)
+            .onComplete { result =>
+              if (session.inFlight.compareAndSet(true, false)) segmentFetched.invoke((session, index, result))
+              else {
+                session.broken = result.isFailure
+                session.disconnect()
+              }
+            }(sameThreadExecutionContext)
+        }
+
+      /** BLOCKING I/O READ */
+      private[this] def readSegment(session: Session, index: Int): immutable.Seq[ByteString] = {
+        val start = offset + index * segmentSize
+        var remaining = math.min(segmentSize, fileSize - start)
+        val is = ftpLike.retrieveFileInputStream(path, session.handler, start).get
+        try {
+          val chunks = Vector.newBuilder[ByteString]
+          while (remaining > 0) {
+            val arr = new Array[Byte](math.min(chunkSize.toLong, remaining).toInt)
+            var filled = 0
+            var readBytes = 0
+            while (filled < arr.length && readBytes > -1) {
+              readBytes = is.read(arr, filled, arr.length - filled)
+              if (readBytes > 0) filled += readBytes
+            }
+            if (filled == 0) throw new IOException(s"$path: file ended before ${start + segmentSize} bytes")
+            chunks += ByteString.fromArrayUnsafe(arr, 0, filled)
+            remaining -= filled
+          }
+          chunks.result()
+        } finally {
+          is.close()
+        }
+      }
+
+    } // end of stage logic
+
+    (logic, matValuePromise.future)
+  }
+
+}
+
+/**
+ * INTERNAL API
+ *
+ * Retrieves the files of the incoming paths one after the other over a single session.
+ */
+@InternalApi
+private[ftp] trait FtpRetrieveFlowStage[FtpClient, S <: RemoteFileSettings]
+    extends GraphStage[FlowShape[String, ByteString]] {
+
+  def name: String
+
+  def connectionSettings: S
+
+  def ftpClient: () => FtpClient
+
+  val ftpLike: FtpLike[FtpClient, S]
+
+  def chunkSize: Int
+
+  val in: Inlet[String] = Inlet(s"$name.in")
+  val out: Outlet[ByteString] = Outlet(s"$name.out")
+  val shape: FlowShape[String, ByteString] = FlowShape(in, out)
+
+  override def initialAttributes: Attributes =
+    super.initialAttributes and Attributes.name(name) and IODispatcher
+
+  def createLogic(inheritedAttributes: Attributes) =
+    new FtpGraphStageLogic[ByteString, FtpClient, S](shape, ftpLike, connectionSettings, ftpClient)
+    with InHandler
+    with OutHandler {
+
+      setHandlers(in, out, this)
+
+      def onPull(): Unit = pull(in)
+
+      def onPush(): Unit =
+        try {
+          push(out, retrieve(grab(in)))
+        } catch {
+          case NonFatal(e) =>
+            failed = true
+            failStage(e)
+        }
+
+      protected[this] def doPreStart(): Unit = ()
+
+      protected[this] def matSuccess(): Boolean = true
+
+      protected[this] def matFailure(t: Throwable): Boolean = true
+
+      /** BLOCKING I/O READ */
+      private[this] def retrieve(path: String): ByteString = {
+        val is = ftpLike.retrieveFileInputStream(path, handler.get).get
+        try {
+          val builder = ByteString.newBuilder
+          val arr = Array.ofDim[Byte](chunkSize)
+          var readBytes = is.read(arr)
+          while (readBytes > -1) {
+            builder.putBytes(arr, 0, readBytes)
+            readBytes = is.read(arr)
+          }
+          builder.result()
+        } finally {
+          is.close()
+        }
+      }
+
+    } // end of stage logic
+
+}
+
 /**
  * INTERNAL API
  */
@@ -171,6 +427,11 @@ private[ftp] trait FtpIOSinkStage[FtpClient, S <: RemoteFileSettings]
                 failStage(e)
             }
 
+          override def onUpstreamFinish(): Unit = {
+            inTransfer = false
+            super.onUpstreamFinish()
+          }
+
           override def onUpstreamFailure(exception: Throwable): Unit = {
             matFailure(exception)
             failed = true
@@ -186,11 +447,13 @@ private[ftp] trait FtpIOSinkStage[FtpClient, S <: RemoteFileSettings]
               os.close()
             } catch {
               case e: IOException =>
+                inTransfer = true
                 matFailure(e)
                 // If we failed, we have to expect the stream might already be dead
                 // so swallow the IOException
                 if (!failed) throw e
               case NonFatal(e) =>
+                inTransfer = true
                 matFailure(e)
                 throw e
             }
@@ -201,6 +464,7 @@ private[ftp] trait FtpIOSinkStage[FtpClient, S <: RemoteFileSettings]
 
       protected[this] def doPreStart(): Unit = {
         osOpt = Some(ftpLike.storeFileOutputStream(path, handler.get, append).get)
+        inTransfer = true
         pull(in)
       }
 
@@ -246,11 +510,16 @@ private[ftp] trait FtpMoveSink[FtpClient, S <: RemoteFileSettings]
         setHandler(
           in,
           new InHandler {
-            override def onPush(): Unit = {
-              val sourcePath = grab(in)
-              ftpLike.move(sourcePath.path, destinationPath(sourcePath), handler.get)
-              pull(in)
-            }
+            override def onPush(): Unit =
+              try {
+                val sourcePath = grab(in)
+                ftpLike.move(sourcePath.path, destinationPath(sourcePath), handler.get)
+                pull(in)
+              } catch {
+                case NonFatal(e) =>
+                  failed = true
+                  failStage(e)
+              }
           }
         )
       }
@@ -286,10 +555,15 @@ private[ftp] trait FtpRemoveSink[FtpClient, S <: RemoteFileSettings]
     val logic = new FtpGraphStageLogic[Unit, FtpClient, S](shape, ftpLike, connectionSettings, ftpClient) {
       {
         setHandler(in, new InHandler {
-          override def onPush(): Unit = {
-            ftpLike.remove(grab(in).path, handler.get)
-            pull(in)
-          }
+          override def onPush(): Unit =
+            try {
+              ftpLike.remove(grab(in).path, handler.get)
+              pull(in)
+            } catch {
+              case NonFatal(e) =>
+                failed = true
+                failStage(e)
+            }
         })
       }
 
@@ -26,12 +26,35 @@ protected[ftp] trait FtpLike[FtpClient, S <: RemoteFileSettings] {
 
   def disconnect(handler: Handler)(implicit ftpClient: FtpClient): Unit
 
+  /**
+   * Disconnects a session which failed or was stopped in the middle of a transfer, so that it is never reused.
+   */
+  def invalidate(handler: Handler)(implicit ftpClient: FtpClient): Unit = disconnect(handler)
+
+  /**
+   * Checks with a round-trip to the server that the session can still be used.
+   */
+  def isHealthy(handler: Handler): Boolean
+
   def listFiles(basePath: String, handler: Handler): immutable.Seq[FtpFile]
 
   def listFiles(handler: Handler): immutable.Seq[FtpFile]
 
+  /**
+   * The modification time of a file or directory, without listing the parent directory.
+   */
+  def lastModified(path: String, handler: Handler): Try[Long]
+
   def retrieveFileInputStream(name: String, handler: Handler): Try[InputStream]
 
+  /**
+   * Opens the file for reading from `offset` on. Closing the stream completes the transfer, so that the
+   * handler can be used for further commands.
+   */
+  def retrieveFileInputStream(name: String, handler: Handler, offset: Long): Try[InputStream]
+
+  def fileSize(name: String, handler: Handler): Try[Long]
+
   def storeFileOutputStream(name: String, handler: Handler, append: Boolean): Try[OutputStream]
 
   def move(fromPath: String, destinationPath: String, handler: Handler): Unit
@@ -48,4 +71,68 @@ object FtpLike {
   implicit val ftpLikeInstance = new FtpLike[FTPClient, FtpSettings] with FtpOperations
   implicit val ftpsLikeInstance = new FtpLike[FTPSClient, FtpsSettings] with FtpsOperations
   implicit val sFtpLikeInstance = new FtpLike[SSHClient, SftpSettings] with SftpOperations
+
+  def pooled[FtpClient, S <: RemoteFileSettings](underlying: FtpLike[FtpClient, S],
+                                                 pool: FtpSessionPool): FtpLike[FtpClient, S] =
+    new PooledFtpLike(underlying, pool)
+}
+
+/**
+ * INTERNAL API
+ *
+ * Borrows sessions from the pool on `connect` and gives them back on `disconnect`, the client passed
+ * to `connect` is only used when a new session needs to be opened. Sessions passed to `invalidate` are closed
+ * instead, as they might still have a data connection open or a reply pending.
+ */
+@InternalApi
+private[impl] final class PooledFtpLike[FtpClient, S <: RemoteFileSettings](val underlying: FtpLike[FtpClient, S],
+                                                                           pool: FtpSessionPool)
+    extends FtpLike[FtpClient, S] {
+
+  type Handler = underlying.Handler
+
+  private[this] final class Session(client: FtpClient, val handler: Handler) extends FtpSessionPool.PooledSession {
+    def handle: AnyRef = handler.asInstanceOf[AnyRef]
+    def isHealthy: Boolean = underlying.isHealthy(handler)
+    def close(): Unit = underlying.disconnect(handler)(client)
+  }
+
+  def connect(connectionSettings: S)(implicit ftpClient: FtpClient): Try[Handler] = Try {
+    val session = pool.acquire(
+      connectionSettings,
+      () => new Session(ftpClient, underlying.connect(connectionSettings)(ftpClient).get)
+    )
+    session.asInstanceOf[Session].handler
+  }
+
+  def disconnect(handler: Handler)(implicit ftpClient: FtpClient): Unit =
+    pool.release(handler.asInstanceOf[AnyRef])
+
+  override def invalidate(handler: Handler)(implicit ftpClient: FtpClient): Unit =
+    pool.invalidate(handler.asInstanceOf[AnyRef])
+
+  def isHealthy(handler: Handler): Boolean = underlying.isHealthy(handler)
+
+  def listFiles(basePath: String, handler: Handler): immutable.Seq[FtpFile] =
+    underlying.listFiles(basePath, handler)
+
+  def listFiles(handler: Handler): immutable.Seq[FtpFile] = underlying.listFiles(handler)
+
+  def lastModified(path: String, handler: Handler): Try[Long] = underlying.lastModified(path, handler)
+
+  def retrieveFileInputStream(name: String, handler: Handler): Try[InputStream] =
+    underlying.retrieveFileInputStream(name, handler)
+
+  def retrieveFileInputStream(name: String, handler: Handler, offset: Long): Try[InputStream] =
+    underlying.retrieveFileInputStream(name, handler, offset)
+
+  def fileSize(name: String, handler: Handler): Try[Long] = underlying.fileSize(name, handler)
+
+  def storeFileOutputStream(name: String, handler: Handler, append: Boolean): Try[OutputStream] =
+    underlying.storeFileOutputStream(name, handler, append)
+
+  def move(fromPath: String, destinationPath: String, handler: Handler): Unit =
+    underlying.move(fromPath, destinationPath, handler)
+
+  def remove(path: String, handler: Handler): Unit = underlying.remove(path, handler)
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.ftp
+package impl
+
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicBoolean
+
+import akka.annotation.InternalApi
+import akka.dispatch.ExecutionContexts.sameThreadExecutionContext
+import akka.stream.impl.Stages.DefaultAttributes.IODispatcher
+import akka.stream.stage.{GraphStageLogic, GraphStageWithMaterializedValue, OutHandler}
+import akka.stream.{ActorMaterializerHelper, Attributes, Outlet, SourceShape}
+
+import scala.collection.{immutable, mutable}
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.control.NonFatal
+import scala.util.{Failure, Success, Try}
+
+/**
+ * INTERNAL API
+ *
+ * Lists directories concurrently over up to `parallelism` sessions. Listings are only started while fewer than
+ * `maxBufferedEntries` entries and directories still to be listed wait, so together they exceed it by no more than
+ * the entries of the listings in flight. The tree is walked depth first, which keeps the directories still to be
+ * listed few. Entries are emitted in the order the listings complete.
+ *
+ * With a previous snapshot, the current modification time of every directory is fetched first, and directories
+ * whose modification time did not change take their entries from the snapshot instead of being listed again.
+ * Asking each directory rather than trusting the times in its parent's entries, which might come from the snapshot
+ * as well, finds changes at any depth. The materialized snapshot holds every visited directory.
+ */
+@InternalApi
+private[ftp] trait FtpParallelBrowserGraphStage[FtpClient, S <: RemoteFileSettings]
+    extends GraphStageWithMaterializedValue[SourceShape[FtpFile], Future[FtpListingSnapshot]] {
+
+  def name: String
+
+  def basePath: String
+
+  def connectionSettings: S
+
+  def ftpClient: () => FtpClient
+
+  val ftpLike: FtpLike[FtpClient, S]
+
+  def parallelism: Int
+
+  def branchSelector: FtpFile => Boolean
+
+  def previousSnapshot: Option[FtpListingSnapshot]
+
+  def maxBufferedEntries: Int = 4096
+
+  val shape: SourceShape[FtpFile] = SourceShape(Outlet[FtpFile](s"$name.out"))
+
+  val out = shape.outlets.head.asInstanceOf[Outlet[FtpFile]]
+
+  override def initialAttributes: Attributes =
+    super.initialAttributes and Attributes.name(name) and IODispatcher
+
+  def createLogicAndMaterializedValue(inheritedAttributes: Attributes) = {
+
+    val snapshotPromise = Promise[FtpListingSnapshot]()
+
+    val logic = new GraphStageLogic(shape) with OutHandler {
+
+      private[this] final class Session(val client: FtpClient, val handler: ftpLike.Handler) {
+        // set while a directory is listed, whoever resets it first (the listing completing or the stage stopping)
+        // decides who disconnects the session
+        val inFlight = new AtomicBoolean(false)
+        // set when a listing failed, the session is not reused then
+        @volatile var broken = false
+
+        def disconnect(): Unit =
+          try {
+            if (broken) ftpLike.invalidate(handler)(client) else ftpLike.disconnect(handler)(client)
+          } catch {
+            case NonFatal(_) => // the session might be broken already
+          }
+      }
+
+      // a directory with an unknown modification time is always listed
+      private[this] final val Unknown = -1L
+
+      private[this] var sessions = Vector.empty[Session]
+      private[this] val idle = mutable.Queue.empty[Session]
+      private[this] val pending = mutable.ArrayStack.empty[String]
+      private[this] val buffer = mutable.Queue.empty[FtpFile]
+      private[this] var listing = 0
+      // only collected for incremental listings
+      private[this] val visited =
+        previousSnapshot.map(_ => immutable.Map.newBuilder[String, FtpListingSnapshot.Directory])
+      private[this] var blockingEc: ExecutionContext = _
+
+      private[this] val directoryListed =
+        getAsyncCallback[(Session, String, Try[(Long, immutable.Seq[FtpFile])])] {
+          case (session, path, Success((lastModified, entries))) =>
+            idle.enqueue(session)
+            listing -= 1
+            listed(path, lastModified, entries)
+            dispatch()
+            if (isAvailable(out)) onPull()
+          case (session, path, Failure(e)) =>
+            session.broken = true
+            fail(new IOException(s"Listing $path failed", e))
+        }
+
+      setHandler(out, this)
+
+      override def preStart(): Unit =
+        try {
+          val actorMaterializer = ActorMaterializerHelper.downcast(materializer)
+          blockingEc = actorMaterializer.system.dispatchers.lookup(actorMaterializer.settings.blockingIoDispatcher)
+          // connecting the first session up front fails the stage early on wrong settings
+          idle.enqueue(connect())
+          pending.push(basePath)
+          dispatchListings()
+        } catch {
+          case NonFatal(e) =>
+            fail(e)
+        }
+
+      def onPull(): Unit = {
+        if (buffer.nonEmpty) push(out, buffer.dequeue())
+        dispatch()
+        if (buffer.isEmpty && pending.isEmpty && listing == 0) {
+          snapshotPromise.trySuccess(new FtpListingSnapshot(visited.map(_.result()).getOrElse(immutable.Map.empty)))
+          completeStage()
+        }
+      }
+
+      override def postStop(): Unit = {
+        sessions.foreach { session =>
+          // a directory still being listed disconnects its session when done
+          if (!session.inFlight.compareAndSet(true, false)) session.disconnect()
+        }
+        snapshotPromise.tryFailure(new IllegalStateException(s"$name stopped before the listing completed"))
+      }
+
+      private[this] def fail(e: Throwable): Unit = {
+        snapshotPromise.tryFailure(e)
+        failStage(e)
+      }
+
+      private[this] def connect(): Session = {
+        val client = ftpClient()
+        val session = new Session(client, ftpLike.connect(connectionSettings)(client).get)
+        sessions :+= session
+        session
+      }
+
+      private[this] def dispatch(): Unit =
+        try {
+          dispatchListings()
+        } catch {
+          case NonFatal(e) =>
+            fail(e)
+        }
+
+      private[this] def dispatchListings(): Unit =
+        while (pending.nonEmpty && (idle.nonEmpty || sessions.size < parallelism) && mayList) {
+          val path = pending.pop()
+          val session = if (idle.nonEmpty) idle.dequeue() else connect()
+          listing += 1
+          session.inFlight.set(true)
+          Future(browse(session, path))(blockingEc)
+            .onComplete { result =>
+              if (session.inFlight.compareAndSet(true, false)) directoryListed.invoke((session, path, result))
+              else {
+                session.broken = result.isFailure
+                session.disconnect()
+              }
+            }(sameThreadExecutionContext)
+        }
+
+      // a single listing at a time keeps going once downstream drained the buffer
+      private[this] def mayList: Boolean =
+        buffer.size + pending.size < maxBufferedEntries || (buffer.isEmpty && listing == 0)
+
+      private[this] def listed(path: String, lastModified: Long, entries: immutable.Seq[FtpFile]): Unit = {
+        visited.foreach(_ += path -> new FtpListingSnapshot.Directory(lastModified, entries))
+        buffer ++= entries
+        entries.reverseIterator.foreach { entry =>
+          if (entry.isDirectory && branchSelector(entry)) pending.push(entry.path)
+        }
+      }
+
+      /** BLOCKING I/O LIST */
+      private[this] def browse(session: Session, path: String): (Long, immutable.Seq[FtpFile]) =
+        previousSnapshot match {
+          case None =>
+            (Unknown, list(session, path))
+          case Some(snapshot) =>
+            // taken before listing, so that changes made meanwhile show up in the next listing
+            val lastModified =
+              if (path.isEmpty) Unknown
+              else ftpLike.lastModified(path, session.handler).getOrElse(Unknown)
+            snapshot.directories.get(path) match {
+              case Some(directory) if lastModified != Unknown && directory.lastModified == lastModified =>
+                (lastModified, directory.entries)
+              case _ =>
+                (lastModified, list(session, path))
+            }
+        }
+
+      /** BLOCKING I/O LIST */
+      private[this] def list(session: Session, path: String): immutable.Seq[FtpFile] =
+        if (path.isEmpty) ftpLike.listFiles(session.handler)
+        else ftpLike.listFiles(path, session.handler)
+
+    } // end of stage logic
+
+    (logic, snapshotPromise.future)
+  }
+}
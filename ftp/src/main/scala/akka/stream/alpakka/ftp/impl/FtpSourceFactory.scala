@@ -22,6 +22,8 @@ private[ftp] trait FtpSourceFactory[FtpClient] { self =>
 
   protected[this] final val DefaultChunkSize = 8192
 
+  protected[this] final val DefaultSegmentSize = 8L * 1024 * 1024
+
   protected[this] def ftpClient: () => FtpClient
 
   protected[this] def ftpBrowserSourceName: String
@@ -44,6 +46,26 @@ private[ftp] trait FtpSourceFactory[FtpClient] { self =>
       override val branchSelector: (FtpFile) => Boolean = _branchSelector
     }
 
+  protected[this] def createParallelBrowserGraph(
+      _basePath: String,
+      _connectionSettings: S,
+      _parallelism: Int,
+      _branchSelector: FtpFile => Boolean,
+      _previousSnapshot: Option[FtpListingSnapshot]
+  )(implicit _ftpLike: FtpLike[FtpClient, S]): FtpParallelBrowserGraphStage[FtpClient, S] = {
+    require(_parallelism > 0, s"Invalid value (${_parallelism}) for parallelism. Requirement: parallelism > 0")
+    new FtpParallelBrowserGraphStage[FtpClient, S] {
+      lazy val name: String = ftpBrowserSourceName
+      val basePath: String = _basePath
+      val connectionSettings: S = _connectionSettings
+      val ftpClient: () => FtpClient = self.ftpClient
+      val ftpLike: FtpLike[FtpClient, S] = _ftpLike
+      val parallelism: Int = _parallelism
+      val branchSelector: FtpFile => Boolean = _branchSelector
+      val previousSnapshot: Option[FtpListingSnapshot] = _previousSnapshot
+    }
+  }
+
   protected[this] def createIOSource(
       _path: String,
       _connectionSettings: S,
@@ -58,6 +80,42 @@ private[ftp] trait FtpSourceFactory[FtpClient] { self =>
       val chunkSize: Int = _chunkSize
     }
 
+  protected[this] def createParallelIOSource(
+      _path: String,
+      _connectionSettings: S,
+      _segments: Int,
+      _segmentSize: Long,
+      _chunkSize: Int,
+      _offset: Long
+  )(implicit _ftpLike: FtpLike[FtpClient, S]): FtpParallelIOSourceStage[FtpClient, S] = {
+    require(_segments > 0, "segments must be at least 1")
+    require(_segmentSize > 0, "segmentSize must be positive")
+    require(_offset >= 0, "offset must not be negative")
+    new FtpParallelIOSourceStage[FtpClient, S] {
+      lazy val name: String = ftpIOSourceName
+      val path: String = _path
+      val connectionSettings: S = _connectionSettings
+      val ftpClient: () => FtpClient = self.ftpClient
+      val ftpLike: FtpLike[FtpClient, S] = _ftpLike
+      val segments: Int = _segments
+      val segmentSize: Long = _segmentSize
+      val chunkSize: Int = _chunkSize
+      val offset: Long = _offset
+    }
+  }
+
+  protected[this] def createRetrieveFlow(
+      _connectionSettings: S,
+      _chunkSize: Int
+  )(implicit _ftpLike: FtpLike[FtpClient, S]): FtpRetrieveFlowStage[FtpClient, S] =
+    new FtpRetrieveFlowStage[FtpClient, S] {
+      lazy val name: String = ftpIOSourceName
+      val connectionSettings: S = _connectionSettings
+      val ftpClient: () => FtpClient = self.ftpClient
+      val ftpLike: FtpLike[FtpClient, S] = _ftpLike
+      val chunkSize: Int = _chunkSize
+    }
+
   protected[this] def createIOSink(
       _path: String,
       _connectionSettings: S,
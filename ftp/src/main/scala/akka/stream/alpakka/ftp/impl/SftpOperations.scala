@@ -10,7 +10,7 @@ import java.nio.file.attribute.PosixFilePermission
 
 import akka.annotation.InternalApi
 import net.schmizz.sshj.SSHClient
-import net.schmizz.sshj.sftp.{OpenMode, RemoteResourceInfo, SFTPClient}
+import net.schmizz.sshj.sftp.{OpenMode, RemoteResourceInfo, Response, SFTPClient, SFTPException}
 import net.schmizz.sshj.transport.verification.PromiscuousVerifier
 import net.schmizz.sshj.userauth.keyprovider.OpenSSHKeyFile
 import net.schmizz.sshj.userauth.password.PasswordUtils
@@ -51,6 +51,9 @@ private[ftp] trait SftpOperations { _: FtpLike[SSHClient, SftpSettings] =>
     if (ssh.isConnected) ssh.disconnect()
   }
 
+  def isHealthy(handler: Handler): Boolean =
+    Try(handler.canonicalize(".")).isSuccess
+
   def listFiles(basePath: String, handler: Handler): immutable.Seq[FtpFile] = {
     val path = if (!basePath.isEmpty && basePath.head != '/') s"/$basePath" else basePath
     val entries = handler.ls(path).asScala
@@ -85,6 +88,8 @@ private[ftp] trait SftpOperations { _: FtpLike[SSHClient, SftpSettings] =>
 
   def listFiles(handler: Handler): immutable.Seq[FtpFile] = listFiles(".", handler)
 
+  def lastModified(path: String, handler: Handler): Try[Long] = Try(handler.stat(path).getMtime * 1000L)
+
   def retrieveFileInputStream(name: String, handler: Handler): Try[InputStream] = Try {
     val remoteFile = handler.open(name, Set(OpenMode.READ).asJava)
     val is = new remoteFile.RemoteFileInputStream() {
@@ -102,6 +107,28 @@ private[ftp] trait SftpOperations { _: FtpLike[SSHClient, SftpSettings] =>
     }
   }
 
+  def retrieveFileInputStream(name: String, handler: Handler, offset: Long): Try[InputStream] = Try {
+    val remoteFile = handler.open(name, Set(OpenMode.READ).asJava)
+    new remoteFile.RemoteFileInputStream(offset) {
+
+      override def close(): Unit =
+        try {
+          super.close()
+        } finally {
+          remoteFile.close()
+        }
+    }
+  }
+
+  def fileSize(name: String, handler: Handler): Try[Long] = Try {
+    try {
+      handler.size(name)
+    } catch {
+      case e: SFTPException if e.getStatusCode == Response.StatusCode.NO_SUCH_FILE =>
+        throw new IOException(s"$name: No such file", e)
+    }
+  }
+
   def storeFileOutputStream(name: String, handler: Handler, append: Boolean): Try[OutputStream] = Try {
     import OpenMode._
     val openModes = Set(WRITE, CREAT) ++ (if (append) Set(APPEND) else Set())
@@ -6,11 +6,13 @@ package akka.stream.alpakka.ftp.javadsl
 
 import akka.NotUsed
 import akka.stream.alpakka.ftp.impl._
-import akka.stream.alpakka.ftp.{FtpFile, RemoteFileSettings}
+import akka.stream.alpakka.ftp.{FtpFile, FtpListingSnapshot, FtpSessionPool, RemoteFileSettings}
 import akka.stream.alpakka.ftp.impl.{FtpLike, FtpSourceFactory}
 import akka.stream.IOResult
 import akka.stream.javadsl.Source
 import akka.stream.javadsl.Sink
+import akka.stream.javadsl.Flow
+import akka.stream.scaladsl.{Flow => ScalaFlow}
 import akka.stream.scaladsl.{Source => ScalaSource}
 import akka.stream.scaladsl.{Sink => ScalaSink}
 import akka.util.ByteString
@@ -115,6 +117,102 @@ sealed trait FtpApi[FtpClient] { _: FtpSourceFactory[FtpClient] =>
   def ls(basePath: String, connectionSettings: S, branchSelector: Predicate[FtpFile]): Source[FtpFile, NotUsed] =
     Source.fromGraph(createBrowserGraph(basePath, connectionSettings, asScalaFromPredicate(branchSelector)))
 
+  /**
+   * Java API: creates a [[akka.stream.javadsl.Source Source]] of [[FtpFile]]s from a base path, listing up to
+   * `parallelism` directories at once over separate connections. Unlike `ls`, the entries are emitted in the order
+   * the directory listings complete.
+   *
+   * @param basePath Base path from which traverse the remote file server
+   * @param connectionSettings connection settings
+   * @param parallelism the maximum number of directories listed at once
+   * @return A [[akka.stream.javadsl.Source Source]] of [[FtpFile]]s
+   */
+  def lsParallel(basePath: String, connectionSettings: S, parallelism: Int): Source[FtpFile, NotUsed] =
+    ScalaSource
+      .fromGraph(createParallelBrowserGraph(basePath, connectionSettings, parallelism, f => true, None))
+      .mapMaterializedValue(_ => NotUsed)
+      .asJava
+
+  /**
+   * Java API: creates a [[akka.stream.javadsl.Source Source]] of [[FtpFile]]s from a base path, listing up to
+   * `parallelism` directories at once over separate connections. Unlike `ls`, the entries are emitted in the order
+   * the directory listings complete.
+   *
+   * @param basePath Base path from which traverse the remote file server
+   * @param connectionSettings connection settings
+   * @param parallelism the maximum number of directories listed at once
+   * @param branchSelector a predicate for pruning the tree. Takes a remote folder and return true
+   *                       if you want to enter that remote folder.
+   * @return A [[akka.stream.javadsl.Source Source]] of [[FtpFile]]s
+   */
+  def lsParallel(basePath: String,
+                 connectionSettings: S,
+                 parallelism: Int,
+                 branchSelector: Predicate[FtpFile]): Source[FtpFile, NotUsed] =
+    ScalaSource
+      .fromGraph(
+        createParallelBrowserGraph(basePath,
+                                   connectionSettings,
+                                   parallelism,
+                                   asScalaFromPredicate(branchSelector),
+                                   None)
+      )
+      .mapMaterializedValue(_ => NotUsed)
+      .asJava
+
+  /**
+   * Java API: creates a [[akka.stream.javadsl.Source Source]] of [[FtpFile]]s from a base path like `lsParallel`,
+   * but only lists the directories whose modification time changed since the previous snapshot. All other
+   * directories emit the entries recorded in the snapshot.
+   *
+   * Use [[FtpListingSnapshot.getEmpty]] for the first listing, and persist the materialized snapshot for the next one.
+   * The snapshot completion stage fails if the stream does not complete.
+   *
+   * @param basePath Base path from which traverse the remote file server
+   * @param connectionSettings connection settings
+   * @param parallelism the maximum number of directories listed at once
+   * @param previousSnapshot the snapshot of the previous listing
+   * @return A [[akka.stream.javadsl.Source Source]] of [[FtpFile]]s that materializes to a [[java.util.concurrent.CompletionStage CompletionStage]] of the new [[FtpListingSnapshot]]
+   */
+  def lsIncremental(basePath: String,
+                    connectionSettings: S,
+                    parallelism: Int,
+                    previousSnapshot: FtpListingSnapshot): Source[FtpFile, CompletionStage[FtpListingSnapshot]] =
+    lsIncremental(basePath, connectionSettings, parallelism, previousSnapshot, new Predicate[FtpFile] {
+      def test(f: FtpFile): Boolean = true
+    })
+
+  /**
+   * Java API: creates a [[akka.stream.javadsl.Source Source]] of [[FtpFile]]s from a base path like `lsParallel`,
+   * but only lists the directories whose modification time changed since the previous snapshot. All other
+   * directories emit the entries recorded in the snapshot.
+   *
+   * @param basePath Base path from which traverse the remote file server
+   * @param connectionSettings connection settings
+   * @param parallelism the maximum number of directories listed at once
+   * @param previousSnapshot the snapshot of the previous listing
+   * @param branchSelector a predicate for pruning the tree. Takes a remote folder and return true
+   *                       if you want to enter that remote folder.
+   * @return A [[akka.stream.javadsl.Source Source]] of [[FtpFile]]s that materializes to a [[java.util.concurrent.CompletionStage CompletionStage]] of the new [[FtpListingSnapshot]]
+   */
+  def lsIncremental(basePath: String,
+                    connectionSettings: S,
+                    parallelism: Int,
+                    previousSnapshot: FtpListingSnapshot,
+                    branchSelector: Predicate[FtpFile]): Source[FtpFile, CompletionStage[FtpListingSnapshot]] = {
+    import scala.compat.java8.FutureConverters._
+    ScalaSource
+      .fromGraph(
+        createParallelBrowserGraph(basePath,
+                                   connectionSettings,
+                                   parallelism,
+                                   asScalaFromPredicate(branchSelector),
+                                   Some(previousSnapshot))
+      )
+      .mapMaterializedValue(_.toJava)
+      .asJava
+  }
+
   /**
    * Java API: creates a [[akka.stream.javadsl.Source Source]] of [[akka.util.ByteString ByteString]] from some file path.
    *
@@ -175,6 +273,75 @@ sealed trait FtpApi[FtpClient] { _: FtpSourceFactory[FtpClient] =>
     ScalaSource.fromGraph(createIOSource(path, connectionSettings, chunkSize)).mapMaterializedValue(_.toJava).asJava
   }
 
+  /**
+   * Java API: creates a [[akka.stream.javadsl.Source Source]] of [[akka.util.ByteString ByteString]] from some file path,
+   * downloading several segments of the file at once over separate connections. The bytes are emitted in order.
+   *
+   * @param path the file path
+   * @param connectionSettings connection settings
+   * @param segments the number of segments downloaded at once, each over its own connection
+   * @return A [[akka.stream.javadsl.Source Source]] of [[akka.util.ByteString ByteString]] that materializes to a [[java.util.concurrent.CompletionStage CompletionStage]] of [[IOResult]]
+   */
+  def fromPathParallel(
+      path: String,
+      connectionSettings: S,
+      segments: Int
+  ): Source[ByteString, CompletionStage[IOResult]] =
+    fromPathParallel(path, connectionSettings, segments, DefaultSegmentSize, DefaultChunkSize, 0L)
+
+  /**
+   * Java API: creates a [[akka.stream.javadsl.Source Source]] of [[akka.util.ByteString ByteString]] from some file path,
+   * downloading several segments of the file at once over separate connections. The bytes are emitted in order.
+   *
+   * A download that failed can be resumed by passing the original offset plus the byte count of the failed
+   * [[IOResult]] as `offset`.
+   *
+   * @param path the file path
+   * @param connectionSettings connection settings
+   * @param segments the number of segments downloaded at once, each over its own connection
+   * @param segmentSize the size of the byte ranges the file is split into
+   * @param chunkSize the size of transmitted [[akka.util.ByteString ByteString]] chunks
+   * @param offset the position in the file to start from
+   * @return A [[akka.stream.javadsl.Source Source]] of [[akka.util.ByteString ByteString]] that materializes to a [[java.util.concurrent.CompletionStage CompletionStage]] of [[IOResult]]
+   */
+  def fromPathParallel(
+      path: String,
+      connectionSettings: S,
+      segments: Int,
+      segmentSize: Long,
+      chunkSize: Int,
+      offset: Long
+  ): Source[ByteString, CompletionStage[IOResult]] = {
+    import scala.compat.java8.FutureConverters._
+    ScalaSource
+      .fromGraph(createParallelIOSource(path, connectionSettings, segments, segmentSize, chunkSize, offset))
+      .mapMaterializedValue(_.toJava)
+      .asJava
+  }
+
+  /**
+   * Java API: creates a [[akka.stream.javadsl.Flow Flow]] that retrieves the file of each incoming path over a single
+   * session and emits its contents as one [[akka.util.ByteString ByteString]]. Every file is held in memory as a whole,
+   * so use `fromPath` for files which may be large.
+   *
+   * @param connectionSettings connection settings
+   * @return A [[akka.stream.javadsl.Flow Flow]] from file paths to file contents
+   */
+  def fromPaths(connectionSettings: S): Flow[String, ByteString, NotUsed] =
+    fromPaths(connectionSettings, DefaultChunkSize)
+
+  /**
+   * Java API: creates a [[akka.stream.javadsl.Flow Flow]] that retrieves the file of each incoming path over a single
+   * session and emits its contents as one [[akka.util.ByteString ByteString]]. Every file is held in memory as a whole,
+   * so use `fromPath` for files which may be large.
+   *
+   * @param connectionSettings connection settings
+   * @param chunkSize the size of the reads the files are retrieved with
+   * @return A [[akka.stream.javadsl.Flow Flow]] from file paths to file contents
+   */
+  def fromPaths(connectionSettings: S, chunkSize: Int): Flow[String, ByteString, NotUsed] =
+    ScalaFlow.fromGraph(createRetrieveFlow(connectionSettings, chunkSize)).asJava
+
   /**
    * Java API: creates a [[akka.stream.javadsl.Sink Sink]] of [[akka.util.ByteString ByteString]] to some file path.
    *
@@ -236,9 +403,45 @@ sealed trait FtpApi[FtpClient] { _: FtpSourceFactory[FtpClient] =>
 
   protected[this] implicit def ftpLike: FtpLike[FtpClient, S]
 }
-class SftpApi extends FtpApi[SSHClient] with SftpSourceParams
-object Ftp extends FtpApi[FTPClient] with FtpSourceParams
-object Ftps extends FtpApi[FTPSClient] with FtpsSourceParams
+class PlainFtpApi extends FtpApi[FTPClient] with FtpSourceParams {
+
+  /**
+   * Java API: creates a [[akka.stream.alpakka.ftp.javadsl.PlainFtpApi]] whose stages borrow their sessions from the pool
+   * instead of connecting and disconnecting on every materialization.
+   */
+  def withSessionPool(pool: FtpSessionPool): PlainFtpApi =
+    new PlainFtpApi {
+      override protected[this] val ftpLike: FtpLike[FTPClient, S] = FtpLike.pooled(FtpLike.ftpLikeInstance, pool)
+    }
+}
+
+class FtpsApi extends FtpApi[FTPSClient] with FtpsSourceParams {
+
+  /**
+   * Java API: creates a [[akka.stream.alpakka.ftp.javadsl.FtpsApi]] whose stages borrow their sessions from the pool
+   * instead of connecting and disconnecting on every materialization.
+   */
+  def withSessionPool(pool: FtpSessionPool): FtpsApi =
+    new FtpsApi {
+      override protected[this] val ftpLike: FtpLike[FTPSClient, S] = FtpLike.pooled(FtpLike.ftpsLikeInstance, pool)
+    }
+}
+
+class SftpApi extends FtpApi[SSHClient] with SftpSourceParams { outer =>
+
+  /**
+   * Java API: creates a [[akka.stream.alpakka.ftp.javadsl.SftpApi]] whose stages borrow their sessions from the pool
+   * instead of connecting and disconnecting on every materialization.
+   */
+  def withSessionPool(pool: FtpSessionPool): SftpApi =
+    new SftpApi {
+      override def sshClient(): SSHClient = outer.sshClient()
+      override protected[this] val ftpLike: FtpLike[SSHClient, S] = FtpLike.pooled(FtpLike.sFtpLikeInstance, pool)
+    }
+}
+
+object Ftp extends PlainFtpApi
+object Ftps extends FtpsApi
 object Sftp extends SftpApi {
 
   /**
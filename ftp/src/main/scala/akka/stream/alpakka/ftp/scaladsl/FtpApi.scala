@@ -7,8 +7,8 @@ package akka.stream.alpakka.ftp.scaladsl
 import akka.NotUsed
 import akka.stream.IOResult
 import akka.stream.alpakka.ftp.impl.{FtpLike, FtpSourceFactory, FtpSourceParams, FtpsSourceParams, SftpSourceParams}
-import akka.stream.alpakka.ftp.{FtpFile, RemoteFileSettings}
-import akka.stream.scaladsl.{Sink, Source}
+import akka.stream.alpakka.ftp.{FtpFile, FtpListingSnapshot, FtpSessionPool, RemoteFileSettings}
+import akka.stream.scaladsl.{Flow, Sink, Source}
 import akka.util.ByteString
 import net.schmizz.sshj.SSHClient
 import org.apache.commons.net.ftp.{FTPClient, FTPSClient}
@@ -94,6 +94,55 @@ sealed trait FtpApi[FtpClient] { _: FtpSourceFactory[FtpClient] =>
   def ls(basePath: String, connectionSettings: S, branchSelector: FtpFile => Boolean): Source[FtpFile, NotUsed] =
     Source.fromGraph(createBrowserGraph(basePath, connectionSettings, branchSelector))
 
+  /**
+   * Scala API: creates a [[akka.stream.scaladsl.Source Source]] of [[FtpFile]]s from a base path, listing up to
+   * `parallelism` directories at once over separate connections. Unlike `ls`, the entries are emitted in the order
+   * the directory listings complete.
+   *
+   * @param basePath Base path from which traverse the remote file server
+   * @param connectionSettings connection settings
+   * @param parallelism the maximum number of directories listed at once
+   * @param branchSelector a function for pruning the tree. Takes a remote folder and return true
+   *                       if you want to enter that remote folder.
+   * @return A [[akka.stream.scaladsl.Source Source]] of [[FtpFile]]s
+   */
+  def lsParallel(
+      basePath: String,
+      connectionSettings: S,
+      parallelism: Int,
+      branchSelector: FtpFile => Boolean = f => true
+  ): Source[FtpFile, NotUsed] =
+    Source
+      .fromGraph(createParallelBrowserGraph(basePath, connectionSettings, parallelism, branchSelector, None))
+      .mapMaterializedValue(_ => NotUsed)
+
+  /**
+   * Scala API: creates a [[akka.stream.scaladsl.Source Source]] of [[FtpFile]]s from a base path like `lsParallel`,
+   * but only lists the directories whose modification time changed since the previous snapshot. All other
+   * directories emit the entries recorded in the snapshot.
+   *
+   * Use [[FtpListingSnapshot.empty]] for the first listing, and persist the materialized snapshot for the next one.
+   * The snapshot future fails if the stream does not complete.
+   *
+   * @param basePath Base path from which traverse the remote file server
+   * @param connectionSettings connection settings
+   * @param parallelism the maximum number of directories listed at once
+   * @param previousSnapshot the snapshot of the previous listing
+   * @param branchSelector a function for pruning the tree. Takes a remote folder and return true
+   *                       if you want to enter that remote folder.
+   * @return A [[akka.stream.scaladsl.Source Source]] of [[FtpFile]]s that materializes to a [[scala.concurrent.Future Future]] of the new [[FtpListingSnapshot]]
+   */
+  def lsIncremental(
+      basePath: String,
+      connectionSettings: S,
+      parallelism: Int,
+      previousSnapshot: FtpListingSnapshot,
+      branchSelector: FtpFile => Boolean = f => true
+  ): Source[FtpFile, Future[FtpListingSnapshot]] =
+    Source.fromGraph(
+      createParallelBrowserGraph(basePath, connectionSettings, parallelism, branchSelector, Some(previousSnapshot))
+    )
+
   /**
    * Scala API: creates a [[akka.stream.scaladsl.Source Source]] of [[akka.util.ByteString ByteString]] from some file path.
    *
@@ -131,6 +180,46 @@ sealed trait FtpApi[FtpClient] { _: FtpSourceFactory[FtpClient] =>
   ): Source[ByteString, Future[IOResult]] =
     Source.fromGraph(createIOSource(path, connectionSettings, chunkSize))
 
+  /**
+   * Scala API: creates a [[akka.stream.scaladsl.Source Source]] of [[akka.util.ByteString ByteString]] from some file path,
+   * downloading several segments of the file at once over separate connections. The bytes are emitted in order.
+   *
+   * A download that failed can be resumed by passing the original offset plus the byte count of the failed
+   * [[IOResult]] as `offset`.
+   *
+   * @param path the file path
+   * @param connectionSettings connection settings
+   * @param segments the number of segments downloaded at once, each over its own connection
+   * @param segmentSize the size of the byte ranges the file is split into
+   * @param chunkSize the size of transmitted [[akka.util.ByteString ByteString]] chunks
+   * @param offset the position in the file to start from
+   * @return A [[akka.stream.scaladsl.Source Source]] of [[akka.util.ByteString ByteString]] that materializes to a [[scala.concurrent.Future Future]] of [[IOResult]]
+   */
+  def fromPathParallel(
+      path: String,
+      connectionSettings: S,
+      segments: Int,
+      segmentSize: Long = DefaultSegmentSize,
+      chunkSize: Int = DefaultChunkSize,
+      offset: Long = 0L
+  ): Source[ByteString, Future[IOResult]] =
+    Source.fromGraph(createParallelIOSource(path, connectionSettings, segments, segmentSize, chunkSize, offset))
+
+  /**
+   * Scala API: creates a [[akka.stream.scaladsl.Flow Flow]] that retrieves the file of each incoming path over a single
+   * session and emits its contents as one [[akka.util.ByteString ByteString]]. Every file is held in memory as a whole,
+   * so use `fromPath` for files which may be large.
+   *
+   * @param connectionSettings connection settings
+   * @param chunkSize the size of the reads the files are retrieved with
+   * @return A [[akka.stream.scaladsl.Flow Flow]] from file paths to file contents
+   */
+  def fromPaths(
+      connectionSettings: S,
+      chunkSize: Int = DefaultChunkSize
+  ): Flow[String, ByteString, NotUsed] =
+    Flow.fromGraph(createRetrieveFlow(connectionSettings, chunkSize))
+
   /**
    * Scala API: creates a [[akka.stream.scaladsl.Sink Sink]] of [[akka.util.ByteString ByteString]] to some file path.
    *
@@ -168,9 +257,45 @@ sealed trait FtpApi[FtpClient] { _: FtpSourceFactory[FtpClient] =>
   protected[this] implicit def ftpLike: FtpLike[FtpClient, S]
 }
 
-class SftpApi extends FtpApi[SSHClient] with SftpSourceParams
-object Ftp extends FtpApi[FTPClient] with FtpSourceParams
-object Ftps extends FtpApi[FTPSClient] with FtpsSourceParams
+class PlainFtpApi extends FtpApi[FTPClient] with FtpSourceParams {
+
+  /**
+   * Scala API: creates a [[akka.stream.alpakka.ftp.scaladsl.PlainFtpApi]] whose stages borrow their sessions from the pool
+   * instead of connecting and disconnecting on every materialization.
+   */
+  def withSessionPool(pool: FtpSessionPool): PlainFtpApi =
+    new PlainFtpApi {
+      override protected[this] val ftpLike: FtpLike[FTPClient, S] = FtpLike.pooled(FtpLike.ftpLikeInstance, pool)
+    }
+}
+
+class FtpsApi extends FtpApi[FTPSClient] with FtpsSourceParams {
+
+  /**
+   * Scala API: creates a [[akka.stream.alpakka.ftp.scaladsl.FtpsApi]] whose stages borrow their sessions from the pool
+   * instead of connecting and disconnecting on every materialization.
+   */
+  def withSessionPool(pool: FtpSessionPool): FtpsApi =
+    new FtpsApi {
+      override protected[this] val ftpLike: FtpLike[FTPSClient, S] = FtpLike.pooled(FtpLike.ftpsLikeInstance, pool)
+    }
+}
+
+class SftpApi extends FtpApi[SSHClient] with SftpSourceParams { outer =>
+
+  /**
+   * Scala API: creates a [[akka.stream.alpakka.ftp.scaladsl.SftpApi]] whose stages borrow their sessions from the pool
+   * instead of connecting and disconnecting on every materialization.
+   */
+  def withSessionPool(pool: FtpSessionPool): SftpApi =
+    new SftpApi {
+      override def sshClient(): SSHClient = outer.sshClient()
+      override protected[this] val ftpLike: FtpLike[SSHClient, S] = FtpLike.pooled(FtpLike.sFtpLikeInstance, pool)
+    }
+}
+
+object Ftp extends PlainFtpApi
+object Ftps extends FtpsApi
 
 object Sftp extends SftpApi {
 
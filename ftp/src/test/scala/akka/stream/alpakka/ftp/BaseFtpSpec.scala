@@ -6,7 +6,7 @@ package akka.stream.alpakka.ftp
 
 import akka.NotUsed
 import akka.stream.IOResult
-import akka.stream.scaladsl.{Sink, Source}
+import akka.stream.scaladsl.{Flow, Sink, Source}
 import akka.stream.alpakka.ftp.scaladsl.Ftp
 import akka.util.ByteString
 import scala.concurrent.Future
@@ -26,9 +26,34 @@ trait BaseFtpSpec extends PlainFtpSupportImpl with BaseSpec {
   protected def listFilesWithFilter(basePath: String, branchSelector: FtpFile => Boolean): Source[FtpFile, NotUsed] =
     Ftp.ls(basePath, settings, branchSelector)
 
+  protected def listFilesParallel(basePath: String, parallelism: Int): Source[FtpFile, NotUsed] =
+    Ftp.lsParallel(basePath, settings, parallelism)
+
+  protected def listFilesIncremental(basePath: String,
+                                     previousSnapshot: FtpListingSnapshot): Source[FtpFile, Future[FtpListingSnapshot]] =
+    Ftp.lsIncremental(basePath, settings, parallelism = 2, previousSnapshot)
+
   protected def retrieveFromPath(path: String): Source[ByteString, Future[IOResult]] =
     Ftp.fromPath(path, settings)
 
+  protected def retrieveFromPathParallel(path: String,
+                                         segments: Int,
+                                         segmentSize: Long,
+                                         offset: Long): Source[ByteString, Future[IOResult]] =
+    Ftp.fromPathParallel(path, settings, segments, segmentSize, offset = offset)
+
+  protected def retrieveFromPaths(): Flow[String, ByteString, NotUsed] =
+    Ftp.fromPaths(settings)
+
+  protected def listFilesPooled(basePath: String, pool: FtpSessionPool): Source[FtpFile, NotUsed] =
+    Ftp.withSessionPool(pool).ls(basePath, settings)
+
+  protected def retrieveFromPathPooled(path: String, pool: FtpSessionPool): Source[ByteString, Future[IOResult]] =
+    Ftp.withSessionPool(pool).fromPath(path, settings)
+
+  protected def storeToPathPooled(path: String, pool: FtpSessionPool): Sink[ByteString, Future[IOResult]] =
+    Ftp.withSessionPool(pool).toPath(path, settings)
+
   protected def storeToPath(path: String, append: Boolean): Sink[ByteString, Future[IOResult]] =
     Ftp.toPath(path, settings, append)
 
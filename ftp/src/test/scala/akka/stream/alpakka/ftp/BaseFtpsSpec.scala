@@ -8,7 +8,7 @@ import java.net.InetAddress
 import akka.NotUsed
 import akka.stream.IOResult
 import akka.stream.alpakka.ftp.scaladsl.Ftps
-import akka.stream.scaladsl.{Sink, Source}
+import akka.stream.scaladsl.{Flow, Sink, Source}
 import akka.util.ByteString
 
 import scala.concurrent.Future
@@ -27,9 +27,34 @@ trait BaseFtpsSpec extends FtpsSupportImpl with BaseSpec {
   protected def listFilesWithFilter(basePath: String, branchSelector: FtpFile => Boolean): Source[FtpFile, NotUsed] =
     Ftps.ls(basePath, settings, branchSelector)
 
+  protected def listFilesParallel(basePath: String, parallelism: Int): Source[FtpFile, NotUsed] =
+    Ftps.lsParallel(basePath, settings, parallelism)
+
+  protected def listFilesIncremental(basePath: String,
+                                     previousSnapshot: FtpListingSnapshot): Source[FtpFile, Future[FtpListingSnapshot]] =
+    Ftps.lsIncremental(basePath, settings, parallelism = 2, previousSnapshot)
+
   protected def retrieveFromPath(path: String): Source[ByteString, Future[IOResult]] =
     Ftps.fromPath(path, settings)
 
+  protected def retrieveFromPathParallel(path: String,
+                                         segments: Int,
+                                         segmentSize: Long,
+                                         offset: Long): Source[ByteString, Future[IOResult]] =
+    Ftps.fromPathParallel(path, settings, segments, segmentSize, offset = offset)
+
+  protected def retrieveFromPaths(): Flow[String, ByteString, NotUsed] =
+    Ftps.fromPaths(settings)
+
+  protected def listFilesPooled(basePath: String, pool: FtpSessionPool): Source[FtpFile, NotUsed] =
+    Ftps.withSessionPool(pool).ls(basePath, settings)
+
+  protected def retrieveFromPathPooled(path: String, pool: FtpSessionPool): Source[ByteString, Future[IOResult]] =
+    Ftps.withSessionPool(pool).fromPath(path, settings)
+
+  protected def storeToPathPooled(path: String, pool: FtpSessionPool): Sink[ByteString, Future[IOResult]] =
+    Ftps.withSessionPool(pool).toPath(path, settings)
+
   protected def storeToPath(path: String, append: Boolean): Sink[ByteString, Future[IOResult]] =
     Ftps.toPath(path, settings, append)
 
@@ -8,7 +8,7 @@ import java.net.InetAddress
 import akka.NotUsed
 import akka.stream.IOResult
 import akka.stream.alpakka.ftp.scaladsl.Sftp
-import akka.stream.scaladsl.{Sink, Source}
+import akka.stream.scaladsl.{Flow, Sink, Source}
 import akka.util.ByteString
 
 import scala.concurrent.Future
@@ -26,9 +26,34 @@ trait BaseSftpSpec extends SftpSupportImpl with BaseSpec {
   protected def listFilesWithFilter(basePath: String, branchSelector: FtpFile => Boolean): Source[FtpFile, NotUsed] =
     Sftp.ls(basePath, settings, branchSelector)
 
+  protected def listFilesParallel(basePath: String, parallelism: Int): Source[FtpFile, NotUsed] =
+    Sftp.lsParallel(basePath, settings, parallelism)
+
+  protected def listFilesIncremental(basePath: String,
+                                     previousSnapshot: FtpListingSnapshot): Source[FtpFile, Future[FtpListingSnapshot]] =
+    Sftp.lsIncremental(basePath, settings, parallelism = 2, previousSnapshot)
+
   protected def retrieveFromPath(path: String): Source[ByteString, Future[IOResult]] =
     Sftp.fromPath(path, settings)
 
+  protected def retrieveFromPathParallel(path: String,
+                                         segments: Int,
+                                         segmentSize: Long,
+                                         offset: Long): Source[ByteString, Future[IOResult]] =
+    Sftp.fromPathParallel(path, settings, segments, segmentSize, offset = offset)
+
+  protected def retrieveFromPaths(): Flow[String, ByteString, NotUsed] =
+    Sftp.fromPaths(settings)
+
+  protected def listFilesPooled(basePath: String, pool: FtpSessionPool): Source[FtpFile, NotUsed] =
+    Sftp.withSessionPool(pool).ls(basePath, settings)
+
+  protected def retrieveFromPathPooled(path: String, pool: FtpSessionPool): Source[ByteString, Future[IOResult]] =
+    Sftp.withSessionPool(pool).fromPath(path, settings)
+
+  protected def storeToPathPooled(path: String, pool: FtpSessionPool): Sink[ByteString, Future[IOResult]] =
+    Sftp.withSessionPool(pool).toPath(path, settings)
+
   protected def storeToPath(path: String, append: Boolean): Sink[ByteString, Future[IOResult]] =
     Sftp.toPath(path, settings, append)
 
@@ -6,7 +6,7 @@ package akka.stream.alpakka.ftp
 
 import akka.NotUsed
 import akka.stream.IOResult
-import akka.stream.scaladsl.{Sink, Source}
+import akka.stream.scaladsl.{Flow, Sink, Source}
 import akka.util.ByteString
 import org.scalatest.concurrent.{IntegrationPatience, ScalaFutures}
 import org.scalatest.{BeforeAndAfter, BeforeAndAfterAll, Inside, Matchers, WordSpecLike}
@@ -29,8 +29,26 @@ trait BaseSpec
 
   protected def listFilesWithFilter(basePath: String, branchSelector: FtpFile => Boolean): Source[FtpFile, NotUsed]
 
+  protected def listFilesParallel(basePath: String, parallelism: Int): Source[FtpFile, NotUsed]
+
+  protected def listFilesIncremental(basePath: String,
+                                     previousSnapshot: FtpListingSnapshot): Source[FtpFile, Future[FtpListingSnapshot]]
+
   protected def retrieveFromPath(path: String): Source[ByteString, Future[IOResult]]
 
+  protected def retrieveFromPathParallel(path: String,
+                                         segments: Int,
+                                         segmentSize: Long,
+                                         offset: Long): Source[ByteString, Future[IOResult]]
+
+  protected def retrieveFromPaths(): Flow[String, ByteString, NotUsed]
+
+  protected def listFilesPooled(basePath: String, pool: FtpSessionPool): Source[FtpFile, NotUsed]
+
+  protected def retrieveFromPathPooled(path: String, pool: FtpSessionPool): Source[ByteString, Future[IOResult]]
+
+  protected def storeToPathPooled(path: String, pool: FtpSessionPool): Sink[ByteString, Future[IOResult]]
+
   protected def storeToPath(path: String, append: Boolean): Sink[ByteString, Future[IOResult]]
 
   protected def remove(): Sink[FtpFile, Future[IOResult]]
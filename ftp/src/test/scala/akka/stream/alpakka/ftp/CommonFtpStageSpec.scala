@@ -13,7 +13,8 @@ import org.scalatest.time.{Millis, Seconds, Span}
 
 import scala.concurrent.duration._
 import scala.util.Random
-import java.nio.file.attribute.PosixFilePermission
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, IOException}
+import java.nio.file.attribute.{FileTime, PosixFilePermission}
 import java.nio.file.{Files, Paths}
 import java.net.InetAddress
 
@@ -142,6 +143,67 @@ trait CommonFtpStageSpec extends BaseSpec with Eventually {
     }
   }
 
+  "FtpParallelBrowserSource" should {
+    "list the same files as the sequential browser source" in {
+      val basePath = ""
+      generateFiles(30, 10, basePath)
+
+      val sequential = listFiles(basePath).runWith(Sink.seq).futureValue
+      val parallel = listFilesParallel(basePath, parallelism = 3).runWith(Sink.seq).futureValue
+
+      parallel should have size sequential.size
+      parallel.map(_.path).toSet shouldBe sequential.map(_.path).toSet
+    }
+
+    "only list directories whose modification time changed since the snapshot" in {
+      val basePath = ""
+      generateFiles(30, 10, basePath)
+      val earlier = FileTime.fromMillis(System.currentTimeMillis() - 10.days.toMillis)
+      def setModified(dir: String, time: FileTime): Unit =
+        Files.setLastModifiedTime(getFileSystem.getPath(s"${FtpBaseSupport.FTP_ROOT_DIR}/$dir"), time)
+      setModified("dir_1", earlier)
+      setModified("dir_2", earlier)
+
+      val (snapshot, first) =
+        listFilesIncremental(basePath, FtpListingSnapshot.empty).toMat(Sink.seq)(Keep.both).run()
+      first.futureValue should have size 33
+      val persisted = new ByteArrayOutputStream()
+      snapshot.futureValue.writeTo(persisted)
+
+      putFileOnFtp(s"${FtpBaseSupport.FTP_ROOT_DIR}/dir_1", "sample_changed")
+      setModified("dir_1", FileTime.fromMillis(System.currentTimeMillis() - 5.days.toMillis))
+      putFileOnFtp(s"${FtpBaseSupport.FTP_ROOT_DIR}/dir_2", "sample_unnoticed")
+      setModified("dir_2", earlier)
+
+      val previous = FtpListingSnapshot.readFrom(new ByteArrayInputStream(persisted.toByteArray))
+      val second = listFilesIncremental(basePath, previous).runWith(Sink.seq).futureValue
+      val names = second.map(_.name)
+      names should contain("sample_changed")
+      names should not contain "sample_unnoticed"
+      second should have size 34
+    }
+
+    "notice changes two levels below an unchanged directory" in {
+      val basePath = ""
+      putFileOnFtp(s"${FtpBaseSupport.FTP_ROOT_DIR}/dir_a/dir_b", "sample_1")
+      val earlier = FileTime.fromMillis(System.currentTimeMillis() - 10.days.toMillis)
+      def setModified(dir: String, time: FileTime): Unit =
+        Files.setLastModifiedTime(getFileSystem.getPath(s"${FtpBaseSupport.FTP_ROOT_DIR}/$dir"), time)
+      setModified("dir_a/dir_b", earlier)
+      setModified("dir_a", earlier)
+
+      val (snapshot, first) =
+        listFilesIncremental(basePath, FtpListingSnapshot.empty).toMat(Sink.seq)(Keep.both).run()
+      first.futureValue.map(_.name) should contain("sample_1")
+
+      putFileOnFtp(s"${FtpBaseSupport.FTP_ROOT_DIR}/dir_a/dir_b", "sample_2")
+      setModified("dir_a/dir_b", FileTime.fromMillis(System.currentTimeMillis() - 5.days.toMillis))
+
+      val second = listFilesIncremental(basePath, snapshot.futureValue).runWith(Sink.seq).futureValue
+      second.map(_.path) should contain allOf ("/dir_a/dir_b/sample_1", "/dir_a/dir_b/sample_2")
+    }
+  }
+
   "FtpIOSource" should {
     "retrieve a file from path as a stream of bytes" in {
       val fileName = "sample_io"
@@ -167,6 +229,162 @@ trait CommonFtpStageSpec extends BaseSpec with Eventually {
     }
   }
 
+  "FtpParallelIOSource" should {
+    "retrieve a file in segments as an ordered stream of bytes" in {
+      val fileName = "sample_segmented_file"
+      val fileContents = new Array[Byte](2000020)
+      Random.nextBytes(fileContents)
+      putFileOnFtpWithContents(FtpBaseSupport.FTP_ROOT_DIR, fileName, fileContents)
+
+      val (result, bytes) = retrieveFromPathParallel(s"/$fileName", segments = 3, segmentSize = 300000, offset = 0)
+        .toMat(Sink.fold(ByteString.empty)(_ ++ _))(Keep.both)
+        .run()
+
+      bytes.futureValue shouldBe ByteString(fileContents)
+      result.futureValue shouldBe IOResult.createSuccessful(fileContents.length)
+    }
+
+    "resume a download from an offset" in {
+      val fileName = "sample_resumed_file"
+      val fileContents = new Array[Byte](1000000)
+      Random.nextBytes(fileContents)
+      putFileOnFtpWithContents(FtpBaseSupport.FTP_ROOT_DIR, fileName, fileContents)
+      val offset = 123457
+
+      val (result, bytes) = retrieveFromPathParallel(s"/$fileName", segments = 2, segmentSize = 100000, offset)
+        .toMat(Sink.fold(ByteString.empty)(_ ++ _))(Keep.both)
+        .run()
+
+      bytes.futureValue shouldBe ByteString(fileContents).drop(offset)
+      result.futureValue shouldBe IOResult.createSuccessful(fileContents.length - offset)
+    }
+
+    "read many segments over a single session" in {
+      val fileName = "sample_aborted_file"
+      val fileContents = new Array[Byte](500000)
+      Random.nextBytes(fileContents)
+      putFileOnFtpWithContents(FtpBaseSupport.FTP_ROOT_DIR, fileName, fileContents)
+
+      // every segment but the last aborts its transfer, the session must be usable for the next one
+      val (result, bytes) = retrieveFromPathParallel(s"/$fileName", segments = 1, segmentSize = 30000, offset = 0)
+        .toMat(Sink.fold(ByteString.empty)(_ ++ _))(Keep.both)
+        .run()
+
+      bytes.futureValue shouldBe ByteString(fileContents)
+      result.futureValue shouldBe IOResult.createSuccessful(fileContents.length)
+    }
+
+    "fail for a file that does not exist" in {
+      val result = retrieveFromPathParallel("/no_such_file", segments = 2, segmentSize = 100000, offset = 0)
+        .runWith(Sink.ignore)
+
+      val error = result.failed.futureValue
+      error shouldBe an[IOException]
+      error.getMessage shouldBe "/no_such_file: No such file"
+    }
+  }
+
+  "FtpRetrieveFlow" should {
+    "retrieve the files of all incoming paths" in {
+      val basePath = ""
+      generateFiles(5, 10, basePath)
+      val paths = (1 to 5).map(i => s"/sample_$i")
+
+      val contents = Source(paths).via(retrieveFromPaths()).runWith(Sink.seq).futureValue
+
+      contents should have size 5
+      all(contents.map(_.utf8String)) shouldBe getLoremIpsum
+    }
+  }
+
+  "FtpSessionPool" should {
+    "reuse one session for consecutive materializations" in {
+      val basePath = ""
+      generateFiles(5, 10, basePath)
+      val pool = FtpSessionPool()
+      try {
+        for (_ <- 1 to 3) {
+          listFilesPooled(basePath, pool).runWith(Sink.seq).futureValue should have size 5
+          eventually {
+            pool.idleCount shouldBe 1
+          }
+        }
+      } finally {
+        pool.close()
+      }
+      pool.idleCount shouldBe 0
+    }
+
+    "not keep more idle sessions than its maximum size" in {
+      val basePath = ""
+      generateFiles(5, 10, basePath)
+      val pool = FtpSessionPool(FtpSessionPoolSettings().withMaxSize(1))
+      try {
+        val listings = (1 to 3).map(_ => listFilesPooled(basePath, pool).runWith(Sink.seq))
+        listings.foreach(_.futureValue should have size 5)
+        eventually {
+          pool.idleCount shouldBe 1
+        }
+      } finally {
+        pool.close()
+      }
+    }
+
+    "reuse one session for downloads and uploads" in {
+      val fileName = "sample_pooled"
+      putFileOnFtp(FtpBaseSupport.FTP_ROOT_DIR, fileName)
+      val pool = FtpSessionPool()
+      try {
+        val downloaded = retrieveFromPathPooled(s"/$fileName", pool).runWith(Sink.fold(ByteString.empty)(_ ++ _))
+        downloaded.futureValue.utf8String shouldBe getLoremIpsum
+        eventually {
+          pool.idleCount shouldBe 1
+        }
+
+        val reversed = ByteString(getLoremIpsum.reverse)
+        val stored = Source.single(reversed).runWith(storeToPathPooled(s"/$fileName", pool))
+        stored.futureValue shouldBe IOResult.createSuccessful(reversed.size)
+        eventually {
+          pool.idleCount shouldBe 1
+        }
+        getFtpFileContents(FtpBaseSupport.FTP_ROOT_DIR, fileName) shouldBe reversed.toArray
+
+        val again = retrieveFromPathPooled(s"/$fileName", pool).runWith(Sink.fold(ByteString.empty)(_ ++ _))
+        again.futureValue shouldBe reversed
+        eventually {
+          pool.idleCount shouldBe 1
+        }
+      } finally {
+        pool.close()
+      }
+    }
+
+    "close the session of a cancelled download and serve the next one with a working session" in {
+      val fileName = "sample_cancelled"
+      val fileContents = new Array[Byte](2000020)
+      Random.nextBytes(fileContents)
+      putFileOnFtpWithContents(FtpBaseSupport.FTP_ROOT_DIR, fileName, fileContents)
+      val pool = FtpSessionPool()
+      try {
+        val probe = retrieveFromPathPooled(s"/$fileName", pool).runWith(TestSink.probe)
+        probe.request(1).expectNext()
+        probe.cancel()
+        // the session stopped in the middle of the transfer is closed rather than given back
+        eventually {
+          pool.idleCount shouldBe 0
+        }
+
+        val downloaded = retrieveFromPathPooled(s"/$fileName", pool).runWith(Sink.fold(ByteString.empty)(_ ++ _))
+        downloaded.futureValue shouldBe ByteString(fileContents)
+        eventually {
+          pool.idleCount shouldBe 1
+        }
+      } finally {
+        pool.close()
+      }
+    }
+  }
+
   "FtpBrowserSource & FtpIOSource" should {
     "work together retrieving a list of files" in {
       val basePath = ""
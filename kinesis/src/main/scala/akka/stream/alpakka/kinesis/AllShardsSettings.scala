@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import java.util.Date
+import java.util.concurrent.TimeUnit
+
+import com.amazonaws.services.kinesis.model.ShardIteratorType
+
+import scala.concurrent.duration._
+
+object AllShardsSettings {
+
+  /**
+   * Java API: Create settings using the default configuration
+   */
+  def create(streamName: String): AllShardsSettings = AllShardsSettings(streamName)
+
+}
+
+/**
+ * @param shardIteratorType where to start reading the shards: `LATEST` starts at the tip of the open shards,
+ *                          `TRIM_HORIZON` and `AT_TIMESTAMP` start at the oldest shards and follow their children
+ * @param refreshInterval how long to wait before polling a shard again that returned no records
+ * @param limit the maximum number of records per `GetRecords` request
+ * @param maxBufferedBytes how many bytes of records to fetch ahead of the demand at most, over all shards
+ * @param shardDiscoveryInterval how often to list the shards of the stream
+ */
+case class AllShardsSettings(streamName: String,
+                             shardIteratorType: ShardIteratorType = ShardIteratorType.LATEST,
+                             atTimestamp: Option[java.util.Date] = None,
+                             refreshInterval: FiniteDuration = 1.second,
+                             limit: Int = 500,
+                             maxBufferedBytes: Long = 10 * 1024 * 1024,
+                             shardDiscoveryInterval: FiniteDuration = 30.seconds) {
+  require(
+    limit >= 1 && limit <= 10000,
+    "Limit must be between 0 and 10000. See: http://docs.aws.amazon.com/kinesis/latest/APIReference/API_GetRecords.html"
+  )
+  require(maxBufferedBytes >= 1)
+  shardIteratorType match {
+    case ShardIteratorType.LATEST | ShardIteratorType.TRIM_HORIZON => ()
+    case ShardIteratorType.AT_TIMESTAMP => require(atTimestamp.nonEmpty)
+    case other => throw new IllegalArgumentException(s"$other is not supported when reading all shards")
+  }
+
+  def withShardIteratorType(shardIteratorType: ShardIteratorType): AllShardsSettings =
+    copy(shardIteratorType = shardIteratorType)
+
+  def withAtTimestamp(atTimestamp: Date): AllShardsSettings =
+    copy(shardIteratorType = ShardIteratorType.AT_TIMESTAMP, atTimestamp = Option(atTimestamp))
+
+  def withRefreshInterval(refreshInterval: Long, unit: TimeUnit): AllShardsSettings =
+    copy(refreshInterval = FiniteDuration(refreshInterval, unit))
+
+  def withLimit(limit: Int): AllShardsSettings = copy(limit = limit)
+
+  def withMaxBufferedBytes(maxBufferedBytes: Long): AllShardsSettings = copy(maxBufferedBytes = maxBufferedBytes)
+
+  def withShardDiscoveryInterval(shardDiscoveryInterval: Long, unit: TimeUnit): AllShardsSettings =
+    copy(shardDiscoveryInterval = FiniteDuration(shardDiscoveryInterval, unit))
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+
+import akka.util.{ByteString, ByteStringBuilder}
+
+import scala.collection.JavaConverters._
+import scala.collection.immutable
+import scala.util.Try
+
+/**
+ * The record format of the Kinesis Producer Library (KPL): the magic bytes `F3 89 9A C2`, an `AggregatedRecord`
+ * protobuf message and the MD5 digest of that message.
+ *
+ * {{{
+ * message AggregatedRecord {
+ *   repeated string partition_key_table     = 1;
+ *   repeated string explicit_hash_key_table = 2;
+ *   repeated Record records                 = 3;
+ * }
+ * message Record {
+ *   required uint64 partition_key_index     = 1;
+ *   optional uint64 explicit_hash_key_index = 2;
+ *   required bytes  data                    = 3;
+ *   repeated Tag    tags                    = 4;
+ * }
+ * }}}
+ */
+private[kinesis] object KinesisAggregatedRecord {
+
+  val Magic: ByteString = ByteString(0xF3.toByte, 0x89.toByte, 0x9A.toByte, 0xC2.toByte)
+  private val DigestLength = 16
+
+  /** The size of an aggregated record without any user records. */
+  val EmptySize: Int = Magic.length + DigestLength
+
+  final case class SubRecord(partitionKey: String, explicitHashKey: Option[String], data: ByteString)
+
+  /**
+   * Builds an aggregated record incrementally, keeping track of its encoded size.
+   */
+  final class Builder {
+    private val partitionKeys = new java.util.LinkedHashMap[String, Integer]()
+    private val explicitHashKeys = new java.util.LinkedHashMap[String, Integer]()
+    private val records = new ByteStringBuilder
+    private var recordCount = 0
+    private var _size = EmptySize
+
+    def size: Int = _size
+
+    def count: Int = recordCount
+
+    def isEmpty: Boolean = recordCount == 0
+
+    /** The encoded size of the aggregated record after adding the user record. */
+    def sizeWith(record: SubRecord): Int =
+      _size + tableEntrySize(partitionKeys, record.partitionKey) +
+      record.explicitHashKey.fold(0)(tableEntrySize(explicitHashKeys, _)) +
+      fieldSize(recordSize(record))
+
+    def add(record: SubRecord): Unit = {
+      _size = sizeWith(record)
+      val partitionKeyIndex = indexOf(partitionKeys, record.partitionKey)
+      val explicitHashKeyIndex = record.explicitHashKey.map(indexOf(explicitHashKeys, _))
+      writeTag(records, 3, LengthDelimited)
+      writeVarint(records, recordSize(record))
+      writeTag(records, 1, Varint)
+      writeVarint(records, partitionKeyIndex)
+      explicitHashKeyIndex.foreach { index =>
+        writeTag(records, 2, Varint)
+        writeVarint(records, index)
+      }
+      writeTag(records, 3, LengthDelimited)
+      writeVarint(records, record.data.length)
+      records ++= record.data
+      recordCount += 1
+    }
+
+    def result(): ByteString = {
+      val message = new ByteStringBuilder
+      partitionKeys.keySet().asScala.foreach(writeString(message, 1, _))
+      explicitHashKeys.keySet().asScala.foreach(writeString(message, 2, _))
+      message ++= records.result()
+      val body = message.result()
+      Magic ++ body ++ ByteString(md5(body))
+    }
+
+    private def tableEntrySize(table: java.util.Map[String, Integer], key: String): Int =
+      if (table.containsKey(key)) 0 else fieldSize(utf8Length(key))
+
+    private def indexOf(table: java.util.Map[String, Integer], key: String): Int = {
+      val existing = table.get(key)
+      if (existing != null) existing
+      else {
+        table.put(key, table.size())
+        table.size() - 1
+      }
+    }
+
+    private def recordSize(record: SubRecord): Int = {
+      val partitionKeyIndex = Option(partitionKeys.get(record.partitionKey)).fold(partitionKeys.size())(_.intValue)
+      val explicitHashKeySize = record.explicitHashKey.fold(0) { key =>
+        1 + varintSize(Option(explicitHashKeys.get(key)).fold(explicitHashKeys.size())(_.intValue))
+      }
+      1 + varintSize(partitionKeyIndex) + explicitHashKeySize + fieldSize(record.data.length)
+    }
+  }
+
+  /** Whether the data starts with the magic bytes and ends with a valid MD5 digest. */
+  def isAggregated(data: ByteString): Boolean =
+    data.length > EmptySize && data.startsWith(Magic) && {
+      val body = data.slice(Magic.length, data.length - DigestLength)
+      java.util.Arrays.equals(md5(body), data.takeRight(DigestLength).toArray)
+    }
+
+  /**
+   * Decodes the user records of an aggregated record, or `None` if the data is no valid aggregated record.
+   */
+  def decode(data: ByteString): Option[immutable.Seq[SubRecord]] =
+    if (!isAggregated(data)) None
+    else Try(decodeMessage(data.slice(Magic.length, data.length - DigestLength).toArray)).toOption
+
+  private def decodeMessage(bytes: Array[Byte]): immutable.Seq[SubRecord] = {
+    val reader = new Reader(bytes, 0, bytes.length)
+    val partitionKeys = Vector.newBuilder[String]
+    val explicitHashKeys = Vector.newBuilder[String]
+    val encodedRecords = Vector.newBuilder[(Int, Int)]
+    while (reader.hasMore) {
+      val tag = reader.readVarint().toInt
+      (tag >>> 3, tag & 7) match {
+        case (1, LengthDelimited) => partitionKeys += reader.readString()
+        case (2, LengthDelimited) => explicitHashKeys += reader.readString()
+        case (3, LengthDelimited) => encodedRecords += reader.readSpan()
+        case (_, wireType) => reader.skip(wireType)
+      }
+    }
+    val partitionKeyTable = partitionKeys.result()
+    val explicitHashKeyTable = explicitHashKeys.result()
+
+    encodedRecords.result().map {
+      case (offset, length) =>
+        val record = new Reader(bytes, offset, offset + length)
+        var partitionKeyIndex = -1
+        var explicitHashKeyIndex = Option.empty[Int]
+        var data = ByteString.empty
+        while (record.hasMore) {
+          val tag = record.readVarint().toInt
+          (tag >>> 3, tag & 7) match {
+            case (1, Varint) => partitionKeyIndex = record.readVarint().toInt
+            case (2, Varint) => explicitHashKeyIndex = Some(record.readVarint().toInt)
+            case (3, LengthDelimited) =>
+              val (start, dataLength) = record.readSpan()
+              data = ByteString.fromArray(bytes, start, dataLength)
+            case (_, wireType) => record.skip(wireType)
+          }
+        }
+        SubRecord(partitionKeyTable(partitionKeyIndex), explicitHashKeyIndex.map(explicitHashKeyTable), data)
+    }
+  }
+
+  private val Varint = 0
+  private val Fixed64 = 1
+  private val LengthDelimited = 2
+  private val Fixed32 = 5
+
+  private final class Reader(bytes: Array[Byte], private var position: Int, limit: Int) {
+    def hasMore: Boolean = position < limit
+
+    def readVarint(): Long = {
+      var result = 0L
+      var shift = 0
+      var b = 0
+      do {
+        if (position >= limit || shift > 63) throw new IllegalArgumentException("Malformed varint")
+        b = bytes(position)
+        position += 1
+        result |= (b & 0x7F).toLong << shift
+        shift += 7
+      } while ((b & 0x80) != 0)
+      result
+    }
+
+    /** Reads a length-delimited field, returning its offset and length. */
+    def readSpan(): (Int, Int) = {
+      val length = readVarint().toInt
+      if (length < 0 || position + length > limit) throw new IllegalArgumentException("Malformed length")
+      val start = position
+      position += length
+      (start, length)
+    }
+
+    def readString(): String = {
+      val (start, length) = readSpan()
+      new String(bytes, start, length, StandardCharsets.UTF_8)
+    }
+
+    def skip(wireType: Int): Unit = wireType match {
+      case Varint => readVarint()
+      case Fixed64 => position += 8
+      case LengthDelimited => readSpan()
+      case Fixed32 => position += 4
+      case other => throw new IllegalArgumentException(s"Unsupported wire type $other")
+    }
+  }
+
+  private def writeTag(builder: ByteStringBuilder, field: Int, wireType: Int): Unit =
+    builder.putByte(((field << 3) | wireType).toByte)
+
+  private def writeVarint(builder: ByteStringBuilder, value: Int): Unit = {
+    var remaining = value
+    while ((remaining & ~0x7F) != 0) {
+      builder.putByte(((remaining & 0x7F) | 0x80).toByte)
+      remaining >>>= 7
+    }
+    builder.putByte(remaining.toByte)
+  }
+
+  private def writeString(builder: ByteStringBuilder, field: Int, value: String): Unit = {
+    val bytes = value.getBytes(StandardCharsets.UTF_8)
+    writeTag(builder, field, LengthDelimited)
+    writeVarint(builder, bytes.length)
+    builder.putBytes(bytes)
+  }
+
+  private def varintSize(value: Int): Int =
+    if ((value & ~0x7F) == 0) 1
+    else if ((value & ~0x3FFF) == 0) 2
+    else if ((value & ~0x1FFFFF) == 0) 3
+    else if ((value & ~0xFFFFFFF) == 0) 4
+    else 5
+
+  /** The size of a length-delimited field with a single byte tag. */
+  private def fieldSize(length: Int): Int = 1 + varintSize(length) + length
+
+  private def utf8Length(value: String): Int = value.getBytes(StandardCharsets.UTF_8).length
+
+  private def md5(bytes: ByteString): Array[Byte] = {
+    val digest = MessageDigest.getInstance("MD5")
+    bytes.asByteBuffers.foreach(buffer => digest.update(buffer))
+    digest.digest()
+  }
+}
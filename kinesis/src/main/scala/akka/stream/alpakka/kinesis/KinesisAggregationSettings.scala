@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import KinesisAggregationSettings._
+import scala.concurrent.duration._
+
+/**
+ * @param maxAggregatedBytes the maximum size of an aggregated record, including the KPL framing
+ * @param maxBufferTime how long user records wait for more user records of the same shard at most
+ */
+case class KinesisAggregationSettings(maxAggregatedBytes: Int, maxBufferTime: FiniteDuration) {
+  require(
+    maxAggregatedBytes > KinesisAggregatedRecord.EmptySize && maxAggregatedBytes <= MaxRecordBytes,
+    s"maxAggregatedBytes must be between ${KinesisAggregatedRecord.EmptySize + 1} and $MaxRecordBytes. " +
+    "See: https://docs.aws.amazon.com/kinesis/latest/APIReference/API_PutRecordsRequestEntry.html"
+  )
+  require(maxBufferTime > Duration.Zero)
+
+  def withMaxAggregatedBytes(maxAggregatedBytes: Int): KinesisAggregationSettings =
+    copy(maxAggregatedBytes = maxAggregatedBytes)
+
+  def withMaxBufferTime(maxBufferTime: FiniteDuration): KinesisAggregationSettings = copy(maxBufferTime = maxBufferTime)
+
+  def withMaxBufferTime(timeout: Long, unit: java.util.concurrent.TimeUnit): KinesisAggregationSettings =
+    copy(maxBufferTime = FiniteDuration(timeout, unit))
+}
+
+object KinesisAggregationSettings {
+
+  /** A record's data and partition key (of up to 256 bytes) may hold up to 1 MiB. */
+  private[kinesis] val MaxRecordBytes = 1024 * 1024 - 256
+
+  /** The defaults of the Kinesis Producer Library. */
+  val defaultInstance: KinesisAggregationSettings =
+    KinesisAggregationSettings(maxAggregatedBytes = 51200, maxBufferTime = 100.millis)
+
+  def create(): KinesisAggregationSettings = defaultInstance
+}
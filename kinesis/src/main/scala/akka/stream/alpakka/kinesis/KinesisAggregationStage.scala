@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import akka.dispatch.ExecutionContexts.sameThreadExecutionContext
+import akka.stream.alpakka.kinesis.KinesisAggregatedRecord.SubRecord
+import akka.stream.alpakka.kinesis.KinesisErrors.FailureListingShards
+import akka.stream.stage._
+import akka.stream.{Attributes, FlowShape, Inlet, Outlet}
+import akka.util.ByteString
+import com.amazonaws.services.kinesis.AmazonKinesisAsync
+import com.amazonaws.services.kinesis.model.{PutRecordsRequestEntry, Shard}
+
+import scala.collection.{immutable, mutable}
+import scala.util.{Failure, Success, Try}
+
+/**
+ * Aggregates the records of every shard into records in the format of the Kinesis Producer Library.
+ *
+ * An aggregated record is emitted when the next record of its shard would exceed `maxAggregatedBytes`, or
+ * `maxBufferTime` after its first record arrived. It takes the partition key of its first record, and the hash key of
+ * that record as explicit hash key, so Kinesis writes it to the shard all its records belong to. A single record, or
+ * one too large to be aggregated, is emitted unchanged.
+ */
+private[kinesis] final class KinesisAggregationStage[T](streamName: String, settings: KinesisAggregationSettings)(
+    implicit kinesisClient: AmazonKinesisAsync
+) extends GraphStage[FlowShape[(PutRecordsRequestEntry, T), (PutRecordsRequestEntry, immutable.Seq[T])]] {
+
+  private val in = Inlet[(PutRecordsRequestEntry, T)]("KinesisAggregationStage.in")
+  private val out = Outlet[(PutRecordsRequestEntry, immutable.Seq[T])]("KinesisAggregationStage.out")
+  override val shape = FlowShape(in, out)
+
+  override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
+    new TimerGraphStageLogic(shape) with StageLogging with InHandler with OutHandler {
+
+      private final class Aggregate(val first: PutRecordsRequestEntry) {
+        val builder = new KinesisAggregatedRecord.Builder
+        val contexts = Vector.newBuilder[T]
+      }
+
+      private var shardMap: KinesisShardMap = _
+      private val aggregates = mutable.Map.empty[Int, Aggregate]
+      private val completed = mutable.Queue.empty[(PutRecordsRequestEntry, immutable.Seq[T])]
+
+      override def preStart(): Unit = {
+        val shardsListed = getAsyncCallback[Try[Seq[Shard]]] {
+          case Success(listed) =>
+            shardMap = KinesisShardMap(listed)
+            log.debug("Aggregating records for {} shards of stream {}", shardMap.shardCount, streamName)
+            pullIfPossible()
+          case Failure(ex: Exception) => failStage(FailureListingShards(ex))
+          case Failure(ex) => failStage(ex)
+        }
+        KinesisShardMap.listShards(streamName).onComplete(shardsListed.invoke)(sameThreadExecutionContext)
+      }
+
+      private def pullIfPossible(): Unit =
+        if (shardMap != null && completed.isEmpty && !hasBeenPulled(in) && !isClosed(in)) pull(in)
+
+      override def onPush(): Unit = {
+        val (entry, context) = grab(in)
+        val record = SubRecord(entry.getPartitionKey,
+                               Option(entry.getExplicitHashKey),
+                               ByteString(entry.getData.duplicate()))
+        val shard = shardMap.shardIndex(entry)
+
+        aggregates.get(shard) match {
+          case Some(aggregate) if aggregate.builder.sizeWith(record) > settings.maxAggregatedBytes => flush(shard)
+          case _ =>
+        }
+        val aggregate = aggregates.getOrElse(shard, new Aggregate(entry))
+        if (aggregate.builder.sizeWith(record) > settings.maxAggregatedBytes) {
+          completed.enqueue((entry, List(context)))
+        } else {
+          if (aggregate.builder.isEmpty) {
+            aggregates.put(shard, aggregate)
+            scheduleOnce(shard, settings.maxBufferTime)
+          }
+          aggregate.builder.add(record)
+          aggregate.contexts += context
+        }
+
+        emit()
+        pullIfPossible()
+      }
+
+      override def onUpstreamFinish(): Unit = {
+        aggregates.keys.toList.foreach(flush)
+        emit()
+      }
+
+      override def onPull(): Unit = {
+        emit()
+        pullIfPossible()
+      }
+
+      override protected def onTimer(timerKey: Any): Unit = {
+        flush(timerKey.asInstanceOf[Int])
+        emit()
+      }
+
+      private def flush(shard: Int): Unit =
+        aggregates.remove(shard).foreach { aggregate =>
+          cancelTimer(shard)
+          val contexts = aggregate.contexts.result()
+          if (aggregate.builder.count == 1) {
+            completed.enqueue((aggregate.first, contexts))
+          } else {
+            val aggregated = new PutRecordsRequestEntry()
+              .withPartitionKey(aggregate.first.getPartitionKey)
+              .withExplicitHashKey(shardMap.hashKey(aggregate.first).toString)
+              .withData(aggregate.builder.result().toByteBuffer)
+            completed.enqueue((aggregated, contexts))
+          }
+        }
+
+      private def emit(): Unit = {
+        if (completed.nonEmpty && isAvailable(out)) push(out, completed.dequeue())
+        if (isClosed(in) && completed.isEmpty && aggregates.isEmpty) completeStage()
+      }
+
+      setHandlers(in, out, this)
+    }
+}
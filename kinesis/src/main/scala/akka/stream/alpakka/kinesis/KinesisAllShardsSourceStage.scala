@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import akka.dispatch.ExecutionContexts.sameThreadExecutionContext
+import akka.stream.alpakka.kinesis.KinesisAllShardsSourceStage._
+import akka.stream.alpakka.kinesis.{KinesisErrors => Errors}
+import akka.stream.stage._
+import akka.stream.{Attributes, Outlet, SourceShape}
+import com.amazonaws.handlers.AsyncHandler
+import com.amazonaws.services.kinesis.AmazonKinesisAsync
+import com.amazonaws.services.kinesis.model._
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.concurrent.duration._
+import scala.util.{Failure, Success, Try}
+
+/**
+ * Reads all shards of a stream, which it lists when it starts and every `shardDiscoveryInterval`.
+ *
+ * A shard is read once its parent shards are read completely, so the records of a partition key keep their order
+ * across splits and merges. Every shard fetches the next `GetRecords` page as soon as the previous one arrived, as long
+ * as less than `maxBufferedBytes` of records are buffered over all shards. The buffered records are emitted from the
+ * shards in turn.
+ */
+private[kinesis] final class KinesisAllShardsSourceStage(settings: AllShardsSettings)(
+    implicit kinesisClient: AmazonKinesisAsync
+) extends GraphStage[SourceShape[Record]] {
+
+  private val out = Outlet[Record]("KinesisAllShardsSource.out")
+  override val shape: SourceShape[Record] = SourceShape(out)
+
+  override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
+    new TimerGraphStageLogic(shape) with StageLogging with OutHandler {
+
+      private final class ShardState(val shardId: String, val iteratorType: ShardIteratorType) {
+        var iterator: String = _
+        var lastSequenceNumber: Option[String] = None
+        val buffer = mutable.Queue.empty[Record]
+        var inFlight = false
+        var closed = false
+        var nextRequestAt = 0L
+      }
+
+      private var initialized = false
+      private var listing = false
+      private val known = mutable.Map.empty[String, Shard]
+      private val completed = mutable.Set.empty[String]
+      private val active = mutable.Map.empty[String, ShardState]
+      // the active shards in the order they emit records
+      private val rotation = mutable.Queue.empty[ShardState]
+      private var bufferedBytes = 0L
+
+      private val shardsListed = getAsyncCallback[Try[Seq[Shard]]](handleShards)
+      private val iteratorReceived =
+        getAsyncCallback[(ShardState, Try[GetShardIteratorResult])]((handleIterator _).tupled)
+      private val recordsReceived = getAsyncCallback[(ShardState, Try[GetRecordsResult])]((handleRecords _).tupled)
+
+      override def preStart(): Unit = {
+        listShards()
+        schedulePeriodically(Discover, settings.shardDiscoveryInterval)
+      }
+
+      override def onPull(): Unit = emit()
+
+      override protected def onTimer(timerKey: Any): Unit = timerKey match {
+        case Discover => if (!listing) listShards()
+        case Poll(shardId) => active.get(shardId).foreach(fetch)
+      }
+
+      private def listShards(): Unit = {
+        listing = true
+        KinesisShardMap.listShards(settings.streamName).onComplete(shardsListed.invoke)(sameThreadExecutionContext)
+      }
+
+      private def handleShards(result: Try[Seq[Shard]]): Unit = {
+        listing = false
+        result match {
+          case Success(shards) =>
+            shards.foreach(shard => known.put(shard.getShardId, shard))
+            if (!initialized) {
+              initialized = true
+              if (settings.shardIteratorType == ShardIteratorType.LATEST) {
+                // the closed shards hold no records after the tip of the stream
+                val (closed, open) = shards.partition(hasEnded)
+                completed ++= closed.map(_.getShardId)
+                open.foreach(shard => start(shard.getShardId, ShardIteratorType.LATEST))
+              }
+            }
+            startReadyShards()
+            completeIfDone()
+          case Failure(ex) if !initialized =>
+            log.error(ex, "Failed to list the shards of stream {}", settings.streamName)
+            failStage(Errors.ListShardsError)
+          case Failure(ex) =>
+            log.warning("Failed to list the shards of stream {}: {}", settings.streamName, ex)
+        }
+      }
+
+      /** Starts the shards whose parents were read completely, or expired. */
+      private def startReadyShards(): Unit = {
+        val iteratorType =
+          if (settings.shardIteratorType == ShardIteratorType.LATEST) ShardIteratorType.TRIM_HORIZON
+          else settings.shardIteratorType
+        known.values
+          .filter(shard => !active.contains(shard.getShardId) && !completed.contains(shard.getShardId))
+          .filter(shard => parents(shard).forall(parent => completed.contains(parent) || !known.contains(parent)))
+          .foreach(shard => start(shard.getShardId, iteratorType))
+      }
+
+      private def start(shardId: String, iteratorType: ShardIteratorType): Unit = {
+        log.debug("Starting to read shard {} of stream {}", shardId, settings.streamName)
+        val state = new ShardState(shardId, iteratorType)
+        active.put(shardId, state)
+        rotation.enqueue(state)
+        requestIterator(state)
+      }
+
+      private def requestIterator(state: ShardState): Unit = {
+        val request = new GetShardIteratorRequest()
+          .withStreamName(settings.streamName)
+          .withShardId(state.shardId)
+        state.lastSequenceNumber match {
+          case Some(sequenceNumber) =>
+            request
+              .withShardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER)
+              .withStartingSequenceNumber(sequenceNumber)
+          case None =>
+            request.withShardIteratorType(state.iteratorType)
+            if (state.iteratorType == ShardIteratorType.AT_TIMESTAMP) settings.atTimestamp.foreach(request.setTimestamp)
+        }
+        state.inFlight = true
+        kinesisClient.getShardIteratorAsync(request, handler(state, iteratorReceived))
+      }
+
+      private def handleIterator(state: ShardState, result: Try[GetShardIteratorResult]): Unit = {
+        state.inFlight = false
+        result match {
+          case Success(iterator) =>
+            state.iterator = iterator.getShardIterator
+            fetch(state)
+          case Failure(ex) =>
+            log.error(ex, "Failed to get a shard iterator for shard {}", state.shardId)
+            failStage(Errors.GetShardIteratorError)
+        }
+      }
+
+      private def fetch(state: ShardState): Unit =
+        if (!state.inFlight && !state.closed && state.iterator != null && bufferedBytes < settings.maxBufferedBytes &&
+            !isTimerActive(Poll(state.shardId))) {
+          val now = System.nanoTime()
+          if (now - state.nextRequestAt < 0) {
+            scheduleOnce(Poll(state.shardId), (state.nextRequestAt - now).nanos)
+          } else {
+            state.inFlight = true
+            state.nextRequestAt = now + MinRequestInterval.toNanos
+            kinesisClient.getRecordsAsync(
+              new GetRecordsRequest().withShardIterator(state.iterator).withLimit(settings.limit),
+              handler(state, recordsReceived)
+            )
+          }
+        }
+
+      private def handleRecords(state: ShardState, result: Try[GetRecordsResult]): Unit = {
+        state.inFlight = false
+        result match {
+          case Success(page) =>
+            val records = page.getRecords.asScala
+            records.foreach { record =>
+              state.buffer.enqueue(record)
+              bufferedBytes += record.getData.remaining()
+            }
+            records.lastOption.foreach(record => state.lastSequenceNumber = Some(record.getSequenceNumber))
+            Option(page.getNextShardIterator) match {
+              case Some(iterator) =>
+                state.iterator = iterator
+                if (records.isEmpty) scheduleOnce(Poll(state.shardId), settings.refreshInterval)
+              case None =>
+                log.info("Shard {} is closed and was read completely", state.shardId)
+                state.closed = true
+                // look for the children of the shard
+                if (!listing) listShards()
+            }
+            emit()
+            fetch(state)
+          case Failure(_: ExpiredIteratorException) =>
+            log.debug("The iterator of shard {} expired", state.shardId)
+            requestIterator(state)
+          case Failure(ex: ProvisionedThroughputExceededException) =>
+            log.warning("Reading shard {} was throttled: {}", state.shardId, ex.getMessage)
+            scheduleOnce(Poll(state.shardId), settings.refreshInterval)
+          case Failure(ex) =>
+            log.error(ex, "Failed to fetch records from Kinesis for shard {}", state.shardId)
+            failStage(Errors.GetRecordsError)
+        }
+        completeIfDrained(state)
+      }
+
+      private def emit(): Unit =
+        if (isAvailable(out)) {
+          var remaining = rotation.size
+          while (remaining > 0) {
+            val state = rotation.dequeue()
+            rotation.enqueue(state)
+            if (state.buffer.nonEmpty) {
+              val record = state.buffer.dequeue()
+              bufferedBytes -= record.getData.remaining()
+              push(out, record)
+              completeIfDrained(state)
+              // the buffer has room again
+              active.values.foreach(fetch)
+              remaining = 0
+            } else remaining -= 1
+          }
+        }
+
+      private def completeIfDrained(state: ShardState): Unit =
+        if (state.closed && state.buffer.isEmpty && active.contains(state.shardId)) {
+          active.remove(state.shardId)
+          rotation.dequeueFirst(_ eq state)
+          completed += state.shardId
+          startReadyShards()
+          completeIfDone()
+        }
+
+      private def completeIfDone(): Unit =
+        if (active.isEmpty && !listing) {
+          log.info("All shards of stream {} were read completely", settings.streamName)
+          completeStage()
+        }
+
+      private def handler[I <: com.amazonaws.AmazonWebServiceRequest, O](
+          state: ShardState,
+          callback: AsyncCallback[(ShardState, Try[O])]
+      ): AsyncHandler[I, O] =
+        new AsyncHandler[I, O] {
+          override def onError(exception: Exception): Unit = callback.invoke((state, Failure(exception)))
+          override def onSuccess(request: I, result: O): Unit = callback.invoke((state, Success(result)))
+        }
+
+      setHandler(out, this)
+    }
+}
+
+private[kinesis] object KinesisAllShardsSourceStage {
+
+  private case object Discover
+  private final case class Poll(shardId: String)
+
+  /** A shard serves up to 5 `GetRecords` requests per second. */
+  private val MinRequestInterval = 200.millis
+
+  private def hasEnded(shard: Shard): Boolean =
+    shard.getSequenceNumberRange.getEndingSequenceNumber != null
+
+  private def parents(shard: Shard): List[String] =
+    Option(shard.getParentShardId).toList ++ Option(shard.getAdjacentParentShardId).toList
+}
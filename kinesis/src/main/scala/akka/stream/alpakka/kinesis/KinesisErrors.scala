@@ -14,9 +14,11 @@ object KinesisErrors {
   case object NoShardsError extends KinesisSourceError
   case object GetShardIteratorError extends KinesisSourceError
   case object GetRecordsError extends KinesisSourceError
+  case object ListShardsError extends KinesisSourceError
 
   sealed trait KinesisFlowErrors extends NoStackTrace
   case class FailurePublishingRecords(e: Exception) extends RuntimeException(e) with KinesisFlowErrors
+  case class FailureListingShards(e: Exception) extends RuntimeException(e) with KinesisFlowErrors
   case class ErrorPublishingRecords[T](attempts: Int, recordsWithContext: Seq[(PutRecordsResultEntry, T)])
       extends RuntimeException(s"Unable to publish records after $attempts attempts")
       with KinesisFlowErrors {
@@ -46,9 +46,10 @@ case class KinesisFlowSettings(parallelism: Int,
 }
 
 object KinesisFlowSettings {
-  private val MAX_RECORDS_PER_REQUEST = 500
-  private val MAX_RECORDS_PER_SHARD_PER_SECOND = 1000
-  private val MAX_BYTES_PER_SHARD_PER_SECOND = 1000000
+  private[kinesis] val MAX_RECORDS_PER_REQUEST = 500
+  private[kinesis] val MAX_BYTES_PER_REQUEST = 5 * 1024 * 1024
+  private[kinesis] val MAX_RECORDS_PER_SHARD_PER_SECOND = 1000
+  private[kinesis] val MAX_BYTES_PER_SHARD_PER_SECOND = 1000000
 
   sealed trait RetryBackoffStrategy
   case object Exponential extends RetryBackoffStrategy
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import akka.dispatch.ExecutionContexts.sameThreadExecutionContext
+import akka.stream.alpakka.kinesis.KinesisErrors.{
+  ErrorPublishingRecords,
+  FailureListingShards,
+  FailurePublishingRecords
+}
+import akka.stream.alpakka.kinesis.KinesisFlowSettings._
+import akka.stream.alpakka.kinesis.KinesisShardBatchingStage._
+import akka.stream.stage._
+import akka.stream.{Attributes, FlowShape, Inlet, Outlet}
+import com.amazonaws.handlers.AsyncHandler
+import com.amazonaws.services.kinesis.AmazonKinesisAsync
+import com.amazonaws.services.kinesis.model._
+
+import scala.collection.JavaConverters._
+import scala.collection.{immutable, mutable}
+import scala.concurrent.duration._
+import scala.concurrent.{Future, Promise}
+import scala.util.{Failure, Success, Try}
+
+/**
+ * Routes records to the shards of the stream and publishes them with `PutRecords` requests.
+ *
+ * Every shard has its own token buckets for the records and bytes it accepts per second, so a hot partition key
+ * only slows down the records of its own shard. Requests take records from the shards in turn, up to `maxBatchSize`
+ * records and 5 MB per request.
+ *
+ * Per shard the records keep their order: the records of a shard are in at most one request at a time, and failed
+ * records go back to the front of their shard's queue, which waits for the retry backoff. Only the shards with
+ * records waiting for a retry are held back, the other shards continue meanwhile.
+ *
+ * The stage buffers up to one second of throughput per shard, over all shards together. The shard of a record is
+ * only known once it was pulled, so the stage can't pick records of shards which are not held back. A hot shard, or
+ * one waiting for a retry, can fill the whole buffer, which then backpressures the records of all shards.
+ *
+ * The shards are listed when the stage starts. Resharding while the stage runs does not affect which shard Kinesis
+ * writes a record to, only how precisely the stage paces the records.
+ */
+private[kinesis] final class KinesisShardBatchingStage[T](
+    streamName: String,
+    maxBatchSize: Int,
+    maxRetries: Int,
+    backoffStrategy: RetryBackoffStrategy,
+    retryInitialTimeout: FiniteDuration
+)(implicit kinesisClient: AmazonKinesisAsync)
+    extends GraphStage[FlowShape[(PutRecordsRequestEntry, T), Future[immutable.Seq[(PutRecordsResultEntry, T)]]]] {
+
+  private val in = Inlet[(PutRecordsRequestEntry, T)]("KinesisShardBatchingStage.in")
+  private val out = Outlet[Future[immutable.Seq[(PutRecordsResultEntry, T)]]]("KinesisShardBatchingStage.out")
+  override val shape = FlowShape(in, out)
+
+  override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
+    new TimerGraphStageLogic(shape) with StageLogging with InHandler with OutHandler {
+
+      private var shardMap: KinesisShardMap = _
+      private var shards: Array[ShardBuffer[T]] = Array.empty
+      private var nextShard = 0
+      private var buffered = 0
+      private var maxBuffered = 0
+      private var inFlight = 0
+
+      private val published = getAsyncCallback[Published[T]](handlePublished)
+
+      override def preStart(): Unit = {
+        val shardsListed = getAsyncCallback[Try[Seq[Shard]]] {
+          case Success(listed) =>
+            shardMap = KinesisShardMap(listed)
+            shards = Array.fill(shardMap.shardCount)(new ShardBuffer[T](System.nanoTime()))
+            maxBuffered = shardMap.shardCount * MaxBufferedRecordsPerShard
+            log.debug("Batching records for {} shards of stream {}", shardMap.shardCount, streamName)
+            pullIfPossible()
+          case Failure(ex: Exception) => failStage(FailureListingShards(ex))
+          case Failure(ex) => failStage(ex)
+        }
+        KinesisShardMap.listShards(streamName).onComplete(shardsListed.invoke)(sameThreadExecutionContext)
+      }
+
+      private def pullIfPossible(): Unit =
+        if (shardMap != null && buffered < maxBuffered && !hasBeenPulled(in) && !isClosed(in)) pull(in)
+
+      private def completeIfDone(): Unit =
+        if (buffered == 0 && inFlight == 0 && isClosed(in)) completeStage()
+
+      override def onPush(): Unit = {
+        val (entry, context) = grab(in)
+        val shard = shards(shardMap.shardIndex(entry))
+        shard.records.enqueue(new Pending(entry, context, attempt = 1))
+        buffered += 1
+        if (isAvailable(out)) emitBatch()
+        pullIfPossible()
+      }
+
+      override def onUpstreamFinish(): Unit = completeIfDone()
+
+      override def onPull(): Unit =
+        if (buffered > 0) emitBatch()
+
+      override protected def onTimer(timerKey: Any): Unit =
+        if (isAvailable(out)) emitBatch()
+
+      private def emitBatch(): Unit = {
+        val now = System.nanoTime()
+        val batch = Vector.newBuilder[Pending[T]]
+        val batchShards = Vector.newBuilder[ShardBuffer[T]]
+        var count = 0
+        var bytes = 0L
+        var visited = 0
+        while (visited < shards.length && count < maxBatchSize) {
+          val shard = shards((nextShard + visited) % shards.length)
+          if (shard.records.nonEmpty && !shard.inFlight && shard.retryAt - now <= 0) {
+            shard.refill(now)
+            var taking = true
+            while (taking && shard.records.nonEmpty && count < maxBatchSize) {
+              val size = recordSize(shard.records.head.entry)
+              if (bytes + size <= MAX_BYTES_PER_REQUEST && shard.tryAcquire(size)) {
+                batch += shard.records.dequeue()
+                count += 1
+                bytes += size
+                if (!shard.inFlight) {
+                  shard.inFlight = true
+                  batchShards += shard
+                }
+              } else taking = false
+            }
+          }
+          visited += 1
+        }
+        // start with the next shard next time, so no shard gets the whole request size
+        if (shards.nonEmpty) nextShard = (nextShard + 1) % shards.length
+
+        if (count > 0) {
+          buffered -= count
+          inFlight += 1
+          push(out, publish(batch.result(), batchShards.result()))
+          pullIfPossible()
+        } else {
+          // shards with a request in flight continue once it completes
+          val waiting = shards.iterator.filter(shard => shard.records.nonEmpty && !shard.inFlight)
+          if (waiting.hasNext) {
+            val waitNanos = waiting.map { shard =>
+              math.max(shard.nanosUntilAvailable(recordSize(shard.records.head.entry)), shard.retryAt - now)
+            }.min
+            scheduleOnce(Refill, math.max(waitNanos, MinRefillWait.toNanos).nanos)
+          }
+        }
+      }
+
+      private def publish(batch: Vector[Pending[T]],
+                          batchShards: Vector[ShardBuffer[T]]): Future[immutable.Seq[(PutRecordsResultEntry, T)]] = {
+        log.debug("Executing PutRecords call with {} records", batch.size)
+        val promise = Promise[immutable.Seq[(PutRecordsResultEntry, T)]]
+        kinesisClient.putRecordsAsync(
+          new PutRecordsRequest().withStreamName(streamName).withRecords(batch.map(_.entry).asJavaCollection),
+          new AsyncHandler[PutRecordsRequest, PutRecordsResult] {
+            override def onError(exception: Exception): Unit = {
+              // releases the shards of the batch, the failed future fails the stream downstream
+              published.invoke(Published(batchShards, Vector.empty))
+              promise.failure(FailurePublishingRecords(exception))
+            }
+
+            override def onSuccess(request: PutRecordsRequest, result: PutRecordsResult): Unit = {
+              val results = result.getRecords.asScala.toVector.zip(batch)
+              published.invoke(Published(batchShards, results.filter(_._1.getErrorCode != null)))
+              promise.success(results.collect {
+                case (res, record) if res.getErrorCode == null => (res, record.context)
+              })
+            }
+          }
+        )
+        promise.future
+      }
+
+      private def handlePublished(result: Published[T]): Unit = {
+        inFlight -= 1
+        result.batchShards.foreach(_.inFlight = false)
+        val exhausted = result.failed.filter(_._2.attempt > maxRetries)
+        if (exhausted.nonEmpty) {
+          log.debug("PutRecords call finished with partial errors after {} attempts", exhausted.head._2.attempt)
+          failStage(ErrorPublishingRecords(exhausted.head._2.attempt, exhausted.map {
+            case (res, record) => (res, record.context)
+          }))
+        } else {
+          if (result.failed.nonEmpty) log.debug("PutRecords call finished with partial errors; scheduling retry")
+          val now = System.nanoTime()
+          // prepending in reverse keeps the failed records in their order, ahead of the later records of their shard
+          result.failed.reverseIterator.foreach {
+            case (_, record) =>
+              val shard = shards(shardMap.shardIndex(record.entry))
+              new Pending(record.entry, record.context, record.attempt + 1) +=: shard.records
+              shard.retryAt = now + backoff(record.attempt).toNanos
+              buffered += 1
+          }
+          if (isAvailable(out)) emitBatch()
+          pullIfPossible()
+          completeIfDone()
+        }
+      }
+
+      private def backoff(attempt: Int): FiniteDuration = backoffStrategy match {
+        case Exponential => retryInitialTimeout * scala.math.pow(2, attempt - 1).toInt
+        case Linear => retryInitialTimeout * attempt
+      }
+
+      setHandlers(in, out, this)
+    }
+}
+
+private[kinesis] object KinesisShardBatchingStage {
+
+  private case object Refill
+
+  private val MinRefillWait = 1.milli
+
+  /** One second of throughput; the stage backpressures when it buffers as many records per shard on average. */
+  private val MaxBufferedRecordsPerShard = MAX_RECORDS_PER_SHARD_PER_SECOND
+
+  private def recordSize(entry: PutRecordsRequestEntry): Int =
+    entry.getPartitionKey.length + entry.getData.remaining()
+
+  private final class Pending[T](val entry: PutRecordsRequestEntry, val context: T, val attempt: Int)
+
+  private final case class Published[T](batchShards: Vector[ShardBuffer[T]],
+                                        failed: Vector[(PutRecordsResultEntry, Pending[T])])
+
+  private final class ShardBuffer[T](private var refilledAt: Long) {
+    val records: mutable.Queue[Pending[T]] = mutable.Queue.empty
+    // set while a request holds records of the shard
+    var inFlight = false
+    // the records wait for their retry until then
+    var retryAt: Long = refilledAt
+    private var recordTokens: Double = MAX_RECORDS_PER_SHARD_PER_SECOND
+    private var byteTokens: Double = MAX_BYTES_PER_SHARD_PER_SECOND
+
+    def refill(now: Long): Unit = {
+      val elapsedSeconds = (now - refilledAt) / 1e9
+      recordTokens =
+        math.min(MAX_RECORDS_PER_SHARD_PER_SECOND, recordTokens + elapsedSeconds * MAX_RECORDS_PER_SHARD_PER_SECOND)
+      byteTokens =
+        math.min(MAX_BYTES_PER_SHARD_PER_SECOND, byteTokens + elapsedSeconds * MAX_BYTES_PER_SHARD_PER_SECOND)
+      refilledAt = now
+    }
+
+    // records larger than the bucket only need a full bucket
+    private def requiredBytes(size: Int): Double = math.min(size, MAX_BYTES_PER_SHARD_PER_SECOND).toDouble
+
+    def tryAcquire(size: Int): Boolean =
+      if (recordTokens >= 1 && byteTokens >= requiredBytes(size)) {
+        recordTokens -= 1
+        byteTokens -= requiredBytes(size)
+        true
+      } else false
+
+    def nanosUntilAvailable(size: Int): Long = {
+      val recordsMissing = math.max(0.0, 1 - recordTokens) / MAX_RECORDS_PER_SHARD_PER_SECOND
+      val bytesMissing = math.max(0.0, requiredBytes(size) - byteTokens) / MAX_BYTES_PER_SHARD_PER_SECOND
+      (math.max(recordsMissing, bytesMissing) * 1e9).toLong
+    }
+  }
+}
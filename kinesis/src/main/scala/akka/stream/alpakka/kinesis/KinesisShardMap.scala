@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+
+import com.amazonaws.handlers.AsyncHandler
+import com.amazonaws.services.kinesis.AmazonKinesisAsync
+import com.amazonaws.services.kinesis.model.{ListShardsRequest, ListShardsResult, PutRecordsRequestEntry, Shard}
+
+import scala.collection.JavaConverters._
+import scala.concurrent.{Future, Promise}
+
+/**
+ * Maps records to the open shard of a stream whose hash key range contains the record's hash key, in the same way
+ * Kinesis does: the explicit hash key if given, the MD5 hash of the partition key otherwise.
+ *
+ * Not thread-safe, as it reuses the message digest.
+ */
+private[kinesis] final class KinesisShardMap private (shardIds: Array[String], startingHashKeys: Array[BigInt]) {
+
+  private val md5 = MessageDigest.getInstance("MD5")
+
+  def shardCount: Int = shardIds.length
+
+  def hashKey(entry: PutRecordsRequestEntry): BigInt =
+    Option(entry.getExplicitHashKey) match {
+      case Some(explicit) => BigInt(explicit)
+      case None => BigInt(1, md5.digest(entry.getPartitionKey.getBytes(StandardCharsets.UTF_8)))
+    }
+
+  def shardIndex(entry: PutRecordsRequestEntry): Int = {
+    val key = hashKey(entry)
+    // the last shard starting at or below the hash key
+    var low = 0
+    var high = startingHashKeys.length - 1
+    while (low < high) {
+      val mid = (low + high + 1) >>> 1
+      if (startingHashKeys(mid) <= key) low = mid else high = mid - 1
+    }
+    low
+  }
+
+  def shardId(index: Int): String = shardIds(index)
+}
+
+private[kinesis] object KinesisShardMap {
+
+  /**
+   * Builds the map of the open shards, ie. those without an ending sequence number.
+   */
+  def apply(shards: Seq[Shard]): KinesisShardMap = {
+    val open = shards
+      .filter(_.getSequenceNumberRange.getEndingSequenceNumber == null)
+      .map(shard => (shard.getShardId, BigInt(shard.getHashKeyRange.getStartingHashKey)))
+      .sortBy(_._2)
+    require(open.nonEmpty, "The stream has no open shards")
+    new KinesisShardMap(open.map(_._1).toArray, open.map(_._2).toArray)
+  }
+
+  /**
+   * Lists all shards of the stream, following the `ListShards` pages.
+   */
+  def listShards(streamName: String)(implicit kinesisClient: AmazonKinesisAsync): Future[Seq[Shard]] = {
+    val promise = Promise[Seq[Shard]]()
+    def listPage(nextToken: Option[String], listed: Vector[Shard]): Unit =
+      kinesisClient.listShardsAsync(
+        nextToken.fold(new ListShardsRequest().withStreamName(streamName))(new ListShardsRequest().withNextToken(_)),
+        new AsyncHandler[ListShardsRequest, ListShardsResult] {
+          override def onError(exception: Exception): Unit = promise.failure(exception)
+
+          override def onSuccess(request: ListShardsRequest, result: ListShardsResult): Unit = {
+            val shards = listed ++ result.getShards.asScala
+            Option(result.getNextToken) match {
+              case Some(token) => listPage(Some(token), shards)
+              case None => promise.success(shards)
+            }
+          }
+        }
+      )
+    listPage(None, Vector.empty)
+    promise.future
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import java.nio.ByteBuffer
+import java.util.Optional
+
+import com.amazonaws.services.kinesis.model.Record
+
+import scala.compat.java8.OptionConverters._
+
+/**
+ * A record as it was put to Kinesis: either a Kinesis record itself, or one of the user records that were aggregated
+ * into a Kinesis record in the format of the Kinesis Producer Library.
+ *
+ * The user records of an aggregated record share its sequence number and are told apart by their sub-sequence number.
+ */
+final class UserRecord private[kinesis] (record: Record,
+                                         val subSequenceNumber: Long,
+                                         val explicitHashKey: Option[String],
+                                         val aggregated: Boolean,
+                                         partitionKey: String,
+                                         data: ByteBuffer)
+    extends Record {
+  setSequenceNumber(record.getSequenceNumber)
+  setApproximateArrivalTimestamp(record.getApproximateArrivalTimestamp)
+  setEncryptionType(record.getEncryptionType)
+  setPartitionKey(partitionKey)
+  setData(data)
+
+  /** Java API */
+  def getSubSequenceNumber: Long = subSequenceNumber
+
+  /** Java API */
+  def getExplicitHashKey: Optional[String] = explicitHashKey.asJava
+
+  /** Java API */
+  def isAggregated: Boolean = aggregated
+
+  override def equals(other: Any): Boolean = other match {
+    case that: UserRecord =>
+      super.equals(that) &&
+      subSequenceNumber == that.subSequenceNumber &&
+      explicitHashKey == that.explicitHashKey &&
+      aggregated == that.aggregated
+    case _ => false
+  }
+
+  override def hashCode(): Int = 31 * super.hashCode() + java.lang.Long.hashCode(subSequenceNumber)
+
+  override def toString: String =
+    s"UserRecord(sequenceNumber=$getSequenceNumber,subSequenceNumber=$subSequenceNumber,partitionKey=$getPartitionKey,explicitHashKey=$explicitHashKey,aggregated=$aggregated)"
+}
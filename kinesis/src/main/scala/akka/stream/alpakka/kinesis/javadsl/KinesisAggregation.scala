@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis.javadsl
+
+import akka.NotUsed
+import akka.japi.Pair
+import akka.stream.alpakka.kinesis.{scaladsl, KinesisAggregationSettings, UserRecord}
+import akka.stream.javadsl.Flow
+import com.amazonaws.services.kinesis.AmazonKinesisAsync
+import com.amazonaws.services.kinesis.model.{PutRecordsRequestEntry, Record}
+
+import scala.collection.JavaConverters._
+
+object KinesisAggregation {
+
+  def aggregate(streamName: String,
+                settings: KinesisAggregationSettings,
+                kinesisClient: AmazonKinesisAsync): Flow[PutRecordsRequestEntry, PutRecordsRequestEntry, NotUsed] =
+    scaladsl.KinesisAggregation.aggregate(streamName, settings)(kinesisClient).asJava
+
+  def aggregateWithUserContext[T](
+      streamName: String,
+      settings: KinesisAggregationSettings,
+      kinesisClient: AmazonKinesisAsync
+  ): Flow[Pair[PutRecordsRequestEntry, T], Pair[PutRecordsRequestEntry, java.util.List[T]], NotUsed] =
+    akka.stream.scaladsl
+      .Flow[Pair[PutRecordsRequestEntry, T]]
+      .map(_.toScala)
+      .via(scaladsl.KinesisAggregation.aggregateWithUserContext[T](streamName, settings)(kinesisClient))
+      .map({ case (entry, contexts) => Pair.create(entry, contexts.asJava) })
+      .asJava
+
+  def deaggregate(): Flow[Record, UserRecord, NotUsed] =
+    scaladsl.KinesisAggregation.deaggregate.asJava
+}
@@ -39,4 +39,21 @@ object KinesisFlow {
       .via(scaladsl.KinesisFlow.withUserContext[T](streamName, settings)(kinesisClient))
       .map({ case (res, ctx) => Pair.create(res, ctx) })
       .asJava
+
+  def shardAware(streamName: String,
+                 settings: KinesisFlowSettings,
+                 kinesisClient: AmazonKinesisAsync): Flow[PutRecordsRequestEntry, PutRecordsResultEntry, NotUsed] =
+    scaladsl.KinesisFlow.shardAware(streamName, settings)(kinesisClient).asJava
+
+  def shardAwareWithUserContext[T](
+      streamName: String,
+      settings: KinesisFlowSettings,
+      kinesisClient: AmazonKinesisAsync
+  ): Flow[Pair[PutRecordsRequestEntry, T], Pair[PutRecordsResultEntry, T], NotUsed] =
+    akka.stream.scaladsl
+      .Flow[Pair[PutRecordsRequestEntry, T]]
+      .map(_.toScala)
+      .via(scaladsl.KinesisFlow.shardAwareWithUserContext[T](streamName, settings)(kinesisClient))
+      .map({ case (res, ctx) => Pair.create(res, ctx) })
+      .asJava
 }
@@ -5,7 +5,7 @@
 package akka.stream.alpakka.kinesis.javadsl
 
 import akka.NotUsed
-import akka.stream.alpakka.kinesis.{scaladsl, ShardSettings}
+import akka.stream.alpakka.kinesis.{scaladsl, AllShardsSettings, ShardSettings, UserRecord}
 import akka.stream.javadsl.Source
 import com.amazonaws.services.kinesis.AmazonKinesisAsync
 import com.amazonaws.services.kinesis.model.Record
@@ -17,8 +17,15 @@ object KinesisSource {
   def basic(shardSettings: ShardSettings, amazonKinesisAsync: AmazonKinesisAsync): Source[Record, NotUsed] =
     scaladsl.KinesisSource.basic(shardSettings, amazonKinesisAsync).asJava
 
+  def basicDeaggregated(shardSettings: ShardSettings,
+                        amazonKinesisAsync: AmazonKinesisAsync): Source[UserRecord, NotUsed] =
+    scaladsl.KinesisSource.basicDeaggregated(shardSettings, amazonKinesisAsync).asJava
+
   def basicMerge(shardSettings: java.util.List[ShardSettings],
                  amazonKinesisAsync: AmazonKinesisAsync): Source[Record, NotUsed] =
     scaladsl.KinesisSource.basicMerge(shardSettings.asScala.toList, amazonKinesisAsync).asJava
 
+  def allShards(settings: AllShardsSettings, amazonKinesisAsync: AmazonKinesisAsync): Source[Record, NotUsed] =
+    scaladsl.KinesisSource.allShards(settings, amazonKinesisAsync).asJava
+
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis.scaladsl
+
+import akka.NotUsed
+import akka.stream.alpakka.kinesis.{
+  KinesisAggregatedRecord,
+  KinesisAggregationSettings,
+  KinesisAggregationStage,
+  UserRecord
+}
+import akka.stream.scaladsl.Flow
+import akka.util.ByteString
+import com.amazonaws.services.kinesis.AmazonKinesisAsync
+import com.amazonaws.services.kinesis.model.{PutRecordsRequestEntry, Record}
+
+import scala.collection.immutable
+
+/**
+ * Aggregates many small records into Kinesis records in the format of the Kinesis Producer Library (KPL), and
+ * de-aggregates them again. Aggregated records are read by the Kinesis Client Library and the KPL as well.
+ */
+object KinesisAggregation {
+
+  /**
+   * Aggregates the records of every shard of the stream into single Kinesis records, to be put with [[KinesisFlow]].
+   */
+  def aggregate(streamName: String,
+                settings: KinesisAggregationSettings = KinesisAggregationSettings.defaultInstance)(
+      implicit kinesisClient: AmazonKinesisAsync
+  ): Flow[PutRecordsRequestEntry, PutRecordsRequestEntry, NotUsed] =
+    Flow[PutRecordsRequestEntry]
+      .map((_, ()))
+      .via(aggregateWithUserContext(streamName, settings))
+      .map(_._1)
+
+  /**
+   * Aggregates the records of every shard of the stream into single Kinesis records, and emits the user contexts of
+   * the records with every aggregated record. Use [[KinesisFlow.withUserContext]] to learn which records were put.
+   */
+  def aggregateWithUserContext[T](streamName: String,
+                                  settings: KinesisAggregationSettings = KinesisAggregationSettings.defaultInstance)(
+      implicit kinesisClient: AmazonKinesisAsync
+  ): Flow[(PutRecordsRequestEntry, T), (PutRecordsRequestEntry, immutable.Seq[T]), NotUsed] =
+    Flow.fromGraph(new KinesisAggregationStage[T](streamName, settings))
+
+  /**
+   * Emits the user records of aggregated Kinesis records with their sub-sequence numbers. Other records are
+   * emitted as a single user record.
+   */
+  def deaggregate: Flow[Record, UserRecord, NotUsed] =
+    Flow[Record].mapConcat { record =>
+      KinesisAggregatedRecord.decode(ByteString(record.getData.duplicate())) match {
+        case Some(subRecords) =>
+          subRecords.zipWithIndex.map {
+            case (subRecord, index) =>
+              new UserRecord(record,
+                             index.toLong,
+                             subRecord.explicitHashKey,
+                             aggregated = true,
+                             subRecord.partitionKey,
+                             subRecord.data.asByteBuffer)
+          }
+        case None =>
+          List(new UserRecord(record, 0L, None, aggregated = false, record.getPartitionKey, record.getData))
+      }
+    }
+}
@@ -8,7 +8,7 @@ import java.nio.ByteBuffer
 
 import akka.NotUsed
 import akka.stream.ThrottleMode
-import akka.stream.alpakka.kinesis.{KinesisFlowSettings, KinesisFlowStage}
+import akka.stream.alpakka.kinesis.{KinesisFlowSettings, KinesisFlowStage, KinesisShardBatchingStage}
 import akka.stream.scaladsl.Flow
 import akka.util.ByteString
 import com.amazonaws.services.kinesis.AmazonKinesisAsync
@@ -51,6 +51,52 @@ object KinesisFlow {
       .mapAsync(settings.parallelism)(identity)
       .mapConcat(_.to[immutable.Iterable])
 
+  /**
+   * Publishes records like [[KinesisFlow.apply]], but paces and batches them per shard.
+   *
+   * @see [[KinesisFlow.shardAwareWithUserContext]]
+   */
+  def shardAware(streamName: String, settings: KinesisFlowSettings = KinesisFlowSettings.defaultInstance)(
+      implicit kinesisClient: AmazonKinesisAsync
+  ): Flow[PutRecordsRequestEntry, PutRecordsResultEntry, NotUsed] =
+    Flow[PutRecordsRequestEntry]
+      .map((_, ()))
+      .via(shardAwareWithUserContext(streamName, settings))
+      .map(_._1)
+
+  /**
+   * Publishes records like [[KinesisFlow.withUserContext]], but paces and batches them per shard.
+   *
+   * The shards of the stream are listed when the flow is materialized, and every record is routed to its shard by
+   * the MD5 hash of its partition key (or its explicit hash key). Every shard is limited to its own 1000 records and
+   * 1 MB per second, so a hot partition key only slows down the records of its shard. `PutRecords` requests hold up to
+   * `maxBatchSize` records and 5 MB.
+   *
+   * Per shard the records keep their order, as the records of a shard are in one request at a time. Failed records
+   * hold back only the later records of their shard until they were retried, requests for the other shards continue.
+   *
+   * The flow buffers up to one second of throughput per shard, over all shards together. When a hot shard, or one
+   * waiting for a retry, fills the buffer, the flow backpressures the records of all shards.
+   *
+   * The global `maxRecordsPerSecond` and `maxBytesPerSecond` settings are not applied.
+   */
+  def shardAwareWithUserContext[T](streamName: String,
+                                   settings: KinesisFlowSettings = KinesisFlowSettings.defaultInstance)(
+      implicit kinesisClient: AmazonKinesisAsync
+  ): Flow[(PutRecordsRequestEntry, T), (PutRecordsResultEntry, T), NotUsed] =
+    Flow[(PutRecordsRequestEntry, T)]
+      .via(
+        new KinesisShardBatchingStage[T](
+          streamName,
+          settings.maxBatchSize,
+          settings.maxRetries,
+          settings.backoffStrategy,
+          settings.retryInitialTimeout
+        )
+      )
+      .mapAsync(settings.parallelism)(identity)
+      .mapConcat(_.to[immutable.Iterable])
+
   private def getPayloadByteSize[T](record: (PutRecordsRequestEntry, T)): Int = record match {
     case (request, _) => request.getPartitionKey.length + request.getData.position()
   }
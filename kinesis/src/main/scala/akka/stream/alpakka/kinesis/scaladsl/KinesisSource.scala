@@ -6,7 +6,13 @@ package akka.stream.alpakka.kinesis.scaladsl
 
 import akka.NotUsed
 import akka.stream.alpakka.kinesis.KinesisErrors.NoShardsError
-import akka.stream.alpakka.kinesis.{KinesisSourceStage, ShardSettings}
+import akka.stream.alpakka.kinesis.{
+  AllShardsSettings,
+  KinesisAllShardsSourceStage,
+  KinesisSourceStage,
+  ShardSettings,
+  UserRecord
+}
 import akka.stream.scaladsl.{Merge, Source}
 import com.amazonaws.services.kinesis.AmazonKinesisAsync
 import com.amazonaws.services.kinesis.model.Record
@@ -16,6 +22,14 @@ object KinesisSource {
   def basic(shardSettings: ShardSettings, amazonKinesisAsync: AmazonKinesisAsync): Source[Record, NotUsed] =
     Source.fromGraph(new KinesisSourceStage(shardSettings, amazonKinesisAsync))
 
+  /**
+   * Reads a shard like [[KinesisSource.basic]], and de-aggregates records in the format of the Kinesis Producer
+   * Library into their user records.
+   */
+  def basicDeaggregated(shardSettings: ShardSettings,
+                        amazonKinesisAsync: AmazonKinesisAsync): Source[UserRecord, NotUsed] =
+    basic(shardSettings, amazonKinesisAsync).via(KinesisAggregation.deaggregate)
+
   def basicMerge(shardSettings: List[ShardSettings],
                  amazonKinesisAsync: AmazonKinesisAsync): Source[Record, NotUsed] = {
     val create: ShardSettings => Source[Record, NotUsed] = basic(_, amazonKinesisAsync)
@@ -28,4 +42,12 @@ object KinesisSource {
     }
   }
 
+  /**
+   * Reads all shards of a stream. The shards are listed periodically, and child shards are read once their parent
+   * shards were read completely, so the records of a partition key keep their order across resharding. The next
+   * records of every shard are fetched ahead of the demand, within `maxBufferedBytes`.
+   */
+  def allShards(settings: AllShardsSettings, amazonKinesisAsync: AmazonKinesisAsync): Source[Record, NotUsed] =
+    Source.fromGraph(new KinesisAllShardsSourceStage(settings)(amazonKinesisAsync))
+
 }
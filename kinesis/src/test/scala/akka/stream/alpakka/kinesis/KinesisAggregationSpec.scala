@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import java.security.MessageDigest
+import java.util.concurrent.CompletableFuture
+
+import akka.stream.alpakka.kinesis.KinesisAggregatedRecord.SubRecord
+import akka.stream.alpakka.kinesis.scaladsl.KinesisAggregation
+import akka.stream.scaladsl.{Keep, Sink, Source}
+import akka.stream.testkit.scaladsl.{TestSink, TestSource}
+import akka.util.ByteString
+import com.amazonaws.handlers.AsyncHandler
+import com.amazonaws.services.kinesis.model.{ListShardsRequest, ListShardsResult, PutRecordsRequestEntry, Record}
+import org.mockito.ArgumentMatchers.any
+import org.mockito.Mockito.when
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.{Matchers, WordSpecLike}
+
+import scala.collection.JavaConverters._
+import scala.concurrent.duration._
+
+class KinesisAggregationSpec extends WordSpecLike with Matchers with ScalaFutures with DefaultTestContext {
+
+  private def entry(partitionKey: String, data: String) =
+    new PutRecordsRequestEntry().withPartitionKey(partitionKey).withData(ByteString(data).asByteBuffer)
+
+  private def md5(bytes: Array[Byte]) = MessageDigest.getInstance("MD5").digest(bytes)
+
+  private def dataOf(entry: PutRecordsRequestEntry) = ByteString(entry.getData.duplicate())
+
+  "KinesisAggregatedRecord" must {
+    "encode in the format of the Kinesis Producer Library" in {
+      val builder = new KinesisAggregatedRecord.Builder
+      builder.add(SubRecord("a", None, ByteString("x")))
+      val encoded = builder.result()
+
+      // partition_key_table "a", records { partition_key_index 0, data "x" }
+      val message = ByteString(0x0A, 0x01) ++ ByteString("a") ++ ByteString(0x1A, 0x05, 0x08, 0x00, 0x1A, 0x01) ++
+        ByteString("x")
+      encoded.take(4) shouldBe KinesisAggregatedRecord.Magic
+      encoded.slice(4, encoded.length - 16) shouldBe message
+      encoded.takeRight(16) shouldBe ByteString(md5(message.toArray))
+      encoded.length shouldBe builder.size
+    }
+
+    "decode the records it encoded" in {
+      val records = List(
+        SubRecord("a", None, ByteString("first")),
+        SubRecord("b", Some("12345"), ByteString("second")),
+        SubRecord("a", Some("12345"), ByteString.empty)
+      )
+      val builder = new KinesisAggregatedRecord.Builder
+      records.foreach { record =>
+        val expectedSize = builder.sizeWith(record)
+        builder.add(record)
+        builder.size shouldBe expectedSize
+      }
+      val encoded = builder.result()
+
+      encoded.length shouldBe builder.size
+      KinesisAggregatedRecord.decode(encoded) shouldBe Some(records)
+    }
+
+    "not decode records with a wrong digest" in {
+      val builder = new KinesisAggregatedRecord.Builder
+      builder.add(SubRecord("a", None, ByteString("x")))
+      val encoded = builder.result()
+
+      KinesisAggregatedRecord.decode(encoded.dropRight(1) ++ ByteString(0)) shouldBe None
+      KinesisAggregatedRecord.decode(ByteString("plain data")) shouldBe None
+    }
+  }
+
+  "KinesisAggregation" must {
+    "aggregate the records of every shard" in new WithShardsListed {
+      // "a" and "c" belong to the first shard, "b" to the second
+      val aggregated = Source(List(entry("a", "1") -> 1, entry("c", "2") -> 2, entry("b", "3") -> 3))
+        .via(KinesisAggregation.aggregateWithUserContext[Int]("stream-name"))
+        .runWith(Sink.seq)
+        .futureValue
+
+      aggregated should have size 2
+      val (first, firstContexts) = aggregated.find(_._2.size == 2).get
+      firstContexts shouldBe Seq(1, 2)
+      first.getPartitionKey shouldBe "a"
+      first.getExplicitHashKey shouldBe BigInt(1, md5("a".getBytes("UTF-8"))).toString
+      KinesisAggregatedRecord.decode(dataOf(first)).map(_.map(_.data.utf8String)) shouldBe Some(Seq("1", "2"))
+
+      // a single record stays unchanged
+      aggregated.find(_._2 == Seq(3)).get._1 shouldBe entry("b", "3")
+    }
+
+    "emit an aggregated record when the next record doesn't fit" in new WithShardsListed {
+      // every record with 20 bytes of data adds 26 bytes, on top of 20 bytes framing and 3 bytes partition key table
+      val settings = KinesisAggregationSettings.defaultInstance.withMaxAggregatedBytes(100)
+      val data = "x" * 20
+      val aggregated = Source(List(entry("a", data) -> 1, entry("a", data) -> 2, entry("a", data) -> 3))
+        .via(KinesisAggregation.aggregateWithUserContext[Int]("stream-name", settings))
+        .runWith(Sink.seq)
+        .futureValue
+
+      aggregated.map(_._2) shouldBe Seq(Seq(1, 2), Seq(3))
+      dataOf(aggregated.head._1).length should be <= 100
+    }
+
+    "emit an aggregated record after the maximum buffer time" in new WithShardsListed {
+      val settings = KinesisAggregationSettings.defaultInstance.withMaxBufferTime(100.millis)
+      val (sourceProbe, sinkProbe) = TestSource
+        .probe[(PutRecordsRequestEntry, Int)]
+        .via(KinesisAggregation.aggregateWithUserContext[Int]("stream-name", settings))
+        .toMat(TestSink.probe)(Keep.both)
+        .run()
+
+      sinkProbe.request(1)
+      sourceProbe.sendNext(entry("a", "1") -> 1)
+      sourceProbe.sendNext(entry("a", "2") -> 2)
+      sinkProbe.expectNext(1.second)._2 shouldBe Seq(1, 2)
+
+      sourceProbe.sendComplete()
+      sinkProbe.expectComplete()
+    }
+
+    "de-aggregate records into user records" in new WithShardsListed {
+      val aggregated = Source(List(entry("a", "1"), entry("c", "2")))
+        .via(KinesisAggregation.aggregate("stream-name"))
+        .runWith(Sink.head)
+        .futureValue
+      val records = List(
+        new Record().withSequenceNumber("1").withPartitionKey("a").withData(aggregated.getData),
+        new Record().withSequenceNumber("2").withPartitionKey("b").withData(ByteString("3").asByteBuffer)
+      )
+
+      val userRecords = Source(records).via(KinesisAggregation.deaggregate).runWith(Sink.seq).futureValue
+
+      userRecords.map(r => (r.getSequenceNumber, r.subSequenceNumber, r.getPartitionKey, r.aggregated)) shouldBe Seq(
+        ("1", 0L, "a", true),
+        ("1", 1L, "c", true),
+        ("2", 0L, "b", false)
+      )
+      userRecords.map(r => ByteString(r.getData).utf8String) shouldBe Seq("1", "2", "3")
+    }
+  }
+
+  trait WithShardsListed {
+    when(amazonKinesisAsync.listShardsAsync(any(), any())).thenAnswer(new Answer[AnyRef] {
+      override def answer(invocation: InvocationOnMock) = {
+        val request = invocation.getArgument[ListShardsRequest](0)
+        val result = new ListShardsResult().withShards(KinesisShardMapSpec.evenlySplitShards(2).asJava)
+        invocation
+          .getArgument[AsyncHandler[ListShardsRequest, ListShardsResult]](1)
+          .onSuccess(request, result)
+        CompletableFuture.completedFuture(result)
+      }
+    })
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.stream.alpakka.kinesis.scaladsl.KinesisSource
+import akka.stream.testkit.scaladsl.TestSink
+import akka.util.ByteString
+import com.amazonaws.handlers.AsyncHandler
+import com.amazonaws.services.kinesis.model._
+import org.mockito.ArgumentMatchers.any
+import org.mockito.Mockito.when
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import org.scalatest.{Matchers, WordSpecLike}
+
+import scala.collection.JavaConverters._
+import scala.concurrent.duration._
+
+class KinesisAllShardsSourceSpec extends WordSpecLike with Matchers with DefaultTestContext {
+
+  private val settings = AllShardsSettings("stream-name")
+    .withShardIteratorType(ShardIteratorType.TRIM_HORIZON)
+    .withRefreshInterval(50, MILLISECONDS)
+
+  "KinesisSource.allShards" must {
+
+    "read all shards of the stream" in new FakeStream {
+      override def shards = List(openShard("a"), openShard("b"))
+      override def records = Map("a" -> List("a1", "a2"), "b" -> List("b1", "b2"))
+
+      val probe = KinesisSource.allShards(settings, amazonKinesisAsync).map(data).runWith(TestSink.probe)
+
+      probe.request(4).expectNextN(4) should contain theSameElementsAs List("a1", "a2", "b1", "b2")
+      probe.cancel()
+    }
+
+    "read child shards after their parent was read completely" in new FakeStream {
+      override def shards =
+        List(closedShard("parent"), openShard("child-1", parent = Some("parent")), openShard("child-2", Some("parent")))
+      override def records =
+        Map("parent" -> List("p1", "p2", "p3"), "child-1" -> List("c1"), "child-2" -> List("c2"))
+
+      val probe = KinesisSource.allShards(settings, amazonKinesisAsync).map(data).runWith(TestSink.probe)
+
+      val received = probe.request(5).expectNextN(5)
+      received.take(3) shouldBe List("p1", "p2", "p3")
+      received.drop(3) should contain theSameElementsAs List("c1", "c2")
+      probe.cancel()
+    }
+
+    "read a merged shard after both parents were read completely" in new FakeStream {
+      override def shards =
+        List(closedShard("a"), closedShard("b"), openShard("merged", Some("a"), Some("b")))
+      override def records = Map("a" -> List("a1", "a2"), "b" -> List("b1"), "merged" -> List("m1"))
+
+      val probe = KinesisSource.allShards(settings, amazonKinesisAsync).map(data).runWith(TestSink.probe)
+
+      val received = probe.request(4).expectNextN(4)
+      received.last shouldBe "m1"
+      probe.cancel()
+    }
+
+    "start at the open shards with LATEST" in new FakeStream {
+      override def shards = List(closedShard("parent"), openShard("child", Some("parent")))
+      override def records = Map("parent" -> List("p1"), "child" -> List("c1"))
+
+      val probe = KinesisSource
+        .allShards(settings.withShardIteratorType(ShardIteratorType.LATEST), amazonKinesisAsync)
+        .map(data)
+        .runWith(TestSink.probe)
+
+      probe.requestNext() shouldBe "c1"
+      probe.cancel()
+    }
+
+    "complete when all shards are closed and read" in new FakeStream {
+      override def shards = List(closedShard("parent"), closedShard("child", Some("parent")))
+      override def records = Map("parent" -> List("p1"), "child" -> List("c1"))
+
+      val probe = KinesisSource.allShards(settings, amazonKinesisAsync).map(data).runWith(TestSink.probe)
+
+      probe.request(3).expectNext("p1", "c1")
+      probe.expectComplete()
+    }
+
+    "fetch records ahead of the demand within the byte budget" in new FakeStream {
+      override def shards = List(openShard("a"))
+      override def records = Map("a" -> (1 to 100).map(i => s"record-$i").toList)
+      override def pageSize = 10
+
+      val probe = KinesisSource.allShards(settings, amazonKinesisAsync).runWith(TestSink.probe)
+      probe.ensureSubscription()
+      probe.expectNoMessage(1.second)
+      // at most 5 requests per second
+      getRecordsCalls.get() should (be >= 3 and be <= 7)
+      probe.cancel()
+    }
+
+    "not fetch records beyond the byte budget" in new FakeStream {
+      override def shards = List(openShard("a"))
+      override def records = Map("a" -> (1 to 100).map(i => s"record-$i").toList)
+      override def pageSize = 10
+
+      val probe =
+        KinesisSource.allShards(settings.withMaxBufferedBytes(1), amazonKinesisAsync).runWith(TestSink.probe)
+      probe.ensureSubscription()
+      probe.expectNoMessage(1.second)
+      getRecordsCalls.get() shouldBe 1
+
+      probe.request(10).expectNextN(10)
+      probe.expectNoMessage(500.millis)
+      getRecordsCalls.get() shouldBe 2
+      probe.cancel()
+    }
+
+    "fail when the shards can't be listed" in {
+      when(amazonKinesisAsync.listShardsAsync(any(), any())).thenAnswer(new Answer[AnyRef] {
+        override def answer(invocation: InvocationOnMock) = {
+          invocation
+            .getArgument[AsyncHandler[ListShardsRequest, ListShardsResult]](1)
+            .onError(new RuntimeException("fail"))
+          CompletableFuture.completedFuture(null)
+        }
+      })
+
+      val probe = KinesisSource.allShards(settings, amazonKinesisAsync).runWith(TestSink.probe)
+      probe.request(1)
+      probe.expectError() shouldBe KinesisErrors.ListShardsError
+    }
+  }
+
+  private def data(record: Record) = ByteString(record.getData).utf8String
+
+  private def shard(shardId: String, parent: Option[String], adjacentParent: Option[String], ending: Option[String]) =
+    new Shard()
+      .withShardId(shardId)
+      .withParentShardId(parent.orNull)
+      .withAdjacentParentShardId(adjacentParent.orNull)
+      .withSequenceNumberRange(
+        new SequenceNumberRange().withStartingSequenceNumber("0").withEndingSequenceNumber(ending.orNull)
+      )
+
+  private def openShard(shardId: String, parent: Option[String] = None, adjacentParent: Option[String] = None) =
+    shard(shardId, parent, adjacentParent, None)
+
+  private def closedShard(shardId: String, parent: Option[String] = None) =
+    shard(shardId, parent, None, Some("100"))
+
+  /**
+   * Serves the records of every shard from iterators of the form `shardId/offset`, starting at the first record for
+   * every iterator type. Closed shards end with a null iterator after their last record, open shards return empty
+   * pages.
+   */
+  trait FakeStream {
+    def shards: List[Shard]
+    def records: Map[String, List[String]]
+    def pageSize: Int = 2
+
+    val getRecordsCalls = new AtomicInteger()
+
+    when(amazonKinesisAsync.listShardsAsync(any(), any())).thenAnswer(new Answer[AnyRef] {
+      override def answer(invocation: InvocationOnMock) = {
+        val result = new ListShardsResult().withShards(shards.asJava)
+        invocation
+          .getArgument[AsyncHandler[ListShardsRequest, ListShardsResult]](1)
+          .onSuccess(invocation.getArgument[ListShardsRequest](0), result)
+        CompletableFuture.completedFuture(result)
+      }
+    })
+
+    when(amazonKinesisAsync.getShardIteratorAsync(any(), any())).thenAnswer(new Answer[AnyRef] {
+      override def answer(invocation: InvocationOnMock) = {
+        val request = invocation.getArgument[GetShardIteratorRequest](0)
+        val result = new GetShardIteratorResult().withShardIterator(s"${request.getShardId}/0")
+        invocation
+          .getArgument[AsyncHandler[GetShardIteratorRequest, GetShardIteratorResult]](1)
+          .onSuccess(request, result)
+        CompletableFuture.completedFuture(result)
+      }
+    })
+
+    when(amazonKinesisAsync.getRecordsAsync(any(), any())).thenAnswer(new Answer[AnyRef] {
+      override def answer(invocation: InvocationOnMock) = {
+        getRecordsCalls.incrementAndGet()
+        val request = invocation.getArgument[GetRecordsRequest](0)
+        val Array(shardId, offset) = request.getShardIterator.split('/')
+        val shardRecords = records(shardId)
+        val page = shardRecords.slice(offset.toInt, offset.toInt + pageSize)
+        val next = offset.toInt + page.size
+        val closed =
+          shards.exists(s => s.getShardId == shardId && s.getSequenceNumberRange.getEndingSequenceNumber != null)
+        val result = new GetRecordsResult()
+          .withRecords(page.zipWithIndex.map {
+            case (data, i) =>
+              new Record().withSequenceNumber((offset.toInt + i).toString).withData(ByteString(data).toByteBuffer)
+          }.asJava)
+          .withNextShardIterator(if (closed && next == shardRecords.size) null else s"$shardId/$next")
+        invocation
+          .getArgument[AsyncHandler[GetRecordsRequest, GetRecordsResult]](1)
+          .onSuccess(request, result)
+        CompletableFuture.completedFuture(result)
+      }
+    })
+  }
+}
@@ -95,6 +95,30 @@ class KinesisFlowSpec extends WordSpecLike with Matchers with DefaultTestContext
     }
   }
 
+  "KinesisFlow shard aware" must {
+    "return token in result" in new DefaultSettings with WithShardsListed with ShardAwareFlowProbe
+    with WithPutRecordsSuccess {
+      val records = recordStream.take(5)
+      records.foreach(sourceProbe.sendNext)
+      val results = for (_ <- 1 to records.size) yield sinkProbe.requestNext()
+      results should contain theSameElementsAs resultStream.take(records.size)
+
+      sourceProbe.sendComplete()
+      sinkProbe.expectComplete()
+    }
+
+    "return token in retried result" in new DefaultSettings with WithShardsListed with ShardAwareFlowProbe
+    with WithPutRecordsInitialErrorsSuccessfulRetry {
+      val record = recordStream.take(1).head
+      sourceProbe.sendNext(record)
+
+      sinkProbe.requestNext(settings.retryInitialTimeout * 2) shouldBe resultStream.take(1).head
+
+      sourceProbe.sendComplete()
+      sinkProbe.expectComplete()
+    }
+  }
+
   sealed trait Settings {
     val settings: KinesisFlowSettings
   }
@@ -137,6 +161,38 @@ class KinesisFlowSpec extends WordSpecLike with Matchers with DefaultTestContext
         .run()
   }
 
+  trait WithShardsListed {
+    when(amazonKinesisAsync.listShardsAsync(any(), any())).thenAnswer(new Answer[AnyRef] {
+      override def answer(invocation: InvocationOnMock) = {
+        val request = invocation.getArgument[ListShardsRequest](0)
+        val result = new ListShardsResult().withShards(KinesisShardMapSpec.evenlySplitShards(2).asJava)
+        invocation
+          .getArgument[AsyncHandler[ListShardsRequest, ListShardsResult]](1)
+          .onSuccess(request, result)
+        CompletableFuture.completedFuture(result)
+      }
+    })
+  }
+
+  trait ShardAwareFlowProbe { self: Settings =>
+    val streamName = "stream-name"
+    val recordStream = Stream
+      .from(1)
+      .map(
+        i => (new PutRecordsRequestEntry().withPartitionKey(s"key-$i").withData(ByteString(i).asByteBuffer), i)
+      )
+    val resultStream = Stream
+      .from(1)
+      .map(i => (new PutRecordsResultEntry(), i))
+
+    val (sourceProbe, sinkProbe) =
+      TestSource
+        .probe[(PutRecordsRequestEntry, Int)]
+        .via(KinesisFlow.shardAwareWithUserContext(streamName, settings))
+        .toMat(TestSink.probe)(Keep.both)
+        .run()
+  }
+
   trait WithPutRecordsSuccess { self: Settings =>
     val publishedRecord = new PutRecordsResultEntry()
     when(amazonKinesisAsync.putRecordsAsync(any(), any())).thenAnswer(new Answer[AnyRef] {
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import java.util.concurrent.CompletableFuture
+
+import akka.stream.alpakka.kinesis.KinesisErrors.{
+  ErrorPublishingRecords,
+  FailureListingShards,
+  FailurePublishingRecords
+}
+import akka.stream.scaladsl.Keep
+import akka.stream.testkit.scaladsl.{TestSink, TestSource}
+import akka.util.ByteString
+import com.amazonaws.handlers.AsyncHandler
+import com.amazonaws.services.kinesis.model._
+import org.mockito.ArgumentMatchers.any
+import org.mockito.Mockito.when
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.{Matchers, WordSpecLike}
+
+import scala.collection.JavaConverters._
+import scala.collection.immutable
+import scala.concurrent.Future
+import scala.concurrent.duration._
+
+class KinesisShardBatchingStageSpec extends WordSpecLike with Matchers with ScalaFutures with DefaultTestContext {
+  import KinesisShardMapSpec.evenlySplitShards
+
+  "KinesisShardBatchingStage" must {
+
+    "list all shards before batching records" in new WithShards with WithPutRecordsSuccess with BatchingProbe {
+      sourceProbe.sendNext(entry("a", 10) -> 1)
+      sinkProbe.requestNext().futureValue.map(_._2) shouldBe Seq(1)
+
+      sourceProbe.sendComplete()
+      sinkProbe.expectComplete()
+    }
+
+    "keep requests within 5 MB" in new WithShards with WithPutRecordsSuccess with BatchingProbe {
+      // one record for each of the 8 shards
+      val records = Seq("a", "h", "c", "m", "b", "g", "o", "e").zipWithIndex.map {
+        case (key, i) => entry(key, 900 * 1000) -> i
+      }
+      records.foreach(sourceProbe.sendNext)
+      sourceProbe.sendComplete()
+
+      val first = sinkProbe.requestNext().futureValue
+      first should have size 5
+      sinkProbe.requestNext().futureValue should have size 3
+      sinkProbe.expectComplete()
+    }
+
+    "pace the records of a hot shard to 1000 records per second" in new WithShards with WithPutRecordsSuccess
+    with BatchingProbe {
+      val start = System.nanoTime()
+      sinkProbe.request(1200)
+      (1 to 1200).foreach(i => sourceProbe.sendNext(entry("hot", 10) -> i))
+      sourceProbe.sendComplete()
+
+      var received = 0
+      while (received < 1200) received += sinkProbe.expectNext(3.seconds).futureValue.size
+      // 1000 records at once, the remaining 200 at 1 per millisecond
+      (System.nanoTime() - start).nanos should be >= 200.millis
+      sinkProbe.expectComplete()
+    }
+
+    "hold back only the shard of failed records until their retry" in new WithShards
+    with WithFirstPutRecordsFailing with BatchingProbe {
+      sinkProbe.request(10)
+      sourceProbe.sendNext(entry("a", 10) -> 1)
+      sinkProbe.expectNext().futureValue shouldBe empty
+
+      sourceProbe.sendNext(entry("a", 10) -> 2)
+      sourceProbe.sendNext(entry("h", 10) -> 3)
+      // the other shard continues, the later record of the failed one's shard follows it
+      sinkProbe.expectNext().futureValue.map(_._2) shouldBe Seq(3)
+      sinkProbe.expectNext(retryInitialTimeout * 3).futureValue.map(_._2) shouldBe Seq(1, 2)
+
+      sourceProbe.sendComplete()
+      sinkProbe.expectComplete()
+    }
+
+    "keep accepting records while a hot shard holds more than a second of throughput" in new WithShards
+    with WithPutRecordsSuccess with BatchingProbe {
+      // nothing is requested yet, so sending fails unless the stage keeps pulling
+      (1 to 1100).foreach(i => sourceProbe.sendNext(entry("hot", 10) -> i))
+      sourceProbe.sendNext(entry("h", 10) -> 0)
+      sourceProbe.sendComplete()
+
+      sinkProbe.request(10)
+      var received = Vector.empty[Int]
+      while (received.size < 1101) received ++= sinkProbe.expectNext(3.seconds).futureValue.map(_._2)
+      received.filter(_ > 0) shouldBe (1 to 1100)
+      received should contain(0)
+      sinkProbe.expectComplete()
+    }
+
+    "release the shards of a request which failed with an error" in new WithShards with WithFirstPutRecordsError
+    with BatchingProbe {
+      sinkProbe.request(10)
+      sourceProbe.sendNext(entry("a", 10) -> 1)
+      sinkProbe.expectNext().failed.futureValue shouldBe FailurePublishingRecords(putRecordsError)
+
+      sourceProbe.sendNext(entry("a", 10) -> 2)
+      sinkProbe.expectNext().futureValue.map(_._2) shouldBe Seq(2)
+
+      sourceProbe.sendComplete()
+      sinkProbe.expectComplete()
+    }
+
+    "fail when the records still fail after all retries" in new WithShards with WithPutRecordsFailing
+    with BatchingProbe {
+      sinkProbe.request(10)
+      sourceProbe.sendNext(entry("a", 10) -> 1)
+
+      sinkProbe.expectNext().futureValue shouldBe empty
+      sinkProbe.expectNext(retryInitialTimeout * 3).futureValue shouldBe empty
+      sinkProbe.expectError(ErrorPublishingRecords(2, Seq((failedResult, 1))))
+    }
+
+    "fail when the shards can't be listed" in new WithListShardsFailure with BatchingProbe {
+      sinkProbe.request(1)
+      sinkProbe.expectError(FailureListingShards(error))
+    }
+  }
+
+  private val retryInitialTimeout = 300.millis
+
+  private val failedResult = new PutRecordsResultEntry().withErrorCode("error-code").withErrorMessage("error-message")
+
+  private def entry(partitionKey: String, size: Int) =
+    new PutRecordsRequestEntry()
+      .withPartitionKey(partitionKey)
+      .withData(ByteString(Array.fill[Byte](size)(0)).asByteBuffer)
+
+  private def putRecordsAnswer(failed: Boolean) = new Answer[AnyRef] {
+    override def answer(invocation: InvocationOnMock) = {
+      val request = invocation.getArgument[PutRecordsRequest](0)
+      val entries = request.getRecords.asScala.map(_ => if (failed) failedResult else new PutRecordsResultEntry())
+      val result = new PutRecordsResult()
+        .withFailedRecordCount(if (failed) entries.size else 0)
+        .withRecords(entries.asJava)
+      invocation.getArgument[AsyncHandler[PutRecordsRequest, PutRecordsResult]](1).onSuccess(request, result)
+      CompletableFuture.completedFuture(result)
+    }
+  }
+
+  // the shards are listed in two pages
+  trait WithShards {
+    val shards = evenlySplitShards(8)
+    when(amazonKinesisAsync.listShardsAsync(any(), any())).thenAnswer(new Answer[AnyRef] {
+      override def answer(invocation: InvocationOnMock) = {
+        val request = invocation.getArgument[ListShardsRequest](0)
+        val result =
+          if (request.getNextToken == null)
+            new ListShardsResult().withShards(shards.take(4).asJava).withNextToken("next")
+          else
+            new ListShardsResult().withShards(shards.drop(4).asJava)
+        invocation.getArgument[AsyncHandler[ListShardsRequest, ListShardsResult]](1).onSuccess(request, result)
+        CompletableFuture.completedFuture(result)
+      }
+    })
+  }
+
+  trait WithListShardsFailure {
+    val error = new RuntimeException("kinesis-error")
+    when(amazonKinesisAsync.listShardsAsync(any(), any())).thenAnswer(new Answer[AnyRef] {
+      override def answer(invocation: InvocationOnMock) = {
+        invocation.getArgument[AsyncHandler[ListShardsRequest, ListShardsResult]](1).onError(error)
+        CompletableFuture.completedFuture(null)
+      }
+    })
+  }
+
+  trait WithPutRecordsSuccess {
+    when(amazonKinesisAsync.putRecordsAsync(any(), any())).thenAnswer(putRecordsAnswer(failed = false))
+  }
+
+  trait WithFirstPutRecordsFailing {
+    when(amazonKinesisAsync.putRecordsAsync(any(), any()))
+      .thenAnswer(putRecordsAnswer(failed = true))
+      .thenAnswer(putRecordsAnswer(failed = false))
+  }
+
+  private val putRecordsError = new RuntimeException("kinesis-error")
+
+  trait WithFirstPutRecordsError {
+    when(amazonKinesisAsync.putRecordsAsync(any(), any()))
+      .thenAnswer(new Answer[AnyRef] {
+        override def answer(invocation: InvocationOnMock) = {
+          invocation.getArgument[AsyncHandler[PutRecordsRequest, PutRecordsResult]](1).onError(putRecordsError)
+          CompletableFuture.completedFuture(null)
+        }
+      })
+      .thenAnswer(putRecordsAnswer(failed = false))
+  }
+
+  trait WithPutRecordsFailing {
+    when(amazonKinesisAsync.putRecordsAsync(any(), any())).thenAnswer(putRecordsAnswer(failed = true))
+  }
+
+  trait BatchingProbe {
+    val (sourceProbe, sinkProbe) =
+      TestSource
+        .probe[(PutRecordsRequestEntry, Int)]
+        .via(
+          new KinesisShardBatchingStage[Int]("stream-name",
+                                             maxBatchSize = 500,
+                                             maxRetries = 1,
+                                             KinesisFlowSettings.Exponential,
+                                             retryInitialTimeout)
+        )
+        .toMat(TestSink.probe[Future[immutable.Seq[(PutRecordsResultEntry, Int)]]])(Keep.both)
+        .run()
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.kinesis
+
+import akka.util.ByteString
+import com.amazonaws.services.kinesis.model.{HashKeyRange, PutRecordsRequestEntry, SequenceNumberRange, Shard}
+import org.scalatest.{Matchers, WordSpec}
+
+class KinesisShardMapSpec extends WordSpec with Matchers {
+  import KinesisShardMapSpec._
+
+  private def entry(partitionKey: String) =
+    new PutRecordsRequestEntry().withPartitionKey(partitionKey).withData(ByteString("data").asByteBuffer)
+
+  "KinesisShardMap" must {
+    "route records by the MD5 hash of their partition key" in {
+      val shardMap = KinesisShardMap(evenlySplitShards(8))
+      // the top three bits of the MD5 hashes of these keys are 0 to 7
+      Seq("a", "h", "c", "m", "b", "g", "o", "e").map(key => shardMap.shardIndex(entry(key))) shouldBe (0 to 7)
+      shardMap.shardId(3) shouldBe "shardId-000000000003"
+    }
+    "route records by their explicit hash key" in {
+      val shardMap = KinesisShardMap(evenlySplitShards(2))
+      shardMap.shardIndex(entry("a").withExplicitHashKey((BigInt(2).pow(127) + 1).toString)) shouldBe 1
+      shardMap.shardIndex(entry("b").withExplicitHashKey("0")) shouldBe 0
+    }
+    "ignore closed shards" in {
+      val closed = new Shard()
+        .withShardId("shardId-closed")
+        .withHashKeyRange(new HashKeyRange().withStartingHashKey("0").withEndingHashKey(MaxHashKey.toString))
+        .withSequenceNumberRange(
+          new SequenceNumberRange().withStartingSequenceNumber("1").withEndingSequenceNumber("2")
+        )
+      val shardMap = KinesisShardMap(closed +: evenlySplitShards(2))
+      shardMap.shardCount shouldBe 2
+      shardMap.shardId(shardMap.shardIndex(entry("a"))) shouldBe "shardId-000000000000"
+    }
+  }
+}
+
+object KinesisShardMapSpec {
+  val MaxHashKey: BigInt = BigInt(2).pow(128) - 1
+
+  def evenlySplitShards(count: Int): Seq[Shard] = {
+    val width = (MaxHashKey + 1) / count
+    (0 until count).map { i =>
+      new Shard()
+        .withShardId(f"shardId-$i%012d")
+        .withHashKeyRange(
+          new HashKeyRange()
+            .withStartingHashKey((width * i).toString)
+            .withEndingHashKey((width * (i + 1) - 1).toString)
+        )
+        .withSequenceNumberRange(new SequenceNumberRange().withStartingSequenceNumber("1"))
+    }
+  }
+}
@@ -15,9 +15,11 @@ import akka.http.scaladsl.model.{ContentTypes, RequestEntity, _}
 import akka.stream.alpakka.s3.S3Settings
 import akka.stream.scaladsl.Source
 import akka.util.ByteString
+import com.amazonaws.util.Md5Utils
 
 import scala.collection.immutable.Seq
 import scala.concurrent.{ExecutionContext, Future}
+import scala.xml.NodeSeq
 
 private[alpakka] object HttpRequests {
 
@@ -119,12 +121,7 @@ private[alpakka] object HttpRequests {
     val upload = multipartCopy.multipartUpload
     val copyPartition = multipartCopy.copyPartition
     val range = copyPartition.range
-    val source = copyPartition.sourceLocation
-    val sourceHeaderValuePrefix = s"/${source.bucket}/${source.key}"
-    val sourceHeaderValue = sourceVersionId
-      .map(versionId => s"$sourceHeaderValuePrefix?versionId=$versionId")
-      .getOrElse(sourceHeaderValuePrefix)
-    val sourceHeader = RawHeader("x-amz-copy-source", sourceHeaderValue)
+    val sourceHeader = copySourceHeader(copyPartition.sourceLocation, sourceVersionId)
     val copyHeaders = range
       .map(br => Seq(sourceHeader, RawHeader("x-amz-copy-source-range", s"bytes=${br.first}-${br.last - 1}")))
       .getOrElse(Seq(sourceHeader))
@@ -137,6 +134,47 @@ private[alpakka] object HttpRequests {
       .withDefaultHeaders(allHeaders: _*)
   }
 
+  def copyObjectRequest(sourceLocation: S3Location,
+                        targetLocation: S3Location,
+                        sourceVersionId: Option[String] = None,
+                        s3Headers: S3Headers = S3Headers.empty)(implicit conf: S3Settings): HttpRequest =
+    s3Request(targetLocation, HttpMethods.PUT)
+      .withDefaultHeaders(s3Headers.headers :+ copySourceHeader(sourceLocation, sourceVersionId): _*)
+
+  /**
+   * Multi-object delete, see https://docs.aws.amazon.com/AmazonS3/latest/API/multiobjectdeleteapi.html
+   * S3 rejects the request unless it carries the MD5 of the body.
+   */
+  def deleteObjectsRequest(bucket: String, objects: Seq[(String, Option[String])])(
+      implicit conf: S3Settings
+  ): HttpRequest = {
+    // @formatter:off
+    val payload = <Delete>
+                    <Quiet>false</Quiet>
+                    {
+                      objects.map { case (key, versionId) => <Object><Key>{ key }</Key>{ versionId.fold(NodeSeq.Empty)(v => <VersionId>{ v }</VersionId>) }</Object> }
+                    }
+                  </Delete>
+    // @formatter:on
+    val body = ByteString(payload.toString)
+
+    HttpRequest(HttpMethods.POST)
+      .withHeaders(
+        Host(requestAuthority(bucket, conf.s3RegionProvider.getRegion)),
+        RawHeader("Content-MD5", Md5Utils.md5AsBase64(body.toArray))
+      )
+      .withUri(requestUri(bucket, None).withQuery(Query("delete")))
+      .withEntity(HttpEntity(MediaTypes.`application/xml` withCharset HttpCharsets.`UTF-8`, body))
+  }
+
+  private[this] def copySourceHeader(source: S3Location, sourceVersionId: Option[String]): HttpHeader = {
+    val sourceHeaderValuePrefix = s"/${source.bucket}/${source.key}"
+    val sourceHeaderValue = sourceVersionId
+      .map(versionId => s"$sourceHeaderValuePrefix?versionId=$versionId")
+      .getOrElse(sourceHeaderValuePrefix)
+    RawHeader("x-amz-copy-source", sourceHeaderValue)
+  }
+
   private[this] def s3Request(s3Location: S3Location, method: HttpMethod, uriFn: Uri => Uri = identity)(
       implicit conf: S3Settings
   ): HttpRequest =
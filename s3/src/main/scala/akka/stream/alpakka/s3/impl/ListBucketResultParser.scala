@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.s3.impl
+
+import java.time.Instant
+
+import akka.annotation.InternalApi
+import akka.stream.alpakka.s3.scaladsl.ListBucketResultContents
+import akka.stream.alpakka.xml.{EndElement, ParseEvent, StartElement, TextEvent}
+import akka.stream.stage.{GraphStageLogic, GraphStageWithMaterializedValue, InHandler, OutHandler}
+import akka.stream.{Attributes, FlowShape, Inlet, Outlet}
+
+import scala.concurrent.{Future, Promise}
+
+/**
+ * INTERNAL API
+ *
+ * Turns the XML events of a list bucket response into [[ListBucketResultContents]] as each `Contents` element
+ * completes, without building the document in memory. Materializes the token to continue listing with, which
+ * is known once the whole page has been read.
+ */
+@InternalApi private[impl] final class ListBucketResultParser
+    extends GraphStageWithMaterializedValue[FlowShape[ParseEvent, ListBucketResultContents], Future[Option[String]]] {
+
+  val in: Inlet[ParseEvent] = Inlet("ListBucketResultParser.in")
+  val out: Outlet[ListBucketResultContents] = Outlet("ListBucketResultParser.out")
+  override val shape: FlowShape[ParseEvent, ListBucketResultContents] = FlowShape(in, out)
+
+  override def createLogicAndMaterializedValue(
+      inheritedAttributes: Attributes
+  ): (GraphStageLogic, Future[Option[String]]) = {
+    val continuation = Promise[Option[String]]()
+
+    val logic = new GraphStageLogic(shape) with InHandler with OutHandler {
+      private[this] val text = new java.lang.StringBuilder
+      private[this] var depth = 0
+      private[this] var inContents = false
+
+      private[this] var bucketName = ""
+      private[this] var truncated = false
+      private[this] var nextContinuationToken: Option[String] = None
+
+      private[this] var key = ""
+      private[this] var eTag = ""
+      private[this] var size = 0L
+      private[this] var lastModified: Instant = _
+      private[this] var storageClass = ""
+
+      override def onPull(): Unit = pull(in)
+
+      override def onPush(): Unit = grab(in) match {
+        case StartElement(name, _, _, _, _) =>
+          depth += 1
+          if (depth == 2 && name == "Contents") inContents = true
+          text.setLength(0)
+          pull(in)
+
+        case t: TextEvent =>
+          text.append(t.text)
+          pull(in)
+
+        case EndElement(name) =>
+          depth -= 1
+          if (inContents) {
+            if (depth == 1) {
+              inContents = false
+              push(out, ListBucketResultContents(bucketName, key, eTag, size, lastModified, storageClass))
+            } else {
+              contentsField(name)
+              pull(in)
+            }
+          } else {
+            if (depth == 1) resultField(name)
+            else if (depth == 0) continuation.trySuccess(if (truncated) nextContinuationToken.orElse(lastKey) else None)
+            pull(in)
+          }
+
+        case _ =>
+          pull(in)
+      }
+
+      private def lastKey: Option[String] = Some(key).filter(_.nonEmpty)
+
+      private def contentsField(name: String): Unit = name match {
+        case "Key" => key = text.toString
+        case "ETag" => eTag = text.toString.drop(1).dropRight(1)
+        case "Size" => size = text.toString.toLong
+        case "LastModified" => lastModified = Instant.parse(text.toString)
+        case "StorageClass" => storageClass = text.toString
+        case _ =>
+      }
+
+      private def resultField(name: String): Unit = name match {
+        case "Name" => bucketName = text.toString
+        case Marshalling.isTruncated => truncated = text.toString == "true"
+        case Marshalling.apiV2ContinuationToken => nextContinuationToken = Some(text.toString).filter(_.nonEmpty)
+        case _ =>
+      }
+
+      override def onUpstreamFinish(): Unit =
+        if (continuation.isCompleted) completeStage()
+        else failStage(new IllegalStateException("List bucket response ended before the ListBucketResult was complete"))
+
+      override def onUpstreamFailure(ex: Throwable): Unit = {
+        continuation.tryFailure(ex)
+        failStage(ex)
+      }
+
+      override def postStop(): Unit =
+        continuation.tryFailure(new IllegalStateException("List bucket response was not read to the end"))
+
+      setHandlers(in, out, this)
+    }
+
+    (logic, continuation.future)
+  }
+}
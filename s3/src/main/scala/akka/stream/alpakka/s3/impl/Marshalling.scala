@@ -10,8 +10,10 @@ import java.time.Instant
 import akka.http.scaladsl.marshallers.xml.ScalaXmlSupport
 import akka.http.scaladsl.model.{ContentTypes, HttpCharsets, MediaTypes, Uri}
 import akka.http.scaladsl.unmarshalling.{FromEntityUnmarshaller, Unmarshaller}
-import akka.stream.alpakka.s3.scaladsl.ListBucketResultContents
+import akka.stream.alpakka.s3.S3Exception
+import akka.stream.alpakka.s3.scaladsl.DeleteObjectResult
 
+import scala.collection.immutable.Seq
 import scala.util.Try
 import scala.xml.NodeSeq
 
@@ -43,41 +45,30 @@ private[alpakka] object Marshalling {
   val isTruncated = "IsTruncated"
   val apiV2ContinuationToken = "NextContinuationToken"
 
-  implicit val listBucketResultUnmarshaller: FromEntityUnmarshaller[ListBucketResult] = {
-    nodeSeqUnmarshaller(MediaTypes.`application/xml` withCharset HttpCharsets.`UTF-8`).map {
+  implicit val copyPartResultUnmarshaller: FromEntityUnmarshaller[CopyPartResult] = {
+    nodeSeqUnmarshaller(MediaTypes.`application/xml`, ContentTypes.`application/octet-stream`) map {
       case NodeSeq.Empty => throw Unmarshaller.NoContentException
       case x =>
-        val truncated = (x \ isTruncated).text == "true"
-        val continuation = if (truncated) {
-          Some(x \ apiV2ContinuationToken)
-            .filter(_.nonEmpty)
-            .orElse((x \\ "Contents" \ "Key").lastOption)
-            .map(_.text)
-        } else None
-        ListBucketResult(
-          truncated,
-          continuation,
-          (x \\ "Contents").map { c =>
-            ListBucketResultContents(
-              (x \ "Name").text,
-              (c \ "Key").text,
-              (c \ "ETag").text.drop(1).dropRight(1),
-              (c \ "Size").text.toLong,
-              Instant.parse((c \ "LastModified").text),
-              (c \ "StorageClass").text
-            )
-          }
-        )
+        val lastModified = Instant.parse((x \ "LastModified").text)
+        val eTag = (x \ "ETag").text
+        CopyPartResult(lastModified, eTag.dropRight(1).drop(1))
     }
   }
 
-  implicit val copyPartResultUnmarshaller: FromEntityUnmarshaller[CopyPartResult] = {
+  implicit val deleteObjectsResultUnmarshaller: FromEntityUnmarshaller[Seq[DeleteObjectResult]] = {
     nodeSeqUnmarshaller(MediaTypes.`application/xml`, ContentTypes.`application/octet-stream`) map {
       case NodeSeq.Empty => throw Unmarshaller.NoContentException
       case x =>
-        val lastModified = Instant.parse((x \ "LastModified").text)
-        val eTag = (x \ "ETag").text
-        CopyPartResult(lastModified, eTag.dropRight(1).drop(1))
+        def versionId(n: NodeSeq) = Some((n \ "VersionId").text).filter(_.nonEmpty)
+        val deleted = (x \ "Deleted").map { d =>
+          DeleteObjectResult((d \ "Key").text, versionId(d), None)
+        }
+        val errors = (x \ "Error").map { e =>
+          DeleteObjectResult((e \ "Key").text,
+                             versionId(e),
+                             Some(new S3Exception((e \ "Code").text, (e \ "Message").text, "-", "-")))
+        }
+        deleted ++ errors
     }
   }
 }
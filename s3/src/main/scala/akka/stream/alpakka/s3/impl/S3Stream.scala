@@ -7,7 +7,7 @@ package akka.stream.alpakka.s3.impl
 import java.time.{Instant, LocalDate}
 
 import scala.collection.immutable.Seq
-import scala.concurrent.{ExecutionContext, Future}
+import scala.concurrent.{ExecutionContext, Future, Promise}
 import scala.util.{Failure, Success}
 import akka.{Done, NotUsed}
 import akka.actor.ActorSystem
@@ -18,8 +18,15 @@ import akka.http.scaladsl.model._
 import akka.http.scaladsl.unmarshalling.{Unmarshal, Unmarshaller}
 import akka.stream.Materializer
 import akka.stream.alpakka.s3.auth.{CredentialScope, Signer, SigningKey}
-import akka.stream.alpakka.s3.scaladsl.{ListBucketResultContents, ObjectMetadata}
+import akka.stream.alpakka.s3.scaladsl.{
+  CopyObject,
+  CopyObjectResult,
+  DeleteObjectResult,
+  ListBucketResultContents,
+  ObjectMetadata
+}
 import akka.stream.alpakka.s3.{DiskBufferType, MemoryBufferType, S3Exception, S3Settings}
+import akka.stream.alpakka.xml.scaladsl.XmlParsing
 import akka.stream.scaladsl.{Flow, Keep, RunnableGraph, Sink, Source}
 import akka.util.ByteString
 
@@ -47,10 +54,6 @@ final case class CompleteMultipartUploadResult(location: Uri,
                                                etag: String,
                                                versionId: Option[String] = None)
 
-final case class ListBucketResult(isTruncated: Boolean,
-                                  continuationToken: Option[String],
-                                  contents: Seq[ListBucketResultContents])
-
 sealed trait ApiVersion {
   def getInstance: ApiVersion
 }
@@ -81,6 +84,8 @@ private[alpakka] final class S3Stream(settings: S3Settings)(implicit system: Act
 
   implicit val conf = settings
   val MinChunkSize = 5242880 //in bytes
+  val MaxDeleteObjectsBatchSize = 1000 // keys per multi-object delete request
+  val MaxSingleCopySize = 5368709120L // largest object a single PUT copy accepts, in bytes
   // def because tokens can expire
   def signingKey = SigningKey(
     settings.credentialsProvider,
@@ -110,29 +115,40 @@ private[alpakka] final class S3Stream(settings: S3Settings)(implicit system: Act
   def listBucket(bucket: String, prefix: Option[String] = None): Source[ListBucketResultContents, NotUsed] = {
     sealed trait ListBucketState
     case object Starting extends ListBucketState
-    case class Running(continuationToken: String) extends ListBucketState
-    case object Finished extends ListBucketState
+    case class Running(continuationToken: Future[Option[String]]) extends ListBucketState
 
     import system.dispatcher
 
-    def listBucketCall(token: Option[String]): Future[Option[(ListBucketState, Seq[ListBucketResultContents])]] =
-      signAndGetAs[ListBucketResult](HttpRequests.listBucket(bucket, prefix, token))
-        .map { (res: ListBucketResult) =>
-          Some(
-            res.continuationToken
-              .fold[(ListBucketState, Seq[ListBucketResultContents])]((Finished, res.contents))(
-                t => (Running(t), res.contents)
-              )
-          )
+    // The continuation token is only known once a page has been read to the end, so each page's contents
+    // are streamed straight from the response while the next state waits for the token.
+    def listBucketCall(
+        token: Option[String]
+    ): Future[Option[(ListBucketState, Source[ListBucketResultContents, NotUsed])]] =
+      signAndRequest(HttpRequests.listBucket(bucket, prefix, token))
+        .flatMap(entityForSuccess)
+        .map {
+          case (entity, _) =>
+            val continuationToken = Promise[Option[String]]()
+            val contents = entity.dataBytes
+              .via(XmlParsing.parser)
+              .viaMat(new ListBucketResultParser)(Keep.right)
+              .mapMaterializedValue { t =>
+                continuationToken.completeWith(t)
+                NotUsed
+              }
+            Some((Running(continuationToken.future), contents))
         }
 
     Source
-      .unfoldAsync[ListBucketState, Seq[ListBucketResultContents]](Starting) {
-        case Finished => Future.successful(None)
+      .unfoldAsync[ListBucketState, Source[ListBucketResultContents, NotUsed]](Starting) {
         case Starting => listBucketCall(None)
-        case Running(token) => listBucketCall(Some(token))
+        case Running(continuationToken) =>
+          continuationToken.flatMap {
+            case Some(token) => listBucketCall(Some(token))
+            case None => Future.successful(None)
+          }
       }
-      .mapConcat(identity)
+      .flatMapConcat(identity)
   }
 
   def getObjectMetadata(bucket: String,
@@ -167,6 +183,89 @@ private[alpakka] final class S3Stream(settings: S3Settings)(implicit system: Act
     }
   }
 
+  /**
+   * Deletes keys of a bucket in batches using the multi-object delete api. Emits one result per key,
+   * in the order the keys were received.
+   */
+  def deleteObjects(bucket: String,
+                    batchSize: Int = MaxDeleteObjectsBatchSize,
+                    parallelism: Int = 4): Flow[(String, Option[String]), DeleteObjectResult, NotUsed] = {
+    require(
+      batchSize > 0 && batchSize <= MaxDeleteObjectsBatchSize,
+      s"Batch size must be between 1 and $MaxDeleteObjectsBatchSize. See https://docs.aws.amazon.com/AmazonS3/latest/API/multiobjectdeleteapi.html"
+    )
+
+    Flow[(String, Option[String])]
+      .grouped(batchSize)
+      .mapAsync(parallelism)(deleteObjectsBatch(bucket, _))
+      .mapConcat(identity)
+  }
+
+  private def deleteObjectsBatch(bucket: String,
+                                 objects: Seq[(String, Option[String])]): Future[Seq[DeleteObjectResult]] = {
+    import mat.executionContext
+    signAndGetAs[Seq[DeleteObjectResult]](deleteObjectsRequest(bucket, objects)).map { results =>
+      val byKey = results.map(r => (r.key, r.versionId) -> r).toMap
+      // S3 only omits keys from the response in quiet mode, which reports nothing but errors
+      objects.map {
+        case (key, versionId) =>
+          byKey.getOrElse((key, versionId), byKey.getOrElse((key, None), DeleteObjectResult(key, versionId, None)))
+      }
+    }
+  }
+
+  /**
+   * Copies objects server side. Objects up to `multipartThreshold` bytes are copied with a single request,
+   * bigger ones with [[multipartCopy]]. Emits one result per object, in the order they were received.
+   */
+  def copyObjects(s3Headers: S3Headers,
+                  parallelism: Int = 4,
+                  multipartThreshold: Long = MaxSingleCopySize,
+                  chunkSize: Int = MinChunkSize,
+                  chunkingParallelism: Int = 4): Flow[CopyObject, CopyObjectResult, NotUsed] = {
+    require(
+      multipartThreshold <= MaxSingleCopySize,
+      s"Multipart threshold must be at most $MaxSingleCopySize bytes. See https://docs.aws.amazon.com/AmazonS3/latest/API/RESTObjectCOPY.html"
+    )
+    import mat.executionContext
+
+    def copy(copyObject: CopyObject): Future[String] = {
+      val source = S3Location(copyObject.sourceBucket, copyObject.sourceKey)
+      val target = S3Location(copyObject.targetBucket, copyObject.targetKey)
+      // the one HEAD request decides between single and multipart copy, and provides the content type of the latter
+      getObjectMetadata(source.bucket, source.key, copyObject.sourceVersionId, None).flatMap {
+        case None =>
+          Future.failed(new S3Exception("NoSuchKey", s"Source object $source does not exist", "-", "-"))
+        case Some(metadata) if metadata.contentLength > multipartThreshold =>
+          // the content type of a HEAD response is kept in a CustomContentTypeHeader
+          val contentType = metadata.metadata
+            .collectFirst { case header if header.is("content-type") => header.value }
+            .flatMap(ContentType.parse(_).right.toOption)
+            .getOrElse(ContentTypes.`application/octet-stream`)
+          multipartCopyOfSize(source,
+                              target,
+                              copyObject.sourceVersionId,
+                              contentType,
+                              s3Headers,
+                              None,
+                              chunkSize,
+                              chunkingParallelism,
+                              Future.successful(Some(metadata.contentLength))).run().map(_.etag)
+        case Some(_) =>
+          signAndGetAs[CopyPartResult](copyObjectRequest(source, target, copyObject.sourceVersionId, s3Headers))
+            .map(_.eTag)
+      }
+    }
+
+    Flow[CopyObject].mapAsync(parallelism) { copyObject =>
+      copy(copyObject)
+        .map(eTag => CopyObjectResult(copyObject, Some(eTag), None))
+        .recover {
+          case e => CopyObjectResult(copyObject, None, Some(e))
+        }
+    }
+  }
+
   def putObject(s3Location: S3Location,
                 contentType: ContentType,
                 data: Source[ByteString, _],
@@ -258,6 +357,30 @@ private[alpakka] final class S3Stream(settings: S3Settings)(implicit system: Act
     // Pre step get source meta to get content length (size of the object)
     val eventualMaybeObjectSize: Future[Option[Long]] =
       getObjectMetadata(sourceLocation.bucket, sourceLocation.key, sourceVersionId, sse).map(_.map(_.contentLength))
+    multipartCopyOfSize(sourceLocation,
+                        targetLocation,
+                        sourceVersionId,
+                        contentType,
+                        s3Headers,
+                        sse,
+                        chunkSize,
+                        chunkingParallelism,
+                        eventualMaybeObjectSize)
+  }
+
+  private def multipartCopyOfSize(
+      sourceLocation: S3Location,
+      targetLocation: S3Location,
+      sourceVersionId: Option[String],
+      contentType: ContentType,
+      s3Headers: S3Headers,
+      sse: Option[ServerSideEncryption],
+      chunkSize: Int,
+      chunkingParallelism: Int,
+      eventualMaybeObjectSize: Future[Option[Long]]
+  ): RunnableGraph[Future[CompleteMultipartUploadResult]] = {
+    import mat.executionContext
+
     val eventualPartitions =
       eventualMaybeObjectSize.map(_.map(createPartitions(chunkSize, sourceLocation)).getOrElse(Nil))
     val partitions = Source.fromFuture(eventualPartitions)
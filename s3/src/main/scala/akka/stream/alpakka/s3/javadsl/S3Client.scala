@@ -18,10 +18,10 @@ import akka.http.scaladsl.model.headers.{ByteRange => ScalaByteRange}
 import akka.http.scaladsl.model.{ContentType => ScalaContentType, HttpMethod => ScalaHttpMethod}
 import akka.japi.{Pair => JPair}
 import akka.stream.Materializer
-import akka.stream.alpakka.s3.{scaladsl, S3Settings}
+import akka.stream.alpakka.s3.{scaladsl, S3Exception, S3Settings}
 import akka.stream.alpakka.s3.acl.CannedAcl
 import akka.stream.alpakka.s3.impl._
-import akka.stream.javadsl.{Sink, Source}
+import akka.stream.javadsl.{Flow, Sink, Source}
 import akka.util.ByteString
 import com.amazonaws.auth._
 import com.amazonaws.regions.AwsRegionProvider
@@ -54,6 +54,51 @@ final case class ListBucketResultContents(
     storageClass: String
 )
 
+/**
+ * Outcome of deleting a single key with [[S3Client.deleteObjects]]
+ *
+ * @param key the s3 object key
+ * @param versionId the version id of the deleted object, if versioning is enabled in the bucket
+ * @param error the error reported by Amazon S3 if the key could not be deleted
+ */
+final case class DeleteObjectResult(
+    key: String,
+    versionId: Optional[String],
+    error: Optional[S3Exception]
+) {
+  def isDeleted: Boolean = !error.isPresent
+}
+
+/**
+ * An object to copy with [[S3Client.copyObjects]]
+ *
+ * @param sourceBucket source s3 bucket name
+ * @param sourceKey source s3 key
+ * @param targetBucket target s3 bucket name
+ * @param targetKey target s3 key
+ * @param sourceVersionId version id of source object, if the versioning is enabled in source bucket
+ */
+final case class CopyObject(
+    sourceBucket: String,
+    sourceKey: String,
+    targetBucket: String,
+    targetKey: String,
+    sourceVersionId: Optional[String]
+)
+
+/**
+ * Outcome of copying a single [[CopyObject]] with [[S3Client.copyObjects]]
+ *
+ * @param copyObject the copied object
+ * @param eTag the entity tag of the new object, if the copy succeeded
+ * @param error the reason the copy failed
+ */
+final case class CopyObjectResult(
+    copyObject: CopyObject,
+    eTag: Optional[String],
+    error: Optional[Throwable]
+)
+
 /**
  * Modelled after com.amazonaws.services.s3.model.ObjectMetadata
  */
@@ -295,6 +340,61 @@ final class S3Client(s3Settings: S3Settings, system: ActorSystem, mat: Materiali
       .map(_ => Done.getInstance())(mat.executionContext)
       .toJava
 
+  /**
+   * Deletes S3 Objects in batches of up to 1000 keys per request, see
+   * https://docs.aws.amazon.com/AmazonS3/latest/API/multiobjectdeleteapi.html
+   *
+   * @param bucket the s3 bucket name
+   * @param batchSize the number of keys deleted per request, at most 1000
+   * @param parallelism the number of delete requests in flight at the same time
+   * @return a [[akka.stream.javadsl.Flow Flow]] of s3 object keys emitting a [[DeleteObjectResult]] per key, in order
+   */
+  def deleteObjects(bucket: String, batchSize: Int, parallelism: Int): Flow[String, DeleteObjectResult, NotUsed] =
+    akka.stream.scaladsl
+      .Flow[String]
+      .map(key => (key, Option.empty[String]))
+      .via(impl.deleteObjects(bucket, batchSize, parallelism))
+      .map(deleteResultToJava)
+      .asJava
+
+  /**
+   * Deletes S3 Objects in batches of 1000 keys per request, with up to 4 requests in flight
+   *
+   * @param bucket the s3 bucket name
+   * @return a [[akka.stream.javadsl.Flow Flow]] of s3 object keys emitting a [[DeleteObjectResult]] per key, in order
+   */
+  def deleteObjects(bucket: String): Flow[String, DeleteObjectResult, NotUsed] =
+    deleteObjects(bucket, impl.MaxDeleteObjectsBatchSize, 4)
+
+  /**
+   * Copies S3 Objects server side. Objects up to `multipartThreshold` bytes are copied with a single request,
+   * bigger ones with a multipart copy upload.
+   *
+   * @param s3Headers any headers you want to add to the copies
+   * @param parallelism the number of objects copied at the same time
+   * @param multipartThreshold size in bytes above which objects are copied with multipart copy, at most 5 GiB
+   * @return a [[akka.stream.javadsl.Flow Flow]] emitting a [[CopyObjectResult]] per [[CopyObject]], in order
+   */
+  def copyObjects(s3Headers: S3Headers,
+                  parallelism: Int,
+                  multipartThreshold: Long): Flow[CopyObject, CopyObjectResult, NotUsed] =
+    akka.stream.scaladsl
+      .Flow[CopyObject]
+      .map { c =>
+        scaladsl.CopyObject(c.sourceBucket, c.sourceKey, c.targetBucket, c.targetKey, c.sourceVersionId.asScala)
+      }
+      .via(impl.copyObjects(s3Headers, parallelism, multipartThreshold))
+      .map(copyResultToJava)
+      .asJava
+
+  /**
+   * Copies S3 Objects server side, up to 4 at the same time
+   *
+   * @return a [[akka.stream.javadsl.Flow Flow]] emitting a [[CopyObjectResult]] per [[CopyObject]], in order
+   */
+  def copyObjects(): Flow[CopyObject, CopyObjectResult, NotUsed] =
+    copyObjects(S3Headers.empty, 4, impl.MaxSingleCopySize)
+
   /**
    * Uploads a S3 Object, use this for small files and [[multipartUpload]] for bigger ones
    *
@@ -877,6 +977,16 @@ final class S3Client(s3Settings: S3Settings, system: ActorSystem, mat: Materiali
                              scalaContents.lastModified,
                              scalaContents.storageClass)
 
+  private def deleteResultToJava(r: scaladsl.DeleteObjectResult): DeleteObjectResult =
+    DeleteObjectResult(r.key, r.versionId.asJava, r.error.asJava)
+
+  private def copyResultToJava(r: scaladsl.CopyObjectResult): CopyObjectResult = {
+    val c = r.copyObject
+    CopyObjectResult(CopyObject(c.sourceBucket, c.sourceKey, c.targetBucket, c.targetKey, c.sourceVersionId.asJava),
+                     r.eTag.asJava,
+                     r.error.asJava)
+  }
+
   private def metaDataToJava(scalaContents: scaladsl.ObjectMetadata): ObjectMetadata =
     new ObjectMetadata(scalaContents)
 }
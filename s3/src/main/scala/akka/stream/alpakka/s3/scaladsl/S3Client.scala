@@ -17,10 +17,10 @@ import akka.http.scaladsl.model.headers.{
   ETag
 }
 import akka.stream.Materializer
-import akka.stream.alpakka.s3.S3Settings
+import akka.stream.alpakka.s3.{S3Exception, S3Settings}
 import akka.stream.alpakka.s3.acl.CannedAcl
 import akka.stream.alpakka.s3.impl._
-import akka.stream.scaladsl.{Sink, Source}
+import akka.stream.scaladsl.{Flow, Sink, Source}
 import akka.util.ByteString
 import akka.{Done, NotUsed}
 import com.amazonaws.auth._
@@ -57,6 +57,51 @@ final case class ListBucketResultContents(
     storageClass: String
 )
 
+/**
+ * Outcome of deleting a single key with [[S3Client.deleteObjects]]
+ *
+ * @param key the s3 object key
+ * @param versionId the version id of the deleted object, if versioning is enabled in the bucket
+ * @param error the error reported by Amazon S3 if the key could not be deleted
+ */
+final case class DeleteObjectResult(
+    key: String,
+    versionId: Option[String],
+    error: Option[S3Exception]
+) {
+  def isDeleted: Boolean = error.isEmpty
+}
+
+/**
+ * An object to copy with [[S3Client.copyObjects]]
+ *
+ * @param sourceBucket source s3 bucket name
+ * @param sourceKey source s3 key
+ * @param targetBucket target s3 bucket name
+ * @param targetKey target s3 key
+ * @param sourceVersionId optional version id of source object, if the versioning is enabled in source bucket
+ */
+final case class CopyObject(
+    sourceBucket: String,
+    sourceKey: String,
+    targetBucket: String,
+    targetKey: String,
+    sourceVersionId: Option[String] = None
+)
+
+/**
+ * Outcome of copying a single [[CopyObject]] with [[S3Client.copyObjects]]
+ *
+ * @param copyObject the copied object
+ * @param eTag the entity tag of the new object, if the copy succeeded
+ * @param error the reason the copy failed
+ */
+final case class CopyObjectResult(
+    copyObject: CopyObject,
+    eTag: Option[String],
+    error: Option[Throwable]
+)
+
 /**
  * Modelled after com.amazonaws.services.s3.model.ObjectMetadata
  * @param metadata the raw http headers
@@ -177,6 +222,8 @@ object ObjectMetadata {
 
 object S3Client {
   val MinChunkSize: Int = 5242880
+  val MaxDeleteObjectsBatchSize: Int = 1000
+  val MaxSingleCopySize: Long = 5368709120L
 
   def apply()(implicit system: ActorSystem, mat: Materializer): S3Client =
     new S3Client(S3Settings(system.settings.config))
@@ -250,6 +297,53 @@ final class S3Client(val s3Settings: S3Settings)(implicit system: ActorSystem, m
   def deleteObject(bucket: String, key: String, versionId: Option[String] = None): Future[Done] =
     impl.deleteObject(S3Location(bucket, key), versionId)
 
+  /**
+   * Deletes S3 Objects in batches of up to 1000 keys per request, see
+   * https://docs.aws.amazon.com/AmazonS3/latest/API/multiobjectdeleteapi.html
+   *
+   * @param bucket the s3 bucket name
+   * @param batchSize the number of keys deleted per request, at most [[MaxDeleteObjectsBatchSize]]
+   * @param parallelism the number of delete requests in flight at the same time
+   * @return a [[akka.stream.scaladsl.Flow Flow]] of s3 object keys emitting a [[DeleteObjectResult]] per key, in order
+   */
+  def deleteObjects(bucket: String,
+                    batchSize: Int = MaxDeleteObjectsBatchSize,
+                    parallelism: Int = 4): Flow[String, DeleteObjectResult, NotUsed] =
+    Flow[String]
+      .map(key => (key, Option.empty[String]))
+      .via(impl.deleteObjects(bucket, batchSize, parallelism))
+
+  /**
+   * Deletes versions of S3 Objects in batches of up to 1000 keys per request
+   *
+   * @param bucket the s3 bucket name
+   * @param batchSize the number of keys deleted per request, at most [[MaxDeleteObjectsBatchSize]]
+   * @param parallelism the number of delete requests in flight at the same time
+   * @return a [[akka.stream.scaladsl.Flow Flow]] of s3 object keys and optional version ids emitting a [[DeleteObjectResult]] per key, in order
+   */
+  def deleteObjectVersions(bucket: String,
+                           batchSize: Int = MaxDeleteObjectsBatchSize,
+                           parallelism: Int = 4): Flow[(String, Option[String]), DeleteObjectResult, NotUsed] =
+    impl.deleteObjects(bucket, batchSize, parallelism)
+
+  /**
+   * Copies S3 Objects server side. Objects up to `multipartThreshold` bytes are copied with a single request,
+   * bigger ones with a multipart copy upload.
+   *
+   * @param s3Headers any headers you want to add to the copies
+   * @param parallelism the number of objects copied at the same time
+   * @param multipartThreshold size in bytes above which objects are copied with multipart copy, at most [[MaxSingleCopySize]]
+   * @param chunkSize the size of the parts of a multipart copy, minimum [[MinChunkSize]]
+   * @param chunkingParallelism the number of parallel requests used for a multipart copy, defaults to 4
+   * @return a [[akka.stream.scaladsl.Flow Flow]] emitting a [[CopyObjectResult]] per [[CopyObject]], in order
+   */
+  def copyObjects(s3Headers: S3Headers = S3Headers.empty,
+                  parallelism: Int = 4,
+                  multipartThreshold: Long = MaxSingleCopySize,
+                  chunkSize: Int = MinChunkSize,
+                  chunkingParallelism: Int = 4): Flow[CopyObject, CopyObjectResult, NotUsed] =
+    impl.copyObjects(s3Headers, parallelism, multipartThreshold, chunkSize, chunkingParallelism)
+
   /**
    * Uploads a S3 Object, use this for small files and [[multipartUpload]] for bigger ones
    *
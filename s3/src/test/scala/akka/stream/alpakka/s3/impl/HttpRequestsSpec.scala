@@ -10,7 +10,7 @@ import akka.actor.ActorSystem
 import akka.http.scaladsl.Http
 import akka.http.scaladsl.model.Uri.Query
 import akka.http.scaladsl.model.headers.{ByteRange, RawHeader}
-import akka.http.scaladsl.model.{HttpEntity, HttpRequest, IllegalUriException, MediaTypes}
+import akka.http.scaladsl.model.{HttpEntity, HttpMethods, HttpRequest, IllegalUriException, MediaTypes}
 import akka.stream.ActorMaterializer
 import akka.stream.alpakka.s3.acl.CannedAcl
 import akka.stream.alpakka.s3.{BufferType, MemoryBufferType, Proxy, S3Settings}
@@ -18,6 +18,7 @@ import akka.stream.scaladsl.Source
 import akka.testkit.{SocketUtil, TestProbe}
 import com.amazonaws.auth.{AWSCredentialsProvider, AWSStaticCredentialsProvider, AnonymousAWSCredentials}
 import com.amazonaws.regions.AwsRegionProvider
+import com.amazonaws.util.Md5Utils
 import org.scalatest.concurrent.ScalaFutures
 import org.scalatest.{FlatSpec, Matchers}
 
@@ -384,4 +385,29 @@ class HttpRequestsSpec extends FlatSpec with Matchers with ScalaFutures {
     request.headers should contain(RawHeader("x-amz-copy-source", "/source-bucket/some/source-key?versionId=abcdwxyz"))
     request.headers should contain(RawHeader("x-amz-copy-source-range", "bytes=0-5242879"))
   }
+
+  it should "create a single request copy with the source header" in {
+    implicit val settings: S3Settings = getSettings()
+
+    val request = HttpRequests.copyObjectRequest(S3Location("source-bucket", "some/source-key"),
+                                                 S3Location("target-bucket", "target-key"),
+                                                 Some("abcdwxyz"))
+    request.method shouldEqual HttpMethods.PUT
+    request.uri.path.toString shouldEqual "/target-key"
+    request.headers should contain(RawHeader("x-amz-copy-source", "/source-bucket/some/source-key?versionId=abcdwxyz"))
+    request.headers.map(_.lowercaseName()) should not contain "x-amz-copy-source-range"
+  }
+
+  it should "create a multi-object delete request with the payload md5" in {
+    implicit val settings: S3Settings = getSettings()
+
+    val request = HttpRequests.deleteObjectsRequest("bucket", Seq("a" -> None, "b/c" -> Some("v1")))
+    request.method shouldEqual HttpMethods.POST
+    request.uri.rawQueryString shouldEqual Some("delete")
+
+    val body = request.entity.asInstanceOf[HttpEntity.Strict].data
+    body.utf8String should include("<Object><Key>a</Key></Object>")
+    body.utf8String should include("<Object><Key>b/c</Key><VersionId>v1</VersionId></Object>")
+    request.headers should contain(RawHeader("Content-MD5", Md5Utils.md5AsBase64(body.toArray)))
+  }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.s3.impl
+
+import java.time.Instant
+
+import akka.actor.ActorSystem
+import akka.stream.{ActorMaterializer, ActorMaterializerSettings}
+import akka.stream.alpakka.s3.scaladsl.ListBucketResultContents
+import akka.stream.alpakka.xml.scaladsl.XmlParsing
+import akka.stream.scaladsl.{Keep, Sink, Source}
+import akka.testkit.TestKit
+import akka.util.ByteString
+import org.scalatest.{BeforeAndAfterAll, FlatSpecLike, Matchers}
+import org.scalatest.concurrent.ScalaFutures
+
+class ListBucketResultParserSpec(_system: ActorSystem)
+    extends TestKit(_system)
+    with FlatSpecLike
+    with Matchers
+    with BeforeAndAfterAll
+    with ScalaFutures {
+
+  def this() = this(ActorSystem("ListBucketResultParserSpec"))
+
+  implicit val materializer = ActorMaterializer(ActorMaterializerSettings(system).withDebugLogging(true))
+
+  override def afterAll(): Unit = TestKit.shutdownActorSystem(system)
+
+  def response(truncated: Boolean, continuationToken: String = "") =
+    s"""<?xml version="1.0" encoding="UTF-8"?>
+       |<ListBucketResult xmlns="http://s3.amazonaws.com/doc/2006-03-01/">
+       |    <Name>bucket</Name>
+       |    <Prefix/>
+       |    <KeyCount>205</KeyCount>
+       |    <MaxKeys>1000</MaxKeys>
+       |    $continuationToken
+       |    <IsTruncated>$truncated</IsTruncated>
+       |    <Contents>
+       |        <Key>my-image.jpg</Key>
+       |        <LastModified>2009-10-12T17:50:30.000Z</LastModified>
+       |        <ETag>&quot;fba9dede5f27731c9771645a39863328&quot;</ETag>
+       |        <Size>434234</Size>
+       |        <StorageClass>STANDARD</StorageClass>
+       |    </Contents>
+       |    <Contents>
+       |        <Key>my-image2.jpg</Key>
+       |        <LastModified>2009-10-12T17:50:31.000Z</LastModified>
+       |        <ETag>&quot;599bab3ed2c697f1d26842727561fd94&quot;</ETag>
+       |        <Size>1234</Size>
+       |        <StorageClass>REDUCED_REDUNDANCY</StorageClass>
+       |    </Contents>
+       |</ListBucketResult>""".stripMargin
+
+  val contents = Seq(
+    ListBucketResultContents("bucket",
+                             "my-image.jpg",
+                             "fba9dede5f27731c9771645a39863328",
+                             434234,
+                             Instant.parse("2009-10-12T17:50:30Z"),
+                             "STANDARD"),
+    ListBucketResultContents("bucket",
+                             "my-image2.jpg",
+                             "599bab3ed2c697f1d26842727561fd94",
+                             1234,
+                             Instant.parse("2009-10-12T17:50:31Z"),
+                             "REDUCED_REDUNDANCY")
+  )
+
+  def parse(xml: String, chunkSize: Int = 16) =
+    Source(ByteString(xml).grouped(chunkSize).toList)
+      .via(XmlParsing.parser)
+      .viaMat(new ListBucketResultParser)(Keep.right)
+      .toMat(Sink.seq)(Keep.both)
+      .run()
+
+  "ListBucketResultParser" should "emit the contents of a complete response" in {
+    val (continuation, result) = parse(response(truncated = false))
+
+    result.futureValue shouldEqual contents
+    continuation.futureValue shouldBe None
+  }
+
+  it should "use the value of the `NextContinuationToken` element of a truncated API V2 response" in {
+    val (continuation, result) =
+      parse(response(truncated = true, "<NextContinuationToken>dummy/continuation/token</NextContinuationToken>"))
+
+    result.futureValue shouldEqual contents
+    continuation.futureValue shouldBe Some("dummy/continuation/token")
+  }
+
+  it should "use the last key as the marker of a truncated API V1 response" in {
+    val (continuation, result) = parse(response(truncated = true))
+
+    result.futureValue shouldEqual contents
+    continuation.futureValue shouldBe Some("my-image2.jpg")
+  }
+
+  it should "parse a response that arrives in a single chunk" in {
+    val xml = response(truncated = true, "<NextContinuationToken>dummy/continuation/token</NextContinuationToken>")
+    val (continuation, result) = parse(xml, chunkSize = xml.length)
+
+    result.futureValue shouldEqual contents
+    continuation.futureValue shouldBe Some("dummy/continuation/token")
+  }
+
+  it should "fail when the response ends before the document is complete" in {
+    val xml = response(truncated = false)
+    val (continuation, result) = parse(xml.take(xml.indexOf("</ListBucketResult>")))
+
+    result.failed.futureValue shouldBe an[Exception]
+    continuation.failed.futureValue shouldBe an[Exception]
+  }
+}
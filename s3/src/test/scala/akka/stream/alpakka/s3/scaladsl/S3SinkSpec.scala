@@ -4,7 +4,7 @@
 
 package akka.stream.alpakka.s3.scaladsl
 
-import akka.stream.alpakka.s3.{MemoryBufferType, Proxy, S3Settings}
+import akka.stream.alpakka.s3.{MemoryBufferType, Proxy, S3Exception, S3Settings}
 import akka.stream.alpakka.s3.impl.{ListBucketVersion2, S3Headers, ServerSideEncryption}
 import akka.stream.scaladsl.{Sink, Source}
 import akka.util.ByteString
@@ -12,6 +12,13 @@ import akka.util.ByteString
 import scala.concurrent.Future
 import com.amazonaws.auth.{AWSStaticCredentialsProvider, BasicAWSCredentials}
 import com.amazonaws.regions.AwsRegionProvider
+import com.github.tomakehurst.wiremock.client.WireMock.{
+  containing,
+  headRequestedFor,
+  postRequestedFor,
+  putRequestedFor,
+  urlEqualTo
+}
 
 class S3SinkSpec extends S3WireMockBase with S3ClientIntegrationSpec {
 
@@ -153,6 +160,70 @@ class S3SinkSpec extends S3WireMockBase with S3ClientIntegrationSpec {
                                                       Some("43jfkodU8493jnFJD9fjj3HHNVfdsQUIFDNsidf038jfdsjGFDSIRp"))
   }
 
+  "S3Client.copyObjects" should "copy objects up to the multipart threshold with a single request" in {
+    mockSingleCopy(body.length, "text/plain")
+    mock.resetRequests()
+
+    val result = Source
+      .single(CopyObject(bucket, bucketKey, targetBucket, targetBucketKey))
+      .via(s3Client.copyObjects(multipartThreshold = S3Client.MinChunkSize))
+      .runWith(Sink.head)
+
+    result.futureValue.eTag shouldBe Some(etag)
+    mock.verifyThat(1, headRequestedFor(urlEqualTo(s"/$bucketKey")))
+    mock.verifyThat(0, postRequestedFor(urlEqualTo(s"/$targetBucketKey?uploads")))
+  }
+
+  it should "copy objects over the multipart threshold with a multipart copy of the source content type" in {
+    mockCopyMulti()
+    mockSingleCopy((5242880 * 1.5).toLong, "text/plain")
+    mock.resetRequests()
+
+    val result = Source
+      .single(CopyObject(bucket, bucketKey, targetBucket, targetBucketKey))
+      .via(s3Client.copyObjects(multipartThreshold = S3Client.MinChunkSize))
+      .runWith(Sink.head)
+
+    result.futureValue.eTag shouldBe Some(etag)
+    mock.verifyThat(1, headRequestedFor(urlEqualTo(s"/$bucketKey")))
+    mock.verifyThat(
+      1,
+      postRequestedFor(urlEqualTo(s"/$targetBucketKey?uploads")).withHeader("Content-Type", containing("text/plain"))
+    )
+    mock.verifyThat(0, putRequestedFor(urlEqualTo(s"/$targetBucketKey")))
+  }
+
+  it should "report a missing source object" in {
+    mock404s()
+
+    val result = Source
+      .single(CopyObject(bucket, bucketKey, targetBucket, targetBucketKey))
+      .via(s3Client.copyObjects())
+      .runWith(Sink.head)
+
+    result.futureValue.error.map(_.asInstanceOf[S3Exception].code) shouldBe Some("NoSuchKey")
+  }
+
+  "S3Client.deleteObjects" should "emit the results of all batches in the order of the keys" in {
+    val keys = Seq("a", "b", "c", "d", "e")
+    // the first batch is answered last
+    mockDeleteObjects(keys.grouped(2).toList, failedKey = "c", firstBatchDelay = 500)
+
+    val result = Source(keys.toList)
+      .via(s3Client.deleteObjects(bucket, batchSize = 2, parallelism = 3))
+      .runWith(Sink.seq)
+      .futureValue
+
+    result.map(r => (r.key, r.isDeleted)) shouldBe Seq(
+      ("a", true),
+      ("b", true),
+      ("c", false),
+      ("d", true),
+      ("e", true)
+    )
+    result(2).error.map(_.code) shouldBe Some("AccessDenied")
+  }
+
   override protected def afterAll(): Unit = {
     super.afterAll()
     stopWireMockServer()
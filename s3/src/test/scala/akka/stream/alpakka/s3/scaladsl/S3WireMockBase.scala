@@ -716,6 +716,63 @@ abstract class S3WireMockBase(_system: ActorSystem, _wireMockServer: WireMockSer
         )
     )
   }
+
+  def mockSingleCopy(contentLength: Long, contentType: String): Unit = {
+    mock.register(
+      head(urlEqualTo(s"/$bucketKey"))
+        .willReturn(
+          aResponse()
+            .withStatus(200)
+            .withHeader("ETag", "\"" + etag + "\"")
+            .withHeader("Content-Type", contentType)
+            .withHeader("Content-Length", s"$contentLength")
+        )
+    )
+
+    mock.register(
+      put(urlEqualTo(s"/$targetBucketKey"))
+        .withHeader("x-amz-copy-source", new EqualToPattern(s"/$bucket/$bucketKey"))
+        .willReturn(
+          aResponse()
+            .withStatus(200)
+            .withHeader("x-amz-request-id", "5A37448A37622243")
+            .withBody(s"""<?xml version="1.0" encoding="UTF-8"?>
+                         |<CopyObjectResult>
+                         |  <LastModified>2009-10-28T22:32:00.000Z</LastModified>
+                         |  <ETag>"$etag"</ETag>
+                         |</CopyObjectResult>""".stripMargin)
+        )
+    )
+  }
+
+  /**
+   * Answers the multi-object delete request of each of the `batches` with its keys in reverse order, reporting an
+   * error for `failedKey`.
+   */
+  def mockDeleteObjects(batches: Seq[Seq[String]], failedKey: String, firstBatchDelay: Int): Unit =
+    batches.zipWithIndex.foreach {
+      case (keys, index) =>
+        val results = keys.reverse.map {
+          case `failedKey` =>
+            s"<Error><Key>$failedKey</Key><Code>AccessDenied</Code><Message>Access Denied</Message></Error>"
+          case key =>
+            s"<Deleted><Key>$key</Key></Deleted>"
+        }
+        mock.register(
+          post(urlEqualTo("/?delete"))
+            .withRequestBody(containing(keys.map(key => s"<Key>$key</Key>").mkString("</Object><Object>")))
+            .willReturn(
+              aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/xml")
+                .withFixedDelay(if (index == 0) firstBatchDelay else 0)
+                .withBody(s"""<?xml version="1.0" encoding="UTF-8"?>
+                             |<DeleteResult xmlns="http://s3.amazonaws.com/doc/2006-03-01/">
+                             |  ${results.mkString}
+                             |</DeleteResult>""".stripMargin)
+            )
+        )
+    }
 }
 
 private object S3WireMockBase {
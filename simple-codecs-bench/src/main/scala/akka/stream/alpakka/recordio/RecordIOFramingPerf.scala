@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.recordio
+
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.stream.alpakka.recordio.scaladsl.RecordIOFraming
+import akka.stream.scaladsl.{Sink, Source}
+import akka.stream.{ActorMaterializer, Materializer}
+import akka.util.ByteString
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+object RecordIOFramingPerf {
+  final val Records = 10000
+
+  /*
+   * An entry point for debugging purposes - invoke whatever you need to debug
+   */
+  def main(args: Array[String]): Unit = {
+    val test = new RecordIOFramingPerf()
+    test.recordSize = 1024
+    test.chunkSize = 8192
+    test.setup()
+    try {
+      for (_ <- 0 until 100) test.frame()
+    } finally {
+      test.tearDown()
+    }
+  }
+}
+
+/**
+ * Framing throughput of a RecordIO stream such as Mesos scheduler events. Run with `-prof gc` to see the
+ * allocation rate per record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+class RecordIOFramingPerf {
+
+  import RecordIOFramingPerf._
+
+  private implicit val system: ActorSystem = ActorSystem("recordioperf")
+  private implicit val mat: Materializer = ActorMaterializer()
+
+  @Param(Array("100", "1024", "65536"))
+  var recordSize: Int = _
+
+  @Param(Array("1024", "8192", "65536"))
+  var chunkSize: Int = _
+
+  private var chunks: List[ByteString] = _
+
+  @Setup
+  def setup(): Unit = {
+    val record = ByteString(s"$recordSize\n") ++ ByteString(Array.fill[Byte](recordSize)('x'.toByte))
+    val stream = Iterator.fill(Records)(record).foldLeft(ByteString.newBuilder)(_ ++= _).result()
+    chunks = stream.grouped(chunkSize).map(_.compact).toList
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Records)
+  def frame(): Long =
+    Await.result(
+      Source(chunks)
+        .via(RecordIOFraming.scanner())
+        .runFold(0L)(_ + _.size),
+      10.seconds
+    )
+
+  @TearDown
+  def tearDown(): Unit =
+    system.terminate()
+}
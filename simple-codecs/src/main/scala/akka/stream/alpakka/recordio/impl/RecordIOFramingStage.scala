@@ -11,9 +11,6 @@ import akka.stream.stage.{GraphStage, GraphStageLogic, InHandler, OutHandler}
 import akka.stream.{Attributes, FlowShape, Inlet, Outlet}
 import akka.util.ByteString
 
-import scala.annotation.tailrec
-import scala.util.{Failure, Success, Try}
-
 /**
  * INTERNAL API
  */
@@ -35,11 +32,15 @@ private[recordio] class RecordIOFramingStage(maxRecordLength: Int)
 
   override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
     new GraphStageLogic(shape) with InHandler with OutHandler {
+      // Incoming chunks that are not fully consumed yet, concatenated without copying. `position` is the offset
+      // of the first unconsumed byte, consumed chunks are dropped only when a record is emitted or more
+      // data is needed.
       private var buffer = ByteString.empty
+      private var position = 0
 
-      private def trimWhitespace(): Unit = buffer = buffer.dropWhile(isWhitespace)
-
-      private var currentRecordLength: Option[Int] = None // the byte length of the next record, if known
+      private var state: State = SkippingWhitespace
+      private var recordLength = 0L // the byte length of the next record, as far as parsed
+      private var prefixLength = 0 // the number of digits of the record size prefix parsed so far
 
       override def onPush(): Unit = {
         buffer ++= grab(in)
@@ -49,7 +50,7 @@ private[recordio] class RecordIOFramingStage(maxRecordLength: Int)
       override def onPull(): Unit = doParse()
 
       override def onUpstreamFinish(): Unit =
-        if (buffer.isEmpty) {
+        if (state == SkippingWhitespace && position == buffer.size) {
           completeStage()
         } else if (isAvailable(out)) {
           doParse()
@@ -60,49 +61,76 @@ private[recordio] class RecordIOFramingStage(maxRecordLength: Int)
           failStage(new FramingException("Stream finished but there was a truncated final record in the buffer."))
         } else pull(in)
 
-      @tailrec
+      private def needMore(): Unit = {
+        buffer = buffer.drop(position)
+        position = 0
+        if (state == SkippingWhitespace && isClosed(in)) completeStage()
+        else tryPull()
+      }
+
       private def doParse(): Unit =
-        currentRecordLength match {
-          case Some(length) if buffer.size >= length =>
-            val (record, buf) = buffer.splitAt(length)
-            buffer = buf.compact
-            trimWhitespace()
-
-            currentRecordLength = None
-
-            push(out, record.compact)
-          case Some(_) =>
-            tryPull()
-          case None =>
-            trimWhitespace()
-            buffer.indexOf(LineFeed) match {
-              case -1 if buffer.size > maxRecordPrefixLength =>
-                failStage(new FramingException(s"Record size prefix is longer than $maxRecordPrefixLength bytes."))
-              case -1 if isClosed(in) && buffer.isEmpty =>
-                completeStage()
-              case -1 =>
-                tryPull()
-              case lfPos =>
-                val (recordSizePrefix, buf) = buffer.splitAt(lfPos)
-                buffer = buf.drop(1).compact
-
-                Try(recordSizePrefix.utf8String.toInt) match {
-                  case Success(length) if length > maxRecordLength =>
-                    failStage(
-                      new FramingException(
-                        s"Record of size $length bytes exceeds maximum of $maxRecordLength bytes."
-                      )
-                    )
-                  case Success(length) if length < 0 =>
-                    failStage(new FramingException(s"Record size prefix $length is negative."))
-                  case Success(length) =>
-                    currentRecordLength = Some(length)
-                    doParse()
-                  case Failure(ex) =>
-                    failStage(ex)
-                }
+        if (state == ReadingRecord) {
+          val end = position + recordLength.toInt
+          if (buffer.size >= end) {
+            val record = buffer.slice(position, end)
+            buffer = buffer.drop(end)
+            position = 0
+            state = SkippingWhitespace
+            push(out, record)
+          } else needMore()
+        } else if (parsePrefix()) doParse()
+
+      /**
+       * Parses whitespace and the record size prefix byte by byte.
+       *
+       * @return true when the prefix is complete, false when more data is needed or the stage failed
+       */
+      private def parsePrefix(): Boolean = {
+        val bytes = buffer.iterator.drop(position)
+        while (bytes.hasNext) {
+          val byte = bytes.next()
+          position += 1
+          if (state == SkippingWhitespace) {
+            if (isDigit(byte)) {
+              state = ReadingPrefix
+              recordLength = byte - Zero
+              prefixLength = 1
+            } else if (!isWhitespace(byte)) {
+              return invalidPrefix(byte)
+            }
+          } else if (isDigit(byte)) {
+            recordLength = recordLength * 10 + (byte - Zero)
+            prefixLength += 1
+            if (prefixLength > maxRecordPrefixLength) {
+              failStage(new FramingException(s"Record size prefix is longer than $maxRecordPrefixLength bytes."))
+              return false
+            }
+          } else if (byte == LineFeed) {
+            if (recordLength > maxRecordLength) {
+              failStage(
+                new FramingException(
+                  s"Record of size $recordLength bytes exceeds maximum of $maxRecordLength bytes."
+                )
+              )
+              return false
             }
+            state = ReadingRecord
+            return true
+          } else {
+            return invalidPrefix(byte)
+          }
         }
+        needMore()
+        false
+      }
+
+      private def invalidPrefix(byte: Byte): Boolean = {
+        if (byte == Minus && state == SkippingWhitespace)
+          failStage(new FramingException("Record size prefix is negative."))
+        else
+          failStage(new NumberFormatException(s"Invalid character '${byte.toChar}' in record size prefix."))
+        false
+      }
 
       setHandlers(in, out, this)
     }
@@ -119,7 +147,17 @@ private object RecordIOFramingStage {
   private val Tab = '\t'.toByte
   private val Space = ' '.toByte
 
-  private val Whitespace: Set[Byte] = Set(LineFeed, CarriageReturn, Tab, Space)
+  private val Zero = '0'.toByte
+  private val Nine = '9'.toByte
+  private val Minus = '-'.toByte
+
+  private def isWhitespace(byte: Byte): Boolean =
+    byte == LineFeed || byte == CarriageReturn || byte == Tab || byte == Space
+
+  private def isDigit(byte: Byte): Boolean = byte >= Zero && byte <= Nine
 
-  private def isWhitespace(byte: Byte): Boolean = Whitespace.contains(byte)
+  private sealed trait State
+  private case object SkippingWhitespace extends State
+  private case object ReadingPrefix extends State
+  private case object ReadingRecord extends State
 }
@@ -25,7 +25,8 @@ object RecordIOFraming {
    *
    * The parser ignores whitespace before or after each record. It is agnostic to the record data contents.
    *
-   * The flow will emit each record's data as a byte string.
+   * The flow will emit each record's data as a byte string. The records are slices of the incoming byte strings,
+   * call `compact` on records that are kept around for long to release the memory of the surrounding data.
    *
    * @param maxRecordLength The maximum record length allowed. If a record is indicated to be longer, this Flow will fail the stream.
    */
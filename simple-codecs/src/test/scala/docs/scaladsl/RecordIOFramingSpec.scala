@@ -98,6 +98,29 @@ class RecordIOFramingSpec(_system: ActorSystem)
     result.futureValue shouldBe Seq(FirstRecordData, SecondRecordData)
   }
 
+  it should "parse a stream delivered byte by byte" in {
+    // Given
+    val input = ByteString(s" $FirstRecordWithPrefix\n$SecondRecordWithPrefix\n").grouped(1).toList
+
+    // When
+    val result = Source(input) via
+    RecordIOFraming.scanner() runWith
+    stringSeqSink
+
+    // Then
+    result.futureValue shouldBe Seq(FirstRecordData, SecondRecordData)
+  }
+
+  it should "parse empty records" in {
+    // When
+    val result = Source.single(ByteString(s"0\n${SecondRecordWithPrefix}0\n")) via
+    RecordIOFraming.scanner() runWith
+    stringSeqSink
+
+    // Then
+    result.futureValue shouldBe Seq("", SecondRecordData, "")
+  }
+
   it should "handle an empty stream" in {
     // When
     val result =
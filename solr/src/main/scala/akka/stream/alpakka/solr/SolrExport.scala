@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.solr
+
+import akka.NotUsed
+import akka.stream.ActorAttributes
+import akka.stream.scaladsl.Source
+import org.apache.solr.client.solrj.impl.{CloudSolrClient, HttpSolrClient}
+import org.apache.solr.client.solrj.io.Tuple
+import org.apache.solr.client.solrj.io.comp._
+import org.apache.solr.client.solrj.io.stream.{SolrStream, StreamContext}
+import org.apache.solr.common.SolrDocument
+import org.apache.solr.common.cloud.{Replica, ZkCoreNodeProps}
+import org.apache.solr.common.params.{CommonParams, CursorMarkParams, ModifiableSolrParams}
+
+import scala.collection.JavaConverters._
+import scala.collection.immutable
+import scala.util.Random
+import scala.util.control.NonFatal
+
+/**
+ * Reads the documents of a collection from a replica of every shard in parallel, with the `/export` handler or in
+ * pages with a `cursorMark`. Every shard is read on the blocking IO dispatcher behind an async boundary, which
+ * buffers a few documents of it at most.
+ */
+private[solr] object SolrExport {
+
+  def source(collection: String,
+             query: String,
+             fields: immutable.Seq[String],
+             settings: SolrExportSettings,
+             client: CloudSolrClient): Source[Tuple, NotUsed] = {
+    // parsing the sort up front fails early on an invalid one
+    val ordering = if (settings.mergeSorted) Some(Ordering.comparatorToOrdering(comparator(settings.sort))) else None
+    Source
+      .lazily { () =>
+        val shards = shardUrls(collection, client).map(shard(_, params(query, fields, settings), settings))
+        ordering match {
+          case Some(ord) => mergeSorted(shards)(ord)
+          case None => Source(shards).flatMapMerge(math.max(shards.size, 1), identity)
+        }
+      }
+      .mapMaterializedValue(_ => NotUsed)
+  }
+
+  private def mergeSorted(shards: immutable.IndexedSeq[Source[Tuple, NotUsed]])(
+      implicit ord: Ordering[Tuple]
+  ): Source[Tuple, NotUsed] =
+    shards.size match {
+      case 0 => Source.empty
+      case 1 => shards.head
+      case n =>
+        val (left, right) = shards.splitAt(n / 2)
+        mergeSorted(left).mergeSorted(mergeSorted(right))
+    }
+
+  /** The core URL of an active replica of every active shard, picked at random to spread the load. */
+  private def shardUrls(collection: String, client: CloudSolrClient): immutable.IndexedSeq[String] = {
+    client.connect()
+    val state = client.getZkStateReader.getClusterState
+    val liveNodes = state.getLiveNodes
+    state.getCollection(collection).getActiveSlices.asScala.toVector.map { slice =>
+      val replicas = slice.getReplicas.asScala.toVector.filter { replica =>
+        replica.getState == Replica.State.ACTIVE && liveNodes.contains(replica.getNodeName)
+      }
+      if (replicas.isEmpty)
+        throw new IllegalStateException(s"No active replica of shard ${slice.getName} of $collection")
+      new ZkCoreNodeProps(replicas(Random.nextInt(replicas.size))).getCoreUrl
+    }
+  }
+
+  private def params(query: String, fields: immutable.Seq[String], settings: SolrExportSettings) = {
+    val params = new ModifiableSolrParams()
+    params.set(CommonParams.Q, query)
+    params.set(CommonParams.FL, fields.mkString(","))
+    params.set(CommonParams.SORT, settings.sort)
+    params.set(CommonParams.DISTRIB, false)
+    if (settings.useExportHandler) params.set(CommonParams.QT, "/export")
+    else params.set(CommonParams.ROWS, settings.pageSize)
+    params
+  }
+
+  private def shard(url: String, params: ModifiableSolrParams, settings: SolrExportSettings): Source[Tuple, NotUsed] = {
+    val source =
+      if (settings.useExportHandler)
+        Source.unfoldResource[Tuple, SolrStream](() => openStream(url, params), readStream, _.close())
+      else
+        Source.unfoldResource[Tuple, CursorPager](() => new CursorPager(url, params), _.read(), _.close())
+    source.addAttributes(ActorAttributes.IODispatcher).async
+  }
+
+  private def openStream(url: String, params: ModifiableSolrParams): SolrStream = {
+    val stream = new SolrStream(url, params)
+    stream.setStreamContext(new StreamContext())
+    try stream.open()
+    catch {
+      case NonFatal(e) =>
+        stream.close()
+        throw e
+    }
+    stream
+  }
+
+  private def readStream(stream: SolrStream): Option[Tuple] = {
+    val tuple = stream.read()
+    if (tuple.EOF) None
+    else if (tuple.EXCEPTION) throw new IllegalStateException(tuple.getException)
+    else Some(tuple)
+  }
+
+  /** Reads the documents of a core in pages, until the `cursorMark` doesn't move anymore. */
+  private final class CursorPager(url: String, params: ModifiableSolrParams) {
+    private val client = new HttpSolrClient.Builder(url).build()
+    private var cursorMark = CursorMarkParams.CURSOR_MARK_START
+    private var page: Iterator[SolrDocument] = Iterator.empty
+    private var done = false
+
+    def read(): Option[Tuple] = {
+      while (!page.hasNext && !done) fetch()
+      if (page.hasNext) Some(new Tuple(new java.util.HashMap[String, AnyRef](page.next())))
+      else None
+    }
+
+    private def fetch(): Unit = {
+      val request = new ModifiableSolrParams(params)
+      request.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark)
+      val response = client.query(request)
+      page = response.getResults.iterator.asScala
+      done = response.getNextCursorMark == cursorMark
+      cursorMark = response.getNextCursorMark
+    }
+
+    def close(): Unit = client.close()
+  }
+
+  /** The comparator of a sort like `year desc,id asc`. */
+  private[solr] def comparator(sort: String): StreamComparator = {
+    val comparators: immutable.Seq[StreamComparator] = sort.split(",").map(_.trim).filter(_.nonEmpty).toList.map {
+      spec =>
+        spec.split("\\s+") match {
+          case Array(field, "asc") => new FieldComparator(field, ComparatorOrder.ASCENDING)
+          case Array(field, "desc") => new FieldComparator(field, ComparatorOrder.DESCENDING)
+          case _ => throw new IllegalArgumentException(s"Invalid sort ($spec). Requirement: a field and asc or desc")
+        }
+    }
+    comparators match {
+      case Nil => throw new IllegalArgumentException("Invalid empty sort")
+      case single :: Nil => single
+      case _ => new MultipleFieldComparator(comparators: _*)
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.solr
+
+final class SolrExportSettings private (val sort: String,
+                                        val mergeSorted: Boolean,
+                                        val useExportHandler: Boolean,
+                                        val pageSize: Int) {
+  require(pageSize >= 1, s"Invalid value ($pageSize) for pageSize. Requirement: pageSize >= 1")
+
+  /**
+   * The sort of the documents of every shard, like `id asc` or `year desc,id asc`.
+   *
+   * Default: id asc
+   */
+  def withSort(value: String): SolrExportSettings = copy(sort = value)
+
+  /**
+   * Whether the documents of the shards are merged in the order of `sort`, otherwise they are emitted as they
+   * arrive.
+   *
+   * Default: false
+   */
+  def withMergeSorted(value: Boolean): SolrExportSettings = copy(mergeSorted = value)
+
+  /**
+   * Whether the shards are read with the `/export` handler, which needs doc values for all fields and the sort.
+   * Otherwise they are read in pages of `pageSize` documents with a `cursorMark`, which needs the sort to end with
+   * the unique key field.
+   *
+   * Default: true
+   */
+  def withUseExportHandler(value: Boolean): SolrExportSettings = copy(useExportHandler = value)
+
+  /**
+   * The number of documents read per request with a `cursorMark`.
+   *
+   * Default: 1000
+   */
+  def withPageSize(value: Int): SolrExportSettings = copy(pageSize = value)
+
+  private def copy(sort: String = sort,
+                   mergeSorted: Boolean = mergeSorted,
+                   useExportHandler: Boolean = useExportHandler,
+                   pageSize: Int = pageSize): SolrExportSettings =
+    new SolrExportSettings(sort = sort,
+                           mergeSorted = mergeSorted,
+                           useExportHandler = useExportHandler,
+                           pageSize = pageSize)
+
+  override def toString =
+    s"""SolrExportSettings(sort=$sort,mergeSorted=$mergeSorted,useExportHandler=$useExportHandler,pageSize=$pageSize)"""
+}
+
+object SolrExportSettings {
+
+  val Defaults = new SolrExportSettings(sort = "id asc", mergeSorted = false, useExportHandler = true, pageSize = 1000)
+
+  /** Scala API */
+  def apply(): SolrExportSettings = Defaults
+
+  /** Java API */
+  def create(): SolrExportSettings = Defaults
+}
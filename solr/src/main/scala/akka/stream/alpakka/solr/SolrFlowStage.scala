@@ -5,6 +5,7 @@
 package akka.stream.alpakka.solr
 
 import akka.NotUsed
+import akka.dispatch.ExecutionContexts
 import akka.stream.stage._
 import akka.stream._
 import org.apache.solr.client.solrj.SolrClient
@@ -14,6 +15,9 @@ import org.apache.solr.common.SolrInputDocument
 
 import scala.annotation.tailrec
 import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.concurrent.{ExecutionContext, Future}
+import scala.util.{Failure, Success, Try}
 
 @deprecated(
   "you should use a specific incoming message case class: IncomingUpsertMessage/IncomingDeleteMessageByIds/IncomingDeleteMessageByQuery/IncomingAtomicUpdateMessage",
@@ -205,6 +209,13 @@ final case class IncomingMessageResult[T, C](idField: Option[String],
                                              passThrough: C,
                                              status: Int)
 
+/**
+ * Sends the batches of messages to Solr from the blocking IO dispatcher, with up to `parallelism` batches in flight.
+ * The results are emitted in the order of the batches.
+ *
+ * A `CloudSolrClient` splits every update request by the shard leaders its documents are routed to and sends the
+ * parts to the leaders directly.
+ */
 private[solr] final class SolrFlowStage[T, C](
     collection: String,
     client: SolrClient,
@@ -216,9 +227,6 @@ private[solr] final class SolrFlowStage[T, C](
   private val out = Outlet[Seq[IncomingMessageResult[T, C]]]("result")
   override val shape = FlowShape(in, out)
 
-  override protected def initialAttributes: Attributes =
-    super.initialAttributes and Attributes(ActorAttributes.IODispatcher)
-
   override def createLogic(inheritedAttributes: Attributes): SolrFlowLogic[T, C] =
     new SolrFlowLogic[T, C](collection, client, in, out, shape, settings, messageBinder)
 }
@@ -242,29 +250,46 @@ private[solr] final class SolrFlowLogic[T, C](
     with InHandler
     with StageLogging {
 
+  /** A batch sent to Solr, with its results once the requests returned. */
+  private final class Batch(val messages: Seq[IncomingMessage[T, C]]) {
+    var results: Option[Seq[IncomingMessageResult[T, C]]] = None
+  }
+
+  // the batches whose results are not emitted yet, in order
+  private val batches = mutable.Queue[Batch]()
+  private var blockingEc: ExecutionContext = _
+  private val responseHandler = getAsyncCallback[(Batch, Try[Int])](handleResponse)
+
   setHandlers(in, out, this)
 
-  override def onPull(): Unit =
+  override def onPull(): Unit = {
+    emitCompleted()
     tryPull()
+  }
 
   override def onPush(): Unit = {
-    val messagesIn = grab(in)
-
-    sendBulkToSolr(messagesIn)
-
+    val batch = new Batch(grab(in))
+    batches.enqueue(batch)
+    Future(sendBulkToSolr(batch.messages))(blockingEc)
+      .onComplete(result => responseHandler.invoke((batch, result)))(ExecutionContexts.sameThreadExecutionContext)
     tryPull()
   }
 
-  override def preStart(): Unit =
+  override def preStart(): Unit = {
+    val actorMaterializer = ActorMaterializerHelper.downcast(materializer)
+    blockingEc = actorMaterializer.system.dispatchers.lookup(actorMaterializer.settings.blockingIoDispatcher)
+    log.debug(s"Sending to $collection with parallelism ${settings.parallelism}")
     pull(in)
+  }
 
   override def onUpstreamFailure(ex: Throwable): Unit =
     handleFailure(ex)
 
-  override def onUpstreamFinish(): Unit = handleSuccess
+  override def onUpstreamFinish(): Unit =
+    if (batches.isEmpty) handleSuccess()
 
   private def tryPull(): Unit =
-    if (!isClosed(in) && !hasBeenPulled(in)) {
+    if (batches.size < settings.parallelism && !isClosed(in) && !hasBeenPulled(in)) {
       pull(in)
     }
 
@@ -273,24 +298,34 @@ private[solr] final class SolrFlowLogic[T, C](
     failStage(exc)
   }
 
-  private def handleResponse(args: (Seq[IncomingMessage[T, C]], Int)): Unit = {
-    val (messages, status) = args
-    log.debug(s"Handle the response with $status")
-    val result = messages.map(
-      m =>
-        IncomingMessageResult(m.idField,
-                              m.idFieldValue,
-                              m.routingFieldValue,
-                              m.query,
-                              m.source,
-                              m.updates,
-                              m.passThrough,
-                              status)
-    )
-
-    emit(out, result)
+  private def handleResponse(args: (Batch, Try[Int])): Unit = args match {
+    case (batch, Success(status)) =>
+      log.debug(s"Handle the response with $status")
+      batch.results = Some(
+        batch.messages.map(
+          m =>
+            IncomingMessageResult(m.idField,
+                                  m.idFieldValue,
+                                  m.routingFieldValue,
+                                  m.query,
+                                  m.source,
+                                  m.updates,
+                                  m.passThrough,
+                                  status)
+        )
+      )
+      emitCompleted()
+      tryPull()
+    case (_, Failure(exc)) =>
+      handleFailure(exc)
   }
 
+  private def emitCompleted(): Unit =
+    if (batches.nonEmpty && batches.head.results.isDefined && isAvailable(out)) {
+      push(out, batches.dequeue().results.get)
+      if (isClosed(in) && batches.isEmpty) handleSuccess()
+    }
+
   private def handleSuccess(): Unit =
     completeStage()
 
@@ -358,7 +393,7 @@ private[solr] final class SolrFlowLogic[T, C](
     responses.find(_.getStatus != 0).getOrElse(responses.head)
   }
 
-  private def sendBulkToSolr(messages: Seq[IncomingMessage[T, C]]): Unit = {
+  private def sendBulkToSolr(messages: Seq[IncomingMessage[T, C]]): Int = {
 
     @tailrec
     def send(toSend: Seq[IncomingMessage[T, C]]): UpdateResponse = {
@@ -382,6 +417,6 @@ private[solr] final class SolrFlowLogic[T, C](
     }
 
     val response = if (messages.nonEmpty) send(messages) else new UpdateResponse
-    handleResponse((messages, response.getStatus))
+    response.getStatus
   }
 }
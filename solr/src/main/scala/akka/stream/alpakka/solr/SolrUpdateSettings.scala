@@ -4,19 +4,37 @@
 
 package akka.stream.alpakka.solr
 
-import scala.concurrent.duration.{FiniteDuration, _}
-
 //#solr-update-settings
 final case class SolrUpdateSettings(
-    commitWithin: Int = -1
+    commitWithin: Int = -1,
+    parallelism: Int = 1
 ) {
+  require(parallelism >= 1, s"Invalid value ($parallelism) for parallelism. Requirement: parallelism >= 1")
+
+  // keeps the constructor of the settings before `parallelism`
+  def this(commitWithin: Int) = this(commitWithin, 1)
+
+  /**
+   * Max time (in ms) before a commit will happen, -1 for manual committing.
+   */
   def withCommitWithin(commitWithin: Int): SolrUpdateSettings =
     copy(commitWithin = commitWithin)
+
+  /**
+   * The number of batches sent to Solr at once. The results are emitted in the order of the batches, but with more
+   * than one batch in flight Solr may apply a later batch before an earlier one. Keep the default if the changes of
+   * a document, or a delete by query, must be applied in the order of the messages.
+   */
+  def withParallelism(parallelism: Int): SolrUpdateSettings =
+    copy(parallelism = parallelism)
 }
 //#solr-update-settings
 
 object SolrUpdateSettings {
 
+  // keeps the factory of the settings before `parallelism`
+  def apply(commitWithin: Int): SolrUpdateSettings = new SolrUpdateSettings(commitWithin)
+
   /**
    * Java API
    */
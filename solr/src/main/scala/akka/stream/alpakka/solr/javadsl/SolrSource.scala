@@ -5,11 +5,14 @@
 package akka.stream.alpakka.solr.javadsl
 
 import akka.NotUsed
-import akka.stream.alpakka.solr.SolrSourceStage
+import akka.stream.alpakka.solr.{SolrExport, SolrExportSettings, SolrSourceStage}
 import akka.stream.javadsl.Source
+import org.apache.solr.client.solrj.impl.CloudSolrClient
 import org.apache.solr.client.solrj.io.Tuple
 import org.apache.solr.client.solrj.io.stream.TupleStream
 
+import scala.collection.JavaConverters._
+
 object SolrSource {
 
   /**
@@ -17,4 +20,15 @@ object SolrSource {
    */
   def fromTupleStream(ts: TupleStream): Source[Tuple, NotUsed] =
     Source.fromGraph(new SolrSourceStage(ts))
+
+  /**
+   * Java API: creates a source of the `fields` of the documents of `collection` matching `query`, read from a
+   * replica of every shard in parallel, see [[SolrExportSettings]].
+   */
+  def export(collection: String,
+             query: String,
+             fields: java.util.List[String],
+             settings: SolrExportSettings,
+             client: CloudSolrClient): Source[Tuple, NotUsed] =
+    SolrExport.source(collection, query, fields.asScala.toList, settings, client).asJava
 }
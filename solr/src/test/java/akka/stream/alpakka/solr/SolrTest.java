@@ -142,6 +142,35 @@ public class SolrTest {
     assertEquals(expect, result);
   }
 
+  @Test
+  public void exportDocuments() throws Exception {
+    // #run-export
+    CompletionStage<List<String>> res =
+        SolrSource.export(
+                "collection1",
+                "*:*",
+                Arrays.asList("title", "comment"),
+                SolrExportSettings.create().withSort("title asc").withMergeSorted(true),
+                cluster.getSolrClient())
+            .map(t -> tupleToBook.apply(t).title)
+            .runWith(Sink.seq(), materializer);
+    // #run-export
+
+    List<String> result = new ArrayList<>(res.toCompletableFuture().get());
+
+    List<String> expect =
+        Arrays.asList(
+            "Akka Concurrency",
+            "Akka in Action",
+            "Effective Akka",
+            "Learning Scala",
+            "Programming in Scala",
+            "Scala Puzzlers",
+            "Scala for Spark in Production");
+
+    assertEquals(expect, result);
+  }
+
   @Test
   public void beanStream() throws Exception {
     // Copy collection1 to collection3 through bean stream
@@ -12,6 +12,7 @@ import akka.stream.ActorMaterializer
 import akka.stream.alpakka.solr.scaladsl.{SolrFlow, SolrSink, SolrSource}
 import akka.stream.scaladsl.{Sink, Source}
 import akka.testkit.TestKit
+import org.apache.solr.client.solrj.SolrQuery
 import org.apache.solr.client.solrj.embedded.JettyConfig
 import org.apache.solr.client.solrj.impl.{CloudSolrClient, ZkClientClusterStateProvider}
 import org.apache.solr.client.solrj.io.stream.expr.{StreamExpressionParser, StreamFactory}
@@ -267,6 +268,132 @@ class SolrSpec extends WordSpecLike with Matchers with BeforeAndAfterAll {
     }
   }
 
+  "SolrSource" should {
+    "export the documents of all shards sorted" in {
+      //#run-export
+      val res = SolrSource
+        .export(
+          collection = "collection1",
+          query = "*:*",
+          fields = List("title", "comment"),
+          settings = SolrExportSettings().withSort("title asc").withMergeSorted(true)
+        )
+        .map(tupleToBook)
+        .map(_.title)
+        .runWith(Sink.seq)
+      //#run-export
+
+      Await.result(res, Duration.Inf) shouldEqual Seq(
+        "Akka Concurrency",
+        "Akka in Action",
+        "Effective Akka",
+        "Learning Scala",
+        "Programming in Scala",
+        "Scala Puzzlers",
+        "Scala for Spark in Production"
+      )
+    }
+
+    "page through the documents of all shards with a cursorMark" in {
+      val res = SolrSource
+        .export(
+          collection = "collection1",
+          query = "*:*",
+          fields = List("title"),
+          settings = SolrExportSettings().withSort("title asc").withUseExportHandler(false).withPageSize(2)
+        )
+        .map(_.getString("title"))
+        .runWith(Sink.seq)
+
+      Await.result(res, Duration.Inf).sorted shouldEqual Seq(
+        "Akka Concurrency",
+        "Akka in Action",
+        "Effective Akka",
+        "Learning Scala",
+        "Programming in Scala",
+        "Scala Puzzlers",
+        "Scala for Spark in Production"
+      )
+    }
+
+    "merge the sorted documents of several shards" in {
+      client.getZkStateReader.getClusterState.getCollection("collection13").getActiveSlices.size shouldEqual 3
+
+      val res = SolrSource
+        .export(
+          collection = "collection13",
+          query = "*:*",
+          fields = List("title"),
+          settings = SolrExportSettings().withSort("title desc").withMergeSorted(true)
+        )
+        .map(_.getString("title"))
+        .runWith(Sink.seq)
+
+      Await.result(res, Duration.Inf) shouldEqual shardedTitles.sorted.reverse
+    }
+
+    "merge the pages of several shards sorted" in {
+      val res = SolrSource
+        .export(
+          collection = "collection13",
+          query = "*:*",
+          fields = List("title"),
+          settings = SolrExportSettings()
+            .withSort("title asc")
+            .withMergeSorted(true)
+            .withUseExportHandler(false)
+            .withPageSize(4)
+        )
+        .map(_.getString("title"))
+        .runWith(Sink.seq)
+
+      Await.result(res, Duration.Inf) shouldEqual shardedTitles.sorted
+    }
+
+    "emit the documents of several shards as they arrive" in {
+      val res = SolrSource
+        .export(
+          collection = "collection13",
+          query = "*:*",
+          fields = List("title"),
+          settings = SolrExportSettings().withSort("title asc")
+        )
+        .map(_.getString("title"))
+        .runWith(Sink.seq)
+
+      val result = Await.result(res, Duration.Inf)
+      result.size shouldEqual shardedTitles.size
+      result.sorted shouldEqual shardedTitles.sorted
+    }
+  }
+
+  "SolrFlow" should {
+    "store several batches at once and emit the results in order" in {
+      createCollection("collection12") //create a new collection
+
+      val titles = (1 to 20).map(i => s"Book $i")
+      val res1 = Source(titles)
+        .map(title => IncomingUpsertMessage(Book(title), title))
+        .grouped(3)
+        .via(
+          SolrFlow.typedsWithPassThrough[Book, String](
+            collection = "collection12",
+            settings = SolrUpdateSettings(commitWithin = 5).withParallelism(4),
+            binder = bookToDoc
+          )
+        )
+        .runWith(Sink.seq)
+
+      val result1 = Await.result(res1, Duration.Inf)
+
+      assert(result1.flatten.forall(_.status == 0))
+      result1.flatten.map(_.passThrough) shouldEqual titles
+
+      client.commit("collection12")
+      client.query("collection12", new SolrQuery("*:*")).getResults.getNumFound shouldEqual 20
+    }
+  }
+
   "SolrFlow" should {
     "kafka-example - store documents and pass responses with passThrough" in {
       createCollection("collection6") //create new collection
@@ -681,8 +808,16 @@ class SolrSpec extends WordSpecLike with Matchers with BeforeAndAfterAll {
       .add("title", "Effective Akka")
       .add("title", "Akka Concurrency")
       .commit(client, "collection1")
+
+    createCollection("collection13", numShards = 3)
+    val sharded = new UpdateRequest()
+    shardedTitles.foreach(title => sharded.add("title", title))
+    sharded.commit(client, "collection13")
   }
 
+  // spread over the shards of collection13 by the hash of the title
+  private val shardedTitles = (1 to 30).map(i => f"Book $i%02d")
+
   override def afterAll(): Unit = {
     //client.close()
     cluster.shutdown()
@@ -720,9 +855,10 @@ class SolrSpec extends WordSpecLike with Matchers with BeforeAndAfterAll {
     assertTrue(!client.getZkStateReader.getClusterState.getLiveNodes.isEmpty)
   }
 
-  private def createCollection(name: String, routerFieldOpt: Option[String] = None) =
+  private def createCollection(name: String, routerFieldOpt: Option[String] = None, numShards: Int = 1) =
     CollectionAdminRequest
-      .createCollection(name, "conf", 1, 1)
+      .createCollection(name, "conf", numShards, 1)
+      .setMaxShardsPerNode(numShards)
       .setRouterField(routerFieldOpt.orNull)
       .process(client)
 
@@ -753,5 +889,13 @@ class SolrSpec extends WordSpecLike with Matchers with BeforeAndAfterAll {
     val settings =
       SolrUpdateSettings(commitWithin = -1)
     //#solr-update-settings
+    //#solr-export-settings
+    val exportSettings =
+      SolrExportSettings()
+        .withSort("id asc")
+        .withMergeSorted(false)
+        .withUseExportHandler(true)
+        .withPageSize(1000)
+    //#solr-export-settings
   }
 }
@@ -11,15 +11,27 @@ import scala.concurrent.duration._
 
 final class SqsPublishGroupedSettings private (val maxBatchSize: Int,
                                                val maxBatchWait: scala.concurrent.duration.FiniteDuration,
-                                               val concurrentRequests: Int) {
+                                               val concurrentRequests: Int,
+                                               val maxBatchBytes: Int) {
 
   require(
     maxBatchSize > 0 && maxBatchSize <= 10,
     s"Invalid value for maxBatchSize: $maxBatchSize. It should be 0 < maxBatchSize < 10, due to the Amazon SQS requirements."
   )
 
+  require(
+    maxBatchBytes > 0 && maxBatchBytes <= 262144,
+    s"Invalid value for maxBatchBytes: $maxBatchBytes. It should be 0 < maxBatchBytes <= 262144, due to the Amazon SQS requirements."
+  )
+
   def withMaxBatchSize(value: Int): SqsPublishGroupedSettings = copy(maxBatchSize = value)
 
+  /**
+   * The maximum payload of a batch, counting the message bodies and the names, types and values of their
+   * message attributes. A message larger than this is sent in a batch of its own.
+   */
+  def withMaxBatchBytes(value: Int): SqsPublishGroupedSettings = copy(maxBatchBytes = value)
+
   /** Scala API */
   def withMaxBatchWait(value: scala.concurrent.duration.FiniteDuration): SqsPublishGroupedSettings =
     copy(maxBatchWait = value)
@@ -43,13 +55,15 @@ final class SqsPublishGroupedSettings private (val maxBatchSize: Int,
 
   private def copy(maxBatchSize: Int = maxBatchSize,
                    maxBatchWait: scala.concurrent.duration.FiniteDuration = maxBatchWait,
-                   concurrentRequests: Int = concurrentRequests): SqsPublishGroupedSettings =
+                   concurrentRequests: Int = concurrentRequests,
+                   maxBatchBytes: Int = maxBatchBytes): SqsPublishGroupedSettings =
     new SqsPublishGroupedSettings(maxBatchSize = maxBatchSize,
                                   maxBatchWait = maxBatchWait,
-                                  concurrentRequests = concurrentRequests)
+                                  concurrentRequests = concurrentRequests,
+                                  maxBatchBytes = maxBatchBytes)
 
   override def toString =
-    s"""SqsPublishGroupedSettings(maxBatchSize=$maxBatchSize,maxBatchWait=$maxBatchWait,concurrentRequests=$concurrentRequests)"""
+    s"""SqsPublishGroupedSettings(maxBatchSize=$maxBatchSize,maxBatchWait=$maxBatchWait,concurrentRequests=$concurrentRequests,maxBatchBytes=$maxBatchBytes)"""
 
 }
 
@@ -58,7 +72,8 @@ object SqsPublishGroupedSettings {
   val Defaults = new SqsPublishGroupedSettings(
     maxBatchSize = 10,
     maxBatchWait = 500.millis,
-    concurrentRequests = 1
+    concurrentRequests = 1,
+    maxBatchBytes = 262144
   )
 
   /** Scala API */
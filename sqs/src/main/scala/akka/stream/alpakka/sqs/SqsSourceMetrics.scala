@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.sqs
+
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong}
+
+import scala.concurrent.duration._
+
+/**
+ * Live figures of a running [[akka.stream.alpakka.sqs.scaladsl.SqsSource SqsSource]], which adapts the number of
+ * concurrent receive requests to the observed message rate and buffer occupancy.
+ */
+final class SqsSourceMetrics private[sqs] () {
+  private[sqs] val concurrency = new AtomicInteger()
+  private[sqs] val requestsInFlight = new AtomicInteger()
+  private[sqs] val received = new AtomicLong()
+  private[sqs] val emptyReceives = new AtomicLong()
+  private[sqs] val latencyNanos = new AtomicLong()
+
+  /** The number of receive requests the source currently runs concurrently at most. */
+  def currentConcurrency: Int = concurrency.get()
+
+  /** The number of receive requests waiting for a response. */
+  def inFlightRequests: Int = requestsInFlight.get()
+
+  /** Number of messages received. */
+  def receivedCount: Long = received.get()
+
+  /** Number of receive requests that returned no messages. */
+  def emptyReceiveCount: Long = emptyReceives.get()
+
+  /** The receive request latency, smoothed over the recent requests. */
+  def receiveLatency: FiniteDuration = latencyNanos.get().nanos
+
+  /** Java API */
+  def getReceiveLatency: java.time.Duration = java.time.Duration.ofNanos(latencyNanos.get())
+
+  override def toString: String =
+    s"SqsSourceMetrics(currentConcurrency=$currentConcurrency, inFlightRequests=$inFlightRequests, " +
+    s"receivedCount=$receivedCount, emptyReceiveCount=$emptyReceiveCount, receiveLatency=${receiveLatency.toMillis}ms)"
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.sqs
+
+import scala.concurrent.duration._
+
+final class SqsVisibilityHeartbeatSettings private (val visibilityTimeout: FiniteDuration,
+                                                    val heartbeatInterval: FiniteDuration,
+                                                    val maxExtension: FiniteDuration) {
+  // SQS requirements
+  require(
+    1.second <= visibilityTimeout && visibilityTimeout <= 12.hours,
+    s"Invalid value ($visibilityTimeout) for visibilityTimeout. Requirement: 1 second <= visibilityTimeout <= 12 hours"
+  )
+  require(
+    visibilityTimeout == visibilityTimeout.toSeconds.seconds,
+    s"Invalid value ($visibilityTimeout) for visibilityTimeout. Requirement: whole seconds"
+  )
+  require(
+    heartbeatInterval > Duration.Zero && heartbeatInterval < visibilityTimeout,
+    s"Invalid value ($heartbeatInterval) for heartbeatInterval. Requirement: 0 < heartbeatInterval < visibilityTimeout"
+  )
+
+  /**
+   * The visibility timeout messages are received with, and which every heartbeat sets again. SQS takes it in whole
+   * seconds.
+   *
+   * Default: 30 seconds
+   */
+  def withVisibilityTimeout(value: FiniteDuration): SqsVisibilityHeartbeatSettings = copy(visibilityTimeout = value)
+
+  /** Java API */
+  def withVisibilityTimeout(value: java.time.Duration): SqsVisibilityHeartbeatSettings =
+    withVisibilityTimeout(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  /**
+   * How often the visibility timeout of messages still being processed is extended.
+   *
+   * Default: 10 seconds
+   */
+  def withHeartbeatInterval(value: FiniteDuration): SqsVisibilityHeartbeatSettings = copy(heartbeatInterval = value)
+
+  /** Java API */
+  def withHeartbeatInterval(value: java.time.Duration): SqsVisibilityHeartbeatSettings =
+    withHeartbeatInterval(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  /**
+   * How long after receiving a message its visibility is extended at most, afterwards the message becomes visible
+   * to other consumers when its visibility timeout expires.
+   *
+   * Default: 12 hours
+   */
+  def withMaxExtension(value: FiniteDuration): SqsVisibilityHeartbeatSettings = copy(maxExtension = value)
+
+  /** Java API */
+  def withMaxExtension(value: java.time.Duration): SqsVisibilityHeartbeatSettings =
+    withMaxExtension(FiniteDuration(value.toMillis, MILLISECONDS))
+
+  private def copy(visibilityTimeout: FiniteDuration = visibilityTimeout,
+                   heartbeatInterval: FiniteDuration = heartbeatInterval,
+                   maxExtension: FiniteDuration = maxExtension): SqsVisibilityHeartbeatSettings =
+    new SqsVisibilityHeartbeatSettings(visibilityTimeout = visibilityTimeout,
+                                       heartbeatInterval = heartbeatInterval,
+                                       maxExtension = maxExtension)
+
+  override def toString =
+    s"""SqsVisibilityHeartbeatSettings(visibilityTimeout=$visibilityTimeout,heartbeatInterval=$heartbeatInterval,maxExtension=$maxExtension)"""
+}
+
+object SqsVisibilityHeartbeatSettings {
+
+  val Defaults = new SqsVisibilityHeartbeatSettings(
+    visibilityTimeout = 30.seconds,
+    heartbeatInterval = 10.seconds,
+    maxExtension = 12.hours
+  )
+
+  /** Scala API */
+  def apply(): SqsVisibilityHeartbeatSettings = Defaults
+
+  /** Java API */
+  def create(): SqsVisibilityHeartbeatSettings = Defaults
+}
@@ -13,7 +13,6 @@ import com.amazonaws.handlers.AsyncHandler
 import com.amazonaws.services.sqs.AmazonSQSAsync
 import com.amazonaws.services.sqs.model._
 
-import scala.collection.mutable.ListBuffer
 import scala.concurrent.{Future, Promise}
 import scala.util.{Failure, Success, Try}
 
@@ -110,12 +109,14 @@ import scala.util.{Failure, Success, Try}
                   responsePromise.failure(batchException)
                   failureCallback.invoke(batchException)
                 } else {
-                  val results = ListBuffer.empty[SqsPublishResult]
+                  // SQS does not return the entries in request order, the ids are the message indices
+                  val results = new Array[SqsPublishResult](nrOfMessages)
 
                   val successfulMessages = result.getSuccessful.iterator()
                   while (successfulMessages.hasNext) {
                     val successfulMessage: SendMessageBatchResultEntry = successfulMessages.next()
-                    val messageBody: String = messages(successfulMessage.getId.toInt).getMessageBody
+                    val index = successfulMessage.getId.toInt
+                    val messageBody: String = messages(index).getMessageBody
 
                     val sendMessageResult: SendMessageResult = new SendMessageResult()
                       .withMD5OfMessageAttributes(successfulMessage.getMD5OfMessageAttributes)
@@ -123,10 +124,10 @@ import scala.util.{Failure, Success, Try}
                       .withMessageId(successfulMessage.getMessageId)
                       .withSequenceNumber(successfulMessage.getSequenceNumber)
 
-                    results += SqsPublishResult(sendMessageResult, messageBody)
+                    results(index) = SqsPublishResult(sendMessageResult, messageBody)
                   }
 
-                  responsePromise.success(results.toList)
+                  responsePromise.success(results.iterator.filter(_ != null).toList)
                   sendCallback.invoke(result)
                 }
             }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.sqs.impl
+
+import akka.annotation.InternalApi
+import akka.stream.stage._
+import akka.stream.{Attributes, FlowShape, Inlet, Outlet}
+import com.amazonaws.services.sqs.model.SendMessageRequest
+
+import scala.collection.{immutable, mutable}
+import scala.concurrent.duration.FiniteDuration
+
+/**
+ * INTERNAL API
+ *
+ * Packs messages into batches of at most `maxBatchSize` messages and `maxBatchBytes` payload bytes, a batch is also
+ * emitted when `maxBatchWait` passed since its first message arrived.
+ */
+@InternalApi private[sqs] final class SqsPublishBatchingStage(maxBatchSize: Int,
+                                                              maxBatchBytes: Int,
+                                                              maxBatchWait: FiniteDuration)
+    extends GraphStage[FlowShape[SendMessageRequest, immutable.Seq[SendMessageRequest]]] {
+
+  private val in = Inlet[SendMessageRequest]("SqsPublishBatching.in")
+  private val out = Outlet[immutable.Seq[SendMessageRequest]]("SqsPublishBatching.out")
+
+  override def shape: FlowShape[SendMessageRequest, immutable.Seq[SendMessageRequest]] = FlowShape(in, out)
+
+  override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
+    new TimerGraphStageLogic(shape) with InHandler with OutHandler {
+
+      private var batch = Vector.newBuilder[SendMessageRequest]
+      private var batchCount = 0
+      private var batchBytes = 0L
+      // holds at most the batch waiting for downstream and the one closed after it
+      private val ready = mutable.Queue.empty[immutable.Seq[SendMessageRequest]]
+
+      override def preStart(): Unit = pull(in)
+
+      override def onPush(): Unit = {
+        val message = grab(in)
+        val size = SqsPublishBatchingStage.payloadSize(message)
+        if (batchCount > 0 && batchBytes + size > maxBatchBytes) closeBatch()
+        if (batchCount == 0) scheduleOnce(SqsPublishBatchingStage.BatchWait, maxBatchWait)
+        batch += message
+        batchCount += 1
+        batchBytes += size
+        if (batchCount == maxBatchSize) closeBatch()
+        progress()
+      }
+
+      override def onUpstreamFinish(): Unit = {
+        if (batchCount > 0) closeBatch()
+        progress()
+      }
+
+      override def onPull(): Unit = progress()
+
+      override protected def onTimer(timerKey: Any): Unit = {
+        if (batchCount > 0) closeBatch()
+        progress()
+      }
+
+      private def closeBatch(): Unit = {
+        cancelTimer(SqsPublishBatchingStage.BatchWait)
+        ready.enqueue(batch.result())
+        batch = Vector.newBuilder[SendMessageRequest]
+        batchCount = 0
+        batchBytes = 0L
+      }
+
+      private def progress(): Unit = {
+        if (ready.nonEmpty && isAvailable(out)) push(out, ready.dequeue())
+        if (ready.isEmpty) {
+          if (isClosed(in)) completeStage()
+          else if (!hasBeenPulled(in)) pull(in)
+        }
+      }
+
+      setHandlers(in, out, this)
+    }
+}
+
+/**
+ * INTERNAL API
+ */
+@InternalApi private[sqs] object SqsPublishBatchingStage {
+
+  private case object BatchWait
+
+  /**
+   * The size SQS counts against the payload limit: the message body plus the name, data type and value of each
+   * message attribute.
+   */
+  def payloadSize(message: SendMessageRequest): Long = {
+    var size = utf8Length(message.getMessageBody).toLong
+    val attributes = message.getMessageAttributes.entrySet().iterator()
+    while (attributes.hasNext) {
+      val attribute = attributes.next()
+      val value = attribute.getValue
+      size += utf8Length(attribute.getKey) + utf8Length(value.getDataType)
+      if (value.getStringValue != null) size += utf8Length(value.getStringValue)
+      if (value.getBinaryValue != null) size += value.getBinaryValue.remaining()
+    }
+    size
+  }
+
+  /** Counts the UTF-8 encoded length without encoding the string. */
+  private def utf8Length(s: String): Int =
+    if (s == null) 0
+    else {
+      var length = 0
+      var i = 0
+      while (i < s.length) {
+        val c = s.charAt(i)
+        if (c < 0x80) length += 1
+        else if (c < 0x800) length += 2
+        else if (Character.isHighSurrogate(c) && i + 1 < s.length && Character.isLowSurrogate(s.charAt(i + 1))) {
+          length += 4
+          i += 1
+        } else length += 3
+        i += 1
+      }
+      length
+    }
+}
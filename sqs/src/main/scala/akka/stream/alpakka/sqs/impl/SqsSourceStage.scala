@@ -7,9 +7,9 @@ package akka.stream.alpakka.sqs.impl
 import java.util
 
 import akka.annotation.InternalApi
-import akka.stream.alpakka.sqs.SqsSourceSettings
-import akka.stream.stage.{GraphStage, GraphStageLogic, OutHandler}
-import akka.stream.{Attributes, Outlet, SourceShape}
+import akka.stream.alpakka.sqs.{SqsSourceMetrics, SqsSourceSettings}
+import akka.stream.stage.{GraphStageLogic, GraphStageWithMaterializedValue, OutHandler, TimerGraphStageLogic}
+import akka.stream.{Attributes, Outlet, Shape, SourceShape}
 import com.amazonaws.handlers.AsyncHandler
 import com.amazonaws.services.sqs.AmazonSQSAsync
 import com.amazonaws.services.sqs.model.{Message, ReceiveMessageRequest, ReceiveMessageResult}
@@ -21,106 +21,167 @@ import scala.collection.JavaConverters._
  */
 @InternalApi private[sqs] final class SqsSourceStage(queueUrl: String, settings: SqsSourceSettings)(
     implicit sqsClient: AmazonSQSAsync
-) extends GraphStage[SourceShape[Message]] {
+) extends GraphStageWithMaterializedValue[SourceShape[Message], SqsSourceMetrics] {
 
   val out: Outlet[Message] = Outlet("SqsSource.out")
   override val shape: SourceShape[Message] = SourceShape(out)
 
-  override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
-    new GraphStageLogic(shape) {
+  override def createLogicAndMaterializedValue(
+      inheritedAttributes: Attributes
+  ): (GraphStageLogic, SqsSourceMetrics) = {
+    val metrics = new SqsSourceMetrics()
+    (new SqsSourceLogic(shape, out, queueUrl, settings, metrics), metrics)
+  }
+}
 
-      private val maxConcurrency = settings.maxBufferSize / settings.maxBatchSize
-      private val buffer = new util.ArrayDeque[Message]()
+/**
+ * INTERNAL API
+ *
+ * Receives messages into a buffer and emits them to `out`.
+ *
+ * The number of concurrent receive requests adapts additively-increase/multiplicatively-decrease: it grows by one
+ * for every full batch received while the buffer is at most half full (downstream keeps up), and halves on every
+ * empty receive. It always stays between 1 and `maxBufferSize / maxBatchSize`.
+ */
+@InternalApi private[sqs] class SqsSourceLogic(shape: Shape,
+                                                out: Outlet[Message],
+                                                queueUrl: String,
+                                                settings: SqsSourceSettings,
+                                                metrics: SqsSourceMetrics)(
+    implicit sqsClient: AmazonSQSAsync
+) extends TimerGraphStageLogic(shape) {
 
-      private val successCallback = getAsyncCallback[ReceiveMessageResult](handleSuccess)
+  private val maxConcurrency = settings.maxBufferSize / settings.maxBatchSize
+  protected val buffer = new util.ArrayDeque[Message]()
 
-      private val failureCallback = getAsyncCallback[Exception](handleFailure)
+  private val successCallback = getAsyncCallback[(ReceiveMessageResult, Long)] {
+    case (result, startedAt) => handleSuccess(result, startedAt)
+  }
 
-      private var maxCurrentConcurrency = maxConcurrency
-      private var currentRequests = 0
-      private var closeAfterDrain = false
+  private val failureCallback = getAsyncCallback[Exception](handleFailure)
 
-      private def canReceiveNewMessages = {
-        val currentFreeRequests = (settings.maxBufferSize - buffer.size) / settings.maxBatchSize
-        currentFreeRequests > currentRequests &&
-        maxCurrentConcurrency > currentRequests &&
-        !closeAfterDrain
-      }
+  private var maxCurrentConcurrency = maxConcurrency
+  private var currentRequests = 0
+  protected var closeAfterDrain = false
 
-      private def shouldTerminateStage =
-        closeAfterDrain &&
-        currentRequests == 0 &&
-        buffer.isEmpty
+  metrics.concurrency.set(maxCurrentConcurrency)
 
-      def receiveMessages(): Unit = {
+  private def canReceiveNewMessages = {
+    val currentFreeRequests = (settings.maxBufferSize - buffer.size) / settings.maxBatchSize
+    currentFreeRequests > currentRequests &&
+    maxCurrentConcurrency > currentRequests &&
+    !closeAfterDrain
+  }
 
-        currentRequests = currentRequests + 1
+  private def shouldTerminateStage =
+    closeAfterDrain &&
+    currentRequests == 0 &&
+    buffer.isEmpty
 
-        var request = new ReceiveMessageRequest(queueUrl)
-          .withAttributeNames(settings.attributeNames.map(_.name).asJava)
-          .withMessageAttributeNames(settings.messageAttributeNames.map(_.name).asJava)
-          .withMaxNumberOfMessages(settings.maxBatchSize)
-          .withWaitTimeSeconds(settings.waitTimeSeconds)
+  def receiveMessages(): Unit = {
 
-        request = setVisibilityTimeoutIfExists(request)
+    currentRequests = currentRequests + 1
+    metrics.requestsInFlight.set(currentRequests)
 
-        sqsClient.receiveMessageAsync(
-          request,
-          new AsyncHandler[ReceiveMessageRequest, ReceiveMessageResult] {
-            override def onError(e: Exception): Unit =
-              failureCallback.invoke(e)
+    var request = new ReceiveMessageRequest(queueUrl)
+      .withAttributeNames(settings.attributeNames.map(_.name).asJava)
+      .withMessageAttributeNames(settings.messageAttributeNames.map(_.name).asJava)
+      .withMaxNumberOfMessages(settings.maxBatchSize)
+      .withWaitTimeSeconds(settings.waitTimeSeconds)
 
-            override def onSuccess(request: ReceiveMessageRequest, result: ReceiveMessageResult): Unit =
-              successCallback.invoke(result)
-          }
-        )
+    request = setVisibilityTimeoutIfExists(request)
+
+    val startedAt = System.nanoTime()
+    sqsClient.receiveMessageAsync(
+      request,
+      new AsyncHandler[ReceiveMessageRequest, ReceiveMessageResult] {
+        override def onError(e: Exception): Unit =
+          failureCallback.invoke(e)
+
+        override def onSuccess(request: ReceiveMessageRequest, result: ReceiveMessageResult): Unit =
+          successCallback.invoke((result, startedAt))
       }
+    )
+  }
 
-      def handleFailure(ex: Exception): Unit =
-        failStage(ex)
+  def handleFailure(ex: Exception): Unit =
+    failStage(ex)
 
-      def handleSuccess(result: ReceiveMessageResult): Unit = {
-        currentRequests = currentRequests - 1
-        maxCurrentConcurrency = if (result.getMessages.isEmpty) 1 else maxConcurrency
+  def handleSuccess(result: ReceiveMessageResult, startedAt: Long): Unit = {
+    currentRequests = currentRequests - 1
+    metrics.requestsInFlight.set(currentRequests)
 
-        val receivedMessages = result.getMessages.asScala
-        receivedMessages.foreach(buffer.offer)
+    val receivedMessages = result.getMessages.asScala
+    recordReceive(receivedMessages.size, System.nanoTime() - startedAt)
+    adaptConcurrency(receivedMessages.size)
 
-        if (receivedMessages.isEmpty && settings.closeOnEmptyReceive) {
-          closeAfterDrain = true
-        }
+    // messages received after `out` was cancelled become visible again when their visibility timeout expires
+    if (!isClosed(out)) {
+      onReceived(receivedMessages)
+      receivedMessages.foreach(buffer.offer)
+    }
 
-        if (!buffer.isEmpty && isAvailable(out)) {
-          push(out, buffer.poll())
-        }
+    if (receivedMessages.isEmpty && settings.closeOnEmptyReceive) {
+      closeAfterDrain = true
+    }
 
-        receiveMoreOrComplete()
-      }
+    if (!buffer.isEmpty && isAvailable(out)) {
+      push(out, buffer.poll())
+    }
+
+    receiveMoreOrComplete()
+  }
+
+  private def adaptConcurrency(received: Int): Unit = {
+    if (received == 0)
+      maxCurrentConcurrency = math.max(1, maxCurrentConcurrency / 2)
+    else if (received == settings.maxBatchSize && buffer.size <= settings.maxBufferSize / 2)
+      maxCurrentConcurrency = math.min(maxConcurrency, maxCurrentConcurrency + 1)
+    metrics.concurrency.set(maxCurrentConcurrency)
+  }
+
+  private def recordReceive(received: Int, latencyNanos: Long): Unit = {
+    if (received == 0) metrics.emptyReceives.incrementAndGet()
+    else metrics.received.addAndGet(received)
+    // exponentially weighted moving average over roughly the last 8 requests
+    val previous = metrics.latencyNanos.get()
+    metrics.latencyNanos.set(if (previous == 0L) latencyNanos else previous + (latencyNanos - previous) / 8)
+  }
+
+  private def setVisibilityTimeoutIfExists(request: ReceiveMessageRequest) =
+    settings.visibilityTimeout
+      .map(_.toSeconds.toInt)
+      .map(request.withVisibilityTimeout(_))
+      .getOrElse(request)
+
+  private def receiveMoreOrComplete(): Unit =
+    if (canReceiveNewMessages) {
+      receiveMessages()
+    } else if (shouldTerminateStage) {
+      onDrained()
+    }
+
+  /** Called with every batch of received messages, before they are buffered. */
+  protected def onReceived(messages: Seq[Message]): Unit = ()
+
+  /** Called when the source stopped receiving and emitted all messages. */
+  protected def onDrained(): Unit = completeStage()
 
-      private def setVisibilityTimeoutIfExists(request: ReceiveMessageRequest) =
-        settings.visibilityTimeout
-          .map(_.toSeconds.toInt)
-          .map(request.withVisibilityTimeout(_))
-          .getOrElse(request)
+  /** Called when `out` was cancelled. */
+  protected def onCancelled(): Unit = completeStage()
 
-      private def receiveMoreOrComplete(): Unit =
-        if (canReceiveNewMessages) {
+  setHandler(
+    out,
+    new OutHandler {
+      override def onPull(): Unit =
+        if (!buffer.isEmpty) {
+          push(out, buffer.poll())
+          receiveMoreOrComplete()
+        } else if (currentRequests == 0 || canReceiveNewMessages) {
           receiveMessages()
-        } else if (shouldTerminateStage) {
-          completeStage()
         }
 
-      setHandler(
-        out,
-        new OutHandler {
-          override def onPull(): Unit =
-            if (!buffer.isEmpty) {
-              push(out, buffer.poll())
-              receiveMoreOrComplete()
-            } else {
-              receiveMessages()
-            }
-        }
-      )
+      override def onDownstreamFinish(): Unit = onCancelled()
     }
+  )
 }
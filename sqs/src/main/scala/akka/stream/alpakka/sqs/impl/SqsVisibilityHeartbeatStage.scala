@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.sqs.impl
+
+import akka.annotation.InternalApi
+import akka.stream.alpakka.sqs.{MessageAction, SqsSourceMetrics, SqsSourceSettings, SqsVisibilityHeartbeatSettings}
+import akka.stream.stage._
+import akka.stream.{Attributes, FanOutShape2}
+import com.amazonaws.handlers.AsyncHandler
+import com.amazonaws.services.sqs.AmazonSQSAsync
+import com.amazonaws.services.sqs.model.{
+  ChangeMessageVisibilityBatchRequest,
+  ChangeMessageVisibilityBatchRequestEntry,
+  ChangeMessageVisibilityBatchResult,
+  Message
+}
+
+import scala.collection.JavaConverters._
+import scala.util.{Failure, Success, Try}
+
+/**
+ * INTERNAL API
+ *
+ * Receives messages like [[SqsSourceStage]] and emits them to `out0`, towards the processing flow whose actions come
+ * back through `in` and are emitted to `out1`. A message is tracked from when it is received until its action comes
+ * back, including while it waits in the buffer. While tracked, the visibility timeout of the messages is extended
+ * every `heartbeatInterval` with batched `ChangeMessageVisibilityBatch` requests.
+ *
+ * The stage fails when a heartbeat request fails, or when SQS rejects the extension of a message which is still
+ * tracked, e.g. as its receipt handle is no longer valid and the message will be delivered again.
+ */
+@InternalApi private[sqs] final class SqsVisibilityHeartbeatStage(queueUrl: String,
+                                                                  settings: SqsSourceSettings,
+                                                                  heartbeatSettings: SqsVisibilityHeartbeatSettings)(
+    implicit sqsClient: AmazonSQSAsync
+) extends GraphStage[FanOutShape2[MessageAction, Message, MessageAction]] {
+
+  override val shape = new FanOutShape2[MessageAction, Message, MessageAction]("SqsVisibilityHeartbeat")
+
+  private val actionsIn = shape.in
+  private val messagesOut = shape.out0
+  private val actionsOut = shape.out1
+
+  override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
+    new SqsSourceLogic(shape, messagesOut, queueUrl, settings, new SqsSourceMetrics()) with StageLogging {
+
+      private final class Tracked(val message: Message, val receivedAt: Long)
+
+      private val maxBatchSize = 10
+      private val visibilityTimeoutSeconds = heartbeatSettings.visibilityTimeout.toSeconds.toInt
+      // keyed by receipt handle, in the order messages were received
+      private val tracked = new java.util.LinkedHashMap[String, Tracked]()
+
+      private val heartbeatDone =
+        getAsyncCallback[(Vector[ChangeMessageVisibilityBatchRequestEntry], Try[ChangeMessageVisibilityBatchResult])] {
+          case (_, Failure(e)) =>
+            failStage(e)
+          case (entries, Success(result)) =>
+            // entries of messages whose action came back in the meantime legitimately fail
+            val lost = result.getFailed.asScala.filter { entry =>
+              tracked.containsKey(entries(entry.getId.toInt).getReceiptHandle)
+            }
+            if (lost.nonEmpty)
+              failStage(
+                new IllegalStateException(
+                  s"Could not extend the visibility of ${lost.size} messages in processing: " +
+                  lost.map(entry => s"${entry.getCode} (${entry.getMessage})").mkString(", ")
+                )
+              )
+        }
+
+      override def preStart(): Unit =
+        schedulePeriodically(SqsVisibilityHeartbeatStage.Heartbeat, heartbeatSettings.heartbeatInterval)
+
+      override protected def onReceived(messages: Seq[Message]): Unit = {
+        val now = System.nanoTime()
+        messages.foreach(message => tracked.put(message.getReceiptHandle, new Tracked(message, now)))
+      }
+
+      // the actions of the messages in processing still need to pass
+      override protected def onDrained(): Unit =
+        if (!isClosed(messagesOut)) complete(messagesOut)
+
+      // the buffered messages become visible again when their visibility timeout expires
+      override protected def onCancelled(): Unit = {
+        closeAfterDrain = true
+        buffer.asScala.foreach(message => tracked.remove(message.getReceiptHandle))
+        buffer.clear()
+      }
+
+      setHandler(
+        actionsIn,
+        new InHandler {
+          override def onPush(): Unit = {
+            val action = grab(actionsIn)
+            tracked.remove(action.message.getReceiptHandle)
+            push(actionsOut, action)
+          }
+        }
+      )
+
+      setHandler(actionsOut, new OutHandler {
+        override def onPull(): Unit = pull(actionsIn)
+      })
+
+      override protected def onTimer(timerKey: Any): Unit = {
+        val deadline = System.nanoTime() - heartbeatSettings.maxExtension.toNanos
+        val entries = Vector.newBuilder[ChangeMessageVisibilityBatchRequestEntry]
+        val it = tracked.values().iterator()
+        while (it.hasNext) {
+          val t = it.next()
+          if (t.receivedAt - deadline < 0) {
+            log.warning("Stopped extending the visibility of message {} after {}",
+                        t.message.getMessageId,
+                        heartbeatSettings.maxExtension)
+            it.remove()
+          } else
+            entries += new ChangeMessageVisibilityBatchRequestEntry()
+              .withReceiptHandle(t.message.getReceiptHandle)
+              .withVisibilityTimeout(visibilityTimeoutSeconds)
+        }
+        entries.result().grouped(maxBatchSize).foreach(sendHeartbeat)
+      }
+
+      private def sendHeartbeat(entries: Vector[ChangeMessageVisibilityBatchRequestEntry]): Unit = {
+        val request = new ChangeMessageVisibilityBatchRequest(
+          queueUrl,
+          entries.zipWithIndex.map { case (entry, index) => entry.withId(index.toString) }.asJava
+        )
+        sqsClient.changeMessageVisibilityBatchAsync(
+          request,
+          new AsyncHandler[ChangeMessageVisibilityBatchRequest, ChangeMessageVisibilityBatchResult] {
+            override def onError(exception: Exception): Unit =
+              heartbeatDone.invoke((entries, Failure(exception)))
+
+            override def onSuccess(request: ChangeMessageVisibilityBatchRequest,
+                                   result: ChangeMessageVisibilityBatchResult): Unit =
+              heartbeatDone.invoke((entries, Success(result)))
+          }
+        )
+      }
+    }
+}
+
+/**
+ * INTERNAL API
+ */
+@InternalApi private[sqs] object SqsVisibilityHeartbeatStage {
+  private case object Heartbeat
+}
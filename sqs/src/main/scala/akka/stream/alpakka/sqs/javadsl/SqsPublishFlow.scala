@@ -36,7 +36,8 @@ object SqsPublishFlow {
 
   /**
    * creates a [[akka.stream.javadsl.Flow Flow]] that groups messages and publish them in batches to a SQS queue using an [[com.amazonaws.services.sqs.AmazonSQSAsync AmazonSQSAsync]]
-   * @see https://doc.akka.io/docs/akka/current/stream/operators/Source-or-Flow/groupedWithin.html#groupedwithin
+   *
+   * Batches are limited by message count and payload bytes, the results are emitted in message order.
    */
   def grouped(queueUrl: String,
               settings: SqsPublishGroupedSettings,
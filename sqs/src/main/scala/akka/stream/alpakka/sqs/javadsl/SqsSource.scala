@@ -5,9 +5,15 @@
 package akka.stream.alpakka.sqs.javadsl
 
 import akka.NotUsed
-import akka.stream.alpakka.sqs.SqsSourceSettings
+import akka.stream.alpakka.sqs.{
+  scaladsl,
+  MessageAction,
+  SqsSourceMetrics,
+  SqsSourceSettings,
+  SqsVisibilityHeartbeatSettings
+}
 import akka.stream.alpakka.sqs.impl.SqsSourceStage
-import akka.stream.javadsl.Source
+import akka.stream.javadsl.{Flow, Source}
 import com.amazonaws.services.sqs.AmazonSQSAsync
 import com.amazonaws.services.sqs.model.Message
 
@@ -20,6 +26,28 @@ object SqsSource {
    * Creates a source for a SQS queue.
    */
   def create(queueUrl: String, settings: SqsSourceSettings, sqs: AmazonSQSAsync): Source[Message, NotUsed] =
+    scaladsl.SqsSource(queueUrl, settings)(sqs).asJava
+
+  /**
+   * Creates a source for a SQS queue that materializes to live [[SqsSourceMetrics]] such as its current receive
+   * concurrency and receive latency.
+   */
+  def createWithMetrics(queueUrl: String,
+                        settings: SqsSourceSettings,
+                        sqs: AmazonSQSAsync): Source[Message, SqsSourceMetrics] =
     Source.fromGraph(new SqsSourceStage(queueUrl, settings)(sqs))
 
+  /**
+   * Creates a source for a SQS queue that runs the messages through `processing` and emits the resulting message
+   * actions, extending the visibility timeout of messages while they are processed.
+   *
+   * @see [[akka.stream.alpakka.sqs.scaladsl.SqsSource.withVisibilityHeartbeat]]
+   */
+  def createWithVisibilityHeartbeat[Mat](queueUrl: String,
+                                         settings: SqsSourceSettings,
+                                         heartbeatSettings: SqsVisibilityHeartbeatSettings,
+                                         processing: Flow[Message, MessageAction, Mat],
+                                         sqs: AmazonSQSAsync): Source[MessageAction, Mat] =
+    scaladsl.SqsSource.withVisibilityHeartbeat(queueUrl, settings, heartbeatSettings)(processing.asScala)(sqs).asJava
+
 }
@@ -5,7 +5,7 @@
 package akka.stream.alpakka.sqs.scaladsl
 
 import akka.NotUsed
-import akka.stream.alpakka.sqs.impl.{SqsBatchFlowStage, SqsFlowStage}
+import akka.stream.alpakka.sqs.impl.{SqsBatchFlowStage, SqsFlowStage, SqsPublishBatchingStage}
 import akka.stream.alpakka.sqs.{
   SqsPublishBatchSettings,
   SqsPublishGroupedSettings,
@@ -51,13 +51,15 @@ object SqsPublishFlow {
 
   /**
    * creates a [[akka.stream.scaladsl.Flow Flow]] that groups messages and publishes them in batches to a SQS queue using an [[com.amazonaws.services.sqs.AmazonSQSAsync AmazonSQSAsync]]
-   * @see https://doc.akka.io/docs/akka/current/stream/operators/Source-or-Flow/groupedWithin.html#groupedwithin
+   *
+   * Batches are limited by `maxBatchSize` messages and by `maxBatchBytes` of payload, and are sent after at most
+   * `maxBatchWait`. Up to `concurrentRequests` batches are in flight, the results are emitted in message order.
    */
   def grouped(queueUrl: String, settings: SqsPublishGroupedSettings = SqsPublishGroupedSettings.Defaults)(
       implicit sqsClient: AmazonSQSAsync
   ): Flow[SendMessageRequest, SqsPublishResult, NotUsed] =
     Flow[SendMessageRequest]
-      .groupedWithin(settings.maxBatchSize, settings.maxBatchWait)
+      .via(new SqsPublishBatchingStage(settings.maxBatchSize, settings.maxBatchBytes, settings.maxBatchWait))
       .via(new SqsBatchFlowStage(queueUrl, sqsClient))
       .mapAsync(settings.concurrentRequests)(identity)
       .mapConcat(identity)
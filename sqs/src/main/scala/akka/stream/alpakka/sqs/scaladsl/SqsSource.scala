@@ -5,9 +5,10 @@
 package akka.stream.alpakka.sqs.scaladsl
 
 import akka.NotUsed
-import akka.stream.alpakka.sqs.SqsSourceSettings
-import akka.stream.alpakka.sqs.impl.SqsSourceStage
-import akka.stream.scaladsl.Source
+import akka.stream.alpakka.sqs.{MessageAction, SqsSourceMetrics, SqsSourceSettings, SqsVisibilityHeartbeatSettings}
+import akka.stream.alpakka.sqs.impl.{SqsSourceStage, SqsVisibilityHeartbeatStage}
+import akka.stream.SourceShape
+import akka.stream.scaladsl.{Flow, GraphDSL, Source}
 import com.amazonaws.services.sqs.AmazonSQSAsync
 import com.amazonaws.services.sqs.model.Message
 
@@ -22,6 +23,44 @@ object SqsSource {
   def apply(queueUrl: String, settings: SqsSourceSettings = SqsSourceSettings.Defaults)(
       implicit sqs: AmazonSQSAsync
   ): Source[Message, NotUsed] =
+    Source.fromGraph(new SqsSourceStage(queueUrl, settings)).mapMaterializedValue(_ => NotUsed)
+
+  /**
+   * Create a source for a SQS queue that materializes to live [[SqsSourceMetrics]] such as its current receive
+   * concurrency and receive latency.
+   */
+  def withMetrics(queueUrl: String, settings: SqsSourceSettings = SqsSourceSettings.Defaults)(
+      implicit sqs: AmazonSQSAsync
+  ): Source[Message, SqsSourceMetrics] =
     Source.fromGraph(new SqsSourceStage(queueUrl, settings))
 
+  /**
+   * Create a source for a SQS queue that runs the messages through `processing` and emits the resulting message
+   * actions, e.g. to be passed on to [[SqsAckSink]].
+   *
+   * Messages are received with the heartbeat's visibility timeout. From when a message is received, while it waits
+   * in the source's buffer and is processed, until its action leaves `processing`, its visibility timeout is extended
+   * periodically with batched `ChangeMessageVisibilityBatch` requests. Messages for which `processing` emits no
+   * action are extended up to the heartbeat's `maxExtension`.
+   *
+   * The source fails when a heartbeat request fails, or when SQS rejects the extension of a message which is still
+   * processed, as the message will be delivered again.
+   */
+  def withVisibilityHeartbeat[Mat](
+      queueUrl: String,
+      settings: SqsSourceSettings = SqsSourceSettings.Defaults,
+      heartbeatSettings: SqsVisibilityHeartbeatSettings = SqsVisibilityHeartbeatSettings.Defaults
+  )(processing: Flow[Message, MessageAction, Mat])(implicit sqs: AmazonSQSAsync): Source[MessageAction, Mat] =
+    Source.fromGraph(GraphDSL.create(processing) { implicit builder => process =>
+      import GraphDSL.Implicits._
+
+      val heartbeat = builder.add(
+        new SqsVisibilityHeartbeatStage(queueUrl,
+                                        settings.withVisibilityTimeout(heartbeatSettings.visibilityTimeout),
+                                        heartbeatSettings)
+      )
+      heartbeat.out0 ~> process ~> heartbeat.in
+      SourceShape(heartbeat.out1)
+    })
+
 }
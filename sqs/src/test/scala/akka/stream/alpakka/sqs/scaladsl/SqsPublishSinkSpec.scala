@@ -9,7 +9,7 @@ import java.util.concurrent.{CompletableFuture, Future}
 
 import akka.Done
 import akka.stream.alpakka.sqs._
-import akka.stream.scaladsl.Keep
+import akka.stream.scaladsl.{Keep, Sink, Source}
 import akka.stream.testkit.scaladsl.TestSource
 import com.amazonaws.handlers.AsyncHandler
 import com.amazonaws.services.sqs.AmazonSQSAsync
@@ -21,6 +21,7 @@ import org.mockito.stubbing.Answer
 import org.scalatest.mockito.MockitoSugar.mock
 import org.scalatest.{FlatSpec, Matchers}
 
+import scala.collection.JavaConverters._
 import scala.concurrent.Await
 import scala.concurrent.duration._
 
@@ -355,4 +356,58 @@ class SqsPublishSinkSpec extends FlatSpec with Matchers with DefaultTestContext
       any[AsyncHandler[SendMessageBatchRequest, SendMessageBatchResult]]()
     )
   }
+
+  it should "split batches that would exceed the payload limit" in {
+    implicit val sqsClient: AmazonSQSAsync = mock[AmazonSQSAsync]
+    when(
+      sqsClient.sendMessageBatchAsync(any[SendMessageBatchRequest](),
+                                      any[AsyncHandler[SendMessageBatchRequest, SendMessageBatchResult]]())
+    ).thenAnswer(succeedInReverseOrder)
+    val settings = SqsPublishGroupedSettings().withMaxBatchBytes(100)
+    val messages = (1 to 4).map(i => new SendMessageRequest().withMessageBody(i.toString * 40))
+
+    val results = Source(messages).via(SqsPublishFlow.grouped("notused", settings)).runWith(Sink.seq)
+    Await.result(results, 1.second).map(_.message) shouldBe messages.map(_.getMessageBody)
+
+    // two messages of 40 bytes fit into 100 bytes, a third does not
+    verify(sqsClient, times(2)).sendMessageBatchAsync(
+      any[SendMessageBatchRequest](),
+      any[AsyncHandler[SendMessageBatchRequest, SendMessageBatchResult]]()
+    )
+  }
+
+  it should "count message attributes against the payload limit" in {
+    implicit val sqsClient: AmazonSQSAsync = mock[AmazonSQSAsync]
+    when(
+      sqsClient.sendMessageBatchAsync(any[SendMessageBatchRequest](),
+                                      any[AsyncHandler[SendMessageBatchRequest, SendMessageBatchResult]]())
+    ).thenAnswer(succeedInReverseOrder)
+    val settings = SqsPublishGroupedSettings().withMaxBatchBytes(100)
+    val attribute = new MessageAttributeValue().withDataType("String").withStringValue("x" * 20)
+    val messages = (1 to 4).map { i =>
+      new SendMessageRequest().withMessageBody(i.toString * 20).addMessageAttributesEntry("a", attribute)
+    }
+
+    val results = Source(messages).via(SqsPublishFlow.grouped("notused", settings)).runWith(Sink.seq)
+    Await.result(results, 1.second).map(_.message) shouldBe messages.map(_.getMessageBody)
+
+    // each message counts 20 + 1 + 6 + 20 bytes, so only two fit into 100 bytes
+    verify(sqsClient, times(2)).sendMessageBatchAsync(
+      any[SendMessageBatchRequest](),
+      any[AsyncHandler[SendMessageBatchRequest, SendMessageBatchResult]]()
+    )
+  }
+
+  private val succeedInReverseOrder = new Answer[AnyRef] {
+    override def answer(invocation: InvocationOnMock): Future[SendMessageBatchResult] = {
+      val request = invocation.getArgument[SendMessageBatchRequest](0)
+      val entries = request.getEntries.asScala.reverse.map { entry =>
+        new SendMessageBatchResultEntry().withId(entry.getId).withMessageId(UUID.randomUUID().toString)
+      }
+      invocation
+        .getArgument[AsyncHandler[SendMessageBatchRequest, SendMessageBatchResult]](1)
+        .onSuccess(request, new SendMessageBatchResult().withSuccessful(entries.asJava))
+      new CompletableFuture()
+    }
+  }
 }
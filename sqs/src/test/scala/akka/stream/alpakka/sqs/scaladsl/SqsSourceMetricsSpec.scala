@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.sqs.scaladsl
+
+import akka.pattern.after
+import akka.stream.alpakka.sqs.SqsSourceSettings
+import akka.stream.scaladsl.{Keep, Sink}
+import com.amazonaws.services.sqs.AmazonSQSAsync
+import org.scalatest.{AsyncWordSpec, Matchers}
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+
+class SqsSourceMetricsSpec extends AsyncWordSpec with Matchers with DefaultTestContext {
+
+  "SqsSource with metrics" should {
+
+    "report the received messages" taggedAs Integration in {
+      val queue = randomQueueUrl()
+      implicit val awsSqsClient: AmazonSQSAsync = sqsClient
+      (1 to 25).foreach(i => sqsClient.sendMessage(queue, s"alpakka-$i"))
+
+      val (metrics, messages) = SqsSource
+        .withMetrics(queue, SqsSourceSettings().withWaitTimeSeconds(0))
+        .take(25)
+        .toMat(Sink.seq)(Keep.both)
+        .run()
+
+      messages.map { received =>
+        received should have size 25
+        metrics.receivedCount should be >= 25L
+        metrics.currentConcurrency should (be >= 1 and be <= 10)
+        metrics.receiveLatency should be > Duration.Zero
+      }
+    }
+
+    "reduce its concurrency on empty receives" taggedAs Integration in {
+      val queue = randomQueueUrl()
+      implicit val awsSqsClient: AmazonSQSAsync = sqsClient
+
+      val (metrics, done) = SqsSource
+        .withMetrics(queue, SqsSourceSettings().withWaitTimeSeconds(0))
+        .takeWithin(1.second)
+        .toMat(Sink.ignore)(Keep.both)
+        .run()
+
+      done.flatMap { _ =>
+        metrics.emptyReceiveCount should be > 0L
+        metrics.currentConcurrency shouldBe 1
+        after(100.millis, system.scheduler)(Future.successful(metrics.receivedCount shouldBe 0L))
+      }
+    }
+  }
+}
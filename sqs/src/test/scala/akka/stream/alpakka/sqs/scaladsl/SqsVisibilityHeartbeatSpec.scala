@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.sqs.scaladsl
+
+import akka.pattern.after
+import akka.stream.alpakka.sqs.{MessageAction, SqsSourceSettings, SqsVisibilityHeartbeatSettings}
+import akka.stream.scaladsl.{Flow, Keep, Sink, Source}
+import com.amazonaws.services.sqs.AmazonSQSAsync
+import com.amazonaws.services.sqs.model.{Message, ReceiveMessageRequest}
+import org.scalatest.{AsyncWordSpec, Matchers}
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+
+class SqsVisibilityHeartbeatSpec extends AsyncWordSpec with Matchers with DefaultTestContext {
+
+  implicit val defaultPatience =
+    PatienceConfig(timeout = 15.seconds, interval = 100.millis)
+
+  private val heartbeatSettings = SqsVisibilityHeartbeatSettings()
+    .withVisibilityTimeout(2.seconds)
+    .withHeartbeatInterval(500.millis)
+
+  private def receivedByOthers(queue: String): Int =
+    sqsClient.receiveMessage(new ReceiveMessageRequest(queue).withWaitTimeSeconds(0)).getMessages.size()
+
+  "SqsVisibilityHeartbeatSettings" should {
+    "require a visibility timeout in whole seconds" in {
+      an[IllegalArgumentException] should be thrownBy heartbeatSettings.withVisibilityTimeout(2500.millis)
+    }
+  }
+
+  "SqsSource with visibility heartbeat" should {
+
+    "keep a message invisible while it is processed longer than its visibility timeout" taggedAs Integration in {
+      val queue = randomQueueUrl()
+      implicit val awsSqsClient: AmazonSQSAsync = sqsClient
+      sqsClient.sendMessage(queue, "alpakka")
+
+      val processing = Flow[Message].mapAsync(1) { message =>
+        after(5.seconds, system.scheduler) {
+          Future.successful(MessageAction.Delete(message))
+        }
+      }
+
+      val actions = SqsSource
+        .withVisibilityHeartbeat(queue, SqsSourceSettings().withWaitTimeSeconds(0), heartbeatSettings)(processing)
+        .take(1)
+        .runWith(Sink.seq)
+
+      after(3.seconds, system.scheduler)(Future(receivedByOthers(queue))).flatMap { othersReceived =>
+        othersReceived shouldBe 0
+        actions.map(_.map(_.message.getBody) shouldBe Seq("alpakka"))
+      }
+    }
+
+    "keep the messages waiting in the buffer invisible" taggedAs Integration in {
+      val queue = randomQueueUrl()
+      implicit val awsSqsClient: AmazonSQSAsync = sqsClient
+      (1 to 5).foreach(i => sqsClient.sendMessage(queue, s"alpakka-$i"))
+
+      // the last messages of the batch wait about 4 seconds for processing, longer than their visibility timeout
+      val processing = Flow[Message].mapAsync(1) { message =>
+        after(1.second, system.scheduler) {
+          Future.successful(MessageAction.Delete(message))
+        }
+      }
+
+      val actions = SqsSource
+        .withVisibilityHeartbeat(queue, SqsSourceSettings().withWaitTimeSeconds(0), heartbeatSettings)(processing)
+        .take(5)
+        .runWith(Sink.seq)
+
+      after(3.seconds, system.scheduler)(Future(receivedByOthers(queue))).flatMap { othersReceived =>
+        othersReceived shouldBe 0
+        actions.map(_.map(_.message.getBody).sorted shouldBe (1 to 5).map(i => s"alpakka-$i"))
+      }
+    }
+
+    "fail when the visibility of a message in processing cannot be extended" taggedAs Integration in {
+      val queue = randomQueueUrl()
+      implicit val awsSqsClient: AmazonSQSAsync = sqsClient
+      sqsClient.sendMessage(queue, "alpakka")
+
+      // deleting the message behind the stream's back invalidates its receipt handle
+      val processing = Flow[Message].mapAsync(1) { message =>
+        sqsClient.deleteMessage(queue, message.getReceiptHandle)
+        after(5.seconds, system.scheduler) {
+          Future.successful(MessageAction.Ignore(message))
+        }
+      }
+
+      SqsSource
+        .withVisibilityHeartbeat(queue, SqsSourceSettings().withWaitTimeSeconds(0), heartbeatSettings)(processing)
+        .runWith(Sink.ignore)
+        .failed
+        .map(_ shouldBe an[IllegalStateException])
+    }
+
+    "stop extending the visibility of acknowledged messages" taggedAs Integration in {
+      val queue = randomQueueUrl()
+      implicit val awsSqsClient: AmazonSQSAsync = sqsClient
+      sqsClient.sendMessage(queue, "alpakka")
+
+      // stops receiving after the first message, but keeps the stream running
+      val processing = Flow[Message]
+        .take(1)
+        .map(MessageAction.Ignore(_))
+        .concatMat(Source.maybe[MessageAction])(Keep.right)
+
+      val (running, actions) = SqsSource
+        .withVisibilityHeartbeat(queue, SqsSourceSettings().withWaitTimeSeconds(0), heartbeatSettings)(processing)
+        .toMat(Sink.seq)(Keep.both)
+        .run()
+
+      // the ignored message becomes visible again once its visibility timeout expired
+      after(3.seconds, system.scheduler)(Future(receivedByOthers(queue))).flatMap { othersReceived =>
+        running.success(None)
+        othersReceived shouldBe 1
+        actions.map(_ should have size 1)
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.text
+
+import java.nio.charset.{Charset, StandardCharsets}
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.stream.alpakka.text.scaladsl.TextFlow
+import akka.stream.scaladsl.{Sink, Source}
+import akka.stream.{ActorMaterializer, Materializer}
+import akka.util.ByteString
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+object TranscodingPerf {
+  final val ChunkSize = 8192
+  final val Chunks = 1024
+
+  /*
+   * An entry point for debugging purposes - invoke whatever you need to debug
+   */
+  def main(args: Array[String]): Unit = {
+    val test = new TranscodingPerf()
+    test.transcoding = "ISO-8859-1>UTF-8"
+    test.text = "latin1"
+    test.setup()
+    try {
+      for (_ <- 0 until 100) test.transcode()
+    } finally {
+      test.tearDown()
+    }
+  }
+}
+
+/**
+ * Throughput of `TextFlow.transcoding` over 8 MiB of text in chunks of 8 KiB. Run with `-prof gc` to see the
+ * allocation rate per transcoded byte.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+class TranscodingPerf {
+
+  import TranscodingPerf._
+
+  private implicit val system: ActorSystem = ActorSystem("transcodingperf")
+  private implicit val mat: Materializer = ActorMaterializer()
+
+  @Param(Array("ISO-8859-1>UTF-8", "UTF-8>UTF-16LE", "UTF-16LE>UTF-8"))
+  var transcoding: String = _
+
+  @Param(Array("ascii", "latin1"))
+  var text: String = _
+
+  private var incoming: Charset = _
+  private var outgoing: Charset = _
+  private var chunks: List[ByteString] = _
+
+  @Setup
+  def setup(): Unit = {
+    val Array(from, to) = transcoding.split('>')
+    incoming = Charset.forName(from)
+    outgoing = Charset.forName(to)
+    val line = text match {
+      case "ascii" => "The quick brown fox jumps over the lazy dog. "
+      case "latin1" => "Größere Übungen für Änderungen à la carte. "
+    }
+    val bytes = ByteString((line * (ChunkSize * Chunks / line.length + 1)).take(ChunkSize * Chunks), incoming)
+    // chunk boundaries deliberately cut through multi-byte characters
+    chunks = bytes.grouped(ChunkSize + 1).map(_.compact).toList
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ChunkSize * Chunks)
+  def transcode(): Long =
+    Await.result(
+      Source(chunks)
+        .via(TextFlow.transcoding(incoming, outgoing))
+        .runFold(0L)(_ + _.size),
+      10.seconds
+    )
+
+  @TearDown
+  def tearDown(): Unit =
+    system.terminate()
+}
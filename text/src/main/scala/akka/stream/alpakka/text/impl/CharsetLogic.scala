@@ -5,12 +5,13 @@
 package akka.stream.alpakka.text.impl
 
 import java.nio.{ByteBuffer, CharBuffer}
-import java.nio.charset.{Charset, CharsetDecoder, CharsetEncoder}
+import java.nio.charset.StandardCharsets.{ISO_8859_1, US_ASCII, UTF_8}
+import java.nio.charset._
 
 import akka.annotation.InternalApi
 import akka.stream.{FlowShape, Inlet, Outlet}
 import akka.stream.stage.{GraphStageLogic, InHandler, OutHandler}
-import akka.util.ByteString
+import akka.util.{ByteString, ByteStringBuilder}
 
 /**
  * ByteBuffer to CharBuffer decoding logic.
@@ -157,42 +158,204 @@ private[impl] class EncodingLogic(in: Inlet[String],
 
 }
 
+/**
+ * Transcodes chunks of bytes through one char and one byte buffer that are reused for the life of the stage.
+ * A code point that is split over chunk boundaries is completed in a small carry buffer, the chunks themselves
+ * are decoded in place.
+ */
+@InternalApi
 private[impl] class TranscodingLogic(in: Inlet[ByteString],
                                      out: Outlet[ByteString],
                                      shape: FlowShape[ByteString, ByteString],
                                      incoming: Charset,
                                      outgoing: Charset)
     extends GraphStageLogic(shape)
-    with Encoding
-    with Decoding
     with InHandler
     with OutHandler {
 
-  protected final val decoder = incoming.newDecoder()
-  protected final val encoder = outgoing.newEncoder()
-  private var buffer = ByteString.empty
+  import TranscodingLogic._
+
+  private[this] val decoder = incoming.newDecoder()
+  private[this] val encoder = outgoing.newEncoder()
+  private[this] val chars = CharBuffer.allocate(CharBufferSize)
+  private[this] val bytes = ByteBuffer.allocate(math.ceil(CharBufferSize * encoder.maxBytesPerChar().toDouble).toInt)
+  private[this] val carry = ByteBuffer.allocate(CarryBufferSize)
+  private[this] val output = new ByteStringBuilder
+  private[this] val singleByte = SingleByteTranscoding(incoming, outgoing)
 
   setHandlers(in, out, this)
 
   override def onPull(): Unit = pull(in)
 
-  override def onPush(): Unit = decode(buffer.concat(grab(in)).asByteBuffer)
+  override def onPush(): Unit = {
+    val chunk = grab(in)
+    val transcoded = singleByte match {
+      case Some(fastPath) => fastPath(chunk)
+      case None => transcode(chunk)
+    }
+    if (transcoded.nonEmpty) push(out, transcoded)
+    else pull(in)
+  }
 
   override def onUpstreamFinish(): Unit = {
-    decode(buffer.asByteBuffer)
-    if (buffer.nonEmpty)
-      throw new IllegalArgumentException(s"Stray bytes at end of input that could not be decoded: $buffer")
-    completeStage()
+    if (singleByte.isEmpty) {
+      if (carry.position() > 0) {
+        carry.flip()
+        throw new IllegalArgumentException(
+          s"Stray bytes at end of input that could not be decoded: ${ByteString.fromByteBuffer(carry)}"
+        )
+      }
+      decode(EmptyBytes, endOfInput = true)
+      while (decoder.flush(chars).isOverflow) encodeChars(endOfInput = false)
+      encodeChars(endOfInput = true)
+      while (encoder.flush(bytes).isOverflow) drainBytes()
+    }
+    val remaining = takeOutput()
+    if (remaining.nonEmpty) emit(out, remaining, () => completeStage())
+    else completeStage()
   }
 
-  override protected def decoded(chars: CharBuffer, count: Int, remainingBytes: ByteBuffer): Unit = {
-    chars.limit(count)
-    encode(chars)
-    buffer = ByteString.fromByteBuffer(remainingBytes)
+  private def transcode(chunk: ByteString): ByteString = {
+    val buffers = chunk.asByteBuffers.iterator
+    while (buffers.hasNext) {
+      val buffer = buffers.next()
+      if (carry.position() > 0) completeCarried(buffer)
+      decode(buffer, endOfInput = false)
+      if (buffer.hasRemaining) {
+        if (buffer.remaining() > carry.remaining())
+          throw new IllegalArgumentException(s"Could not decode ${buffer.remaining()} bytes with $incoming")
+        carry.put(buffer)
+      }
+    }
+    encodeChars(endOfInput = false)
+    takeOutput()
   }
 
-  protected def encoded(bytes: ByteBuffer, count: Int): Unit =
-    if (count > 0) push(out, ByteString.fromByteBuffer(bytes))
-    else if (!isClosed(in)) pull(in)
+  /**
+   * Tops up the carried bytes from `buffer` and decodes them. The buffer is positioned after the bytes that
+   * were consumed from it, so that decoding continues in place.
+   */
+  private def completeCarried(buffer: ByteBuffer): Unit = {
+    val carried = carry.position()
+    val start = buffer.position()
+    val topUp = math.min(carry.remaining(), buffer.remaining())
+    val slice = buffer.duplicate()
+    slice.limit(start + topUp)
+    carry.put(slice)
+    carry.flip()
+    decode(carry, endOfInput = false)
+    val consumed = carry.position()
+    if (consumed >= carried) {
+      buffer.position(start + consumed - carried)
+      carry.clear()
+    } else if (topUp == buffer.remaining()) {
+      buffer.position(start + topUp)
+      carry.compact()
+    } else {
+      throw new IllegalArgumentException(s"Could not decode ${carry.remaining()} bytes with $incoming")
+    }
+  }
+
+  private def decode(input: ByteBuffer, endOfInput: Boolean): Unit = {
+    var result = decoder.decode(input, chars, endOfInput)
+    while (result.isOverflow) {
+      encodeChars(endOfInput = false)
+      result = decoder.decode(input, chars, endOfInput)
+    }
+    if (result.isError) result.throwException()
+  }
+
+  /**
+   * Encodes the decoded characters, a trailing high surrogate stays in the char buffer until its pair arrives.
+   */
+  private def encodeChars(endOfInput: Boolean): Unit = {
+    chars.flip()
+    var result = encoder.encode(chars, bytes, endOfInput)
+    while (result.isOverflow) {
+      drainBytes()
+      result = encoder.encode(chars, bytes, endOfInput)
+    }
+    if (result.isError) result.throwException()
+    chars.compact()
+  }
+
+  private def drainBytes(): Unit = {
+    output.putBytes(bytes.array, bytes.arrayOffset, bytes.position())
+    bytes.clear()
+  }
+
+  private def takeOutput(): ByteString = {
+    drainBytes()
+    val result = output.result()
+    output.clear()
+    result
+  }
+
+}
 
+@InternalApi
+private[impl] object TranscodingLogic {
+  final val CharBufferSize = 8192
+  // enough for the longest byte sequence of a single character in any charset
+  final val CarryBufferSize = 32
+  private final val EmptyBytes = ByteBuffer.allocate(0)
+}
+
+/**
+ * Transcodes between the single byte charsets US-ASCII and ISO-8859-1 and UTF-8 without going through chars.
+ * Chunks of ASCII characters are passed on as they are.
+ */
+@InternalApi
+private[impl] object SingleByteTranscoding {
+
+  def apply(incoming: Charset, outgoing: Charset): Option[ByteString => ByteString] =
+    (incoming, outgoing) match {
+      case (ISO_8859_1, ISO_8859_1) => Some(chunk => chunk)
+      case (US_ASCII, US_ASCII | ISO_8859_1 | UTF_8) => Some(ascii(_, new MalformedInputException(1)))
+      case (ISO_8859_1, US_ASCII) => Some(ascii(_, new UnmappableCharacterException(1)))
+      case (ISO_8859_1, UTF_8) => Some(latin1ToUtf8)
+      case _ => None
+    }
+
+  private def ascii(chunk: ByteString, nonAscii: => Exception): ByteString =
+    if (nonAsciiCount(chunk) == 0) chunk
+    else throw nonAscii
+
+  private def latin1ToUtf8(chunk: ByteString): ByteString = {
+    val nonAscii = nonAsciiCount(chunk)
+    if (nonAscii == 0) chunk
+    else {
+      val encoded = new Array[Byte](chunk.size + nonAscii)
+      var i = 0
+      val bytes = chunk.iterator
+      while (bytes.hasNext) {
+        val b = bytes.next()
+        if (b >= 0) {
+          encoded(i) = b
+          i += 1
+        } else {
+          val c = b & 0xFF
+          encoded(i) = (0xC0 | (c >> 6)).toByte
+          encoded(i + 1) = (0x80 | (c & 0x3F)).toByte
+          i += 2
+        }
+      }
+      ByteString.fromArrayUnsafe(encoded)
+    }
+  }
+
+  private def nonAsciiCount(chunk: ByteString): Int = {
+    var count = 0
+    val buffers = chunk.asByteBuffers.iterator
+    while (buffers.hasNext) {
+      val buffer = buffers.next()
+      var i = buffer.position()
+      val limit = buffer.limit()
+      while (i < limit) {
+        if (buffer.get(i) < 0) count += 1
+        i += 1
+      }
+    }
+    count
+  }
 }
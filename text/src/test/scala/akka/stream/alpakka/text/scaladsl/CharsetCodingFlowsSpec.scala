@@ -4,7 +4,7 @@
 
 package akka.stream.alpakka.text.scaladsl
 
-import java.nio.charset.{Charset, StandardCharsets, UnmappableCharacterException}
+import java.nio.charset.{Charset, MalformedInputException, StandardCharsets, UnmappableCharacterException}
 import java.nio.file.Paths
 
 import akka.Done
@@ -172,6 +172,50 @@ class CharsetCodingFlowsSpec
     "work for byte by byte windows-1252" in {
       verifyByteSends(Charset.forName("windows-1252"), StandardCharsets.UTF_8, "äåûßêëé")
     }
+
+    "work byte by byte for characters outside the basic multilingual plane" in {
+      verifyByteSends(StandardCharsets.UTF_8, StandardCharsets.UTF_16LE, "a\uD83D\uDE00b\uD834\uDD1E")
+    }
+
+    "work for input larger than its buffers" in {
+      val value = multiByteChars * 2000
+      val result = Source(ByteString(value, StandardCharsets.UTF_8).grouped(10000).toList)
+        .via(TextFlow.transcoding(StandardCharsets.UTF_8, StandardCharsets.UTF_16))
+        .runFold(ByteString.empty)(_ ++ _)
+      result.futureValue.decodeString(StandardCharsets.UTF_16) should be(value)
+    }
+
+    "work for ISO-8859-1 to UTF-8" in {
+      verifyTranscoding(StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8, "plain äåûßêëé ÿ")
+      verifyByteSends(StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8, "äåûßêëé")
+    }
+
+    "pass on ASCII chunks as they are" in {
+      val chunk = ByteString("eins,zwei,drei", StandardCharsets.US_ASCII)
+      val result = Source
+        .single(chunk)
+        .via(TextFlow.transcoding(StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8))
+        .runWith(Sink.head)
+      result.futureValue should be theSameInstanceAs chunk
+    }
+
+    "fail for non-ASCII bytes in US-ASCII" in {
+      recoverToSucceededIf[MalformedInputException] {
+        Source
+          .single(ByteString("ä", StandardCharsets.ISO_8859_1))
+          .via(TextFlow.transcoding(StandardCharsets.US_ASCII, StandardCharsets.UTF_8))
+          .runWith(Sink.ignore)
+      }
+    }
+
+    "fail for a character cut off at the end of input" in {
+      recoverToSucceededIf[IllegalArgumentException] {
+        Source
+          .single(ByteString("經", StandardCharsets.UTF_8).dropRight(1))
+          .via(TextFlow.transcoding(StandardCharsets.UTF_8, StandardCharsets.UTF_16))
+          .runWith(Sink.ignore)
+      }
+    }
   }
 
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.udp
+
+import java.net.InetSocketAddress
+import java.nio.ByteBuffer
+import java.nio.channels.DatagramChannel
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+import akka.actor.ActorSystem
+import akka.stream.alpakka.udp.scaladsl.Udp
+import akka.stream.scaladsl.{Keep, Sink}
+import akka.stream.{ActorMaterializer, KillSwitches, Materializer, UniqueKillSwitch}
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+object UdpReceivePerf {
+  final val DatagramsPerInvocation = 1000
+  final val Senders = 8
+
+  /*
+   * An entry point for debugging purposes - invoke whatever you need to debug
+   */
+  def main(args: Array[String]): Unit = {
+    val test = new UdpReceivePerf()
+    test.shards = if (impl.ReusePort.isSupported) 2 else 1
+    test.setup()
+    try {
+      for (_ <- 0 until 10000) test.receive()
+    } finally {
+      test.tearDown()
+    }
+  }
+}
+
+/**
+ * Receive throughput over loopback, depending on the number of sockets sharing the port. More than one shard
+ * requires Java 9 or later.
+ * Datagrams are sent from several sockets so that the kernel spreads them over the shards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+class UdpReceivePerf {
+
+  import UdpReceivePerf._
+
+  private implicit val system: ActorSystem = ActorSystem("udpperf")
+  private implicit val mat: Materializer = ActorMaterializer()
+
+  @Param(Array("1", "2", "4"))
+  var shards: Int = _
+
+  private val received = new AtomicLong()
+  private var expected = 0L
+  private var killSwitch: UniqueKillSwitch = _
+  private var senders: Array[DatagramChannel] = _
+  private val payload = ByteBuffer.allocate(64)
+
+  @Setup
+  def setup(): Unit = {
+    if (shards > 1 && !impl.ReusePort.isSupported)
+      throw new UnsupportedOperationException(s"$shards shards need SO_REUSEPORT, which requires Java 9 or later")
+
+    val localAddress = {
+      val probe = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0))
+      try probe.getLocalAddress.asInstanceOf[InetSocketAddress]
+      finally probe.close()
+    }
+
+    val settings = UdpReceiveSettings()
+      .withDropOnOverflow(false)
+      .withSocketReceiveBufferSize(8 * 1024 * 1024)
+
+    // a single socket doesn't need SO_REUSEPORT, so the baseline runs on Java 8 as well
+    val source =
+      if (shards == 1) Udp.receiveSource(localAddress, settings).mapMaterializedValue(_.map(List(_))(system.dispatcher))
+      else Udp.receiveSourceSharded(localAddress, shards, settings)
+    val (bindings, switch) = source
+      .viaMat(KillSwitches.single)(Keep.both)
+      .toMat(Sink.foreach(batch => received.addAndGet(batch.size)))(Keep.left)
+      .run()
+    killSwitch = switch
+    Await.result(bindings, 3.seconds)
+
+    senders = Array.fill(Senders) {
+      DatagramChannel.open().connect(localAddress)
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(DatagramsPerInvocation)
+  def receive(): Unit = {
+    var i = 0
+    while (i < DatagramsPerInvocation) {
+      payload.clear()
+      senders(i % Senders).write(payload)
+      i += 1
+    }
+    expected += DatagramsPerInvocation
+    val deadline = 10.seconds.fromNow
+    while (received.get() < expected) {
+      if (deadline.isOverdue()) throw new IllegalStateException(s"Received ${received.get()} of $expected datagrams")
+      Thread.`yield`()
+    }
+  }
+
+  @TearDown
+  def tearDown(): Unit = {
+    senders.foreach(_.close())
+    killSwitch.shutdown()
+    system.terminate()
+  }
+}
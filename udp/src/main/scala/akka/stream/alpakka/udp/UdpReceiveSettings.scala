@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.udp
+
+final class UdpReceiveSettings private (
+    val maxDatagramSize: Int,
+    val queueSize: Int,
+    val maxBatchSize: Int,
+    val dropOnOverflow: Boolean,
+    val socketReceiveBufferSize: Option[Int],
+    val reusePort: Boolean,
+    val dispatcher: String
+) {
+  require(maxDatagramSize > 0, s"Invalid value ($maxDatagramSize) for maxDatagramSize. Requirement: maxDatagramSize > 0")
+  require(queueSize > 0, s"Invalid value ($queueSize) for queueSize. Requirement: queueSize > 0")
+  require(maxBatchSize > 0, s"Invalid value ($maxBatchSize) for maxBatchSize. Requirement: maxBatchSize > 0")
+
+  /**
+   * Size of the buffer a datagram is read into, larger datagrams are truncated.
+   *
+   * Default: 65536 bytes
+   */
+  def withMaxDatagramSize(value: Int): UdpReceiveSettings = copy(maxDatagramSize = value)
+
+  /**
+   * Number of received datagrams buffered between the socket and the stream.
+   *
+   * Default: 8192 datagrams
+   */
+  def withQueueSize(value: Int): UdpReceiveSettings = copy(queueSize = value)
+
+  /**
+   * Maximum number of datagrams emitted in one element.
+   *
+   * Default: 256 datagrams
+   */
+  def withMaxBatchSize(value: Int): UdpReceiveSettings = copy(maxBatchSize = value)
+
+  /**
+   * If true, datagrams arriving while the queue is full are dropped and counted in
+   * [[UdpReceiveBinding.droppedCount]]. If false, the socket is not read until the stream catches up,
+   * and the operating system drops datagrams once the socket receive buffer is full.
+   *
+   * Default: true
+   */
+  def withDropOnOverflow(value: Boolean): UdpReceiveSettings = copy(dropOnOverflow = value)
+
+  /**
+   * Size of the operating system receive buffer of the socket (SO_RCVBUF).
+   *
+   * Default: None - the operating system default
+   */
+  def withSocketReceiveBufferSize(value: Int): UdpReceiveSettings = copy(socketReceiveBufferSize = Some(value))
+
+  /**
+   * If true, the socket is bound with SO_REUSEPORT so that several sockets can receive on the same port
+   * and the operating system balances datagrams between them. Requires Java 9 or later.
+   *
+   * Default: false
+   */
+  def withReusePort(value: Boolean): UdpReceiveSettings = copy(reusePort = value)
+
+  /**
+   * Dispatcher to run the blocking socket read on, it occupies one of its threads while the stream runs.
+   *
+   * Default: akka.stream.default-blocking-io-dispatcher
+   */
+  def withDispatcher(value: String): UdpReceiveSettings = copy(dispatcher = value)
+
+  private def copy(
+      maxDatagramSize: Int = maxDatagramSize,
+      queueSize: Int = queueSize,
+      maxBatchSize: Int = maxBatchSize,
+      dropOnOverflow: Boolean = dropOnOverflow,
+      socketReceiveBufferSize: Option[Int] = socketReceiveBufferSize,
+      reusePort: Boolean = reusePort,
+      dispatcher: String = dispatcher
+  ): UdpReceiveSettings = new UdpReceiveSettings(
+    maxDatagramSize,
+    queueSize,
+    maxBatchSize,
+    dropOnOverflow,
+    socketReceiveBufferSize,
+    reusePort,
+    dispatcher
+  )
+
+  override def toString: String =
+    "UdpReceiveSettings(" +
+    s"maxDatagramSize=$maxDatagramSize, " +
+    s"queueSize=$queueSize, " +
+    s"maxBatchSize=$maxBatchSize, " +
+    s"dropOnOverflow=$dropOnOverflow, " +
+    s"socketReceiveBufferSize=$socketReceiveBufferSize, " +
+    s"reusePort=$reusePort, " +
+    s"dispatcher=$dispatcher" +
+    ")"
+}
+
+object UdpReceiveSettings {
+  val Defaults = new UdpReceiveSettings(
+    maxDatagramSize = 65536,
+    queueSize = 8192,
+    maxBatchSize = 256,
+    dropOnOverflow = true,
+    socketReceiveBufferSize = None,
+    reusePort = false,
+    dispatcher = "akka.stream.default-blocking-io-dispatcher"
+  )
+
+  /**
+   * Scala API
+   */
+  def apply(): UdpReceiveSettings = Defaults
+
+  /**
+   * Java API
+   */
+  def create(): UdpReceiveSettings = Defaults
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.udp.impl
+
+import java.net.{InetSocketAddress, SocketOption, StandardSocketOptions}
+import java.nio.ByteBuffer
+import java.nio.channels.{ClosedChannelException, DatagramChannel}
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicLong}
+
+import akka.actor.ActorSystem
+import akka.annotation.InternalApi
+import akka.stream.{Attributes, Outlet, SourceShape}
+import akka.stream.alpakka.udp.{Datagram, UdpReceiveBinding, UdpReceiveSettings}
+import akka.stream.stage._
+import akka.util.ByteString
+
+import scala.collection.immutable
+import scala.concurrent.{Future, Promise}
+import scala.util.Try
+import scala.util.control.NonFatal
+
+/**
+ * Reads datagrams from a `DatagramChannel` on a thread of the configured dispatcher into a bounded queue,
+ * which is drained in batches as downstream demands.
+ */
+@InternalApi private[udp] final class UdpReceiveLogic(localAddress: InetSocketAddress,
+                                                      settings: UdpReceiveSettings,
+                                                      bindingPromise: Promise[UdpReceiveBinding])(
+    val shape: SourceShape[immutable.Seq[Datagram]]
+)(implicit val system: ActorSystem)
+    extends GraphStageLogic(shape)
+    with OutHandler {
+
+  private def out = shape.out
+
+  private val queue = new ArrayBlockingQueue[Datagram](settings.queueSize)
+  private val received = new AtomicLong()
+  private val dropped = new AtomicLong()
+  // set while downstream waits for datagrams, the receiving thread clears it when it wakes the stage up
+  private val waiting = new AtomicBoolean(false)
+
+  private var channel: DatagramChannel = _
+
+  private val datagramsAvailable = getAsyncCallback[Unit] { _ =>
+    if (isAvailable(out)) onPull()
+  }
+
+  private val receiveFailed = getAsyncCallback[Throwable](failStage)
+
+  override def preStart(): Unit =
+    try {
+      channel = DatagramChannel.open()
+      settings.socketReceiveBufferSize.foreach { size =>
+        channel.setOption[java.lang.Integer](StandardSocketOptions.SO_RCVBUF, size)
+      }
+      if (settings.reusePort) channel.setOption[java.lang.Boolean](ReusePort.option, true)
+      channel.bind(localAddress)
+      val boundAddress = channel.getLocalAddress.asInstanceOf[InetSocketAddress]
+      system.dispatchers.lookup(settings.dispatcher).execute(new Runnable {
+        override def run(): Unit = receive()
+      })
+      bindingPromise.success(new UdpReceiveBinding(boundAddress, received, dropped))
+    } catch {
+      case NonFatal(ex) =>
+        bindingPromise.tryFailure(ex)
+        failStage(ex)
+    }
+
+  override def postStop(): Unit = {
+    if (channel != null) channel.close()
+    // releases the receiving thread if it is blocked on a full queue
+    queue.clear()
+    bindingPromise.tryFailure(new IllegalStateException("UDP receive source stopped before binding"))
+  }
+
+  override def onPull(): Unit = {
+    val batch = drain()
+    if (batch.nonEmpty) push(out, batch)
+    else {
+      waiting.set(true)
+      // a datagram may have been queued before the flag was set
+      if (!queue.isEmpty && waiting.compareAndSet(true, false)) push(out, drain())
+    }
+  }
+
+  private def drain(): immutable.Seq[Datagram] = {
+    val batch = Vector.newBuilder[Datagram]
+    var remaining = settings.maxBatchSize
+    var datagram = queue.poll()
+    while (datagram != null) {
+      batch += datagram
+      remaining -= 1
+      datagram = if (remaining > 0) queue.poll() else null
+    }
+    batch.result()
+  }
+
+  private def receive(): Unit = {
+    val buffer = ByteBuffer.allocateDirect(settings.maxDatagramSize)
+    try {
+      while (true) {
+        buffer.clear()
+        val sender = channel.receive(buffer).asInstanceOf[InetSocketAddress]
+        buffer.flip()
+        val datagram = Datagram(ByteString(buffer), sender)
+        received.incrementAndGet()
+        if (settings.dropOnOverflow) {
+          if (!queue.offer(datagram)) dropped.incrementAndGet()
+        } else queue.put(datagram)
+        if (waiting.compareAndSet(true, false)) datagramsAvailable.invoke(())
+      }
+    } catch {
+      case _: ClosedChannelException => // the stage stopped
+      case _: InterruptedException =>
+      case NonFatal(ex) => receiveFailed.invoke(ex)
+    }
+  }
+
+  setHandler(out, this)
+}
+
+@InternalApi private[udp] object ReusePort {
+
+  /**
+   * `StandardSocketOptions.SO_REUSEPORT` only exists from Java 9 on, while this module is built for Java 8.
+   */
+  lazy val option: SocketOption[java.lang.Boolean] =
+    Try(
+      classOf[StandardSocketOptions]
+        .getField("SO_REUSEPORT")
+        .get(null)
+        .asInstanceOf[SocketOption[java.lang.Boolean]]
+    ).getOrElse(throw new UnsupportedOperationException("SO_REUSEPORT requires Java 9 or later"))
+
+  def isSupported: Boolean = Try(option).isSuccess
+}
+
+@InternalApi private[udp] final class UdpReceiveSource(localAddress: InetSocketAddress, settings: UdpReceiveSettings)(
+    implicit val system: ActorSystem
+) extends GraphStageWithMaterializedValue[SourceShape[immutable.Seq[Datagram]], Future[UdpReceiveBinding]] {
+
+  val out: Outlet[immutable.Seq[Datagram]] = Outlet("UdpReceiveSource.out")
+
+  val shape: SourceShape[immutable.Seq[Datagram]] = SourceShape(out)
+  override def createLogicAndMaterializedValue(inheritedAttributes: Attributes) = {
+    val bindingPromise = Promise[UdpReceiveBinding]
+    (new UdpReceiveLogic(localAddress, settings, bindingPromise)(shape), bindingPromise.future)
+  }
+}
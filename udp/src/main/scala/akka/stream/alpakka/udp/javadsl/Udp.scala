@@ -9,10 +9,11 @@ import java.util.concurrent.CompletionStage
 
 import akka.NotUsed
 import akka.actor.ActorSystem
-import akka.stream.alpakka.udp.Datagram
-import akka.stream.javadsl.{Flow, Sink}
+import akka.stream.alpakka.udp.{Datagram, UdpReceiveBinding, UdpReceiveSettings}
+import akka.stream.javadsl.{Flow, Sink, Source}
 import akka.stream.alpakka.udp.scaladsl
 
+import scala.collection.JavaConverters._
 import scala.compat.java8.FutureConverters._
 
 object Udp {
@@ -40,4 +41,51 @@ object Udp {
   def bindFlow(localAddress: InetSocketAddress,
                system: ActorSystem): Flow[Datagram, Datagram, CompletionStage[InetSocketAddress]] =
     scaladsl.Udp.bindFlow(localAddress)(system).mapMaterializedValue(_.toJava).asJava
+
+  /**
+   * Creates a source that upon materialization binds to the given `localAddress` and emits the
+   * datagrams received on it in batches of up to `settings.maxBatchSize`. Datagrams are read from
+   * the socket into a bounded queue, see [[UdpReceiveSettings]] for what happens when it is full.
+   */
+  def receiveSource(localAddress: InetSocketAddress,
+                    settings: UdpReceiveSettings,
+                    system: ActorSystem): Source[java.util.List[Datagram], CompletionStage[UdpReceiveBinding]] =
+    scaladsl.Udp
+      .receiveSource(localAddress, settings)(system)
+      .map(_.asJava)
+      .mapMaterializedValue(_.toJava)
+      .asJava
+
+  /**
+   * Creates `shards` sources that upon materialization bind to the same `localAddress` with SO_REUSEPORT,
+   * so that the operating system balances incoming datagrams between them. Each source runs its own receive
+   * loop and can be materialized independently. As every socket binds to the same port, `localAddress` must
+   * name a port. SO_REUSEPORT requires Java 9 or later.
+   */
+  def receiveSources(
+      localAddress: InetSocketAddress,
+      shards: Int,
+      settings: UdpReceiveSettings,
+      system: ActorSystem
+  ): java.util.List[Source[java.util.List[Datagram], CompletionStage[UdpReceiveBinding]]] =
+    scaladsl.Udp
+      .receiveSources(localAddress, shards, settings)(system)
+      .map(_.map(_.asJava).mapMaterializedValue(_.toJava).asJava)
+      .asJava
+
+  /**
+   * Creates a source that binds `shards` sockets to the same `localAddress` with SO_REUSEPORT and merges
+   * the datagrams received by their independent receive loops. See [[receiveSources]].
+   */
+  def receiveSourceSharded(
+      localAddress: InetSocketAddress,
+      shards: Int,
+      settings: UdpReceiveSettings,
+      system: ActorSystem
+  ): Source[java.util.List[Datagram], CompletionStage[java.util.List[UdpReceiveBinding]]] =
+    scaladsl.Udp
+      .receiveSourceSharded(localAddress, shards, settings)(system)
+      .map(_.asJava)
+      .mapMaterializedValue(_.map(_.asJava)(system.dispatcher).toJava)
+      .asJava
 }
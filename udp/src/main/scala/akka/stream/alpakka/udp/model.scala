@@ -5,6 +5,7 @@
 package akka.stream.alpakka.udp
 
 import java.net.InetSocketAddress
+import java.util.concurrent.atomic.AtomicLong
 
 import akka.util.ByteString
 
@@ -32,3 +33,23 @@ object Datagram {
    */
   def create(data: ByteString, remote: InetSocketAddress) = Datagram(data, remote)
 }
+
+/**
+ * A socket bound by [[akka.stream.alpakka.udp.scaladsl.Udp.receiveSource]].
+ */
+final class UdpReceiveBinding private[udp] (val localAddress: InetSocketAddress,
+                                            received: AtomicLong,
+                                            dropped: AtomicLong) {
+
+  /** Number of datagrams read from the socket. */
+  def receivedCount: Long = received.get()
+
+  /** Number of datagrams dropped because the receive queue was full. */
+  def droppedCount: Long = dropped.get()
+
+  /** Java API */
+  def getLocalAddress: InetSocketAddress = localAddress
+
+  override def toString: String =
+    s"UdpReceiveBinding(localAddress=$localAddress, receivedCount=$receivedCount, droppedCount=$droppedCount)"
+}
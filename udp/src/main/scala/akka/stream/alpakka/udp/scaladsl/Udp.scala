@@ -8,11 +8,12 @@ import java.net.InetSocketAddress
 
 import akka.NotUsed
 import akka.actor.ActorSystem
-import akka.stream.alpakka.udp.Datagram
-import akka.stream.alpakka.udp.impl.{UdpBindFlow, UdpSendFlow}
-import akka.stream.scaladsl.Sink
-import akka.stream.scaladsl.Flow
+import akka.stream.alpakka.udp.{Datagram, UdpReceiveBinding, UdpReceiveSettings}
+import akka.stream.alpakka.udp.impl.{UdpBindFlow, UdpReceiveSource, UdpSendFlow}
+import akka.stream.SourceShape
+import akka.stream.scaladsl.{Flow, GraphDSL, Merge, Sink, Source}
 
+import scala.collection.immutable
 import scala.concurrent.Future
 
 object Udp {
@@ -40,4 +41,52 @@ object Udp {
       localAddress: InetSocketAddress
   )(implicit system: ActorSystem): Flow[Datagram, Datagram, Future[InetSocketAddress]] =
     Flow.fromGraph(new UdpBindFlow(localAddress))
+
+  /**
+   * Creates a source that upon materialization binds to the given `localAddress` and emits the
+   * datagrams received on it in batches of up to `settings.maxBatchSize`. Datagrams are read from
+   * the socket into a bounded queue, see [[UdpReceiveSettings]] for what happens when it is full.
+   */
+  def receiveSource(
+      localAddress: InetSocketAddress,
+      settings: UdpReceiveSettings = UdpReceiveSettings()
+  )(implicit system: ActorSystem): Source[immutable.Seq[Datagram], Future[UdpReceiveBinding]] =
+    Source.fromGraph(new UdpReceiveSource(localAddress, settings))
+
+  /**
+   * Creates `shards` sources that upon materialization bind to the same `localAddress` with SO_REUSEPORT,
+   * so that the operating system balances incoming datagrams between them. Each source runs its own receive
+   * loop and can be materialized independently. As every socket binds to the same port, `localAddress` must
+   * name a port. SO_REUSEPORT requires Java 9 or later.
+   */
+  def receiveSources(
+      localAddress: InetSocketAddress,
+      shards: Int,
+      settings: UdpReceiveSettings = UdpReceiveSettings()
+  )(implicit system: ActorSystem): immutable.Seq[Source[immutable.Seq[Datagram], Future[UdpReceiveBinding]]] = {
+    require(shards > 0, s"Invalid value ($shards) for shards. Requirement: shards > 0")
+    require(localAddress.getPort != 0, "All shards bind the same port, so it can not be chosen by the system")
+    immutable.Seq.fill(shards)(receiveSource(localAddress, settings.withReusePort(true)))
+  }
+
+  /**
+   * Creates a source that binds `shards` sockets to the same `localAddress` with SO_REUSEPORT and merges
+   * the datagrams received by their independent receive loops. See [[receiveSources]].
+   */
+  def receiveSourceSharded(
+      localAddress: InetSocketAddress,
+      shards: Int,
+      settings: UdpReceiveSettings = UdpReceiveSettings()
+  )(implicit system: ActorSystem): Source[immutable.Seq[Datagram], Future[immutable.Seq[UdpReceiveBinding]]] =
+    Source
+      .fromGraph(GraphDSL.create(receiveSources(localAddress, shards, settings)) { implicit builder => sources =>
+        import GraphDSL.Implicits._
+        val merge = builder.add(Merge[immutable.Seq[Datagram]](shards))
+        sources.foreach(_ ~> merge)
+        SourceShape(merge.out)
+      })
+      .mapMaterializedValue { bindings =>
+        import system.dispatcher
+        Future.sequence(bindings)
+      }
 }
@@ -4,21 +4,22 @@
 
 package docs.scaladsl
 
-import java.net.InetSocketAddress
+import java.net.{InetSocketAddress, StandardSocketOptions}
 
 import akka.actor.ActorSystem
 import akka.stream.ActorMaterializer
-import akka.stream.alpakka.udp.Datagram
+import akka.stream.alpakka.udp.{Datagram, UdpReceiveSettings}
 import akka.stream.alpakka.udp.scaladsl.Udp
-import akka.stream.scaladsl.{Flow, Keep, Source}
+import akka.stream.scaladsl.{Flow, Keep, Sink, Source}
 import akka.stream.testkit.scaladsl.{TestSink, TestSource}
-import akka.testkit.TestKit
+import akka.testkit.{SocketUtil, TestKit}
 import akka.util.ByteString
 import org.scalatest.concurrent.ScalaFutures
 import org.scalatest.{BeforeAndAfterAll, Matchers, WordSpecLike}
 
 import scala.concurrent.Future
 import scala.concurrent.duration._
+import scala.util.Try
 
 class UdpSpec
     extends TestKit(ActorSystem("UdpSpec"))
@@ -37,6 +38,9 @@ class UdpSpec
   private def msg(msg: String, destination: InetSocketAddress) =
     Datagram(ByteString(msg), destination)
 
+  // StandardSocketOptions.SO_REUSEPORT only exists from Java 9 on
+  private val reusePortSupported = Try(classOf[StandardSocketOptions].getField("SO_REUSEPORT")).isSuccess
+
   override def afterAll =
     TestKit.shutdownActorSystem(system)
 
@@ -121,6 +125,75 @@ class UdpSpec
       sub1.cancel()
       sub2.cancel()
     }
+
+    "receive datagrams in batches" in {
+      // #receive-source
+      val settings = UdpReceiveSettings()
+        .withQueueSize(1024)
+        .withMaxBatchSize(64)
+
+      val (binding, received) = Udp
+        .receiveSource(bindToLocal, settings)
+        .mapConcat(identity)
+        .take(100)
+        .toMat(Sink.seq)(Keep.both)
+        .run()
+      // #receive-source
+
+      val destination = binding.futureValue.localAddress
+
+      Source(1 to 100)
+        .map(i => msg(s"Message $i", destination))
+        .runWith(Udp.sendSink())
+
+      received.futureValue.map(_.data.utf8String).toSet shouldBe (1 to 100).map(i => s"Message $i").toSet
+      binding.futureValue.receivedCount should be >= 100L
+    }
+
+    "count datagrams dropped while the queue is full" in {
+      val settings = UdpReceiveSettings().withQueueSize(10)
+
+      val (binding, sub) = Udp
+        .receiveSource(bindToLocal, settings)
+        .toMat(TestSink.probe)(Keep.both)
+        .run()
+
+      val bound = binding.futureValue
+      sub.ensureSubscription()
+
+      Source(1 to 100)
+        .map(i => msg(s"Message $i", bound.localAddress))
+        .runWith(Udp.sendSink())
+
+      awaitAssert(bound.receivedCount shouldBe 100L, 3.seconds)
+      bound.droppedCount shouldBe 90L
+
+      sub.request(1)
+      sub.expectNext().size shouldBe 10
+      sub.cancel()
+    }
+
+    "receive datagrams on several sockets sharing a port" in {
+      assume(reusePortSupported, "SO_REUSEPORT requires Java 9 or later")
+      val localAddress = SocketUtil.temporaryServerAddress(udp = true)
+
+      // #receive-source-sharded
+      val (bindings, received) = Udp
+        .receiveSourceSharded(localAddress, shards = 4)
+        .mapConcat(identity)
+        .take(100)
+        .toMat(Sink.seq)(Keep.both)
+        .run()
+      // #receive-source-sharded
+
+      bindings.futureValue.map(_.localAddress.getPort).distinct shouldBe Seq(localAddress.getPort)
+
+      Source(1 to 100)
+        .map(i => msg(s"Message $i", localAddress))
+        .runWith(Udp.sendSink())
+
+      received.futureValue should have size 100
+    }
   }
 
 }
@@ -7,6 +7,7 @@ package akka.stream.alpakka.unixdomainsocket.impl
 import java.io.{File, IOException}
 import java.nio.ByteBuffer
 import java.nio.channels.{SelectionKey, Selector}
+import java.util.concurrent.atomic.AtomicInteger
 
 import akka.actor.{Cancellable, CoordinatedShutdown, ExtendedActorSystem, Extension}
 import akka.annotation.InternalApi
@@ -32,31 +33,24 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
   import scaladsl.UnixDomainSocket._
 
   private sealed abstract class ReceiveContext(
-      val queue: SourceQueueWithComplete[ByteString],
-      val buffer: ByteBuffer
+      val queue: SourceQueueWithComplete[ByteString]
   )
   private case class ReceiveAvailable(
-      override val queue: SourceQueueWithComplete[ByteString],
-      override val buffer: ByteBuffer
-  ) extends ReceiveContext(queue, buffer)
+      override val queue: SourceQueueWithComplete[ByteString]
+  ) extends ReceiveContext(queue)
   private case class PendingReceiveAck(
       override val queue: SourceQueueWithComplete[ByteString],
-      override val buffer: ByteBuffer,
       pendingResult: Future[QueueOfferResult]
-  ) extends ReceiveContext(queue, buffer)
+  ) extends ReceiveContext(queue)
 
-  private sealed abstract class SendContext(
-      val buffer: ByteBuffer
-  )
-  private case class SendAvailable(
-      override val buffer: ByteBuffer
-  ) extends SendContext(buffer)
+  private sealed abstract class SendContext
+  private case object SendAvailable extends SendContext
   private case class SendRequested(
-      override val buffer: ByteBuffer,
+      bytes: ByteString,
       sent: Promise[Done]
-  ) extends SendContext(buffer)
-  private case object CloseRequested extends SendContext(ByteString.empty.asByteBuffer)
-  private case object ShutdownRequested extends SendContext(ByteString.empty.asByteBuffer)
+  ) extends SendContext
+  private case object CloseRequested extends SendContext
+  private case object ShutdownRequested extends SendContext
 
   private class SendReceiveContext(
       @volatile var send: SendContext,
@@ -67,12 +61,33 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
   )
 
   /*
-   * All NIO for UnixDomainSocket across an entire actor system is performed on just one thread. Data
+   * A selector together with the thread driving it. Connections are spread over a configurable number
+   * of these. As a loop reads and writes one channel at a time, its connections share one direct buffer
+   * for receiving and one for sending; received bytes are copied out before the next read and bytes to
+   * send are copied in right before they are written.
+   */
+  private final class EventLoop(name: String, val receiveBufferSize: Int, val sendBufferSize: Int)(
+      implicit ec: ExecutionContext
+  ) {
+    val sel: Selector = NativeSelectorProvider.getInstance.openSelector
+    val receiveBuffer: ByteBuffer = ByteBuffer.allocateDirect(receiveBufferSize)
+    val sendBuffer: ByteBuffer = ByteBuffer.allocateDirect(sendBufferSize)
+
+    private val ioThread = new Thread(new Runnable {
+      override def run(): Unit =
+        nioEventLoop(EventLoop.this)
+    }, name)
+    ioThread.start()
+  }
+
+  /*
+   * All NIO for the connections of an event loop is performed on its one thread. Data
    * is input/output as fast as possible with back-pressure being fully implemented e.g. if there's
    * no other thread ready to consume a receive buffer, then there is no registration for a read
    * operation.
    */
-  private def nioEventLoop(sel: Selector)(implicit ec: ExecutionContext): Unit =
+  private def nioEventLoop(loop: EventLoop)(implicit ec: ExecutionContext): Unit = {
+    val sel = loop.sel
     while (sel.isOpen) {
       val nrOfKeysSelected = sel.select()
       if (sel.isOpen) {
@@ -89,29 +104,35 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
               case null =>
               case sendReceiveContext: SendReceiveContext =>
                 sendReceiveContext.send match {
-                  case SendRequested(buffer, sent) if keySelectable && key.isWritable =>
+                  case SendRequested(bytes, sent) if keySelectable && key.isWritable =>
                     val channel = key.channel().asInstanceOf[UnixSocketChannel]
 
+                    val buffer = loop.sendBuffer
+                    buffer.clear()
+                    bytes.copyToBuffer(buffer)
+                    buffer.flip()
+
                     val written =
                       try {
                         channel.write(buffer)
-                        true
                       } catch {
                         case e: IOException =>
                           key.cancel()
                           key.channel.close()
                           sent.failure(e)
-                          false
+                          -1
                       }
 
-                    if (written && buffer.remaining == 0) {
-                      sendReceiveContext.send = SendAvailable(buffer)
+                    if (written == bytes.size) {
+                      sendReceiveContext.send = SendAvailable
                       key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE)
                       sent.success(Done)
+                    } else if (written >= 0) {
+                      sendReceiveContext.send = SendRequested(bytes.drop(written), sent)
                     }
                   case _: SendRequested =>
                     key.interestOps(key.interestOps() | SelectionKey.OP_WRITE)
-                  case _: SendAvailable =>
+                  case SendAvailable =>
                   case ShutdownRequested if key.isValid && !sendReceiveContext.isOutputShutdown =>
                     try {
                       if (sendReceiveContext.isInputShutdown) {
@@ -132,7 +153,8 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
                     key.channel.close()
                 }
                 sendReceiveContext.receive match {
-                  case ReceiveAvailable(queue, buffer) if keySelectable && key.isReadable =>
+                  case ReceiveAvailable(queue) if keySelectable && key.isReadable =>
+                    val buffer = loop.receiveBuffer
                     buffer.clear()
 
                     val channel = key.channel.asInstanceOf[UnixSocketChannel]
@@ -149,7 +171,7 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
                       buffer.flip()
                       val pendingResult = queue.offer(ByteString(buffer))
                       pendingResult.onComplete(_ => sel.wakeup())
-                      sendReceiveContext.receive = PendingReceiveAck(queue, buffer, pendingResult)
+                      sendReceiveContext.receive = PendingReceiveAck(queue, pendingResult)
                       key.interestOps(key.interestOps() & ~SelectionKey.OP_READ)
                     } else {
                       queue.complete()
@@ -167,11 +189,11 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
                       }
                     }
 
-                  case PendingReceiveAck(receiveQueue, receiveBuffer, pendingResult) if pendingResult.isCompleted =>
+                  case PendingReceiveAck(receiveQueue, pendingResult) if pendingResult.isCompleted =>
                     pendingResult.value.get match {
                       case Success(QueueOfferResult.Enqueued) =>
                         key.interestOps(key.interestOps() | SelectionKey.OP_READ)
-                        sendReceiveContext.receive = ReceiveAvailable(receiveQueue, receiveBuffer)
+                        sendReceiveContext.receive = ReceiveAvailable(receiveQueue)
                       case _ =>
                         receiveQueue.complete()
                         key.cancel()
@@ -187,13 +209,13 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
         }
       }
     }
+  }
 
   private def acceptKey(
       localAddress: UnixSocketAddress,
       incomingConnectionQueue: SourceQueueWithComplete[IncomingConnection],
       halfClose: Boolean,
-      receiveBufferSize: Int,
-      sendBufferSize: Int
+      nextLoop: () => EventLoop
   )(sel: Selector, key: SelectionKey)(implicit mat: ActorMaterializer, ec: ExecutionContext): Unit = {
 
     val acceptingChannel = key.channel().asInstanceOf[UnixServerSocketChannel]
@@ -201,8 +223,10 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
 
     if (acceptedChannel != null) {
       acceptedChannel.configureBlocking(false)
-      val (context, connectionFlow) = sendReceiveStructures(sel, receiveBufferSize, sendBufferSize, halfClose)
-      acceptedChannel.register(sel, SelectionKey.OP_READ, context)
+      val loop = nextLoop()
+      val (context, connectionFlow) = sendReceiveStructures(loop, halfClose)
+      acceptedChannel.register(loop.sel, SelectionKey.OP_READ, context)
+      if (loop.sel ne sel) loop.sel.wakeup()
       incomingConnectionQueue.offer(
         IncomingConnection(localAddress, acceptingChannel.getRemoteSocketAddress, connectionFlow)
       )
@@ -228,11 +252,14 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
     }
   }
 
-  private def sendReceiveStructures(sel: Selector, receiveBufferSize: Int, sendBufferSize: Int, halfClose: Boolean)(
+  private def sendReceiveStructures(loop: EventLoop, halfClose: Boolean)(
       implicit mat: ActorMaterializer,
       ec: ExecutionContext
   ): (SendReceiveContext, Flow[ByteString, ByteString, NotUsed]) = {
 
+    val sel = loop.sel
+    val sendBufferSize = loop.sendBufferSize
+
     val (receiveQueue, receiveSource) =
       Source
         .queue[ByteString](2, OverflowStrategy.backpressure)
@@ -242,12 +269,12 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
         .run()
     val sendReceiveContext =
       new SendReceiveContext(
-        SendAvailable(ByteBuffer.allocate(sendBufferSize)),
-        ReceiveAvailable(receiveQueue, ByteBuffer.allocate(receiveBufferSize)),
+        SendAvailable,
+        ReceiveAvailable(receiveQueue),
         halfClose = halfClose,
         isOutputShutdown = false,
         isInputShutdown = false
-      ) // FIXME: No need for the costly allocation of direct buffers yet given https://github.com/jnr/jnr-unixsocket/pull/49
+      )
 
     val sendSink = Sink.fromGraph(
       Flow[ByteString]
@@ -269,12 +296,7 @@ private[unixdomainsocket] object UnixDomainSocketImpl {
         .mapAsync(1) { bytes =>
           // Note - it is an error to get here and not have an AvailableSendContext
           val sent = Promise[Done]
-          val sendBuffer = sendReceiveContext.send.buffer
-          sendBuffer.clear()
-          val copied = bytes.copyToBuffer(sendBuffer)
-          sendBuffer.flip()
-          require(copied == bytes.size) // It is an error to exceed our buffer size given the above expand
-          sendReceiveContext.send = SendRequested(sendBuffer, sent)
+          sendReceiveContext.send = SendRequested(bytes, sent)
           sel.wakeup()
           sent.future.map(_ => bytes)
         }
@@ -310,24 +332,35 @@ private[unixdomainsocket] abstract class UnixDomainSocketImpl(system: ExtendedAc
   private implicit val materializer: ActorMaterializer = ActorMaterializer()(system)
   import system.dispatcher
 
-  private val sel = NativeSelectorProvider.getInstance.openSelector
+  private val receiveBufferSize: Int =
+    system.settings.config.getBytes("akka.stream.alpakka.unix-domain-socket.receive-buffer-size").toInt
+  private val sendBufferSize: Int =
+    system.settings.config.getBytes("akka.stream.alpakka.unix-domain-socket.send-buffer-size").toInt
+  private val selectorThreads: Int =
+    system.settings.config.getInt("akka.stream.alpakka.unix-domain-socket.selector-threads")
+  require(selectorThreads > 0, "akka.stream.alpakka.unix-domain-socket.selector-threads must be at least 1")
+
+  private val loops: Vector[EventLoop] =
+    Vector.tabulate(selectorThreads) { i =>
+      new EventLoop(if (i == 0) "unix-domain-socket-io" else s"unix-domain-socket-io-$i",
+                    receiveBufferSize,
+                    sendBufferSize)
+    }
+  private val nextLoopIndex = new AtomicInteger()
+
+  /* Connections are assigned to the event loops round-robin. */
+  private def nextLoop(): EventLoop =
+    loops((nextLoopIndex.getAndIncrement() & Int.MaxValue) % loops.size)
 
-  private val ioThread = new Thread(new Runnable {
-    override def run(): Unit =
-      nioEventLoop(sel)
-  }, "unix-domain-socket-io")
-  ioThread.start()
+  /* The number of channels registered with the selector of every event loop, for tests. */
+  private[unixdomainsocket] def registeredChannels: Vector[Int] =
+    loops.map(_.sel.keys.size)
 
   CoordinatedShutdown(system).addTask(CoordinatedShutdown.PhaseServiceStop, "stopUnixDomainSocket") { () =>
-    sel.close() // Not much else that we can do
+    loops.foreach(_.sel.close()) // Not much else that we can do
     Future.successful(Done)
   }
 
-  private val receiveBufferSize: Int =
-    system.settings.config.getBytes("akka.stream.alpakka.unix-domain-socket.receive-buffer-size").toInt
-  private val sendBufferSize: Int =
-    system.settings.config.getBytes("akka.stream.alpakka.unix-domain-socket.send-buffer-size").toInt
-
   protected def bind(file: File,
                      backlog: Int = 128,
                      halfClose: Boolean = false): Source[IncomingConnection, Future[ServerBinding]] = {
@@ -360,10 +393,9 @@ private[unixdomainsocket] abstract class UnixDomainSocketImpl(system: ExtendedAc
     val channel = UnixServerSocketChannel.open()
     channel.configureBlocking(false)
     val address = new UnixSocketAddress(file)
+    val sel = nextLoop().sel
     val registeredKey =
-      channel.register(sel,
-                       SelectionKey.OP_ACCEPT,
-                       acceptKey(address, incomingConnectionQueue, halfClose, receiveBufferSize, sendBufferSize) _)
+      channel.register(sel, SelectionKey.OP_ACCEPT, acceptKey(address, incomingConnectionQueue, halfClose, nextLoop) _)
     try {
       channel.socket().bind(address, backlog)
       sel.wakeup()
@@ -408,10 +440,13 @@ private[unixdomainsocket] abstract class UnixDomainSocketImpl(system: ExtendedAc
         case _ =>
           None
       }
-    val (context, connectionFlow) = sendReceiveStructures(sel, receiveBufferSize, sendBufferSize, halfClose)
+    val loop = nextLoop()
+    val (context, connectionFlow) = sendReceiveStructures(loop, halfClose)
     val registeredKey =
       channel
-        .register(sel, SelectionKey.OP_CONNECT, connectKey(remoteAddress, connectionFinished, cancellable, context) _)
+        .register(loop.sel,
+                  SelectionKey.OP_CONNECT,
+                  connectKey(remoteAddress, connectionFinished, cancellable, context) _)
     val connection = Try(channel.connect(remoteAddress))
     connection.failed.foreach(e => connectionFinished.tryFailure(e))
 
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016-2018 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.stream.alpakka.unixdomainsocket
+
+import java.nio.file.Files
+
+import akka.actor.ActorSystem
+import akka.stream.ActorMaterializer
+import akka.stream.alpakka.unixdomainsocket.scaladsl.UnixDomainSocket
+import akka.stream.scaladsl.{Flow, Keep, Sink, Source}
+import akka.testkit.TestKit
+import akka.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.scalatest._
+
+import scala.concurrent.Future
+
+class UnixDomainSocketSelectorsSpec
+    extends TestKit(
+      ActorSystem(
+        "UnixDomainSocketSelectorsSpec",
+        ConfigFactory
+          .parseString("akka.stream.alpakka.unix-domain-socket.selector-threads = 3")
+          .withFallback(ConfigFactory.load())
+      )
+    )
+    with AsyncWordSpecLike
+    with Matchers
+    with BeforeAndAfterAll {
+
+  override def afterAll: Unit =
+    TestKit.shutdownActorSystem(system)
+
+  implicit val ma: ActorMaterializer = ActorMaterializer()
+
+  "Unix Domain Sockets with several selector threads" should {
+    "spread the connections over the selectors" in {
+      val file = Files.createTempFile("UnixDomainSocketSelectorsSpec", ".sock").toFile
+      file.delete()
+      file.deleteOnExit()
+
+      val sendBytes = ByteString("Hello")
+
+      UnixDomainSocket().bindAndHandle(Flow[ByteString], file).flatMap { binding =>
+        // connections which stay open until their source is completed
+        val connections = (1 to 3).map { _ =>
+          Source
+            .maybe[ByteString]
+            .prepend(Source.single(sendBytes))
+            .via(UnixDomainSocket().outgoingConnection(file))
+            .toMat(Sink.queue())(Keep.both)
+            .run()
+        }
+
+        Future
+          .sequence(connections.map { case (_, replies) => replies.pull() })
+          .map { received =>
+            received shouldBe Seq.fill(3)(Some(sendBytes))
+            // the server channel and both ends of every connection, assigned round-robin
+            UnixDomainSocket().registeredChannels shouldBe Vector(3, 2, 2)
+          }
+          .flatMap { assertion =>
+            connections.foreach { case (close, _) => close.success(None) }
+            binding.unbind().map(_ => assertion)
+          }
+      }
+    }
+  }
+}